@@ -0,0 +1,334 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.orbitnav.internal.PulseCoalescer;
+
+import javafx.scene.Group;
+import javafx.scene.Node;
+
+/**
+ * A 2D overlay that keeps nodes positioned over anchor points in the 3D scene of a {@link Pane3D Pane3D}.
+ *
+ * <p>
+ * Each anchor is a sphere (a center and a radius) in the 3D scene, with an associated overlay node and a
+ * {@link Placement Placement} that positions the node on the raster.  Anchor coordinates are kept in primitive arrays.
+ * Whenever the camera changes, all anchors are re-projected together, at most once per pulse, using the batch methods
+ * of {@link CameraToRasterTransform CameraToRasterTransform}.  Only nodes whose raster position or radius has changed
+ * are updated.  Anchors that are behind the camera or entirely outside the raster are culled by hiding their nodes.
+ *
+ * <p>
+ * Anchors are identified by the integer returned from
+ * {@link #addAnchor(double, double, double, double, Node, Placement) addAnchor}.  This identifier remains valid until
+ * the anchor is removed.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class AnchorOverlay extends Group {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Positions an overlay node on the raster.
+     */
+    @FunctionalInterface
+    public interface Placement {
+        /**
+         * Positions a node.
+         *
+         * @param node overlay node to position
+         * @param rasterX x coordinate of the anchor on the raster
+         * @param rasterY y coordinate of the anchor on the raster
+         * @param rasterRadius radius of the anchor on the raster
+         */
+        void place(Node node, double rasterX, double rasterY, double rasterRadius);
+    }
+
+    /** Placement that translates the node's origin to the anchor, ignoring the anchor's radius. */
+    public static final Placement TRANSLATE = (node, x, y, r) -> {
+        node.setTranslateX(x);
+        node.setTranslateY(y);
+    };
+
+    public AnchorOverlay() {
+        // only the overlay nodes themselves should intercept mouse events
+        setPickOnBounds(false);
+    }
+
+    /**
+     * Adds an anchor, using the {@link #TRANSLATE TRANSLATE} placement.
+     *
+     * @param x x coordinate of the anchor in the 3D scene
+     * @param y y coordinate of the anchor in the 3D scene
+     * @param z z coordinate of the anchor in the 3D scene
+     * @param radius radius of the anchor in the 3D scene
+     * @param node overlay node
+     * @return identifier of the new anchor
+     */
+    public int addAnchor(double x, double y, double z, double radius, Node node) {
+        return addAnchor(x, y, z, radius, node, TRANSLATE);
+    }
+
+    /**
+     * Adds an anchor.
+     *
+     * @param x x coordinate of the anchor in the 3D scene
+     * @param y y coordinate of the anchor in the 3D scene
+     * @param z z coordinate of the anchor in the 3D scene
+     * @param radius radius of the anchor in the 3D scene
+     * @param node overlay node
+     * @param placement positions the overlay node on the raster
+     * @return identifier of the new anchor
+     */
+    public int addAnchor(double x, double y, double z, double radius, Node node, Placement placement) {
+        ensureCapacity(count + 1);
+        final int id = allocateId();
+        final int slot = count++;
+        slotOfId[id] = slot;
+        idOfSlot[slot] = id;
+        nodes[slot] = node;
+        placements[slot] = placement;
+        radii[slot] = radius;
+        placed[slot] = false;
+        setCoords(slot, x, y, z);
+        node.setVisible(false);
+        // a node removed earlier in this pulse is still a child of the overlay
+        if (!removedNodes.remove(node)) {
+            getChildren().add(node);
+        }
+        invalidate();
+        return id;
+    }
+
+    /**
+     * Moves an anchor.
+     *
+     * @param id identifier of the anchor
+     * @param x new x coordinate of the anchor in the 3D scene
+     * @param y new y coordinate of the anchor in the 3D scene
+     * @param z new z coordinate of the anchor in the 3D scene
+     */
+    public void setAnchorPosition(int id, double x, double y, double z) {
+        setCoords(slot(id), x, y, z);
+        invalidate();
+    }
+
+    /**
+     * Removes an anchor and its overlay node.  The node is hidden at once, and detached from the overlay at the next
+     * pulse, together with the nodes of all other anchors removed in the same pulse.
+     *
+     * @param id identifier of the anchor
+     */
+    public void removeAnchor(int id) {
+        final int slot = slot(id);
+        nodes[slot].setVisible(false);
+        removedNodes.add(nodes[slot]);
+        remover.schedule();
+        // move the last anchor into the vacated slot, so that the anchors remain densely packed
+        final int last = --count;
+        if (slot != last) {
+            final int lastId = idOfSlot[last];
+            System.arraycopy(xyz, 3 * last, xyz, 3 * slot, 3);
+            radii[slot] = radii[last];
+            nodes[slot] = nodes[last];
+            placements[slot] = placements[last];
+            placed[slot] = placed[last];
+            lastX[slot] = lastX[last];
+            lastY[slot] = lastY[last];
+            lastR[slot] = lastR[last];
+            idOfSlot[slot] = lastId;
+            slotOfId[lastId] = slot;
+        }
+        nodes[last] = null;
+        placements[last] = null;
+        slotOfId[id] = -1;
+        freeIds[freeIdCount++] = id;
+    }
+
+    /**
+     * Removes all anchors and their overlay nodes.
+     */
+    public void clearAnchors() {
+        // the overlay holds nothing but anchor nodes
+        getChildren().clear();
+        removedNodes.clear();
+        remover.cancel();
+        Arrays.fill(nodes, 0, count, null);
+        Arrays.fill(placements, 0, count, null);
+        Arrays.fill(slotOfId, -1);
+        count = 0;
+        nextId = 0;
+        freeIdCount = 0;
+    }
+
+    /**
+     * Returns the number of anchors.
+     *
+     * @return number of anchors
+     */
+    public int getAnchorCount() { return count; }
+
+    //--------------------------------------------------------------------------------------------------------- PACKAGE
+
+    /**
+     * Sets the current scene-to-raster transform and raster size, and schedules re-projection of all anchors.
+     *
+     * @param transform current scene-to-raster transform
+     * @param width width of the raster
+     * @param height height of the raster
+     */
+    void setRasterTransform(CameraToRasterTransform transform, double width, double height) {
+        this.transform = transform;
+        this.width = width;
+        this.height = height;
+        invalidate();
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    /** Raster movement (in pixels) below which overlay nodes are not updated. */
+    private static final double EPSILON = 0.01;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private CameraToRasterTransform transform = null;
+    private double width;
+    private double height;
+
+    // anchors, densely packed by slot
+    private int count = 0;
+    private double[] xyz = new double[3 * INITIAL_CAPACITY];
+    private double[] radii = new double[INITIAL_CAPACITY];
+    private Node[] nodes = new Node[INITIAL_CAPACITY];
+    private Placement[] placements = new Placement[INITIAL_CAPACITY];
+    private int[] idOfSlot = new int[INITIAL_CAPACITY];
+
+    // last placement of each anchor
+    private boolean[] placed = new boolean[INITIAL_CAPACITY];
+    private double[] lastX = new double[INITIAL_CAPACITY];
+    private double[] lastY = new double[INITIAL_CAPACITY];
+    private double[] lastR = new double[INITIAL_CAPACITY];
+
+    // projection scratch space
+    private double[] raster = new double[2 * INITIAL_CAPACITY];
+    private double[] rasterRadii = new double[INITIAL_CAPACITY];
+    private boolean[] inFront = new boolean[INITIAL_CAPACITY];
+
+    // identifiers
+    private int[] slotOfId = initialSlotOfId();
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeIdCount = 0;
+    private int nextId = 0;
+
+    private final PulseCoalescer updater = new PulseCoalescer(this::update);
+
+    // nodes of removed anchors, detached from the overlay together at the next pulse
+    private final Set<Node> removedNodes = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+    private final PulseCoalescer remover = new PulseCoalescer(this::detachRemovedNodes);
+
+    private static int[] initialSlotOfId() {
+        final int[] a = new int[INITIAL_CAPACITY];
+        Arrays.fill(a, -1);
+        return a;
+    }
+
+    private void invalidate() {
+        if (transform != null) {
+            updater.schedule();
+        }
+    }
+
+    private void detachRemovedNodes() {
+        getChildren().removeAll(removedNodes);
+        removedNodes.clear();
+    }
+
+    private int slot(int id) {
+        final int slot = ((id >= 0) && (id < slotOfId.length)) ? slotOfId[id] : -1;
+        if (slot < 0) {
+            throw new IllegalArgumentException("No anchor with identifier " + id);
+        }
+        return slot;
+    }
+
+    private int allocateId() {
+        return (freeIdCount > 0) ? freeIds[--freeIdCount] : nextId++;
+    }
+
+    private void setCoords(int slot, double x, double y, double z) {
+        xyz[3 * slot]     = x;
+        xyz[3 * slot + 1] = y;
+        xyz[3 * slot + 2] = z;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n > radii.length) {
+            final int cap = Math.max(n, 2 * radii.length);
+            xyz = Arrays.copyOf(xyz, 3 * cap);
+            radii = Arrays.copyOf(radii, cap);
+            nodes = Arrays.copyOf(nodes, cap);
+            placements = Arrays.copyOf(placements, cap);
+            idOfSlot = Arrays.copyOf(idOfSlot, cap);
+            placed = Arrays.copyOf(placed, cap);
+            lastX = Arrays.copyOf(lastX, cap);
+            lastY = Arrays.copyOf(lastY, cap);
+            lastR = Arrays.copyOf(lastR, cap);
+            raster = new double[2 * cap];
+            rasterRadii = new double[cap];
+            inFront = new boolean[cap];
+            freeIds = Arrays.copyOf(freeIds, cap);
+            final int oldIds = slotOfId.length;
+            slotOfId = Arrays.copyOf(slotOfId, cap);
+            Arrays.fill(slotOfId, oldIds, cap, -1);
+        }
+    }
+
+    private void update() {
+        if (transform == null) {
+            return;
+        }
+        transform.transform(xyz, 0, count, raster, null, inFront);
+        transform.transformRadii(xyz, radii, 0, count, rasterRadii);
+        for (int i = 0; i < count; i++) {
+            final double x = raster[2 * i];
+            final double y = raster[2 * i + 1];
+            final double r = rasterRadii[i];
+            final boolean visible = inFront[i] && (x + r >= 0) && (x - r <= width) && (y + r >= 0) && (y - r <= height);
+            final Node node = nodes[i];
+            if (!visible) {
+                if (node.isVisible()) {
+                    node.setVisible(false);
+                }
+                continue;
+            }
+            if (!placed[i] || (Math.abs(x - lastX[i]) > EPSILON) || (Math.abs(y - lastY[i]) > EPSILON) ||
+                    (Math.abs(r - lastR[i]) > EPSILON))
+            {
+                placements[i].place(node, x, y, r);
+                placed[i] = true;
+                lastX[i] = x;
+                lastY[i] = y;
+                lastR[i] = r;
+            }
+            if (!node.isVisible()) {
+                node.setVisible(true);
+            }
+        }
+    }
+
+}
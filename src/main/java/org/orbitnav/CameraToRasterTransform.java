@@ -17,6 +17,13 @@ import javafx.geometry.Point2D;
 /**
  * Performs a coordinate transformation from a 3D scene to the 2D coordinates of the raster on which the scene is
  * displayed.
+ *
+ * <p>
+ * Only {@link #transform(double, double, double) transform} and
+ * {@link #transformRadius(double, double, double, double) transformRadius} must be implemented.  The batch methods
+ * have default implementations in terms of those two, which allocate and are slow; the methods that need the depth of
+ * a point or the pose of the camera, which the two cannot supply, throw <code>UnsupportedOperationException</code>
+ * by default.  The transforms supplied by the camera rigs implement every method.
  */
 public interface CameraToRasterTransform {
 
@@ -42,4 +49,167 @@ public interface CameraToRasterTransform {
      */
     double transformRadius(double x, double y, double z, double radius);
 
+    /**
+     * Indicates whether this transform can be used.  A transform is unusable while the camera's transformation is
+     * singular, and the results of all of its methods are then undefined; callers should skip work that depends on
+     * them until the transform becomes usable again.
+     *
+     * @return <code>true</code> if this transform can be used; <code>true</code> by default
+     */
+    default boolean isValid() { return true; }
+
+    /**
+     * Transforms a batch of 3D coordinates from the scene into 2D raster coordinates.
+     *
+     * <p>
+     * Coordinates are packed: point <code>i</code> is (<code>xyz[3*i]</code>, <code>xyz[3*i+1]</code>,
+     * <code>xyz[3*i+2]</code>), and its raster coordinate is written to (<code>raster[2*i]</code>,
+     * <code>raster[2*i+1]</code>).  The <code>depth</code> and <code>inFront</code> outputs are indexed by point and
+     * may be <code>null</code> if they are not required.  Raster coordinates of points that are not in front of the
+     * camera are meaningless.
+     *
+     * <p>
+     * The default implementation projects each point with {@link #transform(double, double, double) transform}.  It
+     * cannot report depths, so it throws <code>UnsupportedOperationException</code> unless <code>depth</code> and
+     * <code>inFront</code> are both <code>null</code>, and it counts every point as in front of the camera.
+     *
+     * @param xyz packed scene coordinates
+     * @param offset index of the first point to transform
+     * @param count number of points to transform
+     * @param raster output packed raster coordinates
+     * @param depth output depth of each point along the viewing axis of the camera (may be <code>null</code>)
+     * @param inFront output flag indicating whether each point is in front of the camera (may be <code>null</code>)
+     * @return number of transformed points that are in front of the camera
+     */
+    default int transform(double[] xyz, int offset, int count, double[] raster, double[] depth, boolean[] inFront) {
+        if ((depth != null) || (inFront != null)) {
+            throw new UnsupportedOperationException("depths are not available from this transform");
+        }
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final Point2D p = transform(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+            raster[2 * i]     = p.getX();
+            raster[2 * i + 1] = p.getY();
+        }
+        return count;
+    }
+
+    /**
+     * Transforms a batch of single-precision 3D coordinates from the scene into 2D raster coordinates.
+     *
+     * @param xyz packed scene coordinates
+     * @param offset index of the first point to transform
+     * @param count number of points to transform
+     * @param raster output packed raster coordinates
+     * @param depth output depth of each point along the viewing axis of the camera (may be <code>null</code>)
+     * @param inFront output flag indicating whether each point is in front of the camera (may be <code>null</code>)
+     * @return number of transformed points that are in front of the camera
+     * @see #transform(double[], int, int, double[], double[], boolean[])
+     */
+    default int transform(float[] xyz, int offset, int count, float[] raster, float[] depth, boolean[] inFront) {
+        if ((depth != null) || (inFront != null)) {
+            throw new UnsupportedOperationException("depths are not available from this transform");
+        }
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final Point2D p = transform(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2]);
+            raster[2 * i]     = (float)p.getX();
+            raster[2 * i + 1] = (float)p.getY();
+        }
+        return count;
+    }
+
+    /**
+     * Transforms a batch of single-precision 3D coordinates, stored as separate coordinate arrays, into 2D raster
+     * coordinates.
+     *
+     * <p>
+     * This structure-of-arrays form is intended for the largest point sets.  Its loop is free of branches and of
+     * strided access, which allows the JIT compiler to vectorize it.  Point <code>i</code> is
+     * (<code>x[i]</code>, <code>y[i]</code>, <code>z[i]</code>) and its raster coordinate is written to
+     * (<code>rasterX[i]</code>, <code>rasterY[i]</code>).  A point is in front of the camera if
+     * <code>depth[i] &gt; 0</code>.  The default implementation throws <code>UnsupportedOperationException</code>.
+     *
+     * @param x scene x coordinates
+     * @param y scene y coordinates
+     * @param z scene z coordinates
+     * @param offset index of the first point to transform
+     * @param count number of points to transform
+     * @param rasterX output raster x coordinates
+     * @param rasterY output raster y coordinates
+     * @param depth output depth of each point along the viewing axis of the camera
+     */
+    default void transform(float[] x, float[] y, float[] z, int offset, int count,
+                           float[] rasterX, float[] rasterY, float[] depth)
+    {
+        throw new UnsupportedOperationException("depths are not available from this transform");
+    }
+
+    /**
+     * Transforms the radii of a batch of spheres in the 3D scene to the equivalent radii of circles on the raster.
+     *
+     * @param xyz packed scene coordinates of the centers of the spheres
+     * @param radii radii of the spheres in the 3D scene
+     * @param offset index of the first sphere to transform
+     * @param count number of spheres to transform
+     * @param rasterRadii output radii of the spheres on the 2D raster
+     * @see #transformRadius(double, double, double, double)
+     */
+    default void transformRadii(double[] xyz, double[] radii, int offset, int count, double[] rasterRadii) {
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            rasterRadii[i] = transformRadius(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2], radii[i]);
+        }
+    }
+
+    /**
+     * Transforms the radii of a batch of single-precision spheres in the 3D scene to the equivalent radii of circles
+     * on the raster.
+     *
+     * @param xyz packed scene coordinates of the centers of the spheres
+     * @param radii radii of the spheres in the 3D scene
+     * @param offset index of the first sphere to transform
+     * @param count number of spheres to transform
+     * @param rasterRadii output radii of the spheres on the 2D raster
+     * @see #transformRadius(double, double, double, double)
+     */
+    default void transformRadii(float[] xyz, float[] radii, int offset, int count, float[] rasterRadii) {
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            rasterRadii[i] = (float)transformRadius(xyz[3 * i], xyz[3 * i + 1], xyz[3 * i + 2], radii[i]);
+        }
+    }
+
+    /**
+     * Transforms a 2D raster coordinate into a ray in the 3D scene.
+     *
+     * <p>
+     * This is the inverse of {@link #transform(double, double, double) transform}: every point along the ray projects
+     * onto the raster coordinate (<code>rasterX</code>, <code>rasterY</code>).  The ray originates at the eye of the
+     * camera and its direction is normalized.  Results are written into the caller's arrays, which must each have at
+     * least 3 elements.  The default implementation throws <code>UnsupportedOperationException</code>.
+     *
+     * @param rasterX x coordinate on the raster
+     * @param rasterY y coordinate on the raster
+     * @param origin output origin of the ray in the 3D scene (x, y, z)
+     * @param direction output unit direction of the ray in the 3D scene (x, y, z)
+     */
+    default void rasterToRay(double rasterX, double rasterY, double[] origin, double[] direction) {
+        throw new UnsupportedOperationException("the camera pose is not available from this transform");
+    }
+
+    /**
+     * Returns a copy of this transform that is unaffected by later changes to the camera.
+     *
+     * <p>
+     * The transform supplied by a camera rig is updated in place, on the JavaFX application thread, whenever the
+     * camera changes.  A snapshot may be handed to a worker thread and used there while the camera continues to move.
+     * The default implementation throws <code>UnsupportedOperationException</code>.
+     *
+     * @return independent copy of this transform
+     */
+    default CameraToRasterTransform snapshot() {
+        throw new UnsupportedOperationException("this transform cannot be copied");
+    }
+
 }
@@ -0,0 +1,603 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import org.orbitnav.internal.DepthBuffer;
+import org.orbitnav.internal.PulseCoalescer;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Transform;
+
+/**
+ * A Group that hides those of its children that lie entirely outside the view frustum of the camera.
+ *
+ * <p>
+ * JavaFX processes every visible node on every frame, whether or not it can be seen.  When a
+ * <code>CullingGroup</code> is registered with a {@link Pane3D Pane3D} (see
+ * {@link Pane3D#addCullingGroup(CullingGroup) addCullingGroup}), it re-tests its children against the frustum
+ * whenever the camera changes, at most once per pulse, and toggles the visibility of those that have entered or left
+ * it.  Each child is represented by a bounding sphere, cached from its bounds in the group, and the spheres are held in
+ * a hierarchy so that whole branches entirely inside or outside the frustum are resolved with a single test.  A branch
+ * whose classification has not changed since the previous test is skipped entirely.
+ *
+ * <p>
+ * When {@link #occlusionCullingProperty() occlusion culling} is enabled, children hidden behind a set of
+ * {@link #setOccluders(double[], double[], int) occluder} spheres are hidden as well.  After each frustum cull, a
+ * snapshot of the camera is taken and the occluders are drawn into a low-resolution {@link DepthBuffer DepthBuffer} on
+ * a worker thread.  The bounding spheres of the hierarchy are then tested against it, so that a whole branch can be
+ * found to be occluded at once.  The results are applied at the next pulse.  Since they lag the camera by a frame or
+ * so, newly revealed children may appear slightly late.  A few large occluders (for example, spheres inscribed in the
+ * densest parts of a structure) are far more effective than many small ones.
+ *
+ * <p>
+ * The group takes over the <code>visible</code> property of its children; set the visibility of the group itself to
+ * hide all of them.  A child's visibility is restored when it is removed from the group.  Note that hidden children do
+ * not contribute to the bounds of the group.
+ *
+ * <p>
+ * Culling works best when each child is a spatially compact chunk of the scene, rather than one small node among
+ * very many.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class CullingGroup extends Group {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    public CullingGroup() {
+        getChildren().addListener(childrenListener);
+    }
+
+    public CullingGroup(Node... children) {
+        this();
+        getChildren().addAll(children);
+    }
+
+    /**
+     * Indicates whether children hidden behind the occluders are culled.  Off by default.
+     *
+     * @return occlusion culling property
+     */
+    public BooleanProperty occlusionCullingProperty() { return occlusionCulling; }
+    public void setOcclusionCulling(boolean value) { occlusionCulling.set(value); }
+    public boolean isOcclusionCulling() { return occlusionCulling.get(); }
+
+    /**
+     * Sets the spheres that hide the children behind them when occlusion culling is enabled.  The coordinates are
+     * copied.  An occluder must lie entirely within the solid geometry of the group, since anything behind it is
+     * treated as hidden.
+     *
+     * @param xyz packed centers of the occluders, in the local coordinates of the group (x0, y0, z0, x1, ...)
+     * @param radii radii of the occluders
+     * @param count number of occluders
+     */
+    public void setOccluders(double[] xyz, double[] radii, int count) {
+        occluderXyz = Arrays.copyOf(xyz, 3 * count);
+        occluderRadii = Arrays.copyOf(radii, count);
+        invalidate();
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PACKAGE
+
+    /**
+     * Sets the current scene-to-raster transform and raster size, and schedules culling of the children.
+     *
+     * @param transform current scene-to-raster transform
+     * @param width width of the raster
+     * @param height height of the raster
+     */
+    void setRasterTransform(CameraToRasterTransform transform, double width, double height) {
+        this.transform = transform;
+        this.width = width;
+        this.height = height;
+        invalidate();
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    /** Width of the occlusion depth buffer, in texels. */
+    private static final int DEPTH_BUFFER_WIDTH = 256;
+
+    /** Worker thread shared by all culling groups for occlusion tests. */
+    private static final Executor OCCLUSION_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        final Thread thread = new Thread(r, "CullingGroup occlusion");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Maximum number of children in a leaf of the hierarchy. */
+    private static final int LEAF_SIZE = 4;
+
+    private static final int UNKNOWN = -1;
+    private static final int OUTSIDE = 0;
+    private static final int INTERSECTS = 1;
+    private static final int INSIDE = 2;
+
+    private CameraToRasterTransform transform = null;
+    private double width;
+    private double height;
+
+    /*
+     * Hierarchy of bounding spheres, laid out depth-first as for RayPicker: a node covering k leaves has 2k-1 nodes in
+     * its subtree, its left child immediately follows it, and it covers a contiguous range of the order array.
+     */
+    private boolean viewChanged = false;        // the camera, children or occluders changed since the last update
+    private boolean hierarchyValid = false;
+    private Node[] order = new Node[0];         // children, in hierarchy order
+    private double[] spheres = new double[0];   // packed (cx, cy, cz, r) per child, in hierarchy order
+    private double[] nodeSpheres = new double[0];
+    private int[] nodeStart = new int[0];
+    private int[] nodeCount = new int[0];
+    private int[] nodeState = new int[0];       // classification of each node at the last cull
+    private int hierarchyVersion = 0;
+
+    // per child, in hierarchy order
+    private boolean[] inFrustum = new boolean[0];
+    private boolean[] occluded = new boolean[0];
+
+    private final BooleanProperty occlusionCulling = new SimpleBooleanProperty(this, "occlusionCulling", false) {
+        @Override protected void invalidated() { occlusionChanged(); }
+    };
+    private double[] occluderXyz = new double[0];
+    private double[] occluderRadii = new double[0];
+    private boolean occlusionRunning = false;      // an occlusion test has been submitted and not yet applied
+    private boolean occlusionRequested = false;    // another test is needed once the running one is applied
+    private OcclusionResult occlusionResult = null;  // result waiting to be applied at the next pulse
+
+    // frustum planes: packed (nx, ny, nz, d) with inward unit normals; four sides, then the plane of the eye
+    private final double[] planes = new double[20];
+    private final double[] rayOrigin = new double[3];
+    private final double[][] rayDirs = new double[5][3];
+
+    private final PulseCoalescer updater = new PulseCoalescer(this::update);
+
+    private final InvalidationListener childBoundsListener = ob -> invalidateHierarchy();
+
+    private final ListChangeListener<Node> childrenListener = change -> {
+        while (change.next()) {
+            for (Node n : change.getRemoved()) {
+                n.boundsInParentProperty().removeListener(childBoundsListener);
+                n.setVisible(true);
+            }
+            for (Node n : change.getAddedSubList()) {
+                n.boundsInParentProperty().addListener(childBoundsListener);
+            }
+        }
+        invalidateHierarchy();
+    };
+
+    private void invalidateHierarchy() {
+        hierarchyValid = false;
+        invalidate();
+    }
+
+    private void invalidate() {
+        viewChanged = true;
+        if (transform != null) {
+            updater.schedule();
+        }
+    }
+
+    private void update() {
+        if (transform == null) {
+            return;
+        }
+        if (!hierarchyValid) {
+            buildHierarchy();
+        }
+        if (order.length == 0) {
+            return;
+        }
+        try {
+            buildFrustum(getLocalToSceneTransform());
+        } catch (NonInvertibleTransformException ex) {
+            return;  // the group is collapsed; nothing can be seen anyway
+        }
+        cullNode(0);
+        if (occlusionResult != null) {
+            applyOcclusion(occlusionResult);
+            occlusionResult = null;
+        }
+        if (isOcclusionCulling() && viewChanged) {
+            requestOcclusion();
+        }
+        viewChanged = false;
+    }
+
+    /** Number of children in the left child of a node covering count children. */
+    private static int leftCount(int count) {
+        final int leaves = (count + LEAF_SIZE - 1) / LEAF_SIZE;
+        return LEAF_SIZE * ((leaves + 1) / 2);
+    }
+
+    private static int subtreeSize(int count) {
+        return 2 * ((count + LEAF_SIZE - 1) / LEAF_SIZE) - 1;
+    }
+
+    private void buildHierarchy() {
+        final int n = getChildren().size();
+        order = getChildren().toArray(new Node[n]);
+        spheres = new double[4 * n];
+        for (int i = 0; i < n; i++) {
+            final Bounds b = order[i].getBoundsInParent();
+            if (b.isEmpty()) {
+                continue;
+            }
+            spheres[4 * i]     = (b.getMinX() + b.getMaxX()) / 2.0;
+            spheres[4 * i + 1] = (b.getMinY() + b.getMaxY()) / 2.0;
+            spheres[4 * i + 2] = (b.getMinZ() + b.getMaxZ()) / 2.0;
+            spheres[4 * i + 3] = Math.sqrt(b.getWidth() * b.getWidth() + b.getHeight() * b.getHeight() +
+                                           b.getDepth() * b.getDepth()) / 2.0;
+        }
+        final int nodes = (n == 0) ? 0 : subtreeSize(n);
+        nodeSpheres = new double[4 * nodes];
+        nodeStart = new int[nodes];
+        nodeCount = new int[nodes];
+        nodeState = new int[nodes];
+        Arrays.fill(nodeState, UNKNOWN);
+        inFrustum = new boolean[n];
+        occluded = new boolean[n];
+        hierarchyVersion++;
+        if (n > 0) {
+            buildNode(0, 0, n);
+        }
+        hierarchyValid = true;
+    }
+
+    private void buildNode(int node, int start, int count) {
+        nodeStart[node] = start;
+        nodeCount[node] = count;
+
+        // bounding sphere of the children, centered on the bounding box of their spheres
+        double x0 = Double.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+        for (int i = start; i < start + count; i++) {
+            final double r = spheres[4 * i + 3];
+            x0 = Math.min(x0, spheres[4 * i] - r);
+            y0 = Math.min(y0, spheres[4 * i + 1] - r);
+            z0 = Math.min(z0, spheres[4 * i + 2] - r);
+            x1 = Math.max(x1, spheres[4 * i] + r);
+            y1 = Math.max(y1, spheres[4 * i + 1] + r);
+            z1 = Math.max(z1, spheres[4 * i + 2] + r);
+        }
+        final double cx = (x0 + x1) / 2.0, cy = (y0 + y1) / 2.0, cz = (z0 + z1) / 2.0;
+        double radius = 0;
+        for (int i = start; i < start + count; i++) {
+            final double dx = spheres[4 * i] - cx, dy = spheres[4 * i + 1] - cy, dz = spheres[4 * i + 2] - cz;
+            radius = Math.max(radius, Math.sqrt(dx * dx + dy * dy + dz * dz) + spheres[4 * i + 3]);
+        }
+        nodeSpheres[4 * node]     = cx;
+        nodeSpheres[4 * node + 1] = cy;
+        nodeSpheres[4 * node + 2] = cz;
+        nodeSpheres[4 * node + 3] = radius;
+        if (count <= LEAF_SIZE) {
+            return;
+        }
+
+        // split at the median along the longest axis
+        final double ex = x1 - x0, ey = y1 - y0, ez = z1 - z0;
+        final int axis = (ex >= ey) ? ((ex >= ez) ? 0 : 2) : ((ey >= ez) ? 1 : 2);
+        final int nLeft = leftCount(count);
+        select(start, start + count - 1, start + nLeft, axis);
+        buildNode(node + 1, start, nLeft);
+        buildNode(node + 2 * ((nLeft + LEAF_SIZE - 1) / LEAF_SIZE), start + nLeft, count - nLeft);
+    }
+
+    /** Quickselect: reorders children lo..hi so that index k holds the child of rank k along an axis. */
+    private void select(int lo, int hi, int k, int axis) {
+        while (hi > lo) {
+            final double pivot = spheres[4 * ((lo + hi) >>> 1) + axis];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (spheres[4 * i + axis] < pivot) i++;
+                while (spheres[4 * j + axis] > pivot) j--;
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        final Node n = order[i];
+        order[i] = order[j];
+        order[j] = n;
+        for (int a = 0; a < 4; a++) {
+            final double s = spheres[4 * i + a];
+            spheres[4 * i + a] = spheres[4 * j + a];
+            spheres[4 * j + a] = s;
+        }
+    }
+
+    private void cullNode(int node) {
+        final int cls = classify(nodeSpheres, node);
+        if ((cls == nodeState[node]) && (cls != INTERSECTS)) {
+            return;  // already entirely shown or hidden
+        }
+        final int start = nodeStart[node];
+        final int count = nodeCount[node];
+        if (cls != INTERSECTS) {
+            final boolean visible = (cls == INSIDE);
+            for (int i = start; i < start + count; i++) {
+                setInFrustum(i, visible);
+            }
+            Arrays.fill(nodeState, node, node + subtreeSize(count), cls);
+        } else if (count <= LEAF_SIZE) {
+            nodeState[node] = INTERSECTS;
+            for (int i = start; i < start + count; i++) {
+                setInFrustum(i, classify(spheres, i) != OUTSIDE);
+            }
+        } else {
+            nodeState[node] = INTERSECTS;
+            cullNode(node + 1);
+            cullNode(node + 2 * ((leftCount(count) + LEAF_SIZE - 1) / LEAF_SIZE));
+        }
+    }
+
+    private void setInFrustum(int i, boolean value) {
+        inFrustum[i] = value;
+        applyVisibility(i);
+    }
+
+    private void applyVisibility(int i) {
+        final Node child = order[i];
+        final boolean visible = inFrustum[i] && !occluded[i];
+        if (child.isVisible() != visible) {
+            child.setVisible(visible);
+        }
+    }
+
+    private void occlusionChanged() {
+        if (!isOcclusionCulling()) {
+            occlusionResult = null;
+            occlusionRequested = false;
+            for (int i = 0; i < occluded.length; i++) {
+                if (occluded[i]) {
+                    occluded[i] = false;
+                    applyVisibility(i);
+                }
+            }
+        }
+        invalidate();
+    }
+
+    /** Occluded flags for the children, in hierarchy order, computed for one version of the hierarchy. */
+    private static final class OcclusionResult {
+        OcclusionResult(int hierarchyVersion, boolean[] occluded) {
+            this.hierarchyVersion = hierarchyVersion;
+            this.occluded = occluded;
+        }
+        final int hierarchyVersion;
+        final boolean[] occluded;
+    }
+
+    /** Submits an occlusion test of the current view, or defers it until the running test has been applied. */
+    private void requestOcclusion() {
+        if (occlusionRunning) {
+            occlusionRequested = true;
+            return;
+        }
+        occlusionRunning = true;
+        final OcclusionTest test = new OcclusionTest(this, transform.snapshot(), getLocalToSceneTransform());
+        OCCLUSION_EXECUTOR.execute(() -> {
+            final OcclusionResult result = test.run();
+            Platform.runLater(() -> occlusionCompleted(result));
+        });
+    }
+
+    private void occlusionCompleted(OcclusionResult result) {
+        occlusionRunning = false;
+        if (isOcclusionCulling()) {
+            occlusionResult = result;
+            updater.schedule();
+            if (occlusionRequested) {
+                occlusionRequested = false;
+                requestOcclusion();
+            }
+        }
+    }
+
+    private void applyOcclusion(OcclusionResult result) {
+        if (result.hierarchyVersion != hierarchyVersion) {
+            return;  // the children have changed since the test was submitted
+        }
+        for (int i = 0; i < occluded.length; i++) {
+            if (occluded[i] != result.occluded[i]) {
+                occluded[i] = result.occluded[i];
+                applyVisibility(i);
+            }
+        }
+    }
+
+    /**
+     * A test of the children against the occluders, run on the worker thread.  It only refers to arrays that are
+     * replaced, rather than modified, when the hierarchy or the occluders change.
+     */
+    private static final class OcclusionTest {
+        OcclusionTest(CullingGroup group, CameraToRasterTransform camera, Transform localToScene) {
+            this.camera = camera;
+            this.m = new double[] {
+                localToScene.getMxx(), localToScene.getMxy(), localToScene.getMxz(), localToScene.getTx(),
+                localToScene.getMyx(), localToScene.getMyy(), localToScene.getMyz(), localToScene.getTy(),
+                localToScene.getMzx(), localToScene.getMzy(), localToScene.getMzz(), localToScene.getTz()
+            };
+            this.radiusScale = Math.cbrt(Math.abs(localToScene.determinant()));
+            this.width = group.width;
+            this.height = group.height;
+            this.version = group.hierarchyVersion;
+            this.spheres = group.spheres;
+            this.nodeSpheres = group.nodeSpheres;
+            this.nodeStart = group.nodeStart;
+            this.nodeCount = group.nodeCount;
+            this.occluderXyz = group.occluderXyz;
+            this.occluderRadii = group.occluderRadii;
+        }
+        OcclusionResult run() {
+            final int nChildren = spheres.length / 4;
+            final boolean[] result = new boolean[nChildren];
+            final int nOccluders = occluderRadii.length;
+            if ((nChildren == 0) || (nOccluders == 0)) {
+                return new OcclusionResult(version, result);
+            }
+
+            // draw the occluders that are entirely in front of the camera
+            final double[] xyz = new double[3 * nOccluders];
+            final double[] radii = new double[nOccluders];
+            for (int i = 0; i < nOccluders; i++) {
+                toScene(occluderXyz, 3 * i, xyz, 3 * i);
+                radii[i] = occluderRadii[i] * radiusScale;
+            }
+            final double[] raster = new double[2 * nOccluders];
+            final double[] depth = new double[nOccluders];
+            final double[] rasterRadii = new double[nOccluders];
+            camera.transform(xyz, 0, nOccluders, raster, depth, null);
+            camera.transformRadii(xyz, radii, 0, nOccluders, rasterRadii);
+            buffer = new DepthBuffer(width, height, DEPTH_BUFFER_WIDTH);
+            for (int i = 0; i < nOccluders; i++) {
+                if (depth[i] > radii[i]) {
+                    buffer.drawOccluder(raster[2 * i], raster[2 * i + 1], rasterRadii[i], depth[i]);
+                }
+            }
+            buffer.buildHierarchy();
+
+            testNode(0, result);
+            return new OcclusionResult(version, result);
+        }
+        private void testNode(int node, boolean[] result) {
+            final int start = nodeStart[node];
+            final int count = nodeCount[node];
+            if (isOccluded(nodeSpheres, node)) {
+                Arrays.fill(result, start, start + count, true);
+            } else if (count <= LEAF_SIZE) {
+                for (int i = start; i < start + count; i++) {
+                    result[i] = isOccluded(spheres, i);
+                }
+            } else {
+                testNode(node + 1, result);
+                testNode(node + 2 * ((leftCount(count) + LEAF_SIZE - 1) / LEAF_SIZE), result);
+            }
+        }
+        private boolean isOccluded(double[] s, int i) {
+            toScene(s, 4 * i, point, 0);
+            final double r = s[4 * i + 3] * radiusScale;
+            camera.transform(point, 0, 1, pointRaster, pointDepth, null);
+            final double depth = pointDepth[0];
+            final double nearest = depth - r;
+            if (nearest <= 0) {
+                return false;
+            }
+            // the sphere lies within its view-aligned bounding cube, whose projection reaches no further from the
+            // projected center than the radius at the nearest depth, grown by the off-axis offset of the center
+            final double offAxis = Math.max(Math.abs(pointRaster[0] - 0.5 * width),
+                                            Math.abs(pointRaster[1] - 0.5 * height));
+            final double centerRadius = camera.transformRadius(point[0], point[1], point[2], r);
+            final double rasterRadius = (centerRadius * depth + r * offAxis) / nearest;
+            return buffer.isOccluded(pointRaster[0], pointRaster[1], rasterRadius, nearest);
+        }
+        private void toScene(double[] src, int i, double[] dst, int j) {
+            final double x = src[i], y = src[i + 1], z = src[i + 2];
+            dst[j]     = m[0] * x + m[1] * y + m[2]  * z + m[3];
+            dst[j + 1] = m[4] * x + m[5] * y + m[6]  * z + m[7];
+            dst[j + 2] = m[8] * x + m[9] * y + m[10] * z + m[11];
+        }
+        private final CameraToRasterTransform camera;
+        private final double[] m;
+        private final double radiusScale;
+        private final double width;
+        private final double height;
+        private final int version;
+        private final double[] spheres;
+        private final double[] nodeSpheres;
+        private final int[] nodeStart;
+        private final int[] nodeCount;
+        private final double[] occluderXyz;
+        private final double[] occluderRadii;
+        private DepthBuffer buffer;
+        private final double[] point = new double[3];
+        private final double[] pointRaster = new double[2];
+        private final double[] pointDepth = new double[1];
+    }
+
+    /** Builds the frustum through the corners of the raster, in the local coordinates of the group. */
+    private void buildFrustum(Transform localToScene) throws NonInvertibleTransformException {
+        final double[][] corners = { { 0, 0 }, { width, 0 }, { width, height }, { 0, height },
+                                     { width / 2.0, height / 2.0 } };
+        for (int c = 0; c < 5; c++) {
+            transform.rasterToRay(corners[c][0], corners[c][1], rayOrigin, rayDirs[c]);
+            final Point3D d = localToScene.inverseDeltaTransform(rayDirs[c][0], rayDirs[c][1], rayDirs[c][2]);
+            rayDirs[c][0] = d.getX();
+            rayDirs[c][1] = d.getY();
+            rayDirs[c][2] = d.getZ();
+        }
+        final Point3D o = localToScene.inverseTransform(rayOrigin[0], rayOrigin[1], rayOrigin[2]);
+        final double ox = o.getX(), oy = o.getY(), oz = o.getZ();
+        final double[] center = rayDirs[4];
+        for (int p = 0; p < 4; p++) {
+            final double[] a = rayDirs[p];
+            final double[] b = rayDirs[(p + 1) % 4];
+            final double nx = a[1] * b[2] - a[2] * b[1];
+            final double ny = a[2] * b[0] - a[0] * b[2];
+            final double nz = a[0] * b[1] - a[1] * b[0];
+            // orient the normal towards the inside of the frustum
+            final double sign = ((nx * center[0] + ny * center[1] + nz * center[2]) < 0) ? -1.0 : 1.0;
+            setPlane(p, sign * nx, sign * ny, sign * nz, ox, oy, oz);
+        }
+        setPlane(4, center[0], center[1], center[2], ox, oy, oz);
+    }
+
+    private void setPlane(int p, double nx, double ny, double nz, double px, double py, double pz) {
+        final double l = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        planes[4 * p]     = nx / l;
+        planes[4 * p + 1] = ny / l;
+        planes[4 * p + 2] = nz / l;
+        planes[4 * p + 3] = -(nx * px + ny * py + nz * pz) / l;
+    }
+
+    private int classify(double[] s, int i) {
+        final double cx = s[4 * i], cy = s[4 * i + 1], cz = s[4 * i + 2], r = s[4 * i + 3];
+        int result = INSIDE;
+        for (int p = 0; p < 5; p++) {
+            final double d = planes[4 * p] * cx + planes[4 * p + 1] * cy + planes[4 * p + 2] * cz + planes[4 * p + 3];
+            if (d < -r) {
+                return OUTSIDE;
+            }
+            if (d < r) {
+                result = INTERSECTS;
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,307 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+import java.util.Arrays;
+
+import org.orbitnav.internal.PulseCoalescer;
+
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.transform.Transform;
+
+/**
+ * A Group that keeps its children ordered from back to front, for correct rendering of translucent content.
+ *
+ * <p>
+ * JavaFX draws translucent nodes in scene-graph order, so they only blend correctly when the furthest are drawn first.
+ * When a <code>DepthSortedGroup</code> is registered with a {@link Pane3D Pane3D} (see
+ * {@link Pane3D#addDepthSortedGroup(DepthSortedGroup) addDepthSortedGroup}), it re-sorts its children by the depth of
+ * the centers of their bounds whenever the camera changes, at most once per pulse.
+ *
+ * <p>
+ * Between consecutive frames the order changes little, so the previous order is re-sorted by insertion sort, which
+ * runs in close to linear time on nearly-sorted input.  When the view direction has turned by more than
+ * {@link #LARGE_ROTATION_DEGREES LARGE_ROTATION_DEGREES} since the last sort, the order may be arbitrarily scrambled,
+ * and a parallel sort is used instead.  The children list is then brought into the new order by moving only the
+ * children outside a longest run that is already in order, rather than by replacing the whole list; the list is only
+ * rebuilt when most of the children have moved.
+ *
+ * <p>
+ * Sorting is by child, so each child should be a compact chunk of translucent geometry; the geometry within a child
+ * is not sorted.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class DepthSortedGroup extends Group {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Turn of the view direction since the last sort, in degrees, above which a full parallel sort is used. */
+    public static final double LARGE_ROTATION_DEGREES = 30.0;
+
+    public DepthSortedGroup() {
+        getChildren().addListener(childrenListener);
+    }
+
+    public DepthSortedGroup(Node... children) {
+        this();
+        getChildren().addAll(children);
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PACKAGE
+
+    /**
+     * Sets the current scene-to-raster transform and raster size, and schedules sorting of the children.
+     *
+     * @param transform current scene-to-raster transform
+     * @param width width of the raster
+     * @param height height of the raster
+     */
+    void setRasterTransform(CameraToRasterTransform transform, double width, double height) {
+        this.transform = transform;
+        this.width = width;
+        this.height = height;
+        invalidate();
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final double COS_LARGE_ROTATION = Math.cos(Math.toRadians(LARGE_ROTATION_DEGREES));
+
+    private CameraToRasterTransform transform = null;
+    private double width;
+    private double height;
+
+    // cached children, indexed in the order of the children list at the time they were cached
+    private boolean cacheValid = false;
+    private Node[] nodes = new Node[0];
+    private double[] centers = new double[0];   // packed (x, y, z) bounds centers, in local coordinates
+    private double[] sceneCenters = new double[0];
+    private double[] raster = new double[0];
+    private double[] depth = new double[0];
+
+    private int[] order = new int[0];           // sorted order, back to front; reused as the start of the next sort
+    private int[] current = new int[0];         // current order of the children list
+    private long[] keys = new long[0];
+    private int[] rankOf = new int[0];          // position of each child in the sorted order
+    private int[] lisTail = new int[0];
+    private int[] lisPrev = new int[0];
+    private boolean[] keep = new boolean[0];
+    private Node[] sortedNodes = new Node[0];
+
+    private boolean reordering = false;
+    private boolean sortedOnce = false;
+    private final double[] lastViewDir = new double[3];
+    private final double[] viewOrigin = new double[3];
+    private final double[] viewDir = new double[3];
+
+    private final PulseCoalescer updater = new PulseCoalescer(this::update);
+
+    private final InvalidationListener childBoundsListener = ob -> invalidateCache();
+
+    private final ListChangeListener<Node> childrenListener = change -> {
+        if (reordering) {
+            return;
+        }
+        while (change.next()) {
+            for (Node n : change.getRemoved()) {
+                n.boundsInParentProperty().removeListener(childBoundsListener);
+            }
+            for (Node n : change.getAddedSubList()) {
+                n.boundsInParentProperty().addListener(childBoundsListener);
+            }
+        }
+        invalidateCache();
+    };
+
+    private void invalidateCache() {
+        cacheValid = false;
+        invalidate();
+    }
+
+    private void invalidate() {
+        if (transform != null) {
+            updater.schedule();
+        }
+    }
+
+    private void buildCache() {
+        final ObservableList<Node> children = getChildren();
+        final int n = children.size();
+        nodes = children.toArray(new Node[n]);
+        centers = new double[3 * n];
+        for (int i = 0; i < n; i++) {
+            final Bounds b = nodes[i].getBoundsInParent();
+            if (!b.isEmpty()) {
+                centers[3 * i]     = (b.getMinX() + b.getMaxX()) / 2.0;
+                centers[3 * i + 1] = (b.getMinY() + b.getMaxY()) / 2.0;
+                centers[3 * i + 2] = (b.getMinZ() + b.getMaxZ()) / 2.0;
+            }
+        }
+        sceneCenters = new double[3 * n];
+        raster = new double[2 * n];
+        depth = new double[n];
+        order = new int[n];
+        current = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            current[i] = i;
+        }
+        keys = new long[n];
+        rankOf = new int[n];
+        lisTail = new int[n];
+        lisPrev = new int[n];
+        keep = new boolean[n];
+        sortedNodes = new Node[n];
+        sortedOnce = false;
+        cacheValid = true;
+    }
+
+    private void update() {
+        if (transform == null) {
+            return;
+        }
+        if (!cacheValid) {
+            buildCache();
+        }
+        final int n = nodes.length;
+        if (n < 2) {
+            return;
+        }
+
+        // depths of the centers along the viewing axis
+        final Transform m = getLocalToSceneTransform();
+        for (int i = 0; i < n; i++) {
+            final double x = centers[3 * i], y = centers[3 * i + 1], z = centers[3 * i + 2];
+            sceneCenters[3 * i]     = m.getMxx() * x + m.getMxy() * y + m.getMxz() * z + m.getTx();
+            sceneCenters[3 * i + 1] = m.getMyx() * x + m.getMyy() * y + m.getMyz() * z + m.getTy();
+            sceneCenters[3 * i + 2] = m.getMzx() * x + m.getMzy() * y + m.getMzz() * z + m.getTz();
+        }
+        transform.transform(sceneCenters, 0, n, raster, depth, null);
+
+        transform.rasterToRay(width / 2.0, height / 2.0, viewOrigin, viewDir);
+        final double cosTurn = lastViewDir[0] * viewDir[0] + lastViewDir[1] * viewDir[1] +
+                               lastViewDir[2] * viewDir[2];
+        if (!sortedOnce || (cosTurn < COS_LARGE_ROTATION)) {
+            parallelSort();
+        } else {
+            insertionSort();
+        }
+        System.arraycopy(viewDir, 0, lastViewDir, 0, 3);
+        sortedOnce = true;
+
+        reorderChildren();
+    }
+
+    /** Sorts the previous order by decreasing depth; fast when it is already nearly sorted. */
+    private void insertionSort() {
+        for (int i = 1; i < order.length; i++) {
+            final int child = order[i];
+            final double d = depth[child];
+            int j = i - 1;
+            while ((j >= 0) && (depth[order[j]] < d)) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = child;
+        }
+    }
+
+    /** Sorts by decreasing depth from scratch, in parallel. */
+    private void parallelSort() {
+        final int n = order.length;
+        for (int i = 0; i < n; i++) {
+            // sortable bits of the negated depth in the high word, so that ascending keys are back to front
+            final int bits = Float.floatToIntBits((float)-depth[i]);
+            final int sortable = (bits < 0) ? ~bits : (bits | Integer.MIN_VALUE);
+            keys[i] = ((long)(sortable ^ Integer.MIN_VALUE) << 32) | i;
+        }
+        Arrays.parallelSort(keys, 0, n);
+        for (int i = 0; i < n; i++) {
+            order[i] = (int)keys[i];
+        }
+    }
+
+    /**
+     * Moves children so that the children list follows the sorted order.  The children in a longest subsequence of the
+     * current list that is already in sorted order stay where they are; only the others are moved, unless they are
+     * the majority, when the list is rebuilt in one pass.
+     */
+    private void reorderChildren() {
+        final int n = order.length;
+        for (int r = 0; r < n; r++) {
+            rankOf[order[r]] = r;
+        }
+
+        // longest increasing subsequence of sorted ranks along the current list (patience sorting)
+        int length = 0;
+        for (int p = 0; p < n; p++) {
+            final int rank = rankOf[current[p]];
+            int lo = 0, hi = length;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (rankOf[current[lisTail[mid]]] < rank) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            lisPrev[p] = (lo > 0) ? lisTail[lo - 1] : -1;
+            lisTail[lo] = p;
+            if (lo == length) {
+                length++;
+            }
+        }
+        if (length == n) {
+            return;  // already in order
+        }
+        Arrays.fill(keep, false);
+        for (int p = (length > 0) ? lisTail[length - 1] : -1; p >= 0; p = lisPrev[p]) {
+            keep[current[p]] = true;
+        }
+
+        // remove the other children from the back, then insert them in sorted order, each at its final position:
+        // every child sorted before it is then already in place, and every child sorted after it is further on
+        final ObservableList<Node> children = getChildren();
+        reordering = true;
+        try {
+            if (2 * (n - length) > n) {
+                // most children move, so rebuild the list in one pass instead
+                for (int r = 0; r < n; r++) {
+                    sortedNodes[r] = nodes[order[r]];
+                }
+                children.setAll(sortedNodes);
+            } else {
+                for (int p = n - 1; p >= 0; p--) {
+                    if (!keep[current[p]]) {
+                        children.remove(p);
+                    }
+                }
+                for (int r = 0; r < n; r++) {
+                    if (!keep[order[r]]) {
+                        children.add(r, nodes[order[r]]);
+                    }
+                }
+            }
+        } finally {
+            reordering = false;
+        }
+        System.arraycopy(order, 0, current, 0, n);
+    }
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+import java.util.Arrays;
+
+import org.orbitnav.internal.GlyphAtlas;
+import org.orbitnav.internal.PulseCoalescer;
+
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+
+/**
+ * Draws text labels, attached to points in the 3D scene of a {@link Pane3D Pane3D}, into a single
+ * <code>Canvas</code>.
+ *
+ * <p>
+ * A node per label becomes expensive beyond a few thousand labels.  Instead, this layer keeps the label positions in
+ * primitive arrays and copies pre-rendered glyphs from a glyph atlas onto the canvas.  The canvas is redrawn at most
+ * once per pulse, and only when the camera, the size of the canvas, the font or the set of labels has changed.
+ * Labels are centered on their anchor points; labels behind the camera or off the canvas are not drawn.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class LabelLayer extends Canvas {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    public LabelLayer() {
+        setMouseTransparent(true);
+        widthProperty().addListener((ob, old, value) -> invalidate());
+        heightProperty().addListener((ob, old, value) -> invalidate());
+        font.addListener((ob, old, value) -> rebuildAtlas());
+        fill.addListener((ob, old, value) -> rebuildAtlas());
+    }
+
+    /**
+     * Adds a label.
+     *
+     * @param x x coordinate of the label's anchor in the 3D scene
+     * @param y y coordinate of the label's anchor in the 3D scene
+     * @param z z coordinate of the label's anchor in the 3D scene
+     * @param text text of the label
+     * @return index of the label
+     */
+    public int addLabel(double x, double y, double z, String text) {
+        if (count == texts.length) {
+            final int cap = 2 * texts.length;
+            xyz = Arrays.copyOf(xyz, 3 * cap);
+            texts = Arrays.copyOf(texts, cap);
+            advances = Arrays.copyOf(advances, cap);
+            raster = new double[2 * cap];
+            inFront = new boolean[cap];
+        }
+        final int i = count++;
+        xyz[3 * i]     = x;
+        xyz[3 * i + 1] = y;
+        xyz[3 * i + 2] = z;
+        texts[i] = text;
+        advances[i] = atlas.getAdvance(text);
+        invalidate();
+        return i;
+    }
+
+    /**
+     * Removes all labels.
+     */
+    public void clearLabels() {
+        Arrays.fill(texts, 0, count, null);
+        count = 0;
+        invalidate();
+    }
+
+    /**
+     * Returns the number of labels.
+     *
+     * @return number of labels
+     */
+    public int getLabelCount() { return count; }
+
+    public ObjectProperty<Font> fontProperty() { return font; }
+    public Font getFont() { return font.get(); }
+    public void setFont(Font font) { this.font.set(font); }
+
+    public ObjectProperty<Paint> fillProperty() { return fill; }
+    public Paint getFill() { return fill.get(); }
+    public void setFill(Paint fill) { this.fill.set(fill); }
+
+    //--------------------------------------------------------------------------------------------------------- PACKAGE
+
+    /**
+     * Sets the current scene-to-raster transform, and schedules a redraw.
+     *
+     * @param transform current scene-to-raster transform
+     */
+    void setRasterTransform(CameraToRasterTransform transform) {
+        this.transform = transform;
+        invalidate();
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ObjectProperty<Font> font = new SimpleObjectProperty<>(this, "font", Font.getDefault());
+    private final ObjectProperty<Paint> fill = new SimpleObjectProperty<>(this, "fill", Color.WHITE);
+
+    private GlyphAtlas atlas = new GlyphAtlas(font.get(), fill.get());
+    private CameraToRasterTransform transform = null;
+
+    private int count = 0;
+    private double[] xyz = new double[3 * INITIAL_CAPACITY];
+    private String[] texts = new String[INITIAL_CAPACITY];
+    private double[] advances = new double[INITIAL_CAPACITY];
+
+    // projection scratch space
+    private double[] raster = new double[2 * INITIAL_CAPACITY];
+    private boolean[] inFront = new boolean[INITIAL_CAPACITY];
+
+    private final PulseCoalescer redrawer = new PulseCoalescer(this::redraw);
+
+    private void invalidate() { redrawer.schedule(); }
+
+    private void rebuildAtlas() {
+        atlas = new GlyphAtlas(font.get(), fill.get());
+        for (int i = 0; i < count; i++) {
+            advances[i] = atlas.getAdvance(texts[i]);
+        }
+        invalidate();
+    }
+
+    private void redraw() {
+        final GraphicsContext gc = getGraphicsContext2D();
+        final double w = getWidth();
+        final double h = getHeight();
+        gc.clearRect(0, 0, w, h);
+        if ((transform == null) || (count == 0)) {
+            return;
+        }
+        transform.transform(xyz, 0, count, raster, null, inFront);
+        final Image image = atlas.getImage();
+        final double lineHeight = atlas.getCellHeight();
+        for (int i = 0; i < count; i++) {
+            if (!inFront[i]) {
+                continue;
+            }
+            double x = raster[2 * i] - advances[i] / 2.0;
+            final double y = raster[2 * i + 1] - lineHeight / 2.0;
+            if ((x > w) || (x + advances[i] < 0) || (y > h) || (y + lineHeight < 0)) {
+                continue;
+            }
+            final String text = texts[i];
+            for (int j = 0; j < text.length(); j++) {
+                final int cell = atlas.getCell(text.charAt(j));
+                final double cw = atlas.getCellWidth(cell);
+                gc.drawImage(image, atlas.getCellX(cell), atlas.getCellY(cell), cw, lineHeight, x, y, cw, lineHeight);
+                x += atlas.getAdvance(text.charAt(j));
+            }
+        }
+    }
+
+}
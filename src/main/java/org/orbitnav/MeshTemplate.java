@@ -0,0 +1,181 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+/**
+ * Tessellation of a unit primitive, to be scaled, oriented and copied into merged meshes by batch builders.
+ *
+ * <p>
+ * Drawing many spheres or cylinders as separate {@link javafx.scene.shape.Sphere Sphere} or
+ * {@link javafx.scene.shape.Cylinder Cylinder} nodes is dominated by per-node overhead.  An application can instead
+ * transform the points of a template into a single {@link javafx.scene.shape.TriangleMesh TriangleMesh} holding many
+ * primitives, offsetting the face indices of each copy by the number of points written before it.  Templates are
+ * best obtained from a {@link TessellationCache TessellationCache}, so that each one is only tessellated once.
+ *
+ * <p>
+ * Faces are wound so that they face outward in the JavaFX convention: for a face (a, b, c), the outward normal is
+ * (b - a) &times; (c - a).  Templates are immutable once created, and may be shared between threads.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class MeshTemplate {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Tessellates a sphere of unit radius, centered on the origin, in the same way as
+     * {@link javafx.scene.shape.Sphere Sphere}: with the given number of divisions around the y axis, and half as many
+     * from pole to pole.
+     *
+     * @param divisions number of divisions around the y axis (at least 4)
+     * @return sphere template
+     */
+    public static MeshTemplate sphere(int divisions) {
+        final int nLon = Math.max(4, divisions);
+        final int nLat = Math.max(2, nLon / 2);
+        final int nRingPoints = (nLat - 1) * nLon;
+        final float[] points = new float[3 * (nRingPoints + 2)];
+        final int top = 0, bottom = nRingPoints + 1;
+        points[1] = -1.0f;
+        points[3 * bottom + 1] = 1.0f;
+        for (int i = 1; i < nLat; i++) {
+            final double theta = Math.PI * i / nLat;
+            final double r = Math.sin(theta);
+            final float y = (float)-Math.cos(theta);
+            for (int j = 0; j < nLon; j++) {
+                final double phi = 2.0 * Math.PI * j / nLon;
+                final int p = 3 * ringPoint(nLon, i, j);
+                points[p]     = (float)(r * Math.cos(phi));
+                points[p + 1] = y;
+                points[p + 2] = (float)(r * Math.sin(phi));
+            }
+        }
+
+        final int[] faces = new int[3 * 2 * nLon * (nLat - 1)];
+        int f = 0;
+        for (int j = 0; j < nLon; j++) {
+            final int j1 = (j + 1) % nLon;
+            f = face(faces, f, top, ringPoint(nLon, 1, j), ringPoint(nLon, 1, j1));
+            f = face(faces, f, bottom, ringPoint(nLon, nLat - 1, j1), ringPoint(nLon, nLat - 1, j));
+            for (int i = 1; i < nLat - 1; i++) {
+                final int a = ringPoint(nLon, i, j), b = ringPoint(nLon, i, j1);
+                final int c = ringPoint(nLon, i + 1, j), d = ringPoint(nLon, i + 1, j1);
+                f = face(faces, f, a, d, b);
+                f = face(faces, f, a, c, d);
+            }
+        }
+        return new MeshTemplate(points, faces);
+    }
+
+    /**
+     * Tessellates the side of a cylinder of unit radius and unit height, centered on the origin with its axis along y,
+     * in the same way as {@link javafx.scene.shape.Cylinder Cylinder}.  The cylinder is open: it has no end caps.
+     *
+     * @param divisions number of divisions around the y axis (at least 3)
+     * @return cylinder template
+     */
+    public static MeshTemplate cylinder(int divisions) { return cylinder(divisions, false); }
+
+    /**
+     * Tessellates a cylinder of unit radius and unit height, centered on the origin with its axis along y, in the same
+     * way as {@link javafx.scene.shape.Cylinder Cylinder}.  The end caps, if present, have their own copies of the rim
+     * points, so that they are shaded flat.
+     *
+     * @param divisions number of divisions around the y axis (at least 3)
+     * @param capped <code>true</code> to close the ends of the cylinder with caps
+     * @return cylinder template
+     */
+    public static MeshTemplate cylinder(int divisions, boolean capped) {
+        final int n = Math.max(3, divisions);
+        final int nRings = capped ? 4 : 2;
+        final float[] points = new float[3 * (nRings * n + (capped ? 2 : 0))];
+        for (int ring = 0; ring < nRings; ring++) {
+            final float y = ((ring % 2) == 0) ? -0.5f : 0.5f;
+            for (int j = 0; j < n; j++) {
+                final double phi = 2.0 * Math.PI * j / n;
+                final int p = 3 * (ring * n + j);
+                points[p]     = (float)Math.cos(phi);
+                points[p + 1] = y;
+                points[p + 2] = (float)Math.sin(phi);
+            }
+        }
+        final int bottomCenter = nRings * n, topCenter = bottomCenter + 1;
+        if (capped) {
+            points[3 * bottomCenter + 1] = -0.5f;
+            points[3 * topCenter + 1] = 0.5f;
+        }
+
+        final int[] faces = new int[3 * (capped ? 4 : 2) * n];
+        int f = 0;
+        for (int j = 0; j < n; j++) {
+            final int j1 = (j + 1) % n;
+            f = face(faces, f, j, n + j1, j1);
+            f = face(faces, f, j, n + j, n + j1);
+            if (capped) {
+                f = face(faces, f, bottomCenter, 2 * n + j, 2 * n + j1);
+                f = face(faces, f, topCenter, 3 * n + j1, 3 * n + j);
+            }
+        }
+        return new MeshTemplate(points, faces);
+    }
+
+    /**
+     * Returns the number of points.
+     *
+     * @return number of points
+     */
+    public int getPointCount() { return points.length / 3; }
+
+    /**
+     * Returns the number of triangular faces.
+     *
+     * @return number of faces
+     */
+    public int getFaceCount() { return faces.length / 3; }
+
+    /**
+     * Returns the packed point coordinates (x0, y0, z0, x1, ...).  The array must not be modified.
+     *
+     * @return point coordinates
+     */
+    public float[] getPoints() { return points; }
+
+    /**
+     * Returns the packed point indices of the faces (a0, b0, c0, a1, ...).  The array must not be modified.
+     *
+     * @return face point indices
+     */
+    public int[] getFaces() { return faces; }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final float[] points;
+    private final int[] faces;
+
+    private MeshTemplate(float[] points, int[] faces) {
+        this.points = points;
+        this.faces = faces;
+    }
+
+    private static int ringPoint(int nLon, int ring, int j) {
+        return 1 + (ring - 1) * nLon + j;
+    }
+
+    private static int face(int[] faces, int f, int a, int b, int c) {
+        faces[f]     = a;
+        faces[f + 1] = b;
+        faces[f + 2] = c;
+        return f + 3;
+    }
+
+}
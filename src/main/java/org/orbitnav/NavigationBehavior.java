@@ -37,8 +37,8 @@ import javafx.scene.input.*;
  *
  * <p>
  * Each of these inputs can be associated with some combination of {@link Modifier Modifier} keys (shift, alt and
- * control).  The input is also associated with a required {@link Activity Activity} or response (pan, zoom or rotate).
- * The combination of input and activity specify the behavior.
+ * control).  The input is also associated with a required {@link Activity Activity} or response (pan, zoom, rotate,
+ * or box or lasso selection).  The combination of input and activity specify the behavior.
  *
  * <p>
  * <code>NavigationBehavior</code>s should be constructed using the
@@ -49,7 +49,8 @@ import javafx.scene.input.*;
  *
  * <p>
  * There are some limitations on the kinds of {@link Activity Activity} that can associated with different inputs.  The
- * zoom and rotate gestures can only be associated with zoom and rotate activities respectively.
+ * zoom and rotate gestures can only be associated with zoom and rotate activities respectively.  The selection
+ * activities can only be associated with mouse drags.
  *
  * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
  */
@@ -170,8 +171,20 @@ public abstract class NavigationBehavior {
     /**
      * Specifies an activity.  An activity is the response that a navigation behavior should have to a particular
      * kind of input.
+     *
+     * <p>
+     * <code>BOX_SELECT</code> and <code>LASSO_SELECT</code> do not move the camera.  Instead, they report a
+     * {@link ScreenRegion ScreenRegion} to the {@link SelectionListener SelectionListener} of the
+     * {@link OrbitalCameraRig OrbitalCameraRig} when the drag ends.
+     */
+    public static enum Activity { PAN, ZOOM, ROTATE, BOX_SELECT, LASSO_SELECT }
+
+    /**
+     * Indicates whether this behavior selects a region of the raster, rather than moving the camera.
+     *
+     * @return <code>true</code> if the activity is a box or lasso selection
      */
-    public static enum Activity { PAN, ZOOM, ROTATE }
+    public boolean isSelection() { return (activity == Activity.BOX_SELECT) || (activity == Activity.LASSO_SELECT); }
 
     //--------------------------------------------------------------------------------------------------------- PRIVATE
 
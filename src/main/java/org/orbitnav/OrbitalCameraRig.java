@@ -29,7 +29,9 @@ import javafx.animation.Timeline;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ListProperty;
+import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyListProperty;
+import javafx.beans.property.ReadOnlyListWrapper;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
@@ -58,14 +60,19 @@ public final class OrbitalCameraRig implements Attachable {
         assert(this.host == null);
         this.host = host;
         this.host.setCamera(camera.get());
+        this.host.widthProperty().addListener(hostSizeListener);
+        this.host.heightProperty().addListener(hostSizeListener);
         for (Interaction ic : interactionMap.values()) {
             attachInteractionToHost(ic);
         }
+        updateTransformToRaster();
     }
     
     public void detachFromHost(Host host) {
         assert(this.host == host);
         this.host.setCamera(null);
+        this.host.widthProperty().removeListener(hostSizeListener);
+        this.host.heightProperty().removeListener(hostSizeListener);
         for (Interaction ic : interactionMap.values()) {
             detachInteractionFromHost(ic);
         }
@@ -73,8 +80,11 @@ public final class OrbitalCameraRig implements Attachable {
     }
         
     public void addNavigationBehavior(NavigationBehavior nb) { 
-        removeNavigationBehavior(nb);    // removes any previous match for these input conditions
         Interaction ic = createInteraction(nb);
+        if (ic == null) {
+            throw new IllegalArgumentException("Unsupported activity " + nb.getActivity() + " for this input");
+        }
+        removeNavigationBehavior(nb);    // removes any previous match for these input conditions
         attachInteractionToHost(ic);
         interactionMap.put(nb, ic);
         navigationBehaviorsList.add(nb);
@@ -144,18 +154,63 @@ public final class OrbitalCameraRig implements Attachable {
     
     public void setArcballEnabled(boolean value) { arcballEnabled.set(value); }
     
+    /**
+     * When <code>true</code>, drag and scroll deltas are accumulated and applied at most once per JavaFX pulse.
+     * Pan, zoom and turntable results are unchanged: a turntable applies its pending deltas before the tilt crosses
+     * 180 degrees, where the direction of its spin reverses.  An arcball scroll whose direction changes within a pulse
+     * differs only by a second-order term.  Defaults to <code>false</code>.
+     * 
+     * @return event coalescing property
+     */
+    public BooleanProperty eventCoalescingProperty() { return eventCoalescing; }
+    
+    public boolean isEventCoalescing() { return eventCoalescing.get(); }
+    
+    public void setEventCoalescing(boolean value) { eventCoalescing.set(value); }
+    
     public ReadOnlyObjectProperty<Transform> transformRotationOnlyProperty() { return transformRotationOnly; }
     
     public ReadOnlyObjectProperty<CameraToRasterTransform> transformToRasterProperty() { return transformToRaster; }
     
+    /**
+     * Listener that receives the regions selected by {@link NavigationBehavior.Activity#BOX_SELECT BOX_SELECT} and
+     * {@link NavigationBehavior.Activity#LASSO_SELECT LASSO_SELECT} behaviors.
+     * 
+     * @return selection listener property
+     */
+    public ObjectProperty<SelectionListener> selectionListenerProperty() { return selectionListener; }
+    
+    public SelectionListener getSelectionListener() { return selectionListener.get(); }
+    
+    public void setSelectionListener(SelectionListener listener) { selectionListener.set(listener); }
+    
+    /**
+     * The outline of the region currently being selected, as packed raster coordinates (x0, y0, x1, y1, ...) of its
+     * vertices; empty if no selection drag is in progress.  The outline of a lasso grows by one vertex per drag event,
+     * and the {@link ScreenRegion ScreenRegion} itself is only built when the drag ends.
+     * 
+     * @return active selection outline property
+     */
+    public ReadOnlyListProperty<Double> activeSelectionOutlineProperty() { 
+        return activeSelectionOutline.getReadOnlyProperty(); 
+    }
+    
     //--------------------------------------------------------------------------------------------------------- PRIVATE
     
     private final BooleanProperty arcballEnabled =
             new SimpleBooleanProperty(this, "arcballEnabled", false);
+    private final BooleanProperty eventCoalescing =
+            new SimpleBooleanProperty(this, "eventCoalescing", false);
     private final ListProperty<NavigationBehavior> navigationBehaviorsList = 
             new SimpleListProperty<NavigationBehavior>(this, "navigationBehaviorsList",
                     javafx.collections.FXCollections.observableList(new ArrayList<NavigationBehavior>()));
     
+    private final ObjectProperty<SelectionListener> selectionListener =
+            new SimpleObjectProperty<SelectionListener>(this, "selectionListener", null);
+    private final ReadOnlyListWrapper<Double> activeSelectionOutline =
+            new ReadOnlyListWrapper<Double>(this, "activeSelectionOutline",
+                    javafx.collections.FXCollections.observableList(new ArrayList<Double>()));
+    
     private final DoubleProperty originX = new SimpleDoubleProperty(this, "originX", 0);
     private final DoubleProperty originY = new SimpleDoubleProperty(this, "originY", 0);
     private final DoubleProperty originZ = new SimpleDoubleProperty(this, "originZ", 0);
@@ -181,6 +236,9 @@ public final class OrbitalCameraRig implements Attachable {
     
     private Host host = null;
     
+    // the raster transform depends upon the size of the host as well as the camera
+    private final ChangeListener<Number> hostSizeListener = (ob, oldValue, newValue) -> updateTransformToRaster();
+    
     private final MutableTurntable3D turntableRotation = new MutableTurntable3D();
     private final MutableAxisAngle3D axisAngleRotation = new MutableAxisAngle3D();
     
@@ -248,25 +306,44 @@ public final class OrbitalCameraRig implements Attachable {
                         ic = new InteractionDragXZTurntable(xTurntableRotation, zTurntableRotation);
                     }
                     break;
+                case BOX_SELECT:
+                    ic = new InteractionDragSelect(false, activeSelectionOutline, selectionListener, transformToRaster);
+                    break;
+                case LASSO_SELECT:
+                    ic = new InteractionDragSelect(true, activeSelectionOutline, selectionListener, transformToRaster);
+                    break;
             }
         } else if (nb.isGestureRotate()) {
-            // TODO:
+            if (isArcballEnabled()) {
+                ic = new InteractionGestureRotateArcball(rotationAngle, rotationAxisX, rotationAxisY, rotationAxisZ);
+            } else {
+                ic = new InteractionGestureRotateXZTurntable(xTurntableRotation, zTurntableRotation);
+            }
         } else if (nb.isGestureScroll()) {
             switch (nb.getActivity()) {
-                case PAN:   // TODO
+                case PAN:
+                    ic = new InteractionScrollPan(
+                            originX, originY, originZ, transformRotationOnly, distanceFromOrigin, camera
+                    );
                     break;
                 case ZOOM:
                     ic = new InteractionScrollZoom(distanceFromOrigin);
                     break;
-                case ROTATE:    // TODO
+                case ROTATE:
+                    if (isArcballEnabled()) {
+                        ic = new InteractionScrollArcball(rotationAngle, rotationAxisX, rotationAxisY, rotationAxisZ);
+                    } else {
+                        ic = new InteractionScrollXZTurntable(xTurntableRotation, zTurntableRotation);
+                    }
                     break;
             }
         } else if (nb.isGestureZoom()) {
-            // TODO:
+            ic = new InteractionGestureZoom(distanceFromOrigin);
         }
 
         if (ic != null) {
             ic.setNavigationBehavior(nb);  // associates modifiers, mouse buttons, etc.
+            ic.coalescingProperty().bind(eventCoalescing);
         }
         return ic;
     }
@@ -305,20 +382,13 @@ public final class OrbitalCameraRig implements Attachable {
         arcballEnabled.addListener(new ChangeListener<Boolean>() {
             @Override public void changed(ObservableValue<? extends Boolean> ob, Boolean olde, Boolean newe) {
                 // when the arcball status changes, we have to traverse the map of interactions and interchange
-                //  arcball and xz-turntable style drags
+                //  arcball and xz-turntable style rotations
                 for (NavigationBehavior nb : interactionMap.keySet()) {
-                    if ((nb.getActivity() == NavigationBehavior.Activity.ROTATE) && nb.isMouseDrag()) {
+                    if (nb.getActivity() == NavigationBehavior.Activity.ROTATE) {
                         // detach existing rotation from the host
                         detachInteractionFromHost(interactionMap.get(nb));
-                        // create new rotation
-                        Interaction ic;
-                        if (newe == true) {
-                            ic = new InteractionDragArcball(rotationAngle,
-                                    rotationAxisX, rotationAxisY, rotationAxisZ);
-                        } else {
-                            ic = new InteractionDragXZTurntable(xTurntableRotation, zTurntableRotation);
-                        }
-                        ic.setNavigationBehavior(nb);
+                        // create new rotation (createInteraction() picks arcball or xz-turntable)
+                        Interaction ic = createInteraction(nb);
                         // replace rotation in the map
                         interactionMap.put(nb, ic);
                         // attach new rotation to the host
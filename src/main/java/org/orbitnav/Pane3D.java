@@ -12,11 +12,17 @@
  */
 package org.orbitnav;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.orbitnav.internal.AxisTriad;
 import org.orbitnav.internal.HostSubScene;
 
 import static org.orbitnav.NavigationBehavior.Activity.*;
+import static org.orbitnav.NavigationBehavior.Modifier.*;
 
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
@@ -31,6 +37,7 @@ import static javafx.scene.input.MouseButton.*;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Paint;
+import javafx.scene.shape.Polygon;
 import javafx.scene.transform.NonInvertibleTransformException;
 import javafx.scene.transform.Transform;
 
@@ -66,6 +73,86 @@ public final class Pane3D extends Pane {
     public ReadOnlyObjectProperty<CameraToRasterTransform> transformToRasterProperty() { 
         return cameraRig.transformToRasterProperty();
     }
+
+    /**
+     * Returns the rotation of the camera, which takes directions in the frame of the camera into the scene.  The
+     * transform object is reused between changes, so listeners should read it rather than keep it.
+     *
+     * @return rotation of the camera
+     */
+    public ReadOnlyObjectProperty<Transform> transformRotationOnlyProperty() {
+        return cameraRig.transformRotationOnlyProperty();
+    }
+
+    /**
+     * Returns the overlay used to position 2D nodes over points in the 3D scene.
+     * 
+     * @return anchor overlay
+     */
+    public AnchorOverlay getAnchorOverlay() { return anchorOverlay; }
+    
+    /**
+     * Returns the layer used to draw large numbers of text labels attached to points in the 3D scene.
+     * 
+     * @return label layer
+     */
+    public LabelLayer getLabelLayer() { return labelLayer; }
+    
+    /**
+     * Registers a culling group, so that its children are culled against the view frustum whenever the camera changes.
+     * The group should be part of the scene graph under the {@link #rootProperty() root} of this pane.
+     * 
+     * @param group culling group
+     */
+    public void addCullingGroup(CullingGroup group) {
+        if (!cullingGroups.contains(group)) {
+            cullingGroups.add(group);
+            final CameraToRasterTransform t = transformToRasterProperty().get();
+            if ((t != null) && t.isValid()) {
+                group.setRasterTransform(t, subScene.getWidth(), subScene.getHeight());
+            }
+        }
+    }
+    
+    /**
+     * Unregisters a culling group.  Its children keep their current visibility until it is registered again.
+     * 
+     * @param group culling group
+     */
+    public void removeCullingGroup(CullingGroup group) { cullingGroups.remove(group); }
+    
+    /**
+     * Registers a depth-sorted group, so that its children are re-sorted from back to front whenever the camera
+     * changes.  The group should be part of the scene graph under the {@link #rootProperty() root} of this pane.
+     * 
+     * @param group depth-sorted group
+     */
+    public void addDepthSortedGroup(DepthSortedGroup group) {
+        if (!depthSortedGroups.contains(group)) {
+            depthSortedGroups.add(group);
+            final CameraToRasterTransform t = transformToRasterProperty().get();
+            if ((t != null) && t.isValid()) {
+                group.setRasterTransform(t, subScene.getWidth(), subScene.getHeight());
+            }
+        }
+    }
+    
+    /**
+     * Unregisters a depth-sorted group.  Its children keep their current order until it is registered again.
+     * 
+     * @param group depth-sorted group
+     */
+    public void removeDepthSortedGroup(DepthSortedGroup group) { depthSortedGroups.remove(group); }
+    
+    public ObjectProperty<SelectionListener> selectionListenerProperty() { 
+        return cameraRig.selectionListenerProperty(); 
+    }
+    public void setSelectionListener(SelectionListener listener) { cameraRig.setSelectionListener(listener); }
+    public SelectionListener getSelectionListener() { return cameraRig.getSelectionListener(); }
+    
+    public BooleanProperty eventCoalescingProperty() { return cameraRig.eventCoalescingProperty(); }
+    public void setEventCoalescing(boolean value) { cameraRig.setEventCoalescing(value); }
+    public boolean isEventCoalescing() { return cameraRig.isEventCoalescing(); }
     
     //--------------------------------------------------------------------------------------------------------- PRIVATE
     
@@ -74,6 +161,14 @@ public final class Pane3D extends Pane {
     
     private final SubScene subScene = new SubScene(getRoot(), 8, 8, true, SceneAntialiasing.BALANCED);
     
+    private final LabelLayer labelLayer = new LabelLayer();
+    private final AnchorOverlay anchorOverlay = new AnchorOverlay();
+    
+    private final Polygon selectionBand = new Polygon();
+    
+    private final List<CullingGroup> cullingGroups = new ArrayList<CullingGroup>();
+    private final List<DepthSortedGroup> depthSortedGroups = new ArrayList<DepthSortedGroup>();
+    
     private final Group axisRoot = new Group();
     private final SubScene axisSubscene = new SubScene(axisRoot, 128, 128, true, SceneAntialiasing.BALANCED);
     
@@ -81,7 +176,7 @@ public final class Pane3D extends Pane {
     
     private void init() {
         subScene.fillProperty().bind(fill);
-        getChildren().addAll(subScene, axisSubscene);
+        getChildren().addAll(subScene, labelLayer, anchorOverlay, selectionBand, axisSubscene);
         widthProperty().addListener(widthChangeListener);
         heightProperty().addListener(heightChangeListener);
         //setCameraRig(new ArcballCameraRig());
@@ -92,6 +187,10 @@ public final class Pane3D extends Pane {
         cameraRig.addNavigationBehavior(NavigationBehavior.mouseDrag(SECONDARY, PAN));
         cameraRig.addNavigationBehavior(NavigationBehavior.mouseDrag(MIDDLE, ZOOM));
         cameraRig.addNavigationBehavior(NavigationBehavior.gestureScroll(ZOOM));
+        cameraRig.addNavigationBehavior(NavigationBehavior.gestureZoom());
+        cameraRig.addNavigationBehavior(NavigationBehavior.gestureRotate());
+        cameraRig.addNavigationBehavior(NavigationBehavior.mouseDrag(PRIMARY, BOX_SELECT, SHIFT));
+        cameraRig.addNavigationBehavior(NavigationBehavior.mouseDrag(PRIMARY, LASSO_SELECT, ALT));
         cameraRig.setArcballEnabled(false);
         
         PerspectiveCamera axisCamera = new PerspectiveCamera(true);
@@ -110,17 +209,42 @@ public final class Pane3D extends Pane {
             }
         });
         axisRoot.getChildren().add(axisTriad);
+        
+        selectionBand.setStyle("-fx-fill: #4080FF30; -fx-stroke: #4080FF;");
+        selectionBand.setMouseTransparent(true);
+        selectionBand.visibleProperty().bind(cameraRig.activeSelectionOutlineProperty().emptyProperty().not());
+        Bindings.bindContent(selectionBand.getPoints(), cameraRig.activeSelectionOutlineProperty());
+        
+        cameraRig.transformToRasterProperty().addListener(new ChangeListener<CameraToRasterTransform>() {
+            @Override public void changed(ObservableValue<? extends CameraToRasterTransform> ob,
+                                          CameraToRasterTransform old, CameraToRasterTransform newt) {
+                // leave the overlays and groups as they were last drawn until the camera is usable again
+                if (!newt.isValid()) {
+                    return;
+                }
+                labelLayer.setRasterTransform(newt);
+                anchorOverlay.setRasterTransform(newt, subScene.getWidth(), subScene.getHeight());
+                for (CullingGroup group : cullingGroups) {
+                    group.setRasterTransform(newt, subScene.getWidth(), subScene.getHeight());
+                }
+                for (DepthSortedGroup group : depthSortedGroups) {
+                    group.setRasterTransform(newt, subScene.getWidth(), subScene.getHeight());
+                }
+            }
+        });
     }
             
     private final ChangeListener<Number> widthChangeListener = new ChangeListener<Number>() {
         @Override public void changed(ObservableValue<? extends Number> ob, Number oldWidth, Number newWidth) {
             subScene.setWidth(Math.max(1, getWidth()));
+            labelLayer.setWidth(subScene.getWidth());
         }
     };
     
     private final ChangeListener<Number> heightChangeListener = new ChangeListener<Number>() {
         @Override public void changed(ObservableValue<? extends Number> ob, Number oldHeight, Number newHeight) {
             subScene.setHeight(Math.max(1, getHeight()));
+            labelLayer.setHeight(subScene.getHeight());
         }
     };
         
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel batch projection of very large point sets through a {@link CameraToRasterTransform CameraToRasterTransform}.
+ *
+ * <p>
+ * The batch methods of {@link CameraToRasterTransform CameraToRasterTransform} write their output by point index, so
+ * disjoint ranges of points can be projected independently.  The methods of this class split the range of points
+ * recursively across the common <code>ForkJoinPool</code>, down to ranges of {@link #SEQUENTIAL_THRESHOLD} points.
+ * Inputs smaller than {@link #SEQUENTIAL_THRESHOLD} points are projected directly on the calling thread, so that small
+ * inputs do not pay for task creation.
+ *
+ * <p>
+ * The methods block until all points have been projected.  The transform must not be modified (for example, by a
+ * camera change on the JavaFX application thread) while a projection is in progress; calling these methods from the
+ * JavaFX application thread guarantees this.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class ParallelRasterProjection {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Number of points below which projection is performed sequentially. */
+    public static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+
+    /**
+     * Transforms a batch of 3D coordinates from the scene into 2D raster coordinates, in parallel.
+     *
+     * @param t transform to apply
+     * @param xyz packed scene coordinates
+     * @param offset index of the first point to transform
+     * @param count number of points to transform
+     * @param raster output packed raster coordinates
+     * @param depth output depth of each point (may be <code>null</code>)
+     * @param inFront output flag indicating whether each point is in front of the camera (may be <code>null</code>)
+     * @return number of transformed points that are in front of the camera
+     * @see CameraToRasterTransform#transform(double[], int, int, double[], double[], boolean[])
+     */
+    public static int transform(CameraToRasterTransform t, double[] xyz, int offset, int count,
+                                double[] raster, double[] depth, boolean[] inFront)
+    {
+        if (count < SEQUENTIAL_THRESHOLD) {
+            return t.transform(xyz, offset, count, raster, depth, inFront);
+        }
+        return ForkJoinPool.commonPool().invoke(new CountingRangeTask(offset, count,
+                (o, c) -> t.transform(xyz, o, c, raster, depth, inFront)));
+    }
+
+    /**
+     * Transforms a batch of single-precision 3D coordinates from the scene into 2D raster coordinates, in parallel.
+     *
+     * @param t transform to apply
+     * @param xyz packed scene coordinates
+     * @param offset index of the first point to transform
+     * @param count number of points to transform
+     * @param raster output packed raster coordinates
+     * @param depth output depth of each point (may be <code>null</code>)
+     * @param inFront output flag indicating whether each point is in front of the camera (may be <code>null</code>)
+     * @return number of transformed points that are in front of the camera
+     * @see CameraToRasterTransform#transform(float[], int, int, float[], float[], boolean[])
+     */
+    public static int transform(CameraToRasterTransform t, float[] xyz, int offset, int count,
+                                float[] raster, float[] depth, boolean[] inFront)
+    {
+        if (count < SEQUENTIAL_THRESHOLD) {
+            return t.transform(xyz, offset, count, raster, depth, inFront);
+        }
+        return ForkJoinPool.commonPool().invoke(new CountingRangeTask(offset, count,
+                (o, c) -> t.transform(xyz, o, c, raster, depth, inFront)));
+    }
+
+    /**
+     * Transforms a batch of single-precision 3D coordinates, stored as separate coordinate arrays, into 2D raster
+     * coordinates, in parallel.
+     *
+     * @param t transform to apply
+     * @param x scene x coordinates
+     * @param y scene y coordinates
+     * @param z scene z coordinates
+     * @param offset index of the first point to transform
+     * @param count number of points to transform
+     * @param rasterX output raster x coordinates
+     * @param rasterY output raster y coordinates
+     * @param depth output depth of each point
+     * @see CameraToRasterTransform#transform(float[], float[], float[], int, int, float[], float[], float[])
+     */
+    public static void transform(CameraToRasterTransform t, float[] x, float[] y, float[] z, int offset, int count,
+                                 float[] rasterX, float[] rasterY, float[] depth)
+    {
+        if (count < SEQUENTIAL_THRESHOLD) {
+            t.transform(x, y, z, offset, count, rasterX, rasterY, depth);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeAction(offset, count,
+                    (o, c) -> t.transform(x, y, z, o, c, rasterX, rasterY, depth)));
+        }
+    }
+
+    /**
+     * Transforms the radii of a batch of spheres to raster radii, in parallel.
+     *
+     * @param t transform to apply
+     * @param xyz packed scene coordinates of the centers of the spheres
+     * @param radii radii of the spheres in the 3D scene
+     * @param offset index of the first sphere to transform
+     * @param count number of spheres to transform
+     * @param rasterRadii output radii of the spheres on the 2D raster
+     * @see CameraToRasterTransform#transformRadii(double[], double[], int, int, double[])
+     */
+    public static void transformRadii(CameraToRasterTransform t, double[] xyz, double[] radii, int offset, int count,
+                                      double[] rasterRadii)
+    {
+        if (count < SEQUENTIAL_THRESHOLD) {
+            t.transformRadii(xyz, radii, offset, count, rasterRadii);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeAction(offset, count,
+                    (o, c) -> t.transformRadii(xyz, radii, o, c, rasterRadii)));
+        }
+    }
+
+    /**
+     * Transforms the radii of a batch of single-precision spheres to raster radii, in parallel.
+     *
+     * @param t transform to apply
+     * @param xyz packed scene coordinates of the centers of the spheres
+     * @param radii radii of the spheres in the 3D scene
+     * @param offset index of the first sphere to transform
+     * @param count number of spheres to transform
+     * @param rasterRadii output radii of the spheres on the 2D raster
+     * @see CameraToRasterTransform#transformRadii(float[], float[], int, int, float[])
+     */
+    public static void transformRadii(CameraToRasterTransform t, float[] xyz, float[] radii, int offset, int count,
+                                      float[] rasterRadii)
+    {
+        if (count < SEQUENTIAL_THRESHOLD) {
+            t.transformRadii(xyz, radii, offset, count, rasterRadii);
+        } else {
+            ForkJoinPool.commonPool().invoke(new RangeAction(offset, count,
+                    (o, c) -> t.transformRadii(xyz, radii, o, c, rasterRadii)));
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private ParallelRasterProjection() { }
+
+    /** Operation over a range of point indices. */
+    private interface RangeOp { void apply(int offset, int count); }
+
+    /** Operation over a range of point indices that returns the number of points in front of the camera. */
+    private interface CountingRangeOp { int apply(int offset, int count); }
+
+    /** Splits a range of points in half until it is below the sequential threshold. */
+    private static final class RangeAction extends RecursiveAction {
+        RangeAction(int offset, int count, RangeOp op) {
+            this.offset = offset;
+            this.count = count;
+            this.op = op;
+        }
+        @Override protected void compute() {
+            if (count < SEQUENTIAL_THRESHOLD) {
+                op.apply(offset, count);
+            } else {
+                final int half = count / 2;
+                invokeAll(new RangeAction(offset, half, op), new RangeAction(offset + half, count - half, op));
+            }
+        }
+        private final int offset;
+        private final int count;
+        private final RangeOp op;
+    }
+
+    /** Splits a range of points in half until it is below the sequential threshold, summing the results. */
+    private static final class CountingRangeTask extends RecursiveTask<Integer> {
+        CountingRangeTask(int offset, int count, CountingRangeOp op) {
+            this.offset = offset;
+            this.count = count;
+            this.op = op;
+        }
+        @Override protected Integer compute() {
+            if (count < SEQUENTIAL_THRESHOLD) {
+                return op.apply(offset, count);
+            } else {
+                final int half = count / 2;
+                final CountingRangeTask left = new CountingRangeTask(offset, half, op);
+                final CountingRangeTask right = new CountingRangeTask(offset + half, count - half, op);
+                left.fork();
+                final int rightCount = right.compute();
+                return left.join() + rightCount;
+            }
+        }
+        private final int offset;
+        private final int count;
+        private final CountingRangeOp op;
+    }
+
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+import java.util.BitSet;
+
+/**
+ * Selects the points of a large point set that project into a {@link ScreenRegion ScreenRegion}.
+ *
+ * <p>
+ * On construction, the points are binned into spatially coherent chunks on a uniform grid, and a bounding sphere is
+ * computed for each chunk.  A selection first builds the frustum through the bounding box of the region.  Chunks
+ * whose bounding spheres lie entirely outside the frustum are skipped without projecting their points.  For a
+ * rectangular region, chunks entirely inside the frustum are selected without projecting their points.  Points in
+ * the remaining chunks are projected in batch and tested against the region.
+ *
+ * <p>
+ * Instances reuse internal scratch space, so a single instance must not be used from several threads at once.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class PointSelector {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Creates a new <code>PointSelector</code>.  The coordinates are copied.
+     *
+     * @param xyz packed scene coordinates (x0, y0, z0, x1, ...)
+     * @param count number of points
+     */
+    public PointSelector(double[] xyz, int count) {
+        this.count = count;
+        this.sortedXyz = new double[3 * count];
+        this.order = new int[count];
+        this.raster = new double[2 * count];
+        this.inFront = new boolean[count];
+        buildChunks(xyz);
+    }
+
+    /**
+     * Returns the number of points.
+     *
+     * @return number of points
+     */
+    public int getPointCount() { return count; }
+
+    /**
+     * Selects the points that project into a region of the raster.
+     *
+     * @param t current scene-to-raster transform
+     * @param region region of the raster
+     * @param result bits are set for the indices of the selected points (existing bits are not cleared)
+     * @return number of points selected; none if the transform is not {@link CameraToRasterTransform#isValid() valid}
+     */
+    public int select(CameraToRasterTransform t, ScreenRegion region, BitSet result) {
+        if (region.isEmpty() || (count == 0) || !t.isValid()) {
+            return 0;
+        }
+        buildFrustum(t, region);
+        int nSelected = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            final int start = chunkStart[c];
+            final int end = chunkStart[c + 1];
+            final int cls = classifySphere(chunkSpheres[4 * c], chunkSpheres[4 * c + 1], chunkSpheres[4 * c + 2],
+                                           chunkSpheres[4 * c + 3]);
+            if (cls == OUTSIDE) {
+                continue;
+            }
+            if ((cls == INSIDE) && region.isRectangle()) {
+                for (int i = start; i < end; i++) {
+                    result.set(order[i]);
+                }
+                nSelected += end - start;
+                continue;
+            }
+            t.transform(sortedXyz, start, end - start, raster, null, inFront);
+            for (int i = start; i < end; i++) {
+                if (inFront[i] && region.contains(raster[2 * i], raster[2 * i + 1])) {
+                    result.set(order[i]);
+                    nSelected++;
+                }
+            }
+        }
+        return nSelected;
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    /** Approximate number of points per chunk. */
+    private static final int CHUNK_SIZE = 512;
+
+    private static final int OUTSIDE = 0;
+    private static final int INTERSECTS = 1;
+    private static final int INSIDE = 2;
+
+    private final int count;
+    private final double[] sortedXyz;   // coordinates, sorted by chunk
+    private final int[] order;          // original index of each sorted point
+    private int chunkCount;
+    private int[] chunkStart;           // chunk c occupies sorted points [chunkStart[c], chunkStart[c+1])
+    private double[] chunkSpheres;      // packed (cx, cy, cz, r) per chunk
+
+    // projection scratch space
+    private final double[] raster;
+    private final boolean[] inFront;
+
+    // frustum side planes: packed (nx, ny, nz, d) with inward unit normals
+    private final double[] planes = new double[16];
+    private final double[] rayOrigin = new double[3];
+    private final double[][] rayDirs = new double[5][3];
+
+    private void buildChunks(double[] xyz) {
+        if (count == 0) {
+            chunkCount = 0;
+            chunkStart = new int[1];
+            chunkSpheres = new double[0];
+            return;
+        }
+
+        // bounds of the points
+        double x0 = Double.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+        for (int i = 0; i < count; i++) {
+            final double x = xyz[3 * i], y = xyz[3 * i + 1], z = xyz[3 * i + 2];
+            if (x < x0) x0 = x;
+            if (x > x1) x1 = x;
+            if (y < y0) y0 = y;
+            if (y > y1) y1 = y;
+            if (z < z0) z0 = z;
+            if (z > z1) z1 = z;
+        }
+
+        // uniform grid with roughly CHUNK_SIZE points per cell
+        final int dim = Math.max(1, (int)Math.ceil(Math.cbrt((double)count / CHUNK_SIZE)));
+        final double sx = dim / Math.max(x1 - x0, Double.MIN_NORMAL);
+        final double sy = dim / Math.max(y1 - y0, Double.MIN_NORMAL);
+        final double sz = dim / Math.max(z1 - z0, Double.MIN_NORMAL);
+        final int nCells = dim * dim * dim;
+        final int[] cellOf = new int[count];
+        final int[] cellCounts = new int[nCells + 1];
+        for (int i = 0; i < count; i++) {
+            final int cx = Math.min(dim - 1, (int)((xyz[3 * i] - x0) * sx));
+            final int cy = Math.min(dim - 1, (int)((xyz[3 * i + 1] - y0) * sy));
+            final int cz = Math.min(dim - 1, (int)((xyz[3 * i + 2] - z0) * sz));
+            final int cell = (cz * dim + cy) * dim + cx;
+            cellOf[i] = cell;
+            cellCounts[cell + 1]++;
+        }
+
+        // counting sort of the points by cell; each non-empty cell becomes a chunk
+        int nonEmpty = 0;
+        for (int c = 0; c < nCells; c++) {
+            if (cellCounts[c + 1] > 0) nonEmpty++;
+            cellCounts[c + 1] += cellCounts[c];
+        }
+        final int[] cursor = cellCounts.clone();
+        for (int i = 0; i < count; i++) {
+            final int k = cursor[cellOf[i]]++;
+            order[k] = i;
+            System.arraycopy(xyz, 3 * i, sortedXyz, 3 * k, 3);
+        }
+        chunkCount = nonEmpty;
+        chunkStart = new int[nonEmpty + 1];
+        int chunk = 0;
+        for (int c = 0; c < nCells; c++) {
+            if (cellCounts[c + 1] > cellCounts[c]) {
+                chunkStart[chunk++] = cellCounts[c];
+            }
+        }
+        chunkStart[nonEmpty] = count;
+
+        // bounding sphere of each chunk, centered on the chunk's bounding box
+        chunkSpheres = new double[4 * nonEmpty];
+        for (int c = 0; c < nonEmpty; c++) {
+            double bx0 = Double.POSITIVE_INFINITY, by0 = bx0, bz0 = bx0;
+            double bx1 = Double.NEGATIVE_INFINITY, by1 = bx1, bz1 = bx1;
+            for (int i = chunkStart[c]; i < chunkStart[c + 1]; i++) {
+                final double x = sortedXyz[3 * i], y = sortedXyz[3 * i + 1], z = sortedXyz[3 * i + 2];
+                if (x < bx0) bx0 = x;
+                if (x > bx1) bx1 = x;
+                if (y < by0) by0 = y;
+                if (y > by1) by1 = y;
+                if (z < bz0) bz0 = z;
+                if (z > bz1) bz1 = z;
+            }
+            final double cx = (bx0 + bx1) / 2.0, cy = (by0 + by1) / 2.0, cz = (bz0 + bz1) / 2.0;
+            double r2 = 0;
+            for (int i = chunkStart[c]; i < chunkStart[c + 1]; i++) {
+                final double dx = sortedXyz[3 * i] - cx;
+                final double dy = sortedXyz[3 * i + 1] - cy;
+                final double dz = sortedXyz[3 * i + 2] - cz;
+                r2 = Math.max(r2, dx * dx + dy * dy + dz * dz);
+            }
+            chunkSpheres[4 * c]     = cx;
+            chunkSpheres[4 * c + 1] = cy;
+            chunkSpheres[4 * c + 2] = cz;
+            chunkSpheres[4 * c + 3] = Math.sqrt(r2);
+        }
+    }
+
+    /** Builds the four side planes of the frustum through the bounding box of the region. */
+    private void buildFrustum(CameraToRasterTransform t, ScreenRegion region) {
+        final double rx0 = region.getMinX(), ry0 = region.getMinY();
+        final double rx1 = region.getMaxX(), ry1 = region.getMaxY();
+        t.rasterToRay(rx0, ry0, rayOrigin, rayDirs[0]);
+        t.rasterToRay(rx1, ry0, rayOrigin, rayDirs[1]);
+        t.rasterToRay(rx1, ry1, rayOrigin, rayDirs[2]);
+        t.rasterToRay(rx0, ry1, rayOrigin, rayDirs[3]);
+        t.rasterToRay((rx0 + rx1) / 2.0, (ry0 + ry1) / 2.0, rayOrigin, rayDirs[4]);
+        final double[] center = rayDirs[4];
+        for (int p = 0; p < 4; p++) {
+            final double[] a = rayDirs[p];
+            final double[] b = rayDirs[(p + 1) % 4];
+            double nx = a[1] * b[2] - a[2] * b[1];
+            double ny = a[2] * b[0] - a[0] * b[2];
+            double nz = a[0] * b[1] - a[1] * b[0];
+            final double l = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            // orient the normal towards the inside of the frustum
+            final double sign = ((nx * center[0] + ny * center[1] + nz * center[2]) < 0) ? -1.0 : 1.0;
+            nx *= sign / l;
+            ny *= sign / l;
+            nz *= sign / l;
+            planes[4 * p]     = nx;
+            planes[4 * p + 1] = ny;
+            planes[4 * p + 2] = nz;
+            planes[4 * p + 3] = -(nx * rayOrigin[0] + ny * rayOrigin[1] + nz * rayOrigin[2]);
+        }
+    }
+
+    private int classifySphere(double cx, double cy, double cz, double r) {
+        int result = INSIDE;
+        for (int p = 0; p < 4; p++) {
+            final double d = planes[4 * p] * cx + planes[4 * p + 1] * cy + planes[4 * p + 2] * cz + planes[4 * p + 3];
+            if (d < -r) {
+                return OUTSIDE;
+            }
+            if (d < r) {
+                result = INTERSECTS;
+            }
+        }
+        return result;
+    }
+
+}
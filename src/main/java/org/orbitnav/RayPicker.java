@@ -0,0 +1,644 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the nearest of a large set of spheres and capsules hit by a ray, without going through the JavaFX pick path.
+ *
+ * <p>
+ * The primitives are held in a bounding volume hierarchy (BVH) of axis-aligned boxes.  The hierarchy is built by
+ * recursively splitting the primitives at the median of their centers along the longest axis of their bounds, in
+ * parallel on the common fork-join pool for large inputs.  A query visits the nearer child of each node first and
+ * skips any box further away than the best hit found so far, so its cost grows roughly with the logarithm of the
+ * number of primitives.
+ *
+ * <p>
+ * A capsule is the set of points within a radius of a line segment; it is a convenient proxy for a cylinder with
+ * rounded ends, such as a bond between two atoms.
+ *
+ * <p>
+ * When the primitives move, for example during trajectory playback, {@link #refit(double[], double[]) refit} updates
+ * the bounds of the existing hierarchy from the new coordinates, bottom-up and in parallel, instead of rebuilding it.
+ * Refitting keeps the tree valid but lets its boxes grow and overlap as primitives drift away from their original
+ * neighbours.  The total surface area of the boxes, relative to that of the root, is tracked as a measure of the
+ * expected cost of a query; once it has grown by more than a factor of {@link #REBUILD_THRESHOLD REBUILD_THRESHOLD}
+ * since the last build, the hierarchy is rebuilt instead.
+ *
+ * <p>
+ * The picker keeps two copies of the hierarchy.  A refit writes into the copy that is not in use and then publishes
+ * it, so {@link #refit(double[], double[]) refit} can run on a worker thread while any number of threads (such as the
+ * JavaFX application thread) continue to pick from the previous copy without blocking.  Only one thread may refit at
+ * a time.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class RayPicker {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * The result of a pick.
+     */
+    public static final class Hit {
+
+        /**
+         * Indicates whether the hit primitive is a sphere.
+         *
+         * @return <code>true</code> if a sphere was hit
+         */
+        public boolean isSphere() { return sphere; }
+
+        /**
+         * Returns the index of the hit sphere or capsule, among the spheres or capsules respectively.
+         *
+         * @return index of the hit primitive
+         */
+        public int getIndex() { return index; }
+
+        /**
+         * Returns the distance along the ray to the hit.
+         *
+         * @return distance from the origin of the ray to the hit, in units of the 3D scene
+         */
+        public double getDistance() { return distance; }
+
+        private boolean sphere;
+        private int index;
+        private double distance;
+
+    }
+
+    /**
+     * Growth in the relative surface area of the hierarchy, since it was last built, above which a refit rebuilds it.
+     */
+    public static final double REBUILD_THRESHOLD = 1.5;
+
+    /**
+     * Creates a new <code>RayPicker</code>.  The coordinates are copied.
+     *
+     * @param sphereXyz packed centers of the spheres (x0, y0, z0, x1, ...)
+     * @param sphereRadii radii of the spheres
+     * @param sphereCount number of spheres
+     * @param capsuleXyz packed end points of the capsules (ax0, ay0, az0, bx0, by0, bz0, ax1, ...)
+     * @param capsuleRadii radii of the capsules
+     * @param capsuleCount number of capsules
+     */
+    public RayPicker(double[] sphereXyz, double[] sphereRadii, int sphereCount,
+                     double[] capsuleXyz, double[] capsuleRadii, int capsuleCount) {
+        this.sphereCount = sphereCount;
+        this.capsuleCount = capsuleCount;
+        this.sphereRadii = new double[sphereCount];
+        this.capsuleRadii = new double[capsuleCount];
+        System.arraycopy(sphereRadii, 0, this.sphereRadii, 0, sphereCount);
+        System.arraycopy(capsuleRadii, 0, this.capsuleRadii, 0, capsuleCount);
+
+        final Tree tree = new Tree(sphereCount, capsuleCount);
+        System.arraycopy(sphereXyz, 0, tree.sphereXyz, 0, 3 * sphereCount);
+        System.arraycopy(capsuleXyz, 0, tree.capsuleXyz, 0, 6 * capsuleCount);
+        build(tree);
+        front = tree;
+        back = new Tree(sphereCount, capsuleCount);
+    }
+
+    /**
+     * Returns the number of spheres.
+     *
+     * @return number of spheres
+     */
+    public int getSphereCount() { return sphereCount; }
+
+    /**
+     * Returns the number of capsules.
+     *
+     * @return number of capsules
+     */
+    public int getCapsuleCount() { return capsuleCount; }
+
+    /**
+     * Updates the positions of the primitives.  The radii of the primitives are unchanged.
+     *
+     * <p>
+     * The bounds of the hierarchy are refit to the new positions, or the hierarchy is rebuilt if refitting has
+     * degraded it past {@link #REBUILD_THRESHOLD REBUILD_THRESHOLD}.  Picks made while this method runs use the
+     * previous positions; picks made after it returns use the new ones.  This method may be called from any thread,
+     * but not from several threads at once.
+     *
+     * @param sphereXyz packed new centers of the spheres, or <code>null</code> if the spheres have not moved
+     * @param capsuleXyz packed new end points of the capsules, or <code>null</code> if the capsules have not moved
+     * @return <code>true</code> if the hierarchy was rebuilt
+     */
+    public boolean refit(double[] sphereXyz, double[] capsuleXyz) {
+        final Tree previous = front;
+        final Tree tree = back;
+        // wait for any picks that began before the last refit to finish with this copy
+        while (tree.readers.get() != 0) {
+            Thread.yield();
+        }
+
+        System.arraycopy((sphereXyz != null) ? sphereXyz : previous.sphereXyz, 0, tree.sphereXyz, 0,
+                         3 * sphereCount);
+        System.arraycopy((capsuleXyz != null) ? capsuleXyz : previous.capsuleXyz, 0, tree.capsuleXyz, 0,
+                         6 * capsuleCount);
+        if (tree.buildId != previous.buildId) {
+            System.arraycopy(previous.primitives, 0, tree.primitives, 0, tree.primitives.length);
+            System.arraycopy(previous.nodeStart, 0, tree.nodeStart, 0, tree.nodeStart.length);
+            System.arraycopy(previous.nodeCount, 0, tree.nodeCount, 0, tree.nodeCount.length);
+            tree.buildId = previous.buildId;
+            tree.buildCost = previous.buildCost;
+        }
+
+        boolean rebuilt = false;
+        if (tree.primitives.length > 0) {
+            final RefitTask refit = new RefitTask(tree, 0);
+            final double area = (tree.primitives.length < PARALLEL_THRESHOLD) ?
+                    refit.compute() : ForkJoinPool.commonPool().invoke(refit);
+            if (relativeCost(tree, area) > REBUILD_THRESHOLD * tree.buildCost) {
+                build(tree);
+                rebuilt = true;
+            }
+        }
+
+        front = tree;
+        back = previous;
+        return rebuilt;
+    }
+
+    /**
+     * Finds the nearest primitive hit by the ray through a point on the raster.  The ray is unprojected into scratch
+     * arrays held by the picker, so unlike {@link #pick(double[], double[], Hit) pick} with a ray, this method may only
+     * be called from one thread at a time (normally the JavaFX application thread).
+     *
+     * @param t current scene-to-raster transform
+     * @param rasterX x coordinate on the raster
+     * @param rasterY y coordinate on the raster
+     * @param hit receives the nearest hit, if there is one
+     * @return <code>true</code> if a primitive was hit; never if the transform is not
+     *     {@link CameraToRasterTransform#isValid() valid}
+     */
+    public boolean pick(CameraToRasterTransform t, double rasterX, double rasterY, Hit hit) {
+        if (!t.isValid()) {
+            return false;
+        }
+        t.rasterToRay(rasterX, rasterY, rayOrigin, rayDirection);
+        return pick(rayOrigin, rayDirection, hit);
+    }
+
+    /**
+     * Finds the nearest primitive hit by a ray.  Only hits in front of the origin of the ray are considered.
+     *
+     * @param origin origin of the ray (x, y, z)
+     * @param direction unit direction of the ray (x, y, z)
+     * @param hit receives the nearest hit, if there is one
+     * @return <code>true</code> if a primitive was hit
+     */
+    public boolean pick(double[] origin, double[] direction, Hit hit) {
+        // register as a reader of the current copy; retry if a refit published a new copy in the meantime
+        Tree tree = front;
+        tree.readers.incrementAndGet();
+        while (tree != front) {
+            tree.readers.decrementAndGet();
+            tree = front;
+            tree.readers.incrementAndGet();
+        }
+        try {
+            return pick(tree, origin, direction, hit);
+        } finally {
+            tree.readers.decrementAndGet();
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    /** Maximum number of primitives in a leaf node. */
+    private static final int LEAF_SIZE = 4;
+
+    /** Ranges of primitives smaller than this are built or refit on a single thread. */
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    /** Traversal stack depth; ample for a median-split tree over any primitive count that fits in an array. */
+    private static final int MAX_DEPTH = 64;
+
+    private final int sphereCount;
+    private final double[] sphereRadii;
+    private final int capsuleCount;
+    private final double[] capsuleRadii;
+
+    private volatile Tree front;    // copy used by picks
+    private Tree back;              // copy written by the next refit
+
+    // scratch ray for picks from the raster
+    private final double[] rayOrigin = new double[3];
+    private final double[] rayDirection = new double[3];
+
+    /**
+     * One copy of the hierarchy, together with the primitive positions it was fit to.
+     *
+     * <p>
+     * The tree is stored in depth-first order: the left child of a node immediately follows it.  A node covering k
+     * leaves has 2k-1 nodes in its subtree, so its right child is found at an offset of twice the number of leaves in
+     * its left child.  Every node covers a contiguous range of the primitives array.
+     */
+    private static final class Tree {
+        Tree(int sphereCount, int capsuleCount) {
+            final int n = sphereCount + capsuleCount;
+            final int nodes = 2 * Math.max(1, (n + LEAF_SIZE - 1) / LEAF_SIZE) - 1;
+            sphereXyz = new double[3 * sphereCount];
+            capsuleXyz = new double[6 * capsuleCount];
+            primitives = new int[n];
+            nodeBounds = new double[6 * nodes];
+            nodeStart = new int[nodes];
+            nodeCount = new int[nodes];
+        }
+        final double[] sphereXyz;
+        final double[] capsuleXyz;
+        final int[] primitives;     // sphere indices, then capsule indices offset by sphereCount
+        final double[] nodeBounds;  // packed (x0, y0, z0, x1, y1, z1) per node
+        final int[] nodeStart;
+        final int[] nodeCount;
+        int buildId = -1;           // identifies the build that produced primitives, nodeStart and nodeCount
+        double buildCost;           // relative surface area just after that build
+        final AtomicInteger readers = new AtomicInteger();
+    }
+
+    private int nextBuildId = 0;
+
+    /** Number of primitives in the left child of a node covering count primitives. */
+    private static int leftCount(int count) {
+        final int leaves = (count + LEAF_SIZE - 1) / LEAF_SIZE;
+        return LEAF_SIZE * ((leaves + 1) / 2);
+    }
+
+    private static int rightChild(Tree tree, int node) {
+        final int leftLeaves = (leftCount(tree.nodeCount[node]) + LEAF_SIZE - 1) / LEAF_SIZE;
+        return node + 2 * leftLeaves;
+    }
+
+    private static double surfaceArea(double[] b, int offset) {
+        final double ex = b[offset + 3] - b[offset];
+        final double ey = b[offset + 4] - b[offset + 1];
+        final double ez = b[offset + 5] - b[offset + 2];
+        return 2.0 * (ex * ey + ey * ez + ez * ex);
+    }
+
+    /** Total surface area of the nodes relative to that of the root; proportional to the expected query cost. */
+    private static double relativeCost(Tree tree, double totalArea) {
+        return totalArea / Math.max(surfaceArea(tree.nodeBounds, 0), Double.MIN_NORMAL);
+    }
+
+    private void build(Tree tree) {
+        tree.buildId = nextBuildId++;
+        final int n = tree.primitives.length;
+        if (n == 0) {
+            tree.buildCost = 0;
+            return;
+        }
+        final double[] centers = new double[3 * n];
+        final double[] bounds = new double[6 * n];
+        for (int p = 0; p < n; p++) {
+            tree.primitives[p] = p;
+            primitiveBounds(tree, p, bounds, 6 * p);
+            for (int a = 0; a < 3; a++) {
+                centers[3 * p + a] = (bounds[6 * p + a] + bounds[6 * p + 3 + a]) / 2.0;
+            }
+        }
+        final BuildAction root = new BuildAction(tree, 0, 0, n, centers, bounds);
+        if (n < PARALLEL_THRESHOLD) {
+            root.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(root);
+        }
+        double area = 0;
+        for (int node = 0; node < tree.nodeCount.length; node++) {
+            area += surfaceArea(tree.nodeBounds, 6 * node);
+        }
+        tree.buildCost = relativeCost(tree, area);
+    }
+
+    /** Writes the bounding box of a primitive into an array at an offset. */
+    private void primitiveBounds(Tree tree, int p, double[] bounds, int offset) {
+        if (p < sphereCount) {
+            final double r = sphereRadii[p];
+            for (int a = 0; a < 3; a++) {
+                final double c = tree.sphereXyz[3 * p + a];
+                bounds[offset + a] = c - r;
+                bounds[offset + 3 + a] = c + r;
+            }
+        } else {
+            final int c = p - sphereCount;
+            final double r = capsuleRadii[c];
+            for (int a = 0; a < 3; a++) {
+                final double ea = tree.capsuleXyz[6 * c + a];
+                final double eb = tree.capsuleXyz[6 * c + 3 + a];
+                bounds[offset + a] = Math.min(ea, eb) - r;
+                bounds[offset + 3 + a] = Math.max(ea, eb) + r;
+            }
+        }
+    }
+
+    /** Builds the subtree rooted at a node, which covers a range of the primitives array. */
+    private final class BuildAction extends RecursiveAction {
+        BuildAction(Tree tree, int node, int start, int count, double[] centers, double[] bounds) {
+            this.tree = tree;
+            this.node = node;
+            this.start = start;
+            this.count = count;
+            this.centers = centers;
+            this.bounds = bounds;
+        }
+        @Override protected void compute() {
+            buildNode(node, start, count);
+        }
+        private void buildNode(int node, int start, int count) {
+            final int[] primitives = tree.primitives;
+            tree.nodeStart[node] = start;
+            tree.nodeCount[node] = count;
+
+            // bounds of the primitives, and of their centers
+            double x0 = Double.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+            double x1 = Double.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+            double cx0 = x0, cy0 = x0, cz0 = x0;
+            double cx1 = x1, cy1 = x1, cz1 = x1;
+            for (int i = start; i < start + count; i++) {
+                final int p = primitives[i];
+                x0 = Math.min(x0, bounds[6 * p]);
+                y0 = Math.min(y0, bounds[6 * p + 1]);
+                z0 = Math.min(z0, bounds[6 * p + 2]);
+                x1 = Math.max(x1, bounds[6 * p + 3]);
+                y1 = Math.max(y1, bounds[6 * p + 4]);
+                z1 = Math.max(z1, bounds[6 * p + 5]);
+                final double cx = centers[3 * p], cy = centers[3 * p + 1], cz = centers[3 * p + 2];
+                cx0 = Math.min(cx0, cx);
+                cy0 = Math.min(cy0, cy);
+                cz0 = Math.min(cz0, cz);
+                cx1 = Math.max(cx1, cx);
+                cy1 = Math.max(cy1, cy);
+                cz1 = Math.max(cz1, cz);
+            }
+            final double[] nodeBounds = tree.nodeBounds;
+            final int b = 6 * node;
+            nodeBounds[b]     = x0;
+            nodeBounds[b + 1] = y0;
+            nodeBounds[b + 2] = z0;
+            nodeBounds[b + 3] = x1;
+            nodeBounds[b + 4] = y1;
+            nodeBounds[b + 5] = z1;
+            if (count <= LEAF_SIZE) {
+                return;
+            }
+
+            // partition at the median center along the longest axis of the centers
+            final double ex = cx1 - cx0, ey = cy1 - cy0, ez = cz1 - cz0;
+            final int axis = (ex >= ey) ? ((ex >= ez) ? 0 : 2) : ((ey >= ez) ? 1 : 2);
+            final int nLeft = leftCount(count);
+            select(start, start + count - 1, start + nLeft, axis);
+
+            final int left = node + 1;
+            final int right = node + 2 * ((nLeft + LEAF_SIZE - 1) / LEAF_SIZE);
+            if (count < PARALLEL_THRESHOLD) {
+                buildNode(left, start, nLeft);
+                buildNode(right, start + nLeft, count - nLeft);
+            } else {
+                invokeAll(new BuildAction(tree, left, start, nLeft, centers, bounds),
+                          new BuildAction(tree, right, start + nLeft, count - nLeft, centers, bounds));
+            }
+        }
+        /** Quickselect: reorders primitives[lo..hi] so that index k holds the primitive of rank k along an axis. */
+        private void select(int lo, int hi, int k, int axis) {
+            final int[] primitives = tree.primitives;
+            while (hi > lo) {
+                final double pivot = centers[3 * primitives[(lo + hi) >>> 1] + axis];
+                int i = lo, j = hi;
+                while (i <= j) {
+                    while (centers[3 * primitives[i] + axis] < pivot) i++;
+                    while (centers[3 * primitives[j] + axis] > pivot) j--;
+                    if (i <= j) {
+                        final int tmp = primitives[i];
+                        primitives[i] = primitives[j];
+                        primitives[j] = tmp;
+                        i++;
+                        j--;
+                    }
+                }
+                if (k <= j) {
+                    hi = j;
+                } else if (k >= i) {
+                    lo = i;
+                } else {
+                    return;
+                }
+            }
+        }
+        private final Tree tree;
+        private final int node;
+        private final int start;
+        private final int count;
+        private final double[] centers;
+        private final double[] bounds;
+    }
+
+    /** Refits the bounds of the subtree rooted at a node, bottom-up, returning the total surface area of its nodes. */
+    private final class RefitTask extends RecursiveTask<Double> {
+        RefitTask(Tree tree, int node) {
+            this.tree = tree;
+            this.node = node;
+        }
+        @Override protected Double compute() {
+            return refitNode(node);
+        }
+        private double refitNode(int node) {
+            final double[] nodeBounds = tree.nodeBounds;
+            final int b = 6 * node;
+            final int count = tree.nodeCount[node];
+            double area;
+            if (count <= LEAF_SIZE) {
+                final int start = tree.nodeStart[node];
+                primitiveBounds(tree, tree.primitives[start], nodeBounds, b);
+                for (int i = start + 1; i < start + count; i++) {
+                    primitiveBounds(tree, tree.primitives[i], scratch, 0);
+                    union(nodeBounds, b, scratch, 0);
+                }
+                area = 0;
+            } else {
+                final int left = node + 1;
+                final int right = rightChild(tree, node);
+                if (count < PARALLEL_THRESHOLD) {
+                    area = refitNode(left) + refitNode(right);
+                } else {
+                    final RefitTask leftTask = new RefitTask(tree, left);
+                    leftTask.fork();
+                    area = new RefitTask(tree, right).compute() + leftTask.join();
+                }
+                System.arraycopy(nodeBounds, 6 * left, nodeBounds, b, 6);
+                union(nodeBounds, b, nodeBounds, 6 * right);
+            }
+            return area + surfaceArea(nodeBounds, b);
+        }
+        private final Tree tree;
+        private final int node;
+        private final double[] scratch = new double[6];
+    }
+
+    /** Expands the box at offset a in array ba to enclose the box at offset b in array bb. */
+    private static void union(double[] ba, int a, double[] bb, int b) {
+        for (int i = 0; i < 3; i++) {
+            ba[a + i] = Math.min(ba[a + i], bb[b + i]);
+            ba[a + 3 + i] = Math.max(ba[a + 3 + i], bb[b + 3 + i]);
+        }
+    }
+
+    private boolean pick(Tree tree, double[] origin, double[] direction, Hit hit) {
+        if (tree.primitives.length == 0) {
+            return false;
+        }
+        final int[] primitives = tree.primitives;
+        final int[] nodeStart = tree.nodeStart;
+        final int[] nodeCount = tree.nodeCount;
+        final double[] nodeBounds = tree.nodeBounds;
+        final double ox = origin[0], oy = origin[1], oz = origin[2];
+        final double dx = direction[0], dy = direction[1], dz = direction[2];
+        final double idx = 1.0 / dx, idy = 1.0 / dy, idz = 1.0 / dz;
+
+        double best = Double.POSITIVE_INFINITY;
+        int bestPrimitive = -1;
+        final int[] stack = new int[MAX_DEPTH];
+        int top = 0;
+        if (intersectBox(nodeBounds, 0, ox, oy, oz, idx, idy, idz, best) < best) {
+            stack[top++] = 0;
+        }
+        while (top > 0) {
+            final int node = stack[--top];
+            final int count = nodeCount[node];
+            if (count <= LEAF_SIZE) {
+                final int start = nodeStart[node];
+                for (int i = start; i < start + count; i++) {
+                    final int p = primitives[i];
+                    final double d = (p < sphereCount) ?
+                            intersectSphere(tree, p, ox, oy, oz, dx, dy, dz) :
+                            intersectCapsule(tree, p - sphereCount, ox, oy, oz, dx, dy, dz);
+                    if (d < best) {
+                        best = d;
+                        bestPrimitive = p;
+                    }
+                }
+            } else {
+                // push the further child first so that the nearer child is visited first
+                final int left = node + 1;
+                final int right = rightChild(tree, node);
+                final double dl = intersectBox(nodeBounds, left, ox, oy, oz, idx, idy, idz, best);
+                final double dr = intersectBox(nodeBounds, right, ox, oy, oz, idx, idy, idz, best);
+                if (dl <= dr) {
+                    if (dr < best) stack[top++] = right;
+                    if (dl < best) stack[top++] = left;
+                } else {
+                    if (dl < best) stack[top++] = left;
+                    if (dr < best) stack[top++] = right;
+                }
+            }
+        }
+
+        if (bestPrimitive < 0) {
+            return false;
+        }
+        hit.sphere = (bestPrimitive < sphereCount);
+        hit.index = hit.sphere ? bestPrimitive : bestPrimitive - sphereCount;
+        hit.distance = best;
+        return true;
+    }
+
+    /**
+     * Intersects the ray with the bounding box of a node.
+     *
+     * @return distance to the entry point of the box (0 if the origin is inside it), or positive infinity if the ray
+     *     misses the box or enters it beyond <code>limit</code>
+     */
+    private static double intersectBox(double[] nodeBounds, int node, double ox, double oy, double oz,
+                                       double idx, double idy, double idz, double limit) {
+        final int b = 6 * node;
+        double tx0 = (nodeBounds[b] - ox) * idx, tx1 = (nodeBounds[b + 3] - ox) * idx;
+        double ty0 = (nodeBounds[b + 1] - oy) * idy, ty1 = (nodeBounds[b + 4] - oy) * idy;
+        double tz0 = (nodeBounds[b + 2] - oz) * idz, tz1 = (nodeBounds[b + 5] - oz) * idz;
+        final double tNear = Math.max(Math.max(Math.min(tx0, tx1), Math.min(ty0, ty1)),
+                                      Math.max(Math.min(tz0, tz1), 0.0));
+        final double tFar = Math.min(Math.min(Math.max(tx0, tx1), Math.max(ty0, ty1)),
+                                     Math.min(Math.max(tz0, tz1), limit));
+        return (tNear <= tFar) ? tNear : Double.POSITIVE_INFINITY;
+    }
+
+    /** @return distance to the first hit in front of the origin, or positive infinity if there is none */
+    private double intersectSphere(Tree tree, int s, double ox, double oy, double oz,
+                                   double dx, double dy, double dz) {
+        final double[] sphereXyz = tree.sphereXyz;
+        return intersectSphere(ox - sphereXyz[3 * s], oy - sphereXyz[3 * s + 1], oz - sphereXyz[3 * s + 2],
+                               dx, dy, dz, sphereRadii[s]);
+    }
+
+    /** Intersects a ray with a sphere at the origin, given the origin of the ray relative to the sphere. */
+    private static double intersectSphere(double px, double py, double pz, double dx, double dy, double dz,
+                                          double r) {
+        final double b = px * dx + py * dy + pz * dz;
+        final double c = px * px + py * py + pz * pz - r * r;
+        final double h = b * b - c;
+        if (h < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double sh = Math.sqrt(h);
+        final double t = -b - sh;
+        if (t >= 0) {
+            return t;
+        }
+        return (-b + sh >= 0) ? 0.0 : Double.POSITIVE_INFINITY;
+    }
+
+    /** @return distance to the first hit in front of the origin, or positive infinity if there is none */
+    private double intersectCapsule(Tree tree, int c, double ox, double oy, double oz,
+                                    double dx, double dy, double dz) {
+        final double[] capsuleXyz = tree.capsuleXyz;
+        final int k = 6 * c;
+        final double r = capsuleRadii[c];
+        final double ax = capsuleXyz[k], ay = capsuleXyz[k + 1], az = capsuleXyz[k + 2];
+        final double bax = capsuleXyz[k + 3] - ax, bay = capsuleXyz[k + 4] - ay, baz = capsuleXyz[k + 5] - az;
+        final double oax = ox - ax, oay = oy - ay, oaz = oz - az;
+        final double baba = bax * bax + bay * bay + baz * baz;
+        final double bard = bax * dx + bay * dy + baz * dz;
+        final double baoa = bax * oax + bay * oay + baz * oaz;
+        final double rdoa = dx * oax + dy * oay + dz * oaz;
+        final double oaoa = oax * oax + oay * oay + oaz * oaz;
+
+        // infinite cylinder about the segment, accepted only between the end points
+        final double qa = baba - bard * bard;
+        final double qb = baba * rdoa - baoa * bard;
+        final double qc = baba * oaoa - baoa * baoa - r * r * baba;
+        final double h = qb * qb - qa * qc;
+        if (h < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (qa > 0) {
+            final double t = (-qb - Math.sqrt(h)) / qa;
+            final double y = baoa + t * bard;
+            if ((t >= 0) && (y > 0) && (y < baba)) {
+                return t;
+            }
+        }
+
+        // otherwise the ray can only enter through one of the hemispherical caps
+        final double ta = intersectSphere(oax, oay, oaz, dx, dy, dz, r);
+        final double tb = intersectSphere(oax - bax, oay - bay, oaz - baz, dx, dy, dz, r);
+        return Math.min(ta, tb);
+    }
+
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+import java.util.Arrays;
+
+/**
+ * An immutable region of the raster, described by a rectangle or a closed polygon (eg. a lasso).
+ *
+ * <p>
+ * Point containment for polygons uses a grid over the polygon's bounding box.  Cells that no edge passes through are
+ * classified once as entirely inside or entirely outside, so most points are resolved by a single lookup.  Points in
+ * the remaining cells are resolved by a crossing test against only the edges that span the cell's row.  The grid is
+ * built on the first call to {@link #contains(double, double) contains}.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class ScreenRegion {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Creates a rectangular region from a pair of opposite corners.
+     *
+     * @param x0 x coordinate of one corner
+     * @param y0 y coordinate of one corner
+     * @param x1 x coordinate of the opposite corner
+     * @param y1 y coordinate of the opposite corner
+     * @return rectangular region
+     */
+    public static ScreenRegion rectangle(double x0, double y0, double x1, double y1) {
+        final double minX = Math.min(x0, x1), maxX = Math.max(x0, x1);
+        final double minY = Math.min(y0, y1), maxY = Math.max(y0, y1);
+        return new ScreenRegion(new double[] { minX, minY, maxX, minY, maxX, maxY, minX, maxY }, 4, true);
+    }
+
+    /**
+     * Creates a polygonal region.  The polygon is closed implicitly, from the last vertex to the first.
+     *
+     * @param xy packed vertex coordinates (x0, y0, x1, y1, ...)
+     * @param n number of vertices
+     * @return polygonal region
+     */
+    public static ScreenRegion polygon(double[] xy, int n) {
+        return new ScreenRegion(Arrays.copyOf(xy, 2 * n), n, false);
+    }
+
+    /**
+     * Indicates whether this region is an axis-aligned rectangle.
+     *
+     * @return <code>true</code> if the region is a rectangle
+     */
+    public boolean isRectangle() { return rectangle; }
+
+    /**
+     * Returns the number of vertices of the region.
+     *
+     * @return number of vertices
+     */
+    public int getVertexCount() { return n; }
+
+    /**
+     * Returns the x coordinate of a vertex.
+     *
+     * @param i index of the vertex
+     * @return x coordinate
+     */
+    public double getVertexX(int i) { return xy[2 * i]; }
+
+    /**
+     * Returns the y coordinate of a vertex.
+     *
+     * @param i index of the vertex
+     * @return y coordinate
+     */
+    public double getVertexY(int i) { return xy[2 * i + 1]; }
+
+    public double getMinX() { return minX; }
+    public double getMinY() { return minY; }
+    public double getMaxX() { return maxX; }
+    public double getMaxY() { return maxY; }
+
+    /**
+     * Indicates whether the region encloses a non-zero area.
+     *
+     * @return <code>true</code> if the region has a non-zero width and height
+     */
+    public boolean isEmpty() { return (n < 3) || !(maxX > minX) || !(maxY > minY); }
+
+    /**
+     * Tests whether a raster point lies inside the region.
+     *
+     * @param x x coordinate on the raster
+     * @param y y coordinate on the raster
+     * @return <code>true</code> if the point is inside the region
+     */
+    public boolean contains(double x, double y) {
+        if (!(x >= minX && x <= maxX && y >= minY && y <= maxY)) {
+            return false;
+        }
+        if (rectangle) {
+            return true;
+        }
+        if (cellState == null) {
+            buildGrid();
+        }
+        final int row = Math.min(GRID - 1, (int)((y - minY) * rowScale));
+        final int col = Math.min(GRID - 1, (int)((x - minX) * colScale));
+        final byte state = cellState[row * GRID + col];
+        if (state == INSIDE) return true;
+        if (state == OUTSIDE) return false;
+        return crossings(x, y, rowEdges[row]);
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final int GRID = 32;
+    private static final byte BOUNDARY = 0;
+    private static final byte INSIDE = 1;
+    private static final byte OUTSIDE = 2;
+
+    private final double[] xy;
+    private final int n;
+    private final boolean rectangle;
+    private final double minX, minY, maxX, maxY;
+
+    // acceleration grid (polygons only)
+    private byte[] cellState;
+    private int[][] rowEdges;
+    private double rowScale;
+    private double colScale;
+
+    private ScreenRegion(double[] xy, int n, boolean rectangle) {
+        this.xy = xy;
+        this.n = n;
+        this.rectangle = rectangle;
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            x0 = Math.min(x0, xy[2 * i]);
+            x1 = Math.max(x1, xy[2 * i]);
+            y0 = Math.min(y0, xy[2 * i + 1]);
+            y1 = Math.max(y1, xy[2 * i + 1]);
+        }
+        minX = x0;
+        minY = y0;
+        maxX = x1;
+        maxY = y1;
+    }
+
+    /** Even-odd crossing test of a horizontal ray from (x, y) against a subset of the edges. */
+    private boolean crossings(double x, double y, int[] edges) {
+        boolean inside = false;
+        for (int e : edges) {
+            final int j = (e + 1) % n;
+            final double xi = xy[2 * e], yi = xy[2 * e + 1];
+            final double xj = xy[2 * j], yj = xy[2 * j + 1];
+            if (((yi > y) != (yj > y)) && (x < (xj - xi) * (y - yi) / (yj - yi) + xi)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private void buildGrid() {
+        final double cellW = (maxX - minX) / GRID;
+        final double cellH = (maxY - minY) / GRID;
+        rowScale = (cellH > 0) ? 1.0 / cellH : 0;
+        colScale = (cellW > 0) ? 1.0 / cellW : 0;
+        final byte[] state = new byte[GRID * GRID];
+        Arrays.fill(state, OUTSIDE);
+        final boolean[] touched = new boolean[GRID * GRID];
+
+        // bucket edges by row, and mark the cells overlapped by each edge's bounding box as boundary cells
+        final int[] rowCounts = new int[GRID];
+        final int[] edgeRow0 = new int[n];
+        final int[] edgeRow1 = new int[n];
+        for (int e = 0; e < n; e++) {
+            final int j = (e + 1) % n;
+            final double ex0 = Math.min(xy[2 * e], xy[2 * j]), ex1 = Math.max(xy[2 * e], xy[2 * j]);
+            final double ey0 = Math.min(xy[2 * e + 1], xy[2 * j + 1]), ey1 = Math.max(xy[2 * e + 1], xy[2 * j + 1]);
+            final int r0 = cell(ey0 - minY, rowScale), r1 = cell(ey1 - minY, rowScale);
+            final int c0 = cell(ex0 - minX, colScale), c1 = cell(ex1 - minX, colScale);
+            edgeRow0[e] = r0;
+            edgeRow1[e] = r1;
+            for (int r = r0; r <= r1; r++) {
+                rowCounts[r]++;
+                for (int c = c0; c <= c1; c++) {
+                    touched[r * GRID + c] = true;
+                }
+            }
+        }
+        final int[][] rows = new int[GRID][];
+        for (int r = 0; r < GRID; r++) {
+            rows[r] = new int[rowCounts[r]];
+            rowCounts[r] = 0;
+        }
+        for (int e = 0; e < n; e++) {
+            for (int r = edgeRow0[e]; r <= edgeRow1[e]; r++) {
+                rows[r][rowCounts[r]++] = e;
+            }
+        }
+
+        // classify untouched cells by their centers; no edge passes through them, so they are uniform
+        for (int r = 0; r < GRID; r++) {
+            final double cy = minY + (r + 0.5) * cellH;
+            for (int c = 0; c < GRID; c++) {
+                final int k = r * GRID + c;
+                if (touched[k]) {
+                    state[k] = BOUNDARY;
+                } else {
+                    state[k] = crossings(minX + (c + 0.5) * cellW, cy, rows[r]) ? INSIDE : OUTSIDE;
+                }
+            }
+        }
+        rowEdges = rows;
+        cellState = state;
+    }
+
+    private static int cell(double offset, double scale) {
+        return Math.max(0, Math.min(GRID - 1, (int)(offset * scale)));
+    }
+
+}
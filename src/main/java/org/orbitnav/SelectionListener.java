@@ -0,0 +1,34 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+/**
+ * Receives regions of the raster selected by box or lasso selection behaviors.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ * @see NavigationBehavior.Activity#BOX_SELECT
+ * @see NavigationBehavior.Activity#LASSO_SELECT
+ * @see PointSelector
+ */
+@FunctionalInterface
+public interface SelectionListener {
+
+    /**
+     * Called when a selection drag ends.
+     *
+     * @param region selected region of the raster
+     * @param transform scene-to-raster transform of the camera when the selection was made
+     */
+    void regionSelected(ScreenRegion region, CameraToRasterTransform transform);
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * Cache of tessellated unit spheres and cylinders, keyed by their number of divisions.
+ *
+ * <p>
+ * Identical primitives need only be tessellated once.  A {@link MeshTemplate MeshTemplate} from the cache may be
+ * copied into merged meshes by batch builders, and a {@link TriangleMesh TriangleMesh} from the cache may be shared by
+ * any number of {@link javafx.scene.shape.MeshView MeshView}s, each scaled to size by its transforms, so that the
+ * vertex data is held only once.
+ *
+ * <p>
+ * The cache holds at most a fixed number of entries, evicting the least recently used.  Methods are thread-safe;
+ * meshes, like other scene-graph objects, should only be modified on the JavaFX application thread, and should never
+ * be modified by their users.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class TessellationCache {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Capacity of the shared cache. */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /**
+     * Returns the cache shared by the whole application.
+     *
+     * @return shared cache
+     */
+    public static TessellationCache getShared() { return SHARED; }
+
+    /**
+     * Creates a new, empty <code>TessellationCache</code>.
+     *
+     * @param capacity maximum number of entries
+     */
+    public TessellationCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the tessellation of a unit sphere.
+     *
+     * @param divisions number of divisions, as for {@link MeshTemplate#sphere(int) MeshTemplate.sphere}
+     * @return sphere template
+     */
+    public MeshTemplate sphere(int divisions) { return entry(SPHERE, divisions).template; }
+
+    /**
+     * Returns the tessellation of a unit cylinder.
+     *
+     * @param divisions number of divisions, as for {@link MeshTemplate#cylinder(int, boolean) MeshTemplate.cylinder}
+     * @param capped <code>true</code> to close the ends of the cylinder with caps
+     * @return cylinder template
+     */
+    public MeshTemplate cylinder(int divisions, boolean capped) {
+        return entry(capped ? CAPPED_CYLINDER : CYLINDER, divisions).template;
+    }
+
+    /**
+     * Returns a mesh of a unit sphere, which may be shared between mesh views.
+     *
+     * @param divisions number of divisions, as for {@link MeshTemplate#sphere(int) MeshTemplate.sphere}
+     * @return sphere mesh
+     */
+    public TriangleMesh sphereMesh(int divisions) { return entry(SPHERE, divisions).getMesh(); }
+
+    /**
+     * Returns a mesh of a unit cylinder, which may be shared between mesh views.
+     *
+     * @param divisions number of divisions, as for {@link MeshTemplate#cylinder(int, boolean) MeshTemplate.cylinder}
+     * @param capped <code>true</code> to close the ends of the cylinder with caps
+     * @return cylinder mesh
+     */
+    public TriangleMesh cylinderMesh(int divisions, boolean capped) {
+        return entry(capped ? CAPPED_CYLINDER : CYLINDER, divisions).getMesh();
+    }
+
+    /**
+     * Returns the number of requests that were answered from the cache.
+     *
+     * @return number of hits
+     */
+    public synchronized long getHits() { return hits; }
+
+    /**
+     * Returns the number of requests that required a new tessellation.
+     *
+     * @return number of misses
+     */
+    public synchronized long getMisses() { return misses; }
+
+    /**
+     * Returns the number of entries that have been evicted to keep the cache within its capacity.
+     *
+     * @return number of evictions
+     */
+    public synchronized long getEvictions() { return evictions; }
+
+    /**
+     * Returns the number of entries currently in the cache.
+     *
+     * @return number of entries
+     */
+    public synchronized int size() { return entries.size(); }
+
+    /**
+     * Removes all entries.  The statistics are kept.
+     */
+    public synchronized void clear() { entries.clear(); }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TessellationCache[size=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                             entries.size(), capacity, hits, misses, evictions);
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final TessellationCache SHARED = new TessellationCache(DEFAULT_CAPACITY);
+
+    private static final int SPHERE = 0;
+    private static final int CYLINDER = 1;
+    private static final int CAPPED_CYLINDER = 2;
+
+    private final int capacity;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    private final Map<Long, CacheEntry> entries = new LinkedHashMap<Long, CacheEntry>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+            if (size() > capacity) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static final class CacheEntry {
+        CacheEntry(MeshTemplate template) {
+            this.template = template;
+        }
+        synchronized TriangleMesh getMesh() {
+            if (mesh == null) {
+                final int[] templateFaces = template.getFaces();
+                final int[] faces = new int[2 * templateFaces.length];
+                for (int f = 0; f < templateFaces.length; f++) {
+                    faces[2 * f] = templateFaces[f];
+                }
+                mesh = new TriangleMesh();
+                mesh.getPoints().setAll(template.getPoints());
+                mesh.getTexCoords().setAll(0, 0);
+                mesh.getFaces().setAll(faces);
+            }
+            return mesh;
+        }
+        final MeshTemplate template;
+        private TriangleMesh mesh = null;
+    }
+
+    private synchronized CacheEntry entry(int kind, int divisions) {
+        final Long key = ((long)kind << 32) | (divisions & 0xFFFFFFFFL);
+        CacheEntry entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+        } else {
+            misses++;
+            final MeshTemplate template;
+            switch (kind) {
+                case SPHERE:   template = MeshTemplate.sphere(divisions); break;
+                case CYLINDER: template = MeshTemplate.cylinder(divisions, false); break;
+                default:       template = MeshTemplate.cylinder(divisions, true); break;
+            }
+            entry = new CacheEntry(template);
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+}
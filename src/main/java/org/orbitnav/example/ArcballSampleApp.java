@@ -1,32 +1,43 @@
 package org.orbitnav.example;
 
 import java.io.File;
-import java.util.List;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
 
+import org.orbitnav.AnchorOverlay;
 import org.orbitnav.CameraToRasterTransform;
+import org.orbitnav.CullingGroup;
 import org.orbitnav.Pane3D;
+import org.orbitnav.PointSelector;
+import org.orbitnav.RayPicker;
+import org.orbitnav.ScreenRegion;
+import org.orbitnav.SelectionListener;
 
 import javafx.application.Application;
+import javafx.beans.binding.Bindings;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.HPos;
-import javafx.geometry.Point2D;
 import javafx.geometry.VPos;
 import javafx.scene.Group;
-import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.control.CheckMenuItem;
+import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.Slider;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.input.PickResult;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.scene.shape.Ellipse;
+import javafx.scene.transform.Transform;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 public final class ArcballSampleApp extends Application {
@@ -40,19 +51,46 @@ public final class ArcballSampleApp extends Application {
         
         MenuBar menuBar = new MenuBar();
         Menu menuFile = new Menu("File");
+        MenuItem openMap = new MenuItem("Open density map...");
+        openMap.setOnAction(e -> openDensityMap(primaryStage));
+        menuFile.getItems().add(openMap);
         Menu menuView = new Menu("View");
         MenuItem viewAll = new MenuItem("View all");
         viewAll.setOnAction(viewAllHandler);
         CheckMenuItem viewProperties = new CheckMenuItem("View properties");
         viewPropertiesPane.visibleProperty().bind(viewProperties.selectedProperty());
-        menuView.getItems().addAll(viewAll, viewProperties);
-        menuBar.getMenus().addAll(menuFile, menuView);
+        CheckMenuItem viewCartoon = new CheckMenuItem("Cartoon");
+        viewCartoon.setSelected(true);
+        cartoonGroup.visibleProperty().bind(viewCartoon.selectedProperty());
+        menuView.getItems().addAll(viewAll, viewProperties, viewCartoon);
+        Menu menuColor = new Menu("Color");
+        MenuItem colorElement = new MenuItem("By element");
+        colorElement.setOnAction(colorByElementHandler);
+        MenuItem colorChain = new MenuItem("By chain");
+        colorChain.setOnAction(colorByChainHandler);
+        MenuItem colorBFactor = new MenuItem("By B-factor");
+        colorBFactor.setOnAction(colorByBFactorHandler);
+        menuColor.getItems().addAll(colorElement, colorChain, colorBFactor);
+        Menu menuSurface = new Menu("Surface");
+        MenuItem surfaceNone = new MenuItem("None");
+        surfaceNone.setOnAction(e -> surfaceGroup.getChildren().clear());
+        MenuItem surfaceSAS = new MenuItem("Solvent-accessible");
+        surfaceSAS.setOnAction(e -> buildSurface(MolecularSurface.Type.SAS));
+        MenuItem surfaceSES = new MenuItem("Solvent-excluded");
+        surfaceSES.setOnAction(e -> buildSurface(MolecularSurface.Type.SES));
+        menuSurface.getItems().addAll(surfaceNone, surfaceSAS, surfaceSES);
+        menuBar.getMenus().addAll(menuFile, menuView, menuColor, menuSurface);
         baseVBox.getChildren().add(menuBar);
         
         Scene scene = new Scene(baseVBox, DEFAULT_WIDTH, DEFAULT_HEIGHT, true);
 
         VBox.setVgrow(pane3D, Priority.ALWAYS);
         baseVBox.getChildren().add(pane3D);
+        
+        mapLevelSlider.setVisible(false);
+        mapLevelSlider.managedProperty().bind(mapLevelSlider.visibleProperty());
+        baseVBox.getChildren().add(mapLevelSlider);
+        baseVBox.getChildren().add(statusLabel);
                 
         Group world = new Group();
         pane3D.getRoot().getChildren().add(world);
@@ -70,10 +108,15 @@ public final class ArcballSampleApp extends Application {
         pane3D.widthProperty().addListener(pane3DsizeListener);
         pane3D.heightProperty().addListener(pane3DsizeListener);
         pane3D.setOnMouseClicked(pane3DClickHandler);
+        pane3D.setOnMouseMoved(pane3DHoverHandler);
+        pane3D.setSelectionListener(selectionListener);
+        // update the camera at most once per pulse, so that the listeners below re-tessellate no more often
+        pane3D.setEventCoalescing(true);
+        pane3D.transformToRasterProperty().addListener(detailListener);
+        pane3D.transformRotationOnlyProperty().addListener(rotationListener);
         
-        pane3D.getChildren().add(tempEllipse);
-        tempEllipse.setStyle("-fx-fill: null; -fx-stroke: blue;");
-        tempEllipse.setVisible(false);
+        highlightEllipse.setStyle("-fx-fill: null; -fx-stroke: blue;");
+        highlightEllipse.setMouseTransparent(true);
         
         primaryStage.setTitle("Arcball Sample Application");
         primaryStage.setScene(scene);
@@ -98,6 +141,35 @@ public final class ArcballSampleApp extends Application {
         }
     };
         
+    private EventHandler<ActionEvent> colorByElementHandler = new EventHandler<ActionEvent>() {
+        @Override public void handle(ActionEvent e) {
+            colorByElement();
+        }
+    };
+    
+    private EventHandler<ActionEvent> colorByChainHandler = new EventHandler<ActionEvent>() {
+        @Override public void handle(ActionEvent e) {
+            final int[] chains = new int[pdbSource.getAtomCount()];
+            for (int i = 0; i < chains.length; i++) {
+                chains[i] = pdbSource.getChainIndex(i);
+            }
+            coloring.colorByChain(chains, pdbSource.getChainCount());
+        }
+    };
+    
+    private EventHandler<ActionEvent> colorByBFactorHandler = new EventHandler<ActionEvent>() {
+        @Override public void handle(ActionEvent e) {
+            final double[] bFactors = new double[pdbSource.getAtomCount()];
+            double low = Double.POSITIVE_INFINITY, high = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < bFactors.length; i++) {
+                bFactors[i] = pdbSource.getBFactor(i);
+                low = Math.min(low, bFactors[i]);
+                high = Math.max(high, bFactors[i]);
+            }
+            coloring.colorByValue(bFactors, low, high);
+        }
+    };
+    
     private ChangeListener<Number> pane3DsizeListener = new ChangeListener<Number>() {
         @Override public void changed(ObservableValue<? extends Number> ob, Number oldValue, Number newValue) {
             Region.layoutInArea(viewPropertiesPane, 10, pane3D.getHeight()-500-10, 
@@ -109,53 +181,188 @@ public final class ArcballSampleApp extends Application {
     private EventHandler<MouseEvent> pane3DClickHandler = new EventHandler<MouseEvent>() {
         @Override public void handle(MouseEvent e) {
             if (!e.isStillSincePress()) return;
-            PickResult pr = e.getPickResult();
-            Node node = pr.getIntersectedNode();
-            tempEllipse.setVisible(false);
-            for (VizAtom atom : atoms) {
-                if (atom.containsNode(node)) {
-                    tempEllipse.setVisible(true);
-                    System.out.println("Clicked atom " + atom.getElementName());
-                    final VizAtom a2 = atom;
-                    pane3D.transformToRasterProperty().addListener(new ChangeListener<CameraToRasterTransform>() {
-                       @Override public void changed(ObservableValue<? extends CameraToRasterTransform> ob,
-                                                     CameraToRasterTransform oldTransform, CameraToRasterTransform newTransform) {
-                           Point2D p = newTransform.transform(a2.getX(), a2.getY(), a2.getZ());
-                           double r = newTransform.transformRadius(a2.getX(), a2.getY(), a2.getZ(), a2.getRadius());
-                           tempEllipse.setCenterX(p.getX());
-                           tempEllipse.setCenterY(p.getY());
-                           tempEllipse.setRadiusX(1.5 * r);
-                           tempEllipse.setRadiusY(1.5 * r);
-                       }
-                    });
-                    CameraToRasterTransform x = pane3D.transformToRasterProperty().get();
-                    Point2D p = x.transform(a2.getX(), a2.getY(), a2.getZ());
-                    double r = x.transformRadius(a2.getX(), a2.getY(), a2.getZ(), a2.getRadius());
-                    tempEllipse.setCenterX(p.getX());
-                    tempEllipse.setCenterY(p.getY());
-                    tempEllipse.setRadiusX(1.5 * r);
-                    tempEllipse.setRadiusY(1.5 * r);
-                    break;
+            if (pickAt(e.getX(), e.getY())) {
+                if (pickHit.isSphere()) {
+                    System.out.println("Clicked atom " + pdbSource.getElementName(pickHit.getIndex()));
+                } else {
+                    System.out.println("Clicked bond " + pickHit.getIndex());
                 }
             }
         }
     };
     
+    private EventHandler<MouseEvent> pane3DHoverHandler = new EventHandler<MouseEvent>() {
+        @Override public void handle(MouseEvent e) {
+            final AnchorOverlay overlay = pane3D.getAnchorOverlay();
+            if (pickAt(e.getX(), e.getY()) && pickHit.isSphere()) {
+                final int i = pickHit.getIndex();
+                final double x = atomCoords[3 * i], y = atomCoords[3 * i + 1], z = atomCoords[3 * i + 2];
+                if (highlightAnchor < 0) {
+                    highlightAnchor = overlay.addAnchor(x, y, z, ATOM_RADIUS, highlightEllipse, ellipsePlacement);
+                } else {
+                    overlay.setAnchorPosition(highlightAnchor, x, y, z);
+                }
+            } else if (highlightAnchor >= 0) {
+                overlay.removeAnchor(highlightAnchor);
+                highlightAnchor = -1;
+            }
+        }
+    };
+    
+    private final SelectionListener selectionListener = new SelectionListener() {
+        @Override public void regionSelected(ScreenRegion region, CameraToRasterTransform transform) {
+            final BitSet selected = new BitSet(pdbSource.getAtomCount());
+            statusLabel.setText("Selected " + atomSelector.select(transform, region, selected) + " atoms");
+            coloring.setHighlight(selected);
+        }
+    };
+    
+    private final ChangeListener<CameraToRasterTransform> detailListener =
+            new ChangeListener<CameraToRasterTransform>() {
+        @Override public void changed(ObservableValue<? extends CameraToRasterTransform> ob,
+                                      CameraToRasterTransform old, CameraToRasterTransform t) {
+            if ((t == null) || !t.isValid()) {
+                return;
+            }
+            // atoms drawn as impostors have no levels of detail, but their bonds still do
+            if (atoms != null) {
+                atoms.updateDetail(t);
+            }
+            if (bonds != null) {
+                bonds.updateDetail(t);
+            }
+        }
+    };
+    
+    private final ChangeListener<Transform> rotationListener = new ChangeListener<Transform>() {
+        @Override public void changed(ObservableValue<? extends Transform> ob, Transform old, Transform r) {
+            if (impostors != null) {
+                impostors.setRotation(r);
+            }
+        }
+    };
+    
+    private final AnchorOverlay.Placement ellipsePlacement = (n, x, y, r) -> {
+        final Ellipse ellipse = (Ellipse)n;
+        ellipse.setCenterX(x);
+        ellipse.setCenterY(y);
+        ellipse.setRadiusX(1.5 * r);
+        ellipse.setRadiusY(1.5 * r);
+    };
+    
     private Group buildGeometry() {
         Group geometryGroup = new Group();
         
-        Group atomGroup = new Group();
-        Group bondGroup = new Group();
-        PDBSource pdbSource = new PDBSource(new File("1BNA.pdb"));
-        atoms = pdbSource.getAtoms(0.4);
-        atomGroup.getChildren().addAll(atoms);
-        bondGroup.getChildren().addAll(pdbSource.getBonds(0.2));
+        CullingGroup atomGroup = new CullingGroup();
+        CullingGroup bondGroup = new CullingGroup();
+        pdbSource = new PDBSource(new File("1BNA.pdb"));
+        final int nAtoms = pdbSource.getAtomCount();
+        atomCoords = pdbSource.getAtomCoords();
+        final double[] atomRadii = new double[nAtoms];
+        Arrays.fill(atomRadii, ATOM_RADIUS);
+        if (nAtoms > IMPOSTOR_ATOM_COUNT) {
+            impostors = new ImpostorAtoms(atomCoords, atomRadii, nAtoms);
+            coloring = new AtomColoring(impostors);
+            atomGroup.getChildren().addAll(impostors.getChunks());
+        } else {
+            atoms = new BatchedAtoms(atomCoords, atomRadii, nAtoms, ATOM_DIVISIONS, ATOM_DETAIL);
+            coloring = new AtomColoring(atoms);
+            atomGroup.getChildren().addAll(atoms.getChunks());
+        }
+        colorByElement();
+        atomSelector = new PointSelector(atomCoords, nAtoms);
+        final int[] bondPairs = pdbSource.getBondPairs();
+        final int nBonds = bondPairs.length / 2;
+        final double[] bondCoords = new double[6 * nBonds];
+        for (int i = 0; i < nBonds; i++) {
+            System.arraycopy(atomCoords, 3 * bondPairs[2 * i], bondCoords, 6 * i, 3);
+            System.arraycopy(atomCoords, 3 * bondPairs[2 * i + 1], bondCoords, 6 * i + 3, 3);
+        }
+        final double[] bondRadii = new double[nBonds];
+        Arrays.fill(bondRadii, BOND_RADIUS);
+        bonds = new BatchedBonds(bondCoords, bondRadii, nBonds, BOND_DIVISIONS, BOND_DETAIL);
+        bondGroup.getChildren().addAll(bonds.getChunks());
+        picker = new RayPicker(atomCoords, atomRadii, nAtoms, bondCoords, bondRadii, nBonds);
         geometryGroup.getChildren().add(atomGroup);
+        pane3D.addCullingGroup(atomGroup);
         geometryGroup.getChildren().add(bondGroup);
+        pane3D.addCullingGroup(bondGroup);
+        geometryGroup.getChildren().add(cartoonGroup);
+        pane3D.addCullingGroup(cartoonGroup);
+        geometryGroup.getChildren().add(surfaceGroup);
+        pane3D.addCullingGroup(surfaceGroup);
+        geometryGroup.getChildren().add(mapGroup);
+        pane3D.addCullingGroup(mapGroup);
+        Cartoon.buildAsync(pdbSource.getBackboneTraces(), c -> cartoonGroup.getChildren().addAll(c.getChunks()));
         
         return geometryGroup;
     }
     
+    private void buildSurface(MolecularSurface.Type type) {
+        final int nAtoms = pdbSource.getAtomCount();
+        final double[] vdwRadii = new double[nAtoms];
+        for (int i = 0; i < nAtoms; i++) {
+            vdwRadii[i] = pdbSource.getVdwRadius(i);
+        }
+        MolecularSurface.buildAsync(atomCoords, vdwRadii, nAtoms, type, MolecularSurface.DEFAULT_PROBE_RADIUS,
+                                    MolecularSurface.DEFAULT_SPACING,
+                                    s -> surfaceGroup.getChildren().setAll(s.getChunks()));
+    }
+    
+    private void openDensityMap(Stage stage) {
+        final FileChooser chooser = new FileChooser();
+        chooser.setTitle("Open Density Map");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CCP4 and MRC maps",
+                                                                          "*.map", "*.ccp4", "*.mrc"));
+        final File file = chooser.showOpenDialog(stage);
+        if (file == null) {
+            return;
+        }
+        final DensityMap map;
+        try {
+            map = new DensityMap(file);
+        } catch (IOException e) {
+            final Alert alert = new Alert(Alert.AlertType.ERROR, "Could not open " + file.getName() + ":\n" +
+                                          e.getMessage());
+            alert.initOwner(stage);
+            alert.setHeaderText("Could not open density map");
+            alert.showAndWait();
+            return;
+        }
+        // start one and a half RMS deviations above the mean, or midway through the range if those are unset
+        final double level = (map.getHeaderRms() > 0)
+                           ? map.getHeaderMean() + MAP_LEVEL_RMS * map.getHeaderRms()
+                           : 0.5 * (map.getHeaderMinimum() + map.getHeaderMaximum());
+        Isosurface.buildAsync(map, level, this::showIsosurface);
+    }
+    
+    private void showIsosurface(Isosurface surface) {
+        if (isosurface != null) {
+            isosurface.levelProperty().unbind();
+            Bindings.unbindContent(mapGroup.getChildren(), isosurface.getChunks());
+        }
+        isosurface = surface;
+        mapLevelSlider.setMin(surface.getMinimum());
+        mapLevelSlider.setMax(surface.getMaximum());
+        mapLevelSlider.setValue(surface.getLevel());
+        mapLevelSlider.setVisible(true);
+        Bindings.bindContent(mapGroup.getChildren(), surface.getChunks());
+        surface.levelProperty().bind(mapLevelSlider.valueProperty());
+    }
+    
+    private void colorByElement() {
+        final int[] atomicNumbers = new int[pdbSource.getAtomCount()];
+        for (int i = 0; i < atomicNumbers.length; i++) {
+            atomicNumbers[i] = pdbSource.getAtomicNumber(i);
+        }
+        coloring.colorByElement(atomicNumbers);
+    }
+    
+    private boolean pickAt(double x, double y) {
+        final CameraToRasterTransform t = pane3D.transformToRasterProperty().get();
+        return (t != null) && picker.pick(t, x, y, pickHit);
+    }
+    
     private void updateViewPropertiesPane() {
         viewPropertiesPane.clearProperties();
         /*
@@ -183,11 +390,43 @@ public final class ArcballSampleApp extends Application {
 
     private final Pane3D pane3D = new Pane3D();
     private final ViewPropertiesPane viewPropertiesPane = new ViewPropertiesPane();
-    private List<VizAtom> atoms;
+    private PDBSource pdbSource;
+    private BatchedAtoms atoms;
+    private ImpostorAtoms impostors;
+    private final CullingGroup cartoonGroup = new CullingGroup();
+    private final CullingGroup surfaceGroup = new CullingGroup();
+    private final CullingGroup mapGroup = new CullingGroup();
+    private final Slider mapLevelSlider = new Slider();
+    private final Label statusLabel = new Label();
+    private Isosurface isosurface;
+    private AtomColoring coloring;
+    private BatchedBonds bonds;
+    private double[] atomCoords;
+    private PointSelector atomSelector;
+    private RayPicker picker;
+    private final RayPicker.Hit pickHit = new RayPicker.Hit();
     
-    private final Ellipse tempEllipse = new Ellipse(0, 0, 10, 10);
+    private final Ellipse highlightEllipse = new Ellipse(0, 0, 10, 10);
+    private int highlightAnchor = -1;
     
     private static final int DEFAULT_WIDTH  = 1024;
     private static final int DEFAULT_HEIGHT = 768;
     
+    private static final double ATOM_RADIUS = 0.4;
+    private static final int ATOM_DIVISIONS = 24;
+    private static final double BOND_RADIUS = 0.2;
+    private static final int BOND_DIVISIONS = 8;
+    
+    // sphere and cylinder divisions against the minimum radius in pixels at which they are used; thin bonds vanish
+    private static final DetailLevels ATOM_DETAIL = new DetailLevels(new int[] { 4, 8, 16, 24 },
+                                                                     new double[] { 0, 2, 6, 15 });
+    private static final DetailLevels BOND_DETAIL = new DetailLevels(new int[] { 0, 4, 6, 8 },
+                                                                     new double[] { 0, 0.75, 3, 8 });
+    
+    /** Structures with more atoms than this are drawn with sphere impostors. */
+    private static final int IMPOSTOR_ATOM_COUNT = 200000;
+    
+    /** Initial level of a density map isosurface, in RMS deviations above the mean density. */
+    private static final double MAP_LEVEL_RMS = 1.5;
+    
 }
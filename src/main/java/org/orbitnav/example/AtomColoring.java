@@ -0,0 +1,198 @@
+package org.orbitnav.example;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Colors atoms by element, chain or a per-atom value such as the B-factor, and highlights a selection, by rewriting
+ * only the palette and the per-atom color indices of {@link PaletteColored PaletteColored} atoms.
+ *
+ * <p>
+ * The palette holds each scheme color twice: once as it is, and once blended towards the highlight color.  A
+ * highlighted atom indexes the second copy, so that changing the highlight only changes the indices of the atoms
+ * whose highlight changed, and changing the highlight color only rewrites the palette.  The palette is padded to a
+ * power of two, so that schemes of similar size can replace each other without the atoms remapping their texture
+ * coordinates.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class AtomColoring {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Default color towards which highlighted atoms are blended. */
+    public static final Color DEFAULT_HIGHLIGHT_COLOR = Color.YELLOW;
+
+    /** Number of colors in the gradient used by {@link #colorByValue(double[], double, double) colorByValue}. */
+    public static final int GRADIENT_STEPS = 64;
+
+    /**
+     * Creates a new <code>AtomColoring</code>, which initially draws all atoms in light grey with nothing highlighted.
+     *
+     * @param atoms atoms to color
+     */
+    public AtomColoring(PaletteColored atoms) {
+        this.atoms = atoms;
+        this.count = atoms.getAtomCount();
+        this.schemeIndices = new int[count];
+        this.indices = new int[count];
+        setColors(new Color[] { Color.LIGHTGRAY }, schemeIndices);
+    }
+
+    /**
+     * Colors atoms by element, using {@link VizAtom#getElementColor(int) VizAtom.getElementColor}.
+     *
+     * @param atomicNumbers atomic number of each atom
+     */
+    public void colorByElement(int[] atomicNumbers) {
+        int maxNumber = 0;
+        for (int i = 0; i < count; i++) {
+            maxNumber = Math.max(maxNumber, atomicNumbers[i]);
+        }
+        final Color[] colors = new Color[maxNumber + 1];
+        for (int z = 0; z <= maxNumber; z++) {
+            colors[z] = VizAtom.getElementColor(z);
+        }
+        final int[] colorIndices = new int[count];
+        for (int i = 0; i < count; i++) {
+            colorIndices[i] = Math.max(0, atomicNumbers[i]);
+        }
+        setColors(colors, colorIndices);
+    }
+
+    /**
+     * Colors atoms by chain, with hues spread evenly around the color wheel.
+     *
+     * @param chainIndices index of the chain of each atom
+     * @param chainCount number of chains
+     */
+    public void colorByChain(int[] chainIndices, int chainCount) {
+        final Color[] colors = new Color[Math.max(1, chainCount)];
+        for (int c = 0; c < colors.length; c++) {
+            colors[c] = Color.hsb(360.0 * c / colors.length, CHAIN_SATURATION, CHAIN_BRIGHTNESS);
+        }
+        setColors(colors, chainIndices);
+    }
+
+    /**
+     * Colors atoms by a value, such as their B-factors, on a gradient from blue through white to red.  Values outside
+     * the range are clamped to it.
+     *
+     * @param values value of each atom
+     * @param low value drawn in blue
+     * @param high value drawn in red
+     */
+    public void colorByValue(double[] values, double low, double high) {
+        final Color[] colors = new Color[GRADIENT_STEPS];
+        for (int k = 0; k < GRADIENT_STEPS; k++) {
+            final double t = 2.0 * k / (GRADIENT_STEPS - 1);
+            colors[k] = (t <= 1.0) ? Color.BLUE.interpolate(Color.WHITE, t) : Color.WHITE.interpolate(Color.RED, t - 1);
+        }
+        final double scale = (high > low) ? (GRADIENT_STEPS - 1) / (high - low) : 0.0;
+        final int[] colorIndices = new int[count];
+        for (int i = 0; i < count; i++) {
+            final double k = Math.rint((values[i] - low) * scale);
+            colorIndices[i] = (int)Math.max(0, Math.min(GRADIENT_STEPS - 1, k));
+        }
+        setColors(colors, colorIndices);
+    }
+
+    /**
+     * Colors atoms from an arbitrary scheme.  The current highlight is kept.
+     *
+     * @param colors colors of the scheme (at least one)
+     * @param colorIndices index into the scheme colors for each atom
+     */
+    public void setColors(Color[] colors, int[] colorIndices) {
+        schemeColors = colors.clone();
+        schemeSize = Integer.highestOneBit(Math.max(1, colors.length - 1)) << 1;
+        System.arraycopy(colorIndices, 0, schemeIndices, 0, count);
+        for (int i = 0; i < count; i++) {
+            indices[i] = paletteIndex(i);
+        }
+        atoms.setPalette(buildPalette());
+        atoms.setColorIndices(indices);
+    }
+
+    /**
+     * Highlights a set of atoms, clearing the highlight of all others.  Only the color indices of atoms whose highlight
+     * changes are rewritten, unless so many change that rewriting all of them is cheaper.
+     *
+     * @param selected bits set for the atoms to highlight
+     */
+    public void setHighlight(BitSet selected) {
+        final BitSet changed = (BitSet)highlighted.clone();
+        changed.xor(selected);
+        highlighted.clear();
+        highlighted.or(selected);
+        if (changed.cardinality() > count / BULK_FRACTION) {
+            for (int i = changed.nextSetBit(0); (i >= 0) && (i < count); i = changed.nextSetBit(i + 1)) {
+                indices[i] = paletteIndex(i);
+            }
+            atoms.setColorIndices(indices);
+        } else {
+            for (int i = changed.nextSetBit(0); (i >= 0) && (i < count); i = changed.nextSetBit(i + 1)) {
+                indices[i] = paletteIndex(i);
+                atoms.setColorIndex(i, indices[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the highlighted atoms.
+     *
+     * @return new bitset of the highlighted atoms
+     */
+    public BitSet getHighlight() { return (BitSet)highlighted.clone(); }
+
+    /**
+     * Sets the color towards which highlighted atoms are blended.  Only the palette is rewritten.
+     *
+     * @param color highlight color
+     */
+    public void setHighlightColor(Color color) {
+        highlightColor = color;
+        atoms.setPalette(buildPalette());
+    }
+
+    public Color getHighlightColor() { return highlightColor; }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    /** Fraction of the highlight color blended into highlighted atoms. */
+    private static final double HIGHLIGHT_BLEND = 0.6;
+
+    /** Highlight changes affecting more than one in this many atoms rewrite the indices of all atoms. */
+    private static final int BULK_FRACTION = 16;
+
+    private static final double CHAIN_SATURATION = 0.6;
+    private static final double CHAIN_BRIGHTNESS = 0.95;
+
+    private final PaletteColored atoms;
+    private final int count;
+    private final int[] schemeIndices;
+    private final int[] indices;   // palette index of each atom, as last given to the atoms
+    private final BitSet highlighted = new BitSet();
+    private Color highlightColor = DEFAULT_HIGHLIGHT_COLOR;
+    private Color[] schemeColors;
+    private int schemeSize;        // scheme colors, padded to a power of two
+
+    private int paletteIndex(int atom) {
+        final int s = schemeIndices[atom];
+        final int base = ((s >= 0) && (s < schemeColors.length)) ? s : 0;
+        return highlighted.get(atom) ? base + schemeSize : base;
+    }
+
+    private Color[] buildPalette() {
+        final Color[] palette = new Color[2 * schemeSize];
+        Arrays.fill(palette, schemeColors[0]);
+        for (int k = 0; k < schemeColors.length; k++) {
+            palette[k] = schemeColors[k];
+            palette[k + schemeSize] = schemeColors[k].interpolate(highlightColor, HIGHLIGHT_BLEND);
+        }
+        return palette;
+    }
+
+}
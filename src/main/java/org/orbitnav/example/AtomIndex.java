@@ -0,0 +1,339 @@
+package org.orbitnav.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Answers atom selection queries from precomputed indexes.
+ *
+ * <p>
+ * For each attribute (such as <code>chain</code> or <code>element</code>), the index holds one bitset per distinct
+ * value, with a bit set for each atom that has that value.  Boolean operators are evaluated with whole-bitset
+ * operations, 64 atoms per word, and spatial predicates are answered from a uniform grid of the atom positions.
+ *
+ * <p>
+ * The query language is:
+ * <pre>
+ *   expr     := term ( "or" term )*
+ *   term     := factor ( "and" factor )*
+ *   factor   := "not" factor | primary
+ *   primary  := "(" expr ")" | "all" | "none"
+ *             | attribute value+
+ *             | "within" distance "of" factor
+ *             | name
+ * </pre>
+ * where <code>attribute</code> is any attribute that has been indexed, and <code>name</code> is a selection defined
+ * with {@link #defineSelection(String, BitSet) defineSelection}.  Keywords, attributes and values are
+ * case-insensitive.  For example: <code>chain A and element O</code>, <code>resname HOH WAT</code>, or
+ * <code>within 5 of (resname HEM) and not resname HEM</code>.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class AtomIndex {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Creates a new <code>AtomIndex</code>, with no attributes.  The coordinates are copied.
+     *
+     * @param xyz packed atom coordinates (x0, y0, z0, x1, ...)
+     * @param count number of atoms
+     */
+    public AtomIndex(double[] xyz, int count) {
+        this.count = count;
+        this.xyz = new double[3 * count];
+        System.arraycopy(xyz, 0, this.xyz, 0, 3 * count);
+        buildGrid();
+    }
+
+    /**
+     * Returns the number of atoms.
+     *
+     * @return number of atoms
+     */
+    public int getAtomCount() { return count; }
+
+    /**
+     * Records the value of an attribute for an atom.
+     *
+     * @param attribute attribute name, such as <code>chain</code>
+     * @param atom index of the atom
+     * @param value value of the attribute for the atom
+     */
+    public void setAttribute(String attribute, int atom, String value) {
+        final String key = attribute.toLowerCase(Locale.ROOT);
+        if (KEYWORDS.contains(key)) {
+            throw new IllegalArgumentException("Reserved attribute name: " + attribute);
+        }
+        Map<String, BitSet> values = attributes.get(key);
+        if (values == null) {
+            values = new HashMap<String, BitSet>();
+            attributes.put(key, values);
+        }
+        final String v = value.trim().toUpperCase(Locale.ROOT);
+        BitSet bits = values.get(v);
+        if (bits == null) {
+            bits = new BitSet(count);
+            values.put(v, bits);
+        }
+        bits.set(atom);
+    }
+
+    /**
+     * Defines a named selection, which may then be used in queries.
+     *
+     * @param name name of the selection
+     * @param atoms bits set for the selected atoms (copied)
+     */
+    public void defineSelection(String name, BitSet atoms) {
+        namedSelections.put(name.toLowerCase(Locale.ROOT), (BitSet)atoms.clone());
+    }
+
+    /**
+     * Evaluates a query.
+     *
+     * @param query selection query
+     * @return new bitset with bits set for the selected atoms
+     * @throws IllegalArgumentException if the query cannot be parsed
+     */
+    public BitSet select(String query) {
+        return new Parser(query).parse();
+    }
+
+    /**
+     * Selects the atoms within a distance of any atom in a selection.  The selection itself is included.
+     *
+     * @param distance distance, in units of the atom coordinates
+     * @param selection bits set for the atoms in the selection
+     * @return new bitset with bits set for the selected atoms
+     */
+    public BitSet within(double distance, BitSet selection) {
+        final BitSet result = (BitSet)selection.clone();
+        if (count == 0) {
+            return result;
+        }
+        final double d2 = distance * distance;
+        // no further than the whole grid, so that the cell bounds below cannot overflow for huge distances
+        final int reach = (int)Math.min(Math.ceil(distance / cellSize), Math.max(dim[0], Math.max(dim[1], dim[2])));
+        for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+            final double xi = xyz[3 * i], yi = xyz[3 * i + 1], zi = xyz[3 * i + 2];
+            final int cx = cellCoord(xi, x0), cy = cellCoord(yi, y0), cz = cellCoord(zi, z0);
+            for (int gz = Math.max(0, cz - reach); gz <= Math.min(dim[2] - 1, cz + reach); gz++) {
+                for (int gy = Math.max(0, cy - reach); gy <= Math.min(dim[1] - 1, cy + reach); gy++) {
+                    for (int gx = Math.max(0, cx - reach); gx <= Math.min(dim[0] - 1, cx + reach); gx++) {
+                        final int cell = (gz * dim[1] + gy) * dim[0] + gx;
+                        for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                            final int j = cellAtoms[k];
+                            if (result.get(j)) {
+                                continue;
+                            }
+                            final double dx = xyz[3 * j] - xi, dy = xyz[3 * j + 1] - yi, dz = xyz[3 * j + 2] - zi;
+                            if (dx * dx + dy * dy + dz * dz <= d2) {
+                                result.set(j);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    /** Preferred edge length of a grid cell, in Angstroms. */
+    private static final double PREFERRED_CELL_SIZE = 5.0;
+
+    private static final List<String> KEYWORDS = Arrays.asList(
+            "and", "or", "not", "all", "none", "within", "of", "(", ")");
+
+    private final int count;
+    private final double[] xyz;
+    private final Map<String, Map<String, BitSet>> attributes = new HashMap<String, Map<String, BitSet>>();
+    private final Map<String, BitSet> namedSelections = new HashMap<String, BitSet>();
+
+    // uniform grid of the atoms
+    private double x0, y0, z0;
+    private double cellSize;
+    private final int[] dim = new int[3];
+    private int[] cellStart;    // cell c holds cellAtoms[cellStart[c], cellStart[c+1])
+    private int[] cellAtoms;
+
+    private int cellCoord(double v, double origin) {
+        return (int)((v - origin) / cellSize);
+    }
+
+    private void buildGrid() {
+        if (count == 0) {
+            return;
+        }
+        x0 = Double.POSITIVE_INFINITY;
+        y0 = x0;
+        z0 = x0;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+        for (int i = 0; i < count; i++) {
+            x0 = Math.min(x0, xyz[3 * i]);
+            y0 = Math.min(y0, xyz[3 * i + 1]);
+            z0 = Math.min(z0, xyz[3 * i + 2]);
+            x1 = Math.max(x1, xyz[3 * i]);
+            y1 = Math.max(y1, xyz[3 * i + 1]);
+            z1 = Math.max(z1, xyz[3 * i + 2]);
+        }
+        // grow the cells if necessary, so that a sparse structure has no more cells than atoms
+        final double volume = Math.max(x1 - x0, 1) * Math.max(y1 - y0, 1) * Math.max(z1 - z0, 1);
+        cellSize = Math.max(PREFERRED_CELL_SIZE, Math.cbrt(volume / count));
+        dim[0] = cellCoord(x1, x0) + 1;
+        dim[1] = cellCoord(y1, y0) + 1;
+        dim[2] = cellCoord(z1, z0) + 1;
+
+        final int nCells = dim[0] * dim[1] * dim[2];
+        final int[] cellOf = new int[count];
+        cellStart = new int[nCells + 1];
+        for (int i = 0; i < count; i++) {
+            final int cell = (cellCoord(xyz[3 * i + 2], z0) * dim[1] + cellCoord(xyz[3 * i + 1], y0)) * dim[0] +
+                             cellCoord(xyz[3 * i], x0);
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < nCells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        final int[] cursor = cellStart.clone();
+        cellAtoms = new int[count];
+        for (int i = 0; i < count; i++) {
+            cellAtoms[cursor[cellOf[i]]++] = i;
+        }
+    }
+
+    private BitSet all() {
+        final BitSet bits = new BitSet(count);
+        bits.set(0, count);
+        return bits;
+    }
+
+    /** Recursive-descent parser and evaluator for queries. */
+    private final class Parser {
+        Parser(String query) {
+            this.query = query;
+            this.tokens = tokenize(query);
+        }
+        BitSet parse() {
+            final BitSet result = expr();
+            if (pos < tokens.size()) {
+                throw error("Unexpected '" + tokens.get(pos) + "'");
+            }
+            return result;
+        }
+        private BitSet expr() {
+            final BitSet result = term();
+            while (accept("or")) {
+                result.or(term());
+            }
+            return result;
+        }
+        private BitSet term() {
+            final BitSet result = factor();
+            while (accept("and")) {
+                result.and(factor());
+            }
+            return result;
+        }
+        private BitSet factor() {
+            if (accept("not")) {
+                final BitSet result = all();
+                result.andNot(factor());
+                return result;
+            }
+            return primary();
+        }
+        private BitSet primary() {
+            if (accept("(")) {
+                final BitSet result = expr();
+                expect(")");
+                return result;
+            }
+            if (accept("all")) {
+                return all();
+            }
+            if (accept("none")) {
+                return new BitSet(count);
+            }
+            if (accept("within")) {
+                final String d = next("distance");
+                final double distance;
+                try {
+                    distance = Double.parseDouble(d);
+                } catch (NumberFormatException ex) {
+                    throw error("Expected a distance but found '" + d + "'");
+                }
+                expect("of");
+                return within(distance, factor());
+            }
+            final String word = next("a selection").toLowerCase(Locale.ROOT);
+            final Map<String, BitSet> values = attributes.get(word);
+            if (values != null) {
+                final BitSet result = new BitSet(count);
+                int nValues = 0;
+                while ((pos < tokens.size()) && !KEYWORDS.contains(tokens.get(pos))) {
+                    final BitSet bits = values.get(tokens.get(pos++).toUpperCase(Locale.ROOT));
+                    if (bits != null) {
+                        result.or(bits);
+                    }
+                    nValues++;
+                }
+                if (nValues == 0) {
+                    throw error("Expected a value for '" + word + "'");
+                }
+                return result;
+            }
+            final BitSet named = namedSelections.get(word);
+            if (named != null) {
+                return (BitSet)named.clone();
+            }
+            throw error("Unknown attribute or selection '" + word + "'");
+        }
+        private boolean accept(String keyword) {
+            if ((pos < tokens.size()) && tokens.get(pos).equals(keyword)) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+        private void expect(String keyword) {
+            if (!accept(keyword)) {
+                throw error("Expected '" + keyword + "'");
+            }
+        }
+        private String next(String what) {
+            if (pos >= tokens.size()) {
+                throw error("Expected " + what);
+            }
+            return tokens.get(pos++);
+        }
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " in query \"" + query + "\"");
+        }
+        private final String query;
+        private final List<String> tokens;
+        private int pos = 0;
+    }
+
+    /** Splits a query into words and parentheses; words other than values are converted to lower case. */
+    private static List<String> tokenize(String query) {
+        final List<String> tokens = new ArrayList<String>();
+        final String spaced = query.replace("(", " ( ").replace(")", " ) ").trim();
+        if (!spaced.isEmpty()) {
+            for (String word : spaced.split("\\s+")) {
+                final String lower = word.toLowerCase(Locale.ROOT);
+                tokens.add(KEYWORDS.contains(lower) ? lower : word);
+            }
+        }
+        return tokens;
+    }
+
+}
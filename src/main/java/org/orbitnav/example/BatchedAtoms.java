@@ -0,0 +1,443 @@
+package org.orbitnav.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.Node;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+import org.orbitnav.CameraToRasterTransform;
+import org.orbitnav.MeshTemplate;
+import org.orbitnav.TessellationCache;
+
+/**
+ * Draws atoms as spheres merged into a small number of meshes.
+ *
+ * <p>
+ * A separate {@link javafx.scene.shape.Sphere Sphere} node for each atom costs far more in per-node overhead than in
+ * triangles.  Here, the atoms are instead split spatially into chunks of nearby atoms, and the spheres of each chunk
+ * are written into a single {@link TriangleMesh TriangleMesh}, so that a chunk can be culled or updated on its own.
+ * Each atom has its own texture coordinate, which points at a texel of a palette texture shared by all chunks, so
+ * that atoms are recoloured by rewriting texture coordinates or the palette rather than by changing materials.
+ *
+ * <p>
+ * Optionally, each chunk may be re-tessellated with fewer or more divisions as the camera moves, according to how
+ * large its atoms appear on the raster (see {@link #setDetailLevels(DetailLevels) setDetailLevels}).
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class BatchedAtoms implements PaletteColored {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Maximum number of mesh points in a chunk. */
+    public static final int MAX_CHUNK_POINTS = 1 << 16;
+
+    /**
+     * Creates a new <code>BatchedAtoms</code>.  All atoms are initially drawn in light grey.
+     *
+     * @param xyz packed atom coordinates (x0, y0, z0, x1, ...)
+     * @param radii radius of each atom
+     * @param count number of atoms
+     * @param divisions number of divisions of each sphere, as for {@link javafx.scene.shape.Sphere Sphere}
+     */
+    public BatchedAtoms(double[] xyz, double[] radii, int count, int divisions) {
+        this(xyz, radii, count, divisions, null);
+    }
+
+    /**
+     * Creates a new <code>BatchedAtoms</code> with levels of detail.  All atoms are initially drawn in light grey.
+     * Chunks are sized so that they stay within {@link #MAX_CHUNK_POINTS MAX_CHUNK_POINTS} at the finest of the
+     * levels as well as at the initial tessellation.
+     *
+     * @param xyz packed atom coordinates (x0, y0, z0, x1, ...)
+     * @param radii radius of each atom
+     * @param count number of atoms
+     * @param divisions initial number of divisions of each sphere, as for {@link javafx.scene.shape.Sphere Sphere}
+     * @param levels levels of detail, as for {@link #setDetailLevels(DetailLevels) setDetailLevels}, or
+     * <code>null</code>
+     */
+    public BatchedAtoms(double[] xyz, double[] radii, int count, int divisions, DetailLevels levels) {
+        this.count = count;
+        this.template = TessellationCache.getShared().sphere(divisions);
+        this.maxSpherePoints = Math.max(template.getPointCount(), spherePointCount(levels));
+        this.spherePoints = new float[3 * maxSpherePoints];
+        this.xyz = new double[3 * count];
+        System.arraycopy(xyz, 0, this.xyz, 0, 3 * count);
+        this.radii = new double[count];
+        System.arraycopy(radii, 0, this.radii, 0, count);
+        this.colorIndices = new int[count];
+        this.chunkOf = new int[count];
+        this.slotOf = new int[count];
+
+        setPalette(Color.LIGHTGRAY);
+
+        final int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        final int atomsPerChunk = Math.max(1, MAX_CHUNK_POINTS / maxSpherePoints);
+        final int maxChunks = (count + atomsPerChunk - 1) / atomsPerChunk;
+        chunkCenters = new double[3 * maxChunks];
+        chunkRadii = new double[maxChunks];
+        chunkFeatureRadii = new double[maxChunks];
+        chunkLevels = new int[maxChunks];
+        changedChunks = new int[maxChunks];
+        split(order, 0, count, atomsPerChunk);
+        detailLevels = levels;
+    }
+
+    /**
+     * Returns the number of atoms.
+     *
+     * @return number of atoms
+     */
+    @Override
+    public int getAtomCount() { return count; }
+
+    /**
+     * Returns the mesh views of the chunks, to be added to the scene graph.
+     *
+     * @return unmodifiable list of chunk mesh views
+     */
+    public List<MeshView> getChunks() { return Collections.unmodifiableList(views); }
+
+    /**
+     * Finds the atom that owns a face of a chunk, such as the face reported by a {@link javafx.scene.input.PickResult
+     * PickResult}.
+     *
+     * @param node node that was picked
+     * @param face index of the face within the node's mesh
+     * @return index of the atom, or -1 if the node is not a chunk of these atoms or the face is undefined
+     */
+    public int getAtom(Node node, int face) {
+        final Chunk chunk = chunkOfView.get(node);
+        if ((chunk == null) || (chunk.template == null) || (face < 0)) {
+            return -1;
+        }
+        final int slot = face / chunk.template.getFaceCount();
+        return (slot < chunk.atoms.length) ? chunk.atoms[slot] : -1;
+    }
+
+    /**
+     * Sets the palette.  Only the palette texture is rewritten, unless the number of colors changes.  Atoms whose color
+     * index lies outside the palette are drawn in its first color.
+     *
+     * @param colors palette colors (at least one)
+     */
+    @Override
+    public void setPalette(Color... colors) {
+        final int width = Integer.highestOneBit(Math.max(1, colors.length - 1)) << 1;
+        final boolean resized = (paletteImage == null) || (width != (int)paletteImage.getWidth());
+        if (resized) {
+            paletteImage = new WritableImage(width, 1);
+            material.setDiffuseMap(paletteImage);
+        }
+        final boolean remap = resized || (colors.length != paletteSize);
+        paletteSize = colors.length;
+        final PixelWriter writer = paletteImage.getPixelWriter();
+        for (int i = 0; i < width; i++) {
+            writer.setColor(i, 0, colors[Math.min(i, colors.length - 1)]);
+        }
+        if (remap) {
+            for (Chunk chunk : chunks) {
+                writeTexCoords(chunk);
+            }
+        }
+    }
+
+    /**
+     * Sets the palette color of an atom.  Only the texture coordinates of the atom's chunk are updated.
+     *
+     * @param atom index of the atom
+     * @param colorIndex index into the palette
+     */
+    @Override
+    public void setColorIndex(int atom, int colorIndex) {
+        colorIndices[atom] = colorIndex;
+        final float[] uv = { paletteU(colorIndex), 0.5f };
+        chunks.get(chunkOf[atom]).mesh.getTexCoords().set(2 * slotOf[atom], uv, 0, 2);
+    }
+
+    /**
+     * Sets the palette colors of all atoms.
+     *
+     * @param colorIndices index into the palette for each atom
+     */
+    @Override
+    public void setColorIndices(int[] colorIndices) {
+        System.arraycopy(colorIndices, 0, this.colorIndices, 0, count);
+        for (Chunk chunk : chunks) {
+            writeTexCoords(chunk);
+        }
+    }
+
+    /**
+     * Moves an atom.  Only the points of the atom's chunk are updated.
+     *
+     * @param atom index of the atom
+     * @param x new x coordinate
+     * @param y new y coordinate
+     * @param z new z coordinate
+     */
+    public void setAtomPosition(int atom, double x, double y, double z) {
+        xyz[3 * atom]     = x;
+        xyz[3 * atom + 1] = y;
+        xyz[3 * atom + 2] = z;
+        final int c = chunkOf[atom];
+        final double dx = x - chunkCenters[3 * c], dy = y - chunkCenters[3 * c + 1], dz = z - chunkCenters[3 * c + 2];
+        chunkRadii[c] = Math.max(chunkRadii[c], Math.sqrt(dx * dx + dy * dy + dz * dz) + radii[atom]);
+        final Chunk chunk = chunks.get(c);
+        if (chunk.template != null) {
+            final int length = chunk.template.getPoints().length;
+            writeSphere(atom, chunk.template, spherePoints, 0);
+            chunk.mesh.getPoints().set(length * slotOf[atom], spherePoints, 0, length);
+        }
+    }
+    
+    /**
+     * Sets the levels of detail used by {@link #updateDetail(CameraToRasterTransform) updateDetail}.  The chunks were
+     * sized when these atoms were created, so no level may be finer than the initial tessellation or the levels given
+     * then.
+     *
+     * @param levels levels of detail, or <code>null</code> to keep the current tessellation of each chunk
+     * @throws IllegalArgumentException if a level is finer than the chunks were sized for
+     */
+    public void setDetailLevels(DetailLevels levels) {
+        if (spherePointCount(levels) > maxSpherePoints) {
+            throw new IllegalArgumentException("levels of detail are finer than the chunks were sized for");
+        }
+        this.detailLevels = levels;
+        Arrays.fill(chunkLevels, -1);
+    }
+
+    /**
+     * Re-tessellates the chunks whose level of detail has changed for a new view.  Does nothing if no levels of detail
+     * have been set.  The chunks are assumed to share a parent.
+     *
+     * @param transform scene-to-raster transform of the new view
+     */
+    public void updateDetail(CameraToRasterTransform transform) {
+        if ((detailLevels == null) || chunks.isEmpty()) {
+            return;
+        }
+        final int nChanged = detailLevels.update(transform, views.get(0).getLocalToSceneTransform(), chunkCenters,
+                                                 chunkRadii, chunkFeatureRadii, chunks.size(), chunkLevels,
+                                                 changedChunks);
+        for (int k = 0; k < nChanged; k++) {
+            final Chunk chunk = chunks.get(changedChunks[k]);
+            final int divisions = detailLevels.getDivisions(chunkLevels[changedChunks[k]]);
+            chunk.template = (divisions > 0) ? TessellationCache.getShared().sphere(divisions) : null;
+            writeGeometry(chunk);
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final int count;
+    private final MeshTemplate template;
+    private final int maxSpherePoints;      // points of the finest sphere that the chunks were sized for
+    private final float[] spherePoints;     // scratch points of one sphere, for moving atoms
+    private final double[] xyz;
+    private final double[] radii;
+    private final int[] colorIndices;
+
+    private final int[] chunkOf;   // chunk of each atom
+    private final int[] slotOf;    // position of each atom within its chunk
+    private final List<Chunk> chunks = new ArrayList<Chunk>();
+    private final List<MeshView> views = new ArrayList<MeshView>();
+    private final Map<Node, Chunk> chunkOfView = new IdentityHashMap<Node, Chunk>();
+
+    // bounding spheres of the chunks, and the largest atom radius in each, for levels of detail
+    private double[] chunkCenters = new double[0];
+    private double[] chunkRadii = new double[0];
+    private double[] chunkFeatureRadii = new double[0];
+    private int[] chunkLevels = new int[0];
+    private int[] changedChunks = new int[0];
+    private DetailLevels detailLevels = null;
+
+    private final PhongMaterial material = new PhongMaterial(Color.WHITE);
+    private WritableImage paletteImage = null;
+    private int paletteSize;
+
+    private static final class Chunk {
+        Chunk(int[] atoms) {
+            this.atoms = atoms;
+        }
+        final int[] atoms;
+        final TriangleMesh mesh = new TriangleMesh();
+        MeshTemplate template;   // null when the chunk draws nothing
+    }
+
+    /** Number of points of a sphere at the finest of a set of levels of detail, or zero if there are none. */
+    private static int spherePointCount(DetailLevels levels) {
+        return (levels == null) ? 0 : TessellationCache.getShared().sphere(levels.getMaxDivisions()).getPointCount();
+    }
+
+    /**
+     * Splits a range of atoms in half along the longest axis of their bounds, until each range fits in a chunk.  As
+     * far as possible, the left half holds a whole number of full chunks.
+     */
+    private void split(int[] order, int start, int end, int atomsPerChunk) {
+        final int n = end - start;
+        if (n <= atomsPerChunk) {
+            if (n > 0) {
+                final int[] atoms = new int[n];
+                System.arraycopy(order, start, atoms, 0, n);
+                addChunk(atoms);
+            }
+            return;
+        }
+        double x0 = Double.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+        for (int k = start; k < end; k++) {
+            final int i = order[k];
+            x0 = Math.min(x0, xyz[3 * i]);
+            y0 = Math.min(y0, xyz[3 * i + 1]);
+            z0 = Math.min(z0, xyz[3 * i + 2]);
+            x1 = Math.max(x1, xyz[3 * i]);
+            y1 = Math.max(y1, xyz[3 * i + 1]);
+            z1 = Math.max(z1, xyz[3 * i + 2]);
+        }
+        final double dx = x1 - x0, dy = y1 - y0, dz = z1 - z0;
+        final int axis = (dx >= dy) ? ((dx >= dz) ? 0 : 2) : ((dy >= dz) ? 1 : 2);
+        final int nChunks = (n + atomsPerChunk - 1) / atomsPerChunk;
+        final int mid = start + atomsPerChunk * ((nChunks + 1) / 2);
+        select(order, start, end, mid, axis);
+        split(order, start, mid, atomsPerChunk);
+        split(order, mid, end, atomsPerChunk);
+    }
+
+    /** Partially sorts a range of atoms along an axis, so that the atom at index k is in its sorted position. */
+    private void select(int[] order, int start, int end, int k, int axis) {
+        int lo = start, hi = end - 1;
+        while (lo < hi) {
+            final double pivot = xyz[3 * order[(lo + hi) >>> 1] + axis];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (xyz[3 * order[i] + axis] < pivot) {
+                    i++;
+                }
+                while (xyz[3 * order[j] + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    final int t = order[i];
+                    order[i++] = order[j];
+                    order[j--] = t;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void addChunk(int[] atoms) {
+        final int c = chunks.size();
+        final Chunk chunk = new Chunk(atoms);
+        chunk.template = template;
+        for (int s = 0; s < atoms.length; s++) {
+            chunkOf[atoms[s]] = c;
+            slotOf[atoms[s]] = s;
+        }
+        writeGeometry(chunk);
+        writeTexCoords(chunk);
+
+        // bounding sphere about the center of the atom positions
+        double x = 0, y = 0, z = 0;
+        for (int i : atoms) {
+            x += xyz[3 * i];
+            y += xyz[3 * i + 1];
+            z += xyz[3 * i + 2];
+        }
+        x /= atoms.length;
+        y /= atoms.length;
+        z /= atoms.length;
+        double bound = 0, feature = 0;
+        for (int i : atoms) {
+            final double dx = xyz[3 * i] - x, dy = xyz[3 * i + 1] - y, dz = xyz[3 * i + 2] - z;
+            bound = Math.max(bound, Math.sqrt(dx * dx + dy * dy + dz * dz) + radii[i]);
+            feature = Math.max(feature, radii[i]);
+        }
+        chunkCenters[3 * c]     = x;
+        chunkCenters[3 * c + 1] = y;
+        chunkCenters[3 * c + 2] = z;
+        chunkRadii[c] = bound;
+        chunkFeatureRadii[c] = feature;
+        chunkLevels[c] = -1;
+
+        final MeshView view = new MeshView(chunk.mesh);
+        view.setMaterial(material);
+        chunks.add(chunk);
+        views.add(view);
+        chunkOfView.put(view, chunk);
+    }
+
+    /** Writes the points and faces of a chunk's mesh, from its current template. */
+    private void writeGeometry(Chunk chunk) {
+        if (chunk.template == null) {
+            chunk.mesh.getFaces().clear();
+            chunk.mesh.getPoints().clear();
+            return;
+        }
+        final int[] atoms = chunk.atoms;
+        final int nPoints = chunk.template.getPointCount();
+        final int nFaces = chunk.template.getFaceCount();
+        final int[] templateFaces = chunk.template.getFaces();
+        final float[] points = new float[3 * nPoints * atoms.length];
+        final int[] faces = new int[6 * nFaces * atoms.length];
+        for (int s = 0; s < atoms.length; s++) {
+            writeSphere(atoms[s], chunk.template, points, 3 * nPoints * s);
+            final int base = nPoints * s;
+            for (int f = 0, k = 6 * nFaces * s; f < templateFaces.length; f++, k += 2) {
+                faces[k]     = base + templateFaces[f];
+                faces[k + 1] = s;
+            }
+        }
+        // clear the faces first, so that they never refer to points beyond the end of a shorter point array
+        chunk.mesh.getFaces().clear();
+        chunk.mesh.getPoints().setAll(points);
+        chunk.mesh.getFaces().setAll(faces);
+    }
+
+    private void writeSphere(int atom, MeshTemplate template, float[] points, int offset) {
+        final float[] unit = template.getPoints();
+        final double x = xyz[3 * atom], y = xyz[3 * atom + 1], z = xyz[3 * atom + 2];
+        final double r = radii[atom];
+        for (int k = 0; k < unit.length; k += 3) {
+            points[offset + k]     = (float)(x + r * unit[k]);
+            points[offset + k + 1] = (float)(y + r * unit[k + 1]);
+            points[offset + k + 2] = (float)(z + r * unit[k + 2]);
+        }
+    }
+
+    private void writeTexCoords(Chunk chunk) {
+        final float[] uv = new float[2 * chunk.atoms.length];
+        for (int s = 0; s < chunk.atoms.length; s++) {
+            uv[2 * s]     = paletteU(colorIndices[chunk.atoms[s]]);
+            uv[2 * s + 1] = 0.5f;
+        }
+        chunk.mesh.getTexCoords().setAll(uv);
+    }
+
+    /** Texture u coordinate of the center of a palette texel. */
+    private float paletteU(int colorIndex) {
+        final int i = ((colorIndex >= 0) && (colorIndex < paletteSize)) ? colorIndex : 0;
+        return (float)((i + 0.5) / paletteImage.getWidth());
+    }
+
+}
@@ -0,0 +1,335 @@
+package org.orbitnav.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javafx.scene.Node;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+import org.orbitnav.CameraToRasterTransform;
+import org.orbitnav.MeshTemplate;
+import org.orbitnav.TessellationCache;
+
+/**
+ * Draws bonds as cylinders merged into a small number of meshes.
+ *
+ * <p>
+ * Each bond is written directly into the vertex array of its chunk, by scaling and orienting a shared unit-cylinder
+ * template.  The orientation is computed in closed form from the bond direction alone, with no intermediate transform
+ * objects.  Chunks are contiguous ranges of bonds, built in parallel on the common fork-join pool, so bonds should be
+ * given in a spatially coherent order (such as the order of their first atom) for chunks to cull well.
+ *
+ * <p>
+ * Optionally, each chunk may be re-tessellated with fewer or more divisions as the camera moves, or not drawn at all,
+ * according to how thick its bonds appear on the raster (see {@link #setDetailLevels(DetailLevels) setDetailLevels}).
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class BatchedBonds {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Maximum number of mesh points in a chunk. */
+    public static final int MAX_CHUNK_POINTS = 1 << 16;
+
+    /**
+     * Creates a new <code>BatchedBonds</code>.
+     *
+     * @param segments packed bond end points (ax0, ay0, az0, bx0, by0, bz0, ax1, ...)
+     * @param radii radius of each bond
+     * @param count number of bonds
+     * @param divisions number of divisions of each cylinder, as for {@link javafx.scene.shape.Cylinder Cylinder}
+     */
+    public BatchedBonds(double[] segments, double[] radii, int count, int divisions) {
+        this(segments, radii, count, divisions, null);
+    }
+
+    /**
+     * Creates a new <code>BatchedBonds</code> with levels of detail.  Chunks are sized so that they stay within
+     * {@link #MAX_CHUNK_POINTS MAX_CHUNK_POINTS} at the finest of the levels as well as at the initial tessellation.
+     *
+     * @param segments packed bond end points (ax0, ay0, az0, bx0, by0, bz0, ax1, ...)
+     * @param radii radius of each bond
+     * @param count number of bonds
+     * @param divisions initial number of divisions of each cylinder, as for
+     * {@link javafx.scene.shape.Cylinder Cylinder}
+     * @param levels levels of detail, as for {@link #setDetailLevels(DetailLevels) setDetailLevels}, or
+     * <code>null</code>
+     */
+    public BatchedBonds(double[] segments, double[] radii, int count, int divisions, DetailLevels levels) {
+        this.count = count;
+        this.segments = new double[6 * count];
+        System.arraycopy(segments, 0, this.segments, 0, 6 * count);
+        this.radii = new double[count];
+        System.arraycopy(radii, 0, this.radii, 0, count);
+        final MeshTemplate template = TessellationCache.getShared().cylinder(divisions, false);
+        this.maxCylinderPoints = Math.max(template.getPointCount(), cylinderPointCount(levels));
+        this.bondsPerChunk = Math.max(1, MAX_CHUNK_POINTS / maxCylinderPoints);
+
+        final int nChunks = (count + bondsPerChunk - 1) / bondsPerChunk;
+        templates = new MeshTemplate[nChunks];
+        Arrays.fill(templates, template);
+        chunkCenters = new double[3 * nChunks];
+        chunkRadii = new double[nChunks];
+        chunkFeatureRadii = new double[nChunks];
+        chunkLevels = new int[nChunks];
+        Arrays.fill(chunkLevels, -1);
+        changedChunks = new int[nChunks];
+        for (int c = 0; c < nChunks; c++) {
+            final TriangleMesh mesh = new TriangleMesh();
+            mesh.getTexCoords().setAll(0, 0);
+            final MeshView view = new MeshView(mesh);
+            meshes.add(mesh);
+            views.add(view);
+            chunkOfView.put(view, c);
+            computeBounds(c);
+            changedChunks[c] = c;
+        }
+        build(changedChunks, nChunks);
+        detailLevels = levels;
+    }
+
+    /**
+     * Returns the number of bonds.
+     *
+     * @return number of bonds
+     */
+    public int getBondCount() { return count; }
+
+    /**
+     * Returns the mesh views of the chunks, to be added to the scene graph.
+     *
+     * @return unmodifiable list of chunk mesh views
+     */
+    public List<MeshView> getChunks() { return Collections.unmodifiableList(views); }
+
+    /**
+     * Finds the bond that owns a face of a chunk, such as the face reported by a {@link javafx.scene.input.PickResult
+     * PickResult}.
+     *
+     * @param node node that was picked
+     * @param face index of the face within the node's mesh
+     * @return index of the bond, or -1 if the node is not a chunk of these bonds or the face is undefined
+     */
+    public int getBond(Node node, int face) {
+        final Integer chunk = chunkOfView.get(node);
+        if ((chunk == null) || (templates[chunk] == null) || (face < 0)) {
+            return -1;
+        }
+        final int bond = chunk * bondsPerChunk + face / templates[chunk].getFaceCount();
+        return (bond < count) ? bond : -1;
+    }
+
+    /**
+     * Sets the levels of detail used by {@link #updateDetail(CameraToRasterTransform) updateDetail}.  A level with
+     * zero divisions hides the bonds of a chunk.  The chunks were sized when these bonds were created, so no level may
+     * be finer than the initial tessellation or the levels given then.
+     *
+     * @param levels levels of detail, or <code>null</code> to keep the current tessellation of each chunk
+     * @throws IllegalArgumentException if a level is finer than the chunks were sized for
+     */
+    public void setDetailLevels(DetailLevels levels) {
+        if (cylinderPointCount(levels) > maxCylinderPoints) {
+            throw new IllegalArgumentException("levels of detail are finer than the chunks were sized for");
+        }
+        this.detailLevels = levels;
+        Arrays.fill(chunkLevels, -1);
+    }
+
+    /**
+     * Re-tessellates the chunks whose level of detail has changed for a new view, in parallel.  Does nothing if no
+     * levels of detail have been set.  The chunks are assumed to share a parent.
+     *
+     * @param transform scene-to-raster transform of the new view
+     */
+    public void updateDetail(CameraToRasterTransform transform) {
+        if ((detailLevels == null) || views.isEmpty()) {
+            return;
+        }
+        final int nChanged = detailLevels.update(transform, views.get(0).getLocalToSceneTransform(), chunkCenters,
+                                                 chunkRadii, chunkFeatureRadii, views.size(), chunkLevels,
+                                                 changedChunks);
+        for (int k = 0; k < nChanged; k++) {
+            final int divisions = detailLevels.getDivisions(chunkLevels[changedChunks[k]]);
+            templates[changedChunks[k]] = (divisions > 0) ?
+                    TessellationCache.getShared().cylinder(divisions, false) : null;
+        }
+        build(changedChunks, nChanged);
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final int count;
+    private final double[] segments;
+    private final double[] radii;
+    private final int maxCylinderPoints;    // points of the finest cylinder that the chunks were sized for
+    private final int bondsPerChunk;
+    private final List<TriangleMesh> meshes = new ArrayList<TriangleMesh>();
+    private final List<MeshView> views = new ArrayList<MeshView>();
+    private final Map<Node, Integer> chunkOfView = new IdentityHashMap<Node, Integer>();
+
+    private final MeshTemplate[] templates;   // current template of each chunk; null when the chunk draws nothing
+
+    // bounding spheres of the chunks, and the largest bond radius in each, for levels of detail
+    private final double[] chunkCenters;
+    private final double[] chunkRadii;
+    private final double[] chunkFeatureRadii;
+    private final int[] chunkLevels;
+    private final int[] changedChunks;
+    private DetailLevels detailLevels = null;
+
+    /** Builds the geometry of a list of chunks in parallel, then sets it on their meshes. */
+    private void build(int[] chunkList, int nChunks) {
+        if (nChunks == 0) {
+            return;
+        }
+        final float[][] chunkPoints = new float[nChunks][];
+        final int[][] chunkFaces = new int[nChunks][];
+        final ChunkAction root = new ChunkAction(chunkList, 0, nChunks, chunkPoints, chunkFaces);
+        if (nChunks == 1) {
+            root.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(root);
+        }
+        for (int k = 0; k < nChunks; k++) {
+            final TriangleMesh mesh = meshes.get(chunkList[k]);
+            // clear the faces first, so that they never refer to points beyond the end of a shorter point array
+            mesh.getFaces().clear();
+            mesh.getPoints().setAll(chunkPoints[k]);
+            mesh.getFaces().setAll(chunkFaces[k]);
+        }
+    }
+
+    /** Number of points of a cylinder at the finest of a set of levels of detail, or zero if there are none. */
+    private static int cylinderPointCount(DetailLevels levels) {
+        return (levels == null) ? 0 :
+                TessellationCache.getShared().cylinder(levels.getMaxDivisions(), false).getPointCount();
+    }
+
+    /** Computes the bounding sphere of a chunk about the center of its bond midpoints. */
+    private void computeBounds(int chunk) {
+        final int start = chunk * bondsPerChunk;
+        final int end = Math.min(start + bondsPerChunk, count);
+        double x = 0, y = 0, z = 0;
+        for (int i = start; i < end; i++) {
+            x += (segments[6 * i]     + segments[6 * i + 3]) / 2.0;
+            y += (segments[6 * i + 1] + segments[6 * i + 4]) / 2.0;
+            z += (segments[6 * i + 2] + segments[6 * i + 5]) / 2.0;
+        }
+        x /= (end - start);
+        y /= (end - start);
+        z /= (end - start);
+        double bound = 0, feature = 0;
+        for (int i = start; i < end; i++) {
+            for (int e = 0; e < 6; e += 3) {
+                final double dx = segments[6 * i + e] - x;
+                final double dy = segments[6 * i + e + 1] - y;
+                final double dz = segments[6 * i + e + 2] - z;
+                bound = Math.max(bound, Math.sqrt(dx * dx + dy * dy + dz * dz) + radii[i]);
+            }
+            feature = Math.max(feature, radii[i]);
+        }
+        chunkCenters[3 * chunk]     = x;
+        chunkCenters[3 * chunk + 1] = y;
+        chunkCenters[3 * chunk + 2] = z;
+        chunkRadii[chunk] = bound;
+        chunkFeatureRadii[chunk] = feature;
+    }
+
+    /** Writes the points and faces of a chunk with its current template. */
+    private void writeChunk(int chunk, float[][] chunkPoints, int[][] chunkFaces, int k) {
+        final int start = chunk * bondsPerChunk;
+        final int end = Math.min(start + bondsPerChunk, count);
+        final MeshTemplate template = templates[chunk];
+        if (template == null) {
+            chunkPoints[k] = new float[0];
+            chunkFaces[k] = new int[0];
+            return;
+        }
+        final float[] points = new float[template.getPoints().length * (end - start)];
+        final int[] faces = new int[2 * template.getFaces().length * (end - start)];
+        writeBonds(template, start, end, points, faces);
+        chunkPoints[k] = points;
+        chunkFaces[k] = faces;
+    }
+
+    /**
+     * Writes the points and faces of a range of bonds into arrays.  Slot <code>s</code> of the arrays holds bond
+     * <code>start + s</code>.
+     */
+    private void writeBonds(MeshTemplate template, int start, int end, float[] points, int[] faces) {
+        final float[] unit = template.getPoints();
+        final int[] unitFaces = template.getFaces();
+        final int nPoints = template.getPointCount();
+        for (int i = start, s = 0; i < end; i++, s++) {
+            final double ax = segments[6 * i],     ay = segments[6 * i + 1], az = segments[6 * i + 2];
+            final double bx = segments[6 * i + 3], by = segments[6 * i + 4], bz = segments[6 * i + 5];
+            double dx = bx - ax, dy = by - ay, dz = bz - az;
+            final double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (length > 0) {
+                dx /= length;
+                dy /= length;
+                dz /= length;
+            } else {
+                dz = 1.0;
+            }
+
+            // orthonormal basis (u, d, w) around the bond direction d, without branches on the direction
+            // (Duff et al., "Building an Orthonormal Basis, Revisited", JCGT 2017)
+            final double sign = Math.copySign(1.0, dz);
+            final double k = -1.0 / (sign + dz);
+            final double m = dx * dy * k;
+            final double r = radii[i];
+            final double ux = r * m,                  uy = r * (sign + dy * dy * k), uz = r * -dy;
+            final double wx = r * (1 + sign * dx * dx * k), wy = r * sign * m,   wz = r * -sign * dx;
+            final double cx = (ax + bx) / 2.0, cy = (ay + by) / 2.0, cz = (az + bz) / 2.0;
+            final double lx = length * dx, ly = length * dy, lz = length * dz;
+
+            // unit x maps to u, unit y to the bond axis, and unit z to w
+            for (int p = 0, q = 3 * nPoints * s; p < unit.length; p += 3, q += 3) {
+                final double x = unit[p], y = unit[p + 1], z = unit[p + 2];
+                points[q]     = (float)(cx + x * ux + y * lx + z * wx);
+                points[q + 1] = (float)(cy + x * uy + y * ly + z * wy);
+                points[q + 2] = (float)(cz + x * uz + y * lz + z * wz);
+            }
+            final int base = nPoints * s;
+            for (int f = 0, q = 2 * unitFaces.length * s; f < unitFaces.length; f++, q += 2) {
+                faces[q]     = base + unitFaces[f];
+                faces[q + 1] = 0;
+            }
+        }
+    }
+
+    /** Splits a range of a list of chunks in half until a single chunk remains, and builds it. */
+    private final class ChunkAction extends RecursiveAction {
+        ChunkAction(int[] chunkList, int first, int n, float[][] chunkPoints, int[][] chunkFaces) {
+            this.chunkList = chunkList;
+            this.first = first;
+            this.n = n;
+            this.chunkPoints = chunkPoints;
+            this.chunkFaces = chunkFaces;
+        }
+        @Override protected void compute() {
+            if (n == 1) {
+                writeChunk(chunkList[first], chunkPoints, chunkFaces, first);
+            } else {
+                final int half = n / 2;
+                invokeAll(new ChunkAction(chunkList, first, half, chunkPoints, chunkFaces),
+                          new ChunkAction(chunkList, first + half, n - half, chunkPoints, chunkFaces));
+            }
+        }
+        private final int[] chunkList;
+        private final int first;
+        private final int n;
+        private final float[][] chunkPoints;
+        private final int[][] chunkFaces;
+    }
+
+}
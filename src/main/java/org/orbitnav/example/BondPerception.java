@@ -0,0 +1,235 @@
+package org.orbitnav.example;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Perceives covalent bonds from atom positions and covalent radii.
+ *
+ * <p>
+ * Two atoms are bonded when the distance between them is no more than the sum of their covalent radii plus a
+ * tolerance, and no less than {@link #MIN_BOND_LENGTH MIN_BOND_LENGTH} (closer atoms are usually alternate locations
+ * of the same atom).  The atoms are binned into a spatial hash of cubic cells no smaller than the longest possible
+ * bond, so only atoms in the 27 cells around each atom need to be compared, and the cost is linear in the number of
+ * atoms.  Blocks of atoms are processed in parallel on the common fork-join pool.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class BondPerception {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Default tolerance added to the sum of covalent radii, in Angstroms. */
+    public static final double DEFAULT_TOLERANCE = 0.45;
+
+    /** Atoms closer than this distance, in Angstroms, are not bonded. */
+    public static final double MIN_BOND_LENGTH = 0.4;
+
+    /**
+     * Perceives bonds, using the {@link #DEFAULT_TOLERANCE default tolerance}.
+     *
+     * @param xyz packed atom coordinates (x0, y0, z0, x1, ...)
+     * @param covalentRadii covalent radius of each atom
+     * @param count number of atoms
+     * @return packed pairs of atom indices (a0, b0, a1, b1, ...), with each bond appearing once and a &lt; b, sorted by
+     *     a and then by b
+     */
+    public static int[] perceive(double[] xyz, double[] covalentRadii, int count) {
+        return perceive(xyz, covalentRadii, count, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Perceives bonds.
+     *
+     * @param xyz packed atom coordinates (x0, y0, z0, x1, ...)
+     * @param covalentRadii covalent radius of each atom
+     * @param count number of atoms
+     * @param tolerance tolerance added to the sum of covalent radii
+     * @return packed pairs of atom indices (a0, b0, a1, b1, ...), with each bond appearing once and a &lt; b, sorted by
+     *     a and then by b
+     */
+    public static int[] perceive(double[] xyz, double[] covalentRadii, int count, double tolerance) {
+        if (count < 2) {
+            return new int[0];
+        }
+        final BondPerception bp = new BondPerception(xyz, covalentRadii, count, tolerance);
+        final int nBlocks = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final int[][] blockPairs = new int[nBlocks][];
+        final int[] blockPairCounts = new int[nBlocks];
+        final BlockAction root = new BlockAction(bp, 0, nBlocks, blockPairs, blockPairCounts);
+        if (nBlocks == 1) {
+            root.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(root);
+        }
+
+        // blocks hold atoms in hash order; sort the pairs of all blocks by atom, so that bonds that are adjacent in the
+        // result are usually adjacent in space
+        int total = 0;
+        for (int b = 0; b < nBlocks; b++) {
+            total += blockPairCounts[b];
+        }
+        final long[] keys = new long[total];
+        int k = 0;
+        for (int b = 0; b < nBlocks; b++) {
+            final int[] blockPair = blockPairs[b];
+            for (int p = 0; p < blockPairCounts[b]; p++) {
+                keys[k++] = ((long)blockPair[2 * p] << 32) | blockPair[2 * p + 1];
+            }
+        }
+        Arrays.parallelSort(keys);
+        final int[] pairs = new int[2 * total];
+        for (int p = 0; p < total; p++) {
+            pairs[2 * p]     = (int)(keys[p] >>> 32);
+            pairs[2 * p + 1] = (int)keys[p];
+        }
+        return pairs;
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    /** Number of atoms in each block processed as a unit of parallel work. */
+    private static final int BLOCK_SIZE = 4096;
+
+    private final double tolerance;
+
+    // spatial hash: atom data sorted by bucket, so that the atoms of a bucket are contiguous in memory
+    private final int hashMask;
+    private final int[] bucketStart;    // bucket h holds sorted atoms [bucketStart[h], bucketStart[h+1])
+    private final int[] sortedAtoms;    // original index of each sorted atom
+    private final double[] sortedXyz;
+    private final double[] sortedRadii;
+    private final int[] sortedCells;    // packed (ix, iy, iz) per sorted atom
+
+    private BondPerception(double[] xyz, double[] radii, int count, double tolerance) {
+        this.tolerance = tolerance;
+
+        double maxRadius = 0;
+        double x0 = Double.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+        for (int i = 0; i < count; i++) {
+            maxRadius = Math.max(maxRadius, radii[i]);
+            x0 = Math.min(x0, xyz[3 * i]);
+            y0 = Math.min(y0, xyz[3 * i + 1]);
+            z0 = Math.min(z0, xyz[3 * i + 2]);
+        }
+        final double cellSize = Math.max(2.0 * maxRadius + tolerance, MIN_BOND_LENGTH);
+
+        // hash table with at least as many buckets as atoms
+        final int nBuckets = Integer.highestOneBit(Math.max(1, count - 1)) << 1;
+        this.hashMask = nBuckets - 1;
+        final int[] cells = new int[3 * count];
+        final int[] bucketOf = new int[count];
+        final int[] counts = new int[nBuckets + 1];
+        for (int i = 0; i < count; i++) {
+            final int ix = (int)((xyz[3 * i] - x0) / cellSize);
+            final int iy = (int)((xyz[3 * i + 1] - y0) / cellSize);
+            final int iz = (int)((xyz[3 * i + 2] - z0) / cellSize);
+            cells[3 * i]     = ix;
+            cells[3 * i + 1] = iy;
+            cells[3 * i + 2] = iz;
+            bucketOf[i] = hash(ix, iy, iz);
+            counts[bucketOf[i] + 1]++;
+        }
+        for (int h = 0; h < nBuckets; h++) {
+            counts[h + 1] += counts[h];
+        }
+        this.bucketStart = counts.clone();
+        this.sortedAtoms = new int[count];
+        this.sortedXyz = new double[3 * count];
+        this.sortedRadii = new double[count];
+        this.sortedCells = new int[3 * count];
+        for (int i = 0; i < count; i++) {
+            final int k = counts[bucketOf[i]]++;
+            sortedAtoms[k] = i;
+            sortedRadii[k] = radii[i];
+            System.arraycopy(xyz, 3 * i, sortedXyz, 3 * k, 3);
+            System.arraycopy(cells, 3 * i, sortedCells, 3 * k, 3);
+        }
+    }
+
+    private int hash(int ix, int iy, int iz) {
+        final int h = (ix * 73856093) ^ (iy * 19349663) ^ (iz * 83492791);
+        return (h ^ (h >>> 16)) & hashMask;
+    }
+
+    /**
+     * Finds the bonds from each sorted atom in a range to atoms with a higher original index.
+     *
+     * @return number of pairs written into out[0]; out[0] may be replaced by a larger array
+     */
+    private int bondsOfRange(int start, int end, int[][] out) {
+        final double[] xyz = sortedXyz;
+        final int[] cells = sortedCells;
+        int[] pairs = out[0];
+        int n = 0;
+        final double minLength2 = MIN_BOND_LENGTH * MIN_BOND_LENGTH;
+        for (int a = start; a < end; a++) {
+            final int i = sortedAtoms[a];
+            final double xi = xyz[3 * a], yi = xyz[3 * a + 1], zi = xyz[3 * a + 2];
+            final double ri = sortedRadii[a] + tolerance;
+            final int cx = cells[3 * a], cy = cells[3 * a + 1], cz = cells[3 * a + 2];
+            for (int dz = -1; dz <= 1; dz++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        final int nx = cx + dx, ny = cy + dy, nz = cz + dz;
+                        final int h = hash(nx, ny, nz);
+                        for (int b = bucketStart[h]; b < bucketStart[h + 1]; b++) {
+                            final int j = sortedAtoms[b];
+                            // other cells may share the bucket; only consider atoms that are really in this cell
+                            if ((j <= i) || (cells[3 * b] != nx) || (cells[3 * b + 1] != ny) ||
+                                    (cells[3 * b + 2] != nz))
+                            {
+                                continue;
+                            }
+                            final double ex = xyz[3 * b] - xi, ey = xyz[3 * b + 1] - yi, ez = xyz[3 * b + 2] - zi;
+                            final double d2 = ex * ex + ey * ey + ez * ez;
+                            final double maxLength = ri + sortedRadii[b];
+                            if ((d2 <= maxLength * maxLength) && (d2 >= minLength2)) {
+                                if (2 * n + 2 > pairs.length) {
+                                    pairs = Arrays.copyOf(pairs, 2 * pairs.length + 2);
+                                }
+                                pairs[2 * n]     = i;
+                                pairs[2 * n + 1] = j;
+                                n++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        out[0] = pairs;
+        return n;
+    }
+
+    /** Splits a range of blocks in half until a single block remains. */
+    private static final class BlockAction extends RecursiveAction {
+        BlockAction(BondPerception bp, int firstBlock, int nBlocks, int[][] blockPairs, int[] blockPairCounts) {
+            this.bp = bp;
+            this.firstBlock = firstBlock;
+            this.nBlocks = nBlocks;
+            this.blockPairs = blockPairs;
+            this.blockPairCounts = blockPairCounts;
+        }
+        @Override protected void compute() {
+            if (nBlocks == 1) {
+                final int start = firstBlock * BLOCK_SIZE;
+                final int end = Math.min(start + BLOCK_SIZE, bp.sortedAtoms.length);
+                // organic structures average about one bond (two indices) per atom
+                final int[][] out = { new int[2 * (end - start)] };
+                blockPairCounts[firstBlock] = bp.bondsOfRange(start, end, out);
+                blockPairs[firstBlock] = out[0];
+            } else {
+                final int half = nBlocks / 2;
+                invokeAll(new BlockAction(bp, firstBlock, half, blockPairs, blockPairCounts),
+                          new BlockAction(bp, firstBlock + half, nBlocks - half, blockPairs, blockPairCounts));
+            }
+        }
+        private final BondPerception bp;
+        private final int firstBlock;
+        private final int nBlocks;
+        private final int[][] blockPairs;
+        private final int[] blockPairCounts;
+    }
+
+}
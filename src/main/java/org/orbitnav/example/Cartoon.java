@@ -0,0 +1,595 @@
+package org.orbitnav.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * Draws the backbones of protein and nucleic-acid chains as a cartoon: a thin tube through coil, a flat ribbon
+ * through helices, a flat arrow along strands, and a thicker tube through nucleic acids.
+ *
+ * <p>
+ * Each chain is given as a {@link Trace Trace} of backbone atoms (alpha carbons, or phosphorus atoms of nucleic
+ * acids), with a guide atom per residue that fixes which way the ribbon faces.  A Catmull-Rom spline is run through
+ * the backbone atoms, and a profile is swept along it, blending between the profiles of neighbouring residues.
+ * Secondary structure is estimated from the distances between nearby alpha carbons, after P-SEA (Labesse et al.,
+ * 1997), since many files carry no helix or sheet records.
+ *
+ * <p>
+ * The chains are built in parallel on the common {@link ForkJoinPool ForkJoinPool}, and the results are packed into
+ * a few merged meshes.  Since the meshes are not yet part of a scene, the whole cartoon may be built off the JavaFX
+ * application thread (see {@link #buildAsync(List, Consumer) buildAsync}).  Colors come from a small palette texture
+ * indexed by the kind of backbone, so recoloring never touches the geometry.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class Cartoon {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Kind of backbone, which sets the profile and color of the cartoon. */
+    public enum Kind { COIL, HELIX, SHEET, NUCLEIC }
+
+    /** Maximum number of mesh points in a chunk. */
+    public static final int MAX_CHUNK_POINTS = 1 << 16;
+
+    /** Number of spline segments between consecutive residues. */
+    public static final int SEGMENTS_PER_RESIDUE = 8;
+
+    /** Number of points around each profile. */
+    public static final int PROFILE_POINTS = 12;
+
+    /**
+     * The backbone of one unbroken chain.
+     */
+    public static final class Trace {
+
+        /**
+         * Creates a new <code>Trace</code>.  The arrays are copied.
+         *
+         * @param points packed coordinates (x0, y0, z0, x1, ...) of the backbone atom of each residue
+         * @param guides packed coordinates of the guide atom of each residue (the carbonyl oxygen of an amino acid, or
+         *     a sugar carbon of a nucleotide), or NaN where a residue has none
+         * @param atoms index of the backbone atom of each residue, reported by {@link Cartoon#getAtom(Node, int)
+         *     getAtom}
+         * @param count number of residues
+         * @param nucleic <code>true</code> for a nucleic-acid backbone, <code>false</code> for a protein backbone
+         */
+        public Trace(double[] points, double[] guides, int[] atoms, int count, boolean nucleic) {
+            this.points = new double[3 * count];
+            System.arraycopy(points, 0, this.points, 0, 3 * count);
+            this.guides = new double[3 * count];
+            System.arraycopy(guides, 0, this.guides, 0, 3 * count);
+            this.atoms = new int[count];
+            System.arraycopy(atoms, 0, this.atoms, 0, count);
+            this.count = count;
+            this.nucleic = nucleic;
+        }
+
+        public int getResidueCount() { return count; }
+        public boolean isNucleic() { return nucleic; }
+
+        final double[] points;
+        final double[] guides;
+        final int[] atoms;
+        final int count;
+        final boolean nucleic;
+    }
+
+    /**
+     * Builds a cartoon on the common {@link ForkJoinPool ForkJoinPool}, and hands it to a callback on the JavaFX
+     * application thread.
+     *
+     * @param traces backbone traces of the chains
+     * @param onBuilt called with the cartoon once it has been built
+     */
+    public static void buildAsync(final List<Trace> traces, final Consumer<Cartoon> onBuilt) {
+        final List<Trace> copy = new ArrayList<Trace>(traces);
+        ForkJoinPool.commonPool().execute(() -> {
+            final Cartoon cartoon = new Cartoon(copy);
+            Platform.runLater(() -> onBuilt.accept(cartoon));
+        });
+    }
+
+    /**
+     * Creates a new <code>Cartoon</code>, building the chains in parallel.  Traces of fewer than two residues are
+     * skipped.
+     *
+     * @param traces backbone traces of the chains
+     */
+    public Cartoon(List<Trace> traces) {
+        for (Kind kind : Kind.values()) {
+            colors[kind.ordinal()] = DEFAULT_COLORS[kind.ordinal()];
+        }
+        writePalette();
+
+        final Trace[] traceArray = traces.toArray(new Trace[traces.size()]);
+        final Piece[][] pieces = new Piece[traceArray.length][];
+        if (traceArray.length == 1) {
+            pieces[0] = buildTrace(traceArray[0]);
+        } else if (traceArray.length > 1) {
+            ForkJoinPool.commonPool().invoke(new TraceAction(traceArray, pieces, 0, traceArray.length));
+        }
+        pack(pieces);
+    }
+
+    /**
+     * Returns the mesh views of the chunks, to be added to the scene graph.
+     *
+     * @return unmodifiable list of chunk mesh views
+     */
+    public List<MeshView> getChunks() { return Collections.unmodifiableList(views); }
+
+    /**
+     * Finds the backbone atom of the residue that owns a face of a chunk, such as the face reported by a
+     * {@link javafx.scene.input.PickResult PickResult}.
+     *
+     * @param node node that was picked
+     * @param face index of the face within the node's mesh
+     * @return index of the backbone atom, as given in its trace, or -1 if the node is not a chunk of this cartoon or
+     *     the face is undefined
+     */
+    public int getAtom(Node node, int face) {
+        final int[] faceAtoms = faceAtomsOfView.get(node);
+        if ((faceAtoms == null) || (face < 0) || (face >= faceAtoms.length)) {
+            return -1;
+        }
+        return faceAtoms[face];
+    }
+
+    /**
+     * Sets the color of a kind of backbone.  Only the palette texture is rewritten.
+     *
+     * @param kind kind of backbone
+     * @param color new color
+     */
+    public void setColor(Kind kind, Color color) {
+        colors[kind.ordinal()] = color;
+        writePalette();
+    }
+
+    public Color getColor(Kind kind) { return colors[kind.ordinal()]; }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final Color[] DEFAULT_COLORS = {
+        Color.web("#C8C8C8"), Color.web("#E03070"), Color.web("#F0C030"), Color.web("#FF8000")
+    };
+
+    // profile half-widths (along the ribbon) and half-thicknesses (across it), in angstroms, indexed by kind
+    private static final double[] HALF_WIDTHS = { 0.3, 1.2, 1.0, 0.6 };
+    private static final double[] HALF_THICKNESSES = { 0.3, 0.3, 0.25, 0.6 };
+
+    /** Half-width of the base of a strand's arrow head. */
+    private static final double ARROW_HALF_WIDTH = 1.6;
+
+    // P-SEA distances, in angstroms, between alpha carbons i and i+2, i+3 and i+4, with their tolerances
+    private static final double[] HELIX_DISTANCES = { 5.5, 5.3, 6.4 };
+    private static final double[] HELIX_TOLERANCES = { 0.5, 0.5, 0.6 };
+    private static final double[] STRAND_DISTANCES = { 6.7, 9.9, 12.4 };
+    private static final double[] STRAND_TOLERANCES = { 0.6, 0.9, 1.1 };
+
+    /** Minimum number of consecutive residues that start a helical window for a helix to be assigned. */
+    private static final int MIN_HELIX_RUN = 2;
+
+    /** Number of residues after the last residue to start a helical or extended window that are also assigned. */
+    private static final int WINDOW_EXTENT = 3;
+
+    private final Color[] colors = new Color[Kind.values().length];
+    private final WritableImage paletteImage = new WritableImage(Kind.values().length, 1);
+    private final PhongMaterial material = new PhongMaterial(Color.WHITE);
+    private final List<MeshView> views = new ArrayList<MeshView>();
+    private final Map<Node, int[]> faceAtomsOfView = new IdentityHashMap<Node, int[]>();
+
+    /** Part of a trace that fits in a chunk. */
+    private static final class Piece {
+        Piece(float[] points, int[] faces, int[] faceAtoms) {
+            this.points = points;
+            this.faces = faces;
+            this.faceAtoms = faceAtoms;
+        }
+        final float[] points;
+        final int[] faces;       // point and texture coordinate indices, relative to the piece
+        final int[] faceAtoms;   // backbone atom of each face
+    }
+
+    /** Splits a range of traces in half until a single trace remains, and builds it. */
+    private static final class TraceAction extends RecursiveAction {
+        TraceAction(Trace[] traces, Piece[][] pieces, int first, int n) {
+            this.traces = traces;
+            this.pieces = pieces;
+            this.first = first;
+            this.n = n;
+        }
+        @Override protected void compute() {
+            if (n == 1) {
+                pieces[first] = buildTrace(traces[first]);
+            } else {
+                final int half = n / 2;
+                invokeAll(new TraceAction(traces, pieces, first, half),
+                          new TraceAction(traces, pieces, first + half, n - half));
+            }
+        }
+        private final Trace[] traces;
+        private final Piece[][] pieces;
+        private final int first;
+        private final int n;
+    }
+
+    private void writePalette() {
+        for (int k = 0; k < colors.length; k++) {
+            paletteImage.getPixelWriter().setColor(k, 0, colors[k]);
+        }
+        material.setDiffuseMap(paletteImage);
+    }
+
+    /** Packs the pieces of all traces, in order, into as few chunks as fit. */
+    private void pack(Piece[][] pieces) {
+        final List<Piece> pending = new ArrayList<Piece>();
+        int nPoints = 0;
+        for (Piece[] tracePieces : pieces) {
+            if (tracePieces == null) {
+                continue;
+            }
+            for (Piece piece : tracePieces) {
+                if (nPoints + piece.points.length / 3 > MAX_CHUNK_POINTS) {
+                    addChunk(pending);
+                    pending.clear();
+                    nPoints = 0;
+                }
+                pending.add(piece);
+                nPoints += piece.points.length / 3;
+            }
+        }
+        if (!pending.isEmpty()) {
+            addChunk(pending);
+        }
+    }
+
+    private void addChunk(List<Piece> chunkPieces) {
+        int nPoints = 0, nFaces = 0;
+        for (Piece piece : chunkPieces) {
+            nPoints += piece.points.length / 3;
+            nFaces += piece.faceAtoms.length;
+        }
+        final float[] points = new float[3 * nPoints];
+        final int[] faces = new int[6 * nFaces];
+        final int[] faceAtoms = new int[nFaces];
+        int pointBase = 0, faceBase = 0;
+        for (Piece piece : chunkPieces) {
+            System.arraycopy(piece.points, 0, points, 3 * pointBase, piece.points.length);
+            for (int q = 0; q < piece.faces.length; q += 2) {
+                faces[6 * faceBase + q]     = piece.faces[q] + pointBase;
+                faces[6 * faceBase + q + 1] = piece.faces[q + 1];
+            }
+            System.arraycopy(piece.faceAtoms, 0, faceAtoms, faceBase, piece.faceAtoms.length);
+            pointBase += piece.points.length / 3;
+            faceBase += piece.faceAtoms.length;
+        }
+        final float[] texCoords = new float[2 * colors.length];
+        for (int k = 0; k < colors.length; k++) {
+            texCoords[2 * k]     = (k + 0.5f) / colors.length;
+            texCoords[2 * k + 1] = 0.5f;
+        }
+        final TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(points);
+        mesh.getTexCoords().setAll(texCoords);
+        mesh.getFaces().setAll(faces);
+        final MeshView view = new MeshView(mesh);
+        view.setMaterial(material);
+        views.add(view);
+        faceAtomsOfView.put(view, faceAtoms);
+    }
+
+    /** Sweeps the profiles along the spline of a trace, and splits the result into pieces that fit in chunks. */
+    private static Piece[] buildTrace(Trace trace) {
+        final int n = trace.count;
+        if (n < 2) {
+            return new Piece[0];
+        }
+        final Kind[] kinds = classify(trace);
+        final double[] sides = sideVectors(trace);
+
+        // rings: frame, profile size and owner of each cross-section along the spline
+        final int maxRings = (n - 1) * SEGMENTS_PER_RESIDUE + n + 1;
+        final double[] frames = new double[9 * maxRings];   // position, side, normal
+        final double[] sizes = new double[2 * maxRings];
+        final int[] ringKinds = new int[maxRings];
+        final int[] ringAtoms = new int[maxRings];
+        int nRings = 0;
+        final double[] p = new double[3], t = new double[3];
+        for (int i = 0; i < n - 1; i++) {
+            final Kind kind = kinds[i], next = kinds[i + 1];
+            final boolean arrow = (kind == Kind.SHEET) && (next != Kind.SHEET);
+            final int last = (i == n - 2) ? SEGMENTS_PER_RESIDUE : SEGMENTS_PER_RESIDUE - 1;
+            for (int k = 0; k <= last; k++) {
+                final double u = (double)k / SEGMENTS_PER_RESIDUE;
+                spline(trace.points, n, i, u, p, t);
+                final int owner = (u < 0.5) ? i : i + 1;
+                double a, b;
+                if (arrow) {
+                    if (k == 0) {
+                        // the back of the arrow head, at the full width of the strand
+                        nRings = addRing(frames, sizes, ringKinds, ringAtoms, nRings, p, t, sides, i, u,
+                                         HALF_WIDTHS[kind.ordinal()], HALF_THICKNESSES[kind.ordinal()],
+                                         Kind.SHEET, trace.atoms[i]);
+                    }
+                    a = lerp(ARROW_HALF_WIDTH, HALF_WIDTHS[next.ordinal()], u);
+                    b = lerp(HALF_THICKNESSES[kind.ordinal()], HALF_THICKNESSES[next.ordinal()], u);
+                } else {
+                    final double s = u * u * (3 - 2 * u);
+                    a = lerp(HALF_WIDTHS[kind.ordinal()], HALF_WIDTHS[next.ordinal()], s);
+                    b = lerp(HALF_THICKNESSES[kind.ordinal()], HALF_THICKNESSES[next.ordinal()], s);
+                }
+                nRings = addRing(frames, sizes, ringKinds, ringAtoms, nRings, p, t, sides, i, u, a, b,
+                                 arrow ? Kind.SHEET : kinds[owner], trace.atoms[owner]);
+            }
+        }
+
+        // split the rings into pieces that share their boundary rings
+        final int maxPieceRings = (MAX_CHUNK_POINTS - 2) / PROFILE_POINTS;
+        final List<Piece> pieces = new ArrayList<Piece>();
+        for (int start = 0; start < nRings - 1; ) {
+            final int end = Math.min(nRings - 1, start + maxPieceRings - 1);
+            pieces.add(buildPiece(frames, sizes, ringKinds, ringAtoms, start, end, start == 0, end == nRings - 1));
+            start = end;
+        }
+        return pieces.toArray(new Piece[pieces.size()]);
+    }
+
+    /** Adds a ring whose side vector is interpolated between two residues and made perpendicular to the tangent. */
+    private static int addRing(double[] frames, double[] sizes, int[] ringKinds, int[] ringAtoms, int r,
+                               double[] p, double[] t, double[] sides, int i, double u, double a, double b,
+                               Kind kind, int atom)
+    {
+        final double tl = Math.sqrt(t[0] * t[0] + t[1] * t[1] + t[2] * t[2]);
+        final double tx = t[0] / tl, ty = t[1] / tl, tz = t[2] / tl;
+        double sx = lerp(sides[3 * i],     sides[3 * i + 3], u);
+        double sy = lerp(sides[3 * i + 1], sides[3 * i + 4], u);
+        double sz = lerp(sides[3 * i + 2], sides[3 * i + 5], u);
+        final double st = sx * tx + sy * ty + sz * tz;
+        sx -= st * tx;
+        sy -= st * ty;
+        sz -= st * tz;
+        double sl = Math.sqrt(sx * sx + sy * sy + sz * sz);
+        if (sl < 1e-6) {
+            // the side vector runs along the tangent; any perpendicular will do
+            sx = (Math.abs(tx) < 0.9) ? 0 : 1;
+            sy = (Math.abs(tx) < 0.9) ? -tz : 0;
+            sz = (Math.abs(tx) < 0.9) ? ty : -tx;
+            sl = Math.sqrt(sx * sx + sy * sy + sz * sz);
+        }
+        sx /= sl;
+        sy /= sl;
+        sz /= sl;
+        final int f = 9 * r;
+        frames[f]     = p[0];
+        frames[f + 1] = p[1];
+        frames[f + 2] = p[2];
+        frames[f + 3] = sx;
+        frames[f + 4] = sy;
+        frames[f + 5] = sz;
+        // normal = tangent x side, so that (side, normal, tangent) is right-handed
+        frames[f + 6] = ty * sz - tz * sy;
+        frames[f + 7] = tz * sx - tx * sz;
+        frames[f + 8] = tx * sy - ty * sx;
+        sizes[2 * r]     = a;
+        sizes[2 * r + 1] = b;
+        ringKinds[r] = kind.ordinal();
+        ringAtoms[r] = atom;
+        return r + 1;
+    }
+
+    /** Writes the profile points of a range of rings, the faces joining them, and optionally caps at either end. */
+    private static Piece buildPiece(double[] frames, double[] sizes, int[] ringKinds, int[] ringAtoms,
+                                    int start, int end, boolean startCap, boolean endCap)
+    {
+        final int nRings = end - start + 1;
+        final int nPoints = PROFILE_POINTS * nRings + (startCap ? 1 : 0) + (endCap ? 1 : 0);
+        final int nFaces = 2 * PROFILE_POINTS * (nRings - 1)
+                         + PROFILE_POINTS * ((startCap ? 1 : 0) + (endCap ? 1 : 0));
+        final float[] points = new float[3 * nPoints];
+        final int[] faces = new int[6 * nFaces];
+        final int[] faceAtoms = new int[nFaces];
+
+        for (int r = 0; r < nRings; r++) {
+            final int fr = 9 * (start + r);
+            final double a = sizes[2 * (start + r)], b = sizes[2 * (start + r) + 1];
+            for (int j = 0; j < PROFILE_POINTS; j++) {
+                final double theta = 2 * Math.PI * j / PROFILE_POINTS;
+                final double c = a * Math.cos(theta), s = b * Math.sin(theta);
+                final int q = 3 * (PROFILE_POINTS * r + j);
+                points[q]     = (float)(frames[fr]     + c * frames[fr + 3] + s * frames[fr + 6]);
+                points[q + 1] = (float)(frames[fr + 1] + c * frames[fr + 4] + s * frames[fr + 7]);
+                points[q + 2] = (float)(frames[fr + 2] + c * frames[fr + 5] + s * frames[fr + 8]);
+            }
+        }
+
+        int nf = 0;
+        for (int r = 0; r < nRings - 1; r++) {
+            final int kind = ringKinds[start + r], atom = ringAtoms[start + r];
+            final int back = PROFILE_POINTS * r, front = back + PROFILE_POINTS;
+            for (int j = 0; j < PROFILE_POINTS; j++) {
+                final int jn = (j + 1) % PROFILE_POINTS;
+                nf = addFace(faces, faceAtoms, nf, back + j, back + jn, front + jn, kind, atom);
+                nf = addFace(faces, faceAtoms, nf, back + j, front + jn, front + j, kind, atom);
+            }
+        }
+        int center = PROFILE_POINTS * nRings;
+        if (startCap) {
+            System.arraycopy(toFloats(frames, 9 * start), 0, points, 3 * center, 3);
+            for (int j = 0; j < PROFILE_POINTS; j++) {
+                nf = addFace(faces, faceAtoms, nf, center, (j + 1) % PROFILE_POINTS, j,
+                             ringKinds[start], ringAtoms[start]);
+            }
+            center++;
+        }
+        if (endCap) {
+            System.arraycopy(toFloats(frames, 9 * end), 0, points, 3 * center, 3);
+            final int last = PROFILE_POINTS * (nRings - 1);
+            for (int j = 0; j < PROFILE_POINTS; j++) {
+                nf = addFace(faces, faceAtoms, nf, center, last + j, last + (j + 1) % PROFILE_POINTS,
+                             ringKinds[end], ringAtoms[end]);
+            }
+        }
+        return new Piece(points, faces, faceAtoms);
+    }
+
+    private static int addFace(int[] faces, int[] faceAtoms, int f, int p0, int p1, int p2, int kind, int atom) {
+        final int q = 6 * f;
+        faces[q]     = p0;
+        faces[q + 1] = kind;
+        faces[q + 2] = p1;
+        faces[q + 3] = kind;
+        faces[q + 4] = p2;
+        faces[q + 5] = kind;
+        faceAtoms[f] = atom;
+        return f + 1;
+    }
+
+    private static float[] toFloats(double[] xyz, int offset) {
+        return new float[] { (float)xyz[offset], (float)xyz[offset + 1], (float)xyz[offset + 2] };
+    }
+
+    private static double lerp(double a, double b, double u) { return a + (b - a) * u; }
+
+    /**
+     * Evaluates the Catmull-Rom spline through the backbone atoms, and its tangent, between residues i and i+1.  The
+     * ends are extended by reflecting the neighbouring atom.
+     */
+    private static void spline(double[] pts, int n, int i, double u, double[] p, double[] t) {
+        final double u2 = u * u, u3 = u2 * u;
+        for (int d = 0; d < 3; d++) {
+            final double p1 = pts[3 * i + d], p2 = pts[3 * (i + 1) + d];
+            final double p0 = (i > 0) ? pts[3 * (i - 1) + d] : 2 * p1 - p2;
+            final double p3 = (i + 2 < n) ? pts[3 * (i + 2) + d] : 2 * p2 - p1;
+            final double c1 = p2 - p0;
+            final double c2 = 2 * p0 - 5 * p1 + 4 * p2 - p3;
+            final double c3 = -p0 + 3 * p1 - 3 * p2 + p3;
+            p[d] = 0.5 * (2 * p1 + c1 * u + c2 * u2 + c3 * u3);
+            t[d] = 0.5 * (c1 + 2 * c2 * u + 3 * c3 * u2);
+        }
+    }
+
+    /**
+     * Computes a unit side vector for each residue, from its backbone atom towards its guide atom, perpendicular to the
+     * backbone and flipped where needed so that the ribbon never twists by more than a quarter turn per residue.
+     */
+    private static double[] sideVectors(Trace trace) {
+        final int n = trace.count;
+        final double[] pts = trace.points, guides = trace.guides;
+        final double[] sides = new double[3 * n];
+        double px = 0, py = 0, pz = 0;
+        boolean havePrevious = false;
+        for (int i = 0; i < n; i++) {
+            final int a = Math.max(0, i - 1), b = Math.min(n - 1, i + 1);
+            double tx = pts[3 * b] - pts[3 * a], ty = pts[3 * b + 1] - pts[3 * a + 1];
+            double tz = pts[3 * b + 2] - pts[3 * a + 2];
+            final double tl = Math.sqrt(tx * tx + ty * ty + tz * tz);
+            tx /= tl;
+            ty /= tl;
+            tz /= tl;
+            double sx = guides[3 * i] - pts[3 * i];
+            double sy = guides[3 * i + 1] - pts[3 * i + 1];
+            double sz = guides[3 * i + 2] - pts[3 * i + 2];
+            final double st = sx * tx + sy * ty + sz * tz;
+            sx -= st * tx;
+            sy -= st * ty;
+            sz -= st * tz;
+            final double sl = Math.sqrt(sx * sx + sy * sy + sz * sz);
+            if (!(sl > 1e-6)) {
+                // no usable guide: carry the previous side vector along (it is made perpendicular when swept)
+                if (havePrevious) {
+                    sx = px;
+                    sy = py;
+                    sz = pz;
+                } else {
+                    sx = (Math.abs(tx) < 0.9) ? 0 : 1;
+                    sy = (Math.abs(tx) < 0.9) ? -tz : 0;
+                    sz = (Math.abs(tx) < 0.9) ? ty : -tx;
+                }
+            } else {
+                sx /= sl;
+                sy /= sl;
+                sz /= sl;
+                if (havePrevious && (sx * px + sy * py + sz * pz < 0)) {
+                    sx = -sx;
+                    sy = -sy;
+                    sz = -sz;
+                }
+            }
+            sides[3 * i]     = px = sx;
+            sides[3 * i + 1] = py = sy;
+            sides[3 * i + 2] = pz = sz;
+            havePrevious = true;
+        }
+        return sides;
+    }
+
+    /** Estimates the secondary structure of each residue of a trace from its alpha carbon distances. */
+    private static Kind[] classify(Trace trace) {
+        final int n = trace.count;
+        final Kind[] kinds = new Kind[n];
+        Arrays.fill(kinds, trace.nucleic ? Kind.NUCLEIC : Kind.COIL);
+        if (trace.nucleic) {
+            return kinds;
+        }
+        final boolean[] helixStart = new boolean[n], strandStart = new boolean[n];
+        for (int i = 0; i + 4 < n; i++) {
+            helixStart[i] = matches(trace.points, i, HELIX_DISTANCES, HELIX_TOLERANCES);
+            strandStart[i] = matches(trace.points, i, STRAND_DISTANCES, STRAND_TOLERANCES);
+        }
+        assignRuns(kinds, strandStart, 1, Kind.SHEET);
+        assignRuns(kinds, helixStart, MIN_HELIX_RUN, Kind.HELIX);
+        return kinds;
+    }
+
+    /** Tests the distances from alpha carbon i to alpha carbons i+2, i+3 and i+4 against their expected values. */
+    private static boolean matches(double[] pts, int i, double[] distances, double[] tolerances) {
+        for (int k = 0; k < distances.length; k++) {
+            final int j = i + k + 2;
+            final double dx = pts[3 * j] - pts[3 * i], dy = pts[3 * j + 1] - pts[3 * i + 1];
+            final double dz = pts[3 * j + 2] - pts[3 * i + 2];
+            if (Math.abs(Math.sqrt(dx * dx + dy * dy + dz * dz) - distances[k]) > tolerances[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Assigns a kind to each run of window starts at least a minimum length, and to the residues that follow it. */
+    private static void assignRuns(Kind[] kinds, boolean[] starts, int minRun, Kind kind) {
+        final int n = kinds.length;
+        for (int i = 0; i < n; ) {
+            if (!starts[i]) {
+                i++;
+                continue;
+            }
+            int j = i;
+            while ((j < n) && starts[j]) {
+                j++;
+            }
+            if (j - i >= minRun) {
+                for (int k = i; k < Math.min(n, j + WINDOW_EXTENT); k++) {
+                    kinds[k] = kind;
+                }
+            }
+            i = j;
+        }
+    }
+
+}
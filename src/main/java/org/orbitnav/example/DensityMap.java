@@ -0,0 +1,313 @@
+package org.orbitnav.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A volumetric density map read from a CCP4 or MRC file, such as an electron-density or cryo-EM map.
+ *
+ * <p>
+ * Only the 1024-byte header is read onto the heap.  The voxels are memory-mapped read-only, so that maps of several
+ * gigabytes can be opened without the heap holding them, and the operating system pages in only the parts that are
+ * sampled.  Since a single mapping cannot exceed 2 GB, the voxels are mapped in regions of whole sections.
+ *
+ * <p>
+ * Voxels are addressed by their column, row and section, in the order in which they are stored.  The
+ * {@link #getModelCoordinates(double, double, double, double[]) getModelCoordinates} method maps those indices to
+ * cartesian coordinates in angstroms, taking account of the axis order, the start of the map within the unit cell,
+ * and the cell angles.  As in UCSF Chimera, a nonzero MRC2000 origin takes the place of the start indices.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class DensityMap {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Opens a map, reading its header and mapping its voxels.  Voxels may be signed bytes (mode 0), signed 16-bit
+     * integers (mode 1), 32-bit floats (mode 2) or unsigned 16-bit integers (mode 6), in either byte order.
+     *
+     * @param file CCP4 or MRC file
+     * @throws IOException if the file cannot be read, is not a map, or uses an unsupported voxel mode
+     */
+    public DensityMap(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("file is too short to be a map: " + file);
+            }
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("unexpected end of file: " + file);
+                }
+            }
+            header.order(detectByteOrder(header));
+
+            for (int a = 0; a < 3; a++) {
+                counts[a] = header.getInt(4 * a);
+                starts[a] = header.getInt(4 * (4 + a));
+                intervals[a] = header.getInt(4 * (7 + a));
+                cell[a] = header.getFloat(4 * (10 + a));
+                cell[3 + a] = header.getFloat(4 * (13 + a));
+                axes[a] = header.getInt(4 * (16 + a)) - 1;
+                origin[a] = header.getFloat(4 * (49 + a));
+                if (counts[a] <= 0) {
+                    throw new IOException("map has no voxels: " + file);
+                }
+            }
+            if (!isAxisPermutation(axes)) {
+                axes[0] = 0;
+                axes[1] = 1;
+                axes[2] = 2;
+            }
+            mode = header.getInt(4 * 3);
+            minimum = header.getFloat(4 * 19);
+            maximum = header.getFloat(4 * 20);
+            mean = header.getFloat(4 * 21);
+            rms = header.getFloat(4 * 54);
+            switch (mode) {
+                case MODE_INT8:    voxelBytes = 1; break;
+                case MODE_INT16:
+                case MODE_UINT16:  voxelBytes = 2; break;
+                case MODE_FLOAT32: voxelBytes = 4; break;
+                default: throw new IOException("unsupported map mode " + mode + ": " + file);
+            }
+
+            // the voxels follow the header and any extended header of symmetry records
+            final long dataOffset = HEADER_BYTES + (long)Math.max(0, header.getInt(4 * 23));
+            rowBytes = (long)counts[0] * voxelBytes;
+            sectionBytes = rowBytes * counts[1];
+            if (dataOffset + sectionBytes * counts[2] > fileSize) {
+                throw new IOException("map is truncated: " + file);
+            }
+            if (sectionBytes > Integer.MAX_VALUE) {
+                throw new IOException("map sections are too large to map: " + file);
+            }
+            sectionsPerRegion = (int)Math.max(1, Math.min(counts[2], MAX_REGION_BYTES / sectionBytes));
+            regions = new MappedByteBuffer[(counts[2] + sectionsPerRegion - 1) / sectionsPerRegion];
+            for (int k = 0; k < regions.length; k++) {
+                final int sections = Math.min(sectionsPerRegion, counts[2] - k * sectionsPerRegion);
+                final long regionOffset = dataOffset + (long)k * sectionsPerRegion * sectionBytes;
+                regions[k] = channel.map(FileChannel.MapMode.READ_ONLY, regionOffset, sections * sectionBytes);
+                regions[k].order(header.order());
+            }
+        }
+        buildIndexToModel();
+    }
+
+    /** Returns the number of columns, the fastest-varying index of the voxels. */
+    public int getColumnCount() { return counts[0]; }
+
+    /** Returns the number of rows. */
+    public int getRowCount() { return counts[1]; }
+
+    /** Returns the number of sections, the slowest-varying index of the voxels. */
+    public int getSectionCount() { return counts[2]; }
+
+    /** Returns the minimum density recorded in the header, which some programs leave unset. */
+    public float getHeaderMinimum() { return minimum; }
+
+    /** Returns the maximum density recorded in the header, which some programs leave unset. */
+    public float getHeaderMaximum() { return maximum; }
+
+    /** Returns the mean density recorded in the header. */
+    public float getHeaderMean() { return mean; }
+
+    /** Returns the RMS deviation of the density from its mean recorded in the header, or zero if it is unset. */
+    public float getHeaderRms() { return rms; }
+
+    /**
+     * Returns the density of a voxel.
+     *
+     * @param column column of the voxel
+     * @param row row of the voxel
+     * @param section section of the voxel
+     * @return density
+     */
+    public float getDensity(int column, int row, int section) {
+        final int k = section / sectionsPerRegion;
+        final long offset = (section - (long)k * sectionsPerRegion) * sectionBytes + row * rowBytes
+                          + (long)column * voxelBytes;
+        return read(regions[k], (int)offset);
+    }
+
+    /**
+     * Reads a box of voxels.  This may be called from several threads at once.
+     *
+     * @param column first column of the box
+     * @param row first row of the box
+     * @param section first section of the box
+     * @param nColumns number of columns in the box
+     * @param nRows number of rows in the box
+     * @param nSections number of sections in the box
+     * @param densities densities of the box, with columns varying fastest, then rows, then sections
+     */
+    public void readBox(int column, int row, int section, int nColumns, int nRows, int nSections, float[] densities) {
+        int i = 0;
+        for (int s = section; s < section + nSections; s++) {
+            final int k = s / sectionsPerRegion;
+            final MappedByteBuffer region = regions[k];
+            final long sectionOffset = (s - (long)k * sectionsPerRegion) * sectionBytes;
+            for (int r = row; r < row + nRows; r++) {
+                int offset = (int)(sectionOffset + r * rowBytes + (long)column * voxelBytes);
+                for (int c = 0; c < nColumns; c++, offset += voxelBytes) {
+                    densities[i++] = read(region, offset);
+                }
+            }
+        }
+    }
+
+    /**
+     * Converts voxel indices, which need not be whole, to cartesian coordinates.
+     *
+     * @param column column index
+     * @param row row index
+     * @param section section index
+     * @param xyz receives the coordinates (x, y, z), in angstroms
+     */
+    public void getModelCoordinates(double column, double row, double section, double[] xyz) {
+        for (int d = 0; d < 3; d++) {
+            xyz[d] = indexToModel[4 * d] * column + indexToModel[4 * d + 1] * row + indexToModel[4 * d + 2] * section
+                   + indexToModel[4 * d + 3];
+        }
+    }
+
+    /**
+     * Returns whether converting voxel indices to cartesian coordinates reverses handedness, as it does for an odd
+     * permutation of the axes, in which case the winding of triangles must be reversed to keep them facing outward.
+     *
+     * @return <code>true</code> if handedness is reversed
+     */
+    public boolean isMirroring() {
+        final double[] m = indexToModel;
+        final double det = m[0] * (m[5] * m[10] - m[6] * m[9]) - m[1] * (m[4] * m[10] - m[6] * m[8])
+                         + m[2] * (m[4] * m[9] - m[5] * m[8]);
+        return det < 0;
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final int HEADER_BYTES = 1024;
+    private static final long MAX_REGION_BYTES = 1L << 30;
+
+    private static final int MODE_INT8 = 0;
+    private static final int MODE_INT16 = 1;
+    private static final int MODE_FLOAT32 = 2;
+    private static final int MODE_UINT16 = 6;
+
+    // per file axis (column, row, section)
+    private final int[] counts = new int[3];
+    private final int[] starts = new int[3];
+    private final int[] axes = new int[3];        // cartesian axis (0 for x, 1 for y, 2 for z) of each file axis
+    // per cartesian axis (x, y, z)
+    private final int[] intervals = new int[3];   // number of samples across the unit cell
+    private final float[] origin = new float[3];
+    private final float[] cell = new float[6];    // a, b, c in angstroms, then alpha, beta, gamma in degrees
+
+    private final int mode;
+    private final int voxelBytes;
+    private final long rowBytes;
+    private final long sectionBytes;
+    private final int sectionsPerRegion;
+    private final MappedByteBuffer[] regions;
+    private final float minimum, maximum, mean, rms;
+
+    // rows of the affine transformation from (column, row, section, 1) to (x, y, z)
+    private final double[] indexToModel = new double[12];
+
+    /**
+     * Finds the byte order of the header from its machine stamp, or, if the stamp is not set, from whichever order
+     * gives a sensible voxel mode.
+     */
+    private static ByteOrder detectByteOrder(ByteBuffer header) {
+        final int stamp = header.get(4 * 53) & 0xFF;
+        if (stamp == 0x44) {
+            return ByteOrder.LITTLE_ENDIAN;
+        } else if (stamp == 0x11) {
+            return ByteOrder.BIG_ENDIAN;
+        }
+        final int mode = header.order(ByteOrder.LITTLE_ENDIAN).getInt(4 * 3);
+        return ((mode >= 0) && (mode < 0x10000)) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+    }
+
+    private static boolean isAxisPermutation(int[] axes) {
+        int seen = 0;
+        for (int axis : axes) {
+            if ((axis < 0) || (axis > 2)) {
+                return false;
+            }
+            seen |= 1 << axis;
+        }
+        return seen == 7;
+    }
+
+    private float read(MappedByteBuffer region, int offset) {
+        switch (mode) {
+            case MODE_INT8:   return region.get(offset);
+            case MODE_INT16:  return region.getShort(offset);
+            case MODE_UINT16: return region.getShort(offset) & 0xFFFF;
+            default:          return region.getFloat(offset);
+        }
+    }
+
+    /**
+     * Builds the transformation from voxel indices to cartesian coordinates: indices are scaled to fractions of the
+     * unit cell, which are then orthogonalized with the a axis along x and the b axis in the xy plane.
+     */
+    private void buildIndexToModel() {
+        final double[] lengths = new double[3];
+        final int[] sampling = new int[3];
+        for (int d = 0; d < 3; d++) {
+            final int a = fileAxis(d);
+            sampling[d] = (intervals[d] > 0) ? intervals[d] : counts[a];
+            // maps without a unit cell are taken to have one-angstrom voxels
+            lengths[d] = (cell[d] > 0) ? cell[d] : sampling[d];
+        }
+        final double alpha = angle(cell[3]), beta = angle(cell[4]), gamma = angle(cell[5]);
+        final double cosA = Math.cos(alpha), cosB = Math.cos(beta), cosG = Math.cos(gamma), sinG = Math.sin(gamma);
+        final double volume = Math.sqrt(Math.max(0, 1 - cosA * cosA - cosB * cosB - cosG * cosG
+                                                    + 2 * cosA * cosB * cosG));
+        // columns of the orthogonalization matrix are the cell axes
+        final double[][] cellAxes = {
+            { lengths[0], 0, 0 },
+            { lengths[1] * cosG, lengths[1] * sinG, 0 },
+            { lengths[2] * cosB, lengths[2] * (cosA - cosB * cosG) / sinG, lengths[2] * volume / sinG }
+        };
+        final boolean useOrigin = (origin[0] != 0) || (origin[1] != 0) || (origin[2] != 0);
+        for (int a = 0; a < 3; a++) {
+            final int d = axes[a];
+            final double start = useOrigin ? 0 : starts[a];
+            for (int e = 0; e < 3; e++) {
+                final double step = cellAxes[d][e] / sampling[d];
+                indexToModel[4 * e + a] = step;
+                indexToModel[4 * e + 3] += step * start;
+            }
+        }
+        if (useOrigin) {
+            for (int e = 0; e < 3; e++) {
+                indexToModel[4 * e + 3] += origin[e];
+            }
+        }
+    }
+
+    private int fileAxis(int cartesianAxis) {
+        for (int a = 0; a < 3; a++) {
+            if (axes[a] == cartesianAxis) {
+                return a;
+            }
+        }
+        return cartesianAxis;
+    }
+
+    /** Converts a cell angle to radians, taking an unset angle to be a right angle. */
+    private static double angle(float degrees) {
+        return Math.toRadians(((degrees > 0) && (degrees < 180)) ? degrees : 90);
+    }
+
+}
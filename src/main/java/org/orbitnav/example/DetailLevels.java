@@ -0,0 +1,172 @@
+package org.orbitnav.example;
+
+import javafx.scene.transform.Transform;
+
+import org.orbitnav.CameraToRasterTransform;
+
+/**
+ * Chooses how finely to tessellate chunks of spheres or cylinders, from how large they appear on the raster.
+ *
+ * <p>
+ * Each level has a number of divisions and a minimum size: the radius, in raster pixels, that a primitive must cover
+ * for the level to be used.  A level with zero divisions draws nothing, which lets thin bonds disappear when they
+ * would be smaller than a pixel.  The size of a chunk's primitives is estimated at the nearest point of the chunk's
+ * bounding sphere, so that no primitive is drawn more coarsely than intended.  To avoid popping back and forth when
+ * the size hovers around a threshold, a chunk only moves up a level once it is a fraction larger than the threshold,
+ * and only moves down once it is the same fraction smaller.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class DetailLevels {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Default fraction by which a size must pass a threshold to change level. */
+    public static final double DEFAULT_HYSTERESIS = 0.2;
+
+    /**
+     * Creates new <code>DetailLevels</code>, with the {@link #DEFAULT_HYSTERESIS default hysteresis}.
+     *
+     * @param divisions number of divisions of each level, from coarsest to finest
+     * @param minPixelRadii minimum radius on the raster, in pixels, of a primitive drawn at each level; increasing
+     * @see #DetailLevels(int[], double[], double)
+     */
+    public DetailLevels(int[] divisions, double[] minPixelRadii) {
+        this(divisions, minPixelRadii, DEFAULT_HYSTERESIS);
+    }
+
+    /**
+     * Creates new <code>DetailLevels</code>.
+     *
+     * @param divisions number of divisions of each level, from coarsest to finest; zero to draw nothing
+     * @param minPixelRadii minimum radius on the raster, in pixels, of a primitive drawn at each level; increasing
+     * @param hysteresis fraction by which a size must pass a threshold to change level
+     */
+    public DetailLevels(int[] divisions, double[] minPixelRadii, double hysteresis) {
+        if ((divisions.length == 0) || (divisions.length != minPixelRadii.length)) {
+            throw new IllegalArgumentException("need the same, non-zero number of divisions and radii");
+        }
+        for (int l = 1; l < minPixelRadii.length; l++) {
+            if (minPixelRadii[l] < minPixelRadii[l - 1]) {
+                throw new IllegalArgumentException("minimum radii must increase with level");
+            }
+        }
+        this.divisions = divisions.clone();
+        this.minPixelRadii = minPixelRadii.clone();
+        this.hysteresis = hysteresis;
+    }
+
+    public int getLevelCount() { return divisions.length; }
+    public int getDivisions(int level) { return divisions[level]; }
+    public double getMinPixelRadius(int level) { return minPixelRadii[level]; }
+    public double getHysteresis() { return hysteresis; }
+
+    /**
+     * Returns the largest number of divisions of any level, for sizing the chunks that the levels will tessellate.
+     *
+     * @return largest number of divisions
+     */
+    public int getMaxDivisions() {
+        int max = 0;
+        for (int d : divisions) {
+            max = Math.max(max, d);
+        }
+        return max;
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PACKAGE
+
+    /**
+     * Updates the levels of a batch of chunks for a new view.  Chunks that lie entirely behind the camera keep their
+     * current level.
+     *
+     * @param transform scene-to-raster transform of the view
+     * @param localToScene transform from the coordinates of the chunks to the scene
+     * @param centers packed centers of the bounding spheres of the chunks
+     * @param boundingRadii radii of the bounding spheres of the chunks
+     * @param featureRadii radius of the largest primitive in each chunk
+     * @param count number of chunks
+     * @param levels current level of each chunk, updated in place
+     * @param changed output indices of the chunks whose level changed
+     * @return number of chunks whose level changed
+     */
+    int update(CameraToRasterTransform transform, Transform localToScene, double[] centers, double[] boundingRadii,
+               double[] featureRadii, int count, int[] levels, int[] changed)
+    {
+        if (sceneCenters.length < 3 * count) {
+            sceneCenters = new double[3 * count];
+            sceneFeatureRadii = new double[count];
+            raster = new double[2 * count];
+            depth = new double[count];
+            pixelRadii = new double[count];
+        }
+        final Transform m = localToScene;
+        final double scale = Math.cbrt(Math.abs(m.determinant()));
+        for (int c = 0; c < count; c++) {
+            final double x = centers[3 * c], y = centers[3 * c + 1], z = centers[3 * c + 2];
+            sceneCenters[3 * c]     = m.getMxx() * x + m.getMxy() * y + m.getMxz() * z + m.getTx();
+            sceneCenters[3 * c + 1] = m.getMyx() * x + m.getMyy() * y + m.getMyz() * z + m.getTy();
+            sceneCenters[3 * c + 2] = m.getMzx() * x + m.getMzy() * y + m.getMzz() * z + m.getTz();
+            sceneFeatureRadii[c] = scale * featureRadii[c];
+        }
+        transform.transform(sceneCenters, 0, count, raster, depth, null);
+        transform.transformRadii(sceneCenters, sceneFeatureRadii, 0, count, pixelRadii);
+
+        int nChanged = 0;
+        for (int c = 0; c < count; c++) {
+            final double bound = scale * boundingRadii[c];
+            if (depth[c] + bound <= 0) {
+                continue;
+            }
+            // grow the size from the center of the bounds to their nearest point
+            final double near = depth[c] - bound;
+            final double pixels = (near > NEAR_EPSILON * depth[c]) ? pixelRadii[c] * depth[c] / near
+                                                                   : Double.POSITIVE_INFINITY;
+            final int level = select(levels[c], pixels);
+            if (level != levels[c]) {
+                levels[c] = level;
+                changed[nChanged++] = c;
+            }
+        }
+        return nChanged;
+    }
+
+    /**
+     * Chooses the level for a primitive of a given size, given its current level.
+     *
+     * @param current current level
+     * @param pixels radius of the primitive on the raster, in pixels
+     * @return new level
+     */
+    int select(int current, double pixels) {
+        int up = 0;
+        while ((up + 1 < minPixelRadii.length) && (pixels >= minPixelRadii[up + 1] * (1.0 + hysteresis))) {
+            up++;
+        }
+        if (up > current) {
+            return up;
+        }
+        int down = 0;
+        while ((down + 1 < minPixelRadii.length) && (pixels >= minPixelRadii[down + 1] * (1.0 - hysteresis))) {
+            down++;
+        }
+        return (down < current) ? down : current;
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    /** Fraction of the center depth below which the nearest point of a chunk is treated as touching the camera. */
+    private static final double NEAR_EPSILON = 1.0e-3;
+
+    private final int[] divisions;
+    private final double[] minPixelRadii;
+    private final double hysteresis;
+
+    // scratch arrays, reused between updates
+    private double[] sceneCenters = new double[0];
+    private double[] sceneFeatureRadii = new double[0];
+    private double[] raster = new double[0];
+    private double[] depth = new double[0];
+    private double[] pixelRadii = new double[0];
+
+}
@@ -0,0 +1,345 @@
+package org.orbitnav.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javafx.scene.Node;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.Affine;
+import javafx.scene.transform.Transform;
+
+/**
+ * Draws atoms as sphere impostors: camera-facing squares textured with a pre-shaded sphere.
+ *
+ * <p>
+ * Each atom costs two triangles and four points, rather than the hundreds of a tessellated sphere, which lets
+ * ribosome-scale structures fit in memory and render interactively.  The squares lie in the view plane, so they must
+ * be re-oriented whenever the camera rotates (see {@link #setRotation(Transform) setRotation}); this rewrites the
+ * points of all chunks in one parallel batch.  Translating or zooming the camera needs no update.
+ *
+ * <p>
+ * The texture is an atlas with one shaded sphere per palette color, and each atom's texture coordinates select the
+ * sphere of its color, so atoms are recoloured by rewriting texture coordinates or the palette.  Texels outside the
+ * sphere are fully transparent, and are discarded by the renderer.  Because the shading is baked into the texture,
+ * the impostors are lit from a fixed direction relative to the camera, and they intersect one another as flat squares
+ * rather than as spheres.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class ImpostorAtoms implements PaletteColored {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Maximum number of mesh points in a chunk. */
+    public static final int MAX_CHUNK_POINTS = 1 << 18;
+
+    /** Width and height of the shaded sphere of each palette color in the texture, in texels. */
+    public static final int TILE_SIZE = 64;
+
+    /**
+     * Creates a new <code>ImpostorAtoms</code>, facing a camera with no rotation.  All atoms are initially drawn in
+     * light grey.  Chunks are contiguous ranges of atoms, so atoms should be given in a spatially coherent order for
+     * chunks to cull well.
+     *
+     * @param xyz packed atom coordinates (x0, y0, z0, x1, ...)
+     * @param radii radius of each atom
+     * @param count number of atoms
+     */
+    public ImpostorAtoms(double[] xyz, double[] radii, int count) {
+        this.count = count;
+        this.xyz = new double[3 * count];
+        System.arraycopy(xyz, 0, this.xyz, 0, 3 * count);
+        this.radii = new double[count];
+        System.arraycopy(radii, 0, this.radii, 0, count);
+        this.colorIndices = new int[count];
+
+        setPalette(Color.LIGHTGRAY);
+
+        final int nChunks = (count + ATOMS_PER_CHUNK - 1) / ATOMS_PER_CHUNK;
+        chunkPoints = new float[nChunks][];
+        for (int c = 0; c < nChunks; c++) {
+            final int n = Math.min(ATOMS_PER_CHUNK, count - c * ATOMS_PER_CHUNK);
+            chunkPoints[c] = new float[12 * n];
+            final int[] faces = new int[12 * n];
+            for (int s = 0; s < n; s++) {
+                // corners 0 to 3 run clockwise on the raster from the top left; both faces point at the camera
+                final int p = 4 * s, f = 12 * s;
+                faces[f]      = p;      faces[f + 1]  = p;
+                faces[f + 2]  = p + 2;  faces[f + 3]  = p + 2;
+                faces[f + 4]  = p + 1;  faces[f + 5]  = p + 1;
+                faces[f + 6]  = p;      faces[f + 7]  = p;
+                faces[f + 8]  = p + 3;  faces[f + 9]  = p + 3;
+                faces[f + 10] = p + 2;  faces[f + 11] = p + 2;
+            }
+            final TriangleMesh mesh = new TriangleMesh();
+            mesh.getPoints().setAll(chunkPoints[c]);
+            mesh.getFaces().setAll(faces);
+            final MeshView view = new MeshView(mesh);
+            view.setMaterial(material);
+            meshes.add(mesh);
+            views.add(view);
+            chunkOfView.put(view, c);
+            writeTexCoords(c);
+        }
+        setRotation(new Affine());
+    }
+
+    /**
+     * Returns the number of atoms.
+     *
+     * @return number of atoms
+     */
+    @Override
+    public int getAtomCount() { return count; }
+
+    /**
+     * Returns the mesh views of the chunks, to be added to the scene graph.
+     *
+     * @return unmodifiable list of chunk mesh views
+     */
+    public List<MeshView> getChunks() { return Collections.unmodifiableList(views); }
+
+    /**
+     * Finds the atom that owns a face of a chunk, such as the face reported by a {@link javafx.scene.input.PickResult
+     * PickResult}.
+     *
+     * @param node node that was picked
+     * @param face index of the face within the node's mesh
+     * @return index of the atom, or -1 if the node is not a chunk of these atoms or the face is undefined
+     */
+    public int getAtom(Node node, int face) {
+        final Integer chunk = chunkOfView.get(node);
+        if ((chunk == null) || (face < 0)) {
+            return -1;
+        }
+        final int atom = chunk * ATOMS_PER_CHUNK + face / 2;
+        return (atom < count) ? atom : -1;
+    }
+
+    /**
+     * Sets the palette, and redraws the tiles of the texture atlas whose colors have changed.  The atlas image is
+     * reused, and the texture coordinates are left alone, unless the layout of the atlas or the number of colors
+     * changes.  Atoms whose color index lies outside
+     * the palette are drawn in its first color.
+     *
+     * @param colors palette colors (at least one)
+     */
+    @Override
+    public void setPalette(Color... colors) {
+        final int columns = (int)Math.ceil(Math.sqrt(colors.length));
+        final int rows = (colors.length + columns - 1) / columns;
+        final boolean resized = (atlas == null) || (columns != atlasColumns) || (rows != atlasRows);
+        if (resized) {
+            atlas = new WritableImage(columns * TILE_SIZE, rows * TILE_SIZE);
+            material.setDiffuseMap(atlas);
+        }
+        if (resized || (tileColors.length < colors.length)) {
+            tileColors = new Color[columns * rows];
+        }
+        final PixelWriter writer = atlas.getPixelWriter();
+        for (int i = 0; i < colors.length; i++) {
+            if (!colors[i].equals(tileColors[i])) {
+                drawSphere(writer, (i % columns) * TILE_SIZE, (i / columns) * TILE_SIZE, colors[i]);
+                tileColors[i] = colors[i];
+            }
+        }
+        final boolean remap = resized || (colors.length != paletteSize);
+        atlasColumns = columns;
+        atlasRows = rows;
+        paletteSize = colors.length;
+        if (remap) {
+            for (int c = 0; c < meshes.size(); c++) {
+                writeTexCoords(c);
+            }
+        }
+    }
+
+    /**
+     * Sets the palette color of an atom.  Only the texture coordinates of the atom's chunk are updated.
+     *
+     * @param atom index of the atom
+     * @param colorIndex index into the palette
+     */
+    @Override
+    public void setColorIndex(int atom, int colorIndex) {
+        colorIndices[atom] = colorIndex;
+        final float[] uv = new float[8];
+        writeCorners(colorIndex, uv, 0);
+        meshes.get(atom / ATOMS_PER_CHUNK).getTexCoords().set(8 * (atom % ATOMS_PER_CHUNK), uv, 0, 8);
+    }
+
+    /**
+     * Sets the palette colors of all atoms.
+     *
+     * @param colorIndices index into the palette for each atom
+     */
+    @Override
+    public void setColorIndices(int[] colorIndices) {
+        System.arraycopy(colorIndices, 0, this.colorIndices, 0, count);
+        for (int c = 0; c < meshes.size(); c++) {
+            writeTexCoords(c);
+        }
+    }
+
+    /**
+     * Turns the impostors to face a camera.  The points of all chunks are rewritten in parallel.
+     *
+     * @param cameraRotation rotation of the camera, taking directions in the frame of the camera into the frame of the
+     *     atoms, such as {@link org.orbitnav.Pane3D#transformRotationOnlyProperty()
+     *     Pane3D.transformRotationOnlyProperty()} when the atoms are not themselves rotated
+     */
+    public void setRotation(Transform cameraRotation) {
+        // the camera's x (right) and y (down) axes, in the frame of the atoms
+        final double rx = cameraRotation.getMxx(), ry = cameraRotation.getMyx(), rz = cameraRotation.getMzx();
+        final double dx = cameraRotation.getMxy(), dy = cameraRotation.getMyy(), dz = cameraRotation.getMzy();
+        final int nChunks = chunkPoints.length;
+        if (nChunks == 0) {
+            return;
+        }
+        final CornerAction root = new CornerAction(rx, ry, rz, dx, dy, dz, 0, nChunks);
+        if (nChunks == 1) {
+            root.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(root);
+        }
+        for (int c = 0; c < nChunks; c++) {
+            meshes.get(c).getPoints().set(0, chunkPoints[c], 0, chunkPoints[c].length);
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final int ATOMS_PER_CHUNK = MAX_CHUNK_POINTS / 4;
+
+    // direction towards the light, in the frame of the camera: up, left and towards the viewer
+    private static final double LIGHT_X = -0.4, LIGHT_Y = -0.5, LIGHT_Z = -0.768;
+    private static final double AMBIENT = 0.3;
+    private static final double SPECULAR = 0.35;
+    private static final double SHININESS = 24.0;
+
+    private final int count;
+    private final double[] xyz;
+    private final double[] radii;
+    private final int[] colorIndices;
+
+    private final float[][] chunkPoints;   // reused between rotations
+    private final List<TriangleMesh> meshes = new ArrayList<TriangleMesh>();
+    private final List<MeshView> views = new ArrayList<MeshView>();
+    private final Map<Node, Integer> chunkOfView = new IdentityHashMap<Node, Integer>();
+
+    private final PhongMaterial material = new PhongMaterial(Color.WHITE);
+    private WritableImage atlas = null;
+    private Color[] tileColors = new Color[0];   // color drawn in each tile of the atlas
+    private int atlasColumns = 0;
+    private int atlasRows = 0;
+    private int paletteSize = 0;
+
+    /** Draws a sphere shaded in a color, seen from the camera, into a tile of the atlas. */
+    private static void drawSphere(PixelWriter writer, int x0, int y0, Color color) {
+        // half-way vector between the light and the viewer, for the specular highlight
+        final double hx = LIGHT_X, hy = LIGHT_Y, hz = LIGHT_Z - 1.0;
+        final double hLength = Math.sqrt(hx * hx + hy * hy + hz * hz);
+        for (int y = 0; y < TILE_SIZE; y++) {
+            for (int x = 0; x < TILE_SIZE; x++) {
+                final double nx = 2.0 * (x + 0.5) / TILE_SIZE - 1.0;
+                final double ny = 2.0 * (y + 0.5) / TILE_SIZE - 1.0;
+                final double r2 = nx * nx + ny * ny;
+                if (r2 > 1.0) {
+                    writer.setColor(x0 + x, y0 + y, Color.TRANSPARENT);
+                    continue;
+                }
+                // the visible surface faces the camera, along negative z
+                final double nz = -Math.sqrt(1.0 - r2);
+                final double diffuse = Math.max(0.0, nx * LIGHT_X + ny * LIGHT_Y + nz * LIGHT_Z);
+                final double nh = Math.max(0.0, (nx * hx + ny * hy + nz * hz) / hLength);
+                final double shade = AMBIENT + (1.0 - AMBIENT) * diffuse;
+                final double highlight = SPECULAR * Math.pow(nh, SHININESS);
+                writer.setColor(x0 + x, y0 + y,
+                                Color.color(Math.min(1.0, color.getRed() * shade + highlight),
+                                            Math.min(1.0, color.getGreen() * shade + highlight),
+                                            Math.min(1.0, color.getBlue() * shade + highlight)));
+            }
+        }
+    }
+
+    private void writeTexCoords(int chunk) {
+        final int start = chunk * ATOMS_PER_CHUNK;
+        final int n = Math.min(ATOMS_PER_CHUNK, count - start);
+        final float[] uv = new float[8 * n];
+        for (int s = 0; s < n; s++) {
+            writeCorners(colorIndices[start + s], uv, 8 * s);
+        }
+        meshes.get(chunk).getTexCoords().setAll(uv);
+    }
+
+    /** Writes the texture coordinates of the four corners of the tile of a palette color. */
+    private void writeCorners(int colorIndex, float[] uv, int offset) {
+        final int i = ((colorIndex >= 0) && (colorIndex < paletteSize)) ? colorIndex : 0;
+        final float u0 = (float)(i % atlasColumns) / atlasColumns, u1 = u0 + 1.0f / atlasColumns;
+        final float v0 = (float)(i / atlasColumns) / atlasRows,    v1 = v0 + 1.0f / atlasRows;
+        uv[offset]     = u0;  uv[offset + 1] = v0;
+        uv[offset + 2] = u1;  uv[offset + 3] = v0;
+        uv[offset + 4] = u1;  uv[offset + 5] = v1;
+        uv[offset + 6] = u0;  uv[offset + 7] = v1;
+    }
+
+    /** Splits a range of chunks in half until a single chunk remains, and writes its corner points. */
+    private final class CornerAction extends RecursiveAction {
+        CornerAction(double rx, double ry, double rz, double dx, double dy, double dz, int firstChunk, int nChunks) {
+            this.rx = rx;
+            this.ry = ry;
+            this.rz = rz;
+            this.dx = dx;
+            this.dy = dy;
+            this.dz = dz;
+            this.firstChunk = firstChunk;
+            this.nChunks = nChunks;
+        }
+        @Override protected void compute() {
+            if (nChunks == 1) {
+                final float[] points = chunkPoints[firstChunk];
+                final int start = firstChunk * ATOMS_PER_CHUNK;
+                final int n = points.length / 12;
+                for (int s = 0; s < n; s++) {
+                    final int i = start + s;
+                    final double r = radii[i];
+                    final double x = xyz[3 * i], y = xyz[3 * i + 1], z = xyz[3 * i + 2];
+                    final double ax = r * (rx + dx), ay = r * (ry + dy), az = r * (rz + dz);   // right + down
+                    final double bx = r * (rx - dx), by = r * (ry - dy), bz = r * (rz - dz);   // right - down
+                    final int p = 12 * s;
+                    points[p]      = (float)(x - ax);
+                    points[p + 1]  = (float)(y - ay);
+                    points[p + 2]  = (float)(z - az);
+                    points[p + 3]  = (float)(x + bx);
+                    points[p + 4]  = (float)(y + by);
+                    points[p + 5]  = (float)(z + bz);
+                    points[p + 6]  = (float)(x + ax);
+                    points[p + 7]  = (float)(y + ay);
+                    points[p + 8]  = (float)(z + az);
+                    points[p + 9]  = (float)(x - bx);
+                    points[p + 10] = (float)(y - by);
+                    points[p + 11] = (float)(z - bz);
+                }
+            } else {
+                final int half = nChunks / 2;
+                invokeAll(new CornerAction(rx, ry, rz, dx, dy, dz, firstChunk, half),
+                          new CornerAction(rx, ry, rz, dx, dy, dz, firstChunk + half, nChunks - half));
+            }
+        }
+        private final double rx, ry, rz;
+        private final double dx, dy, dz;
+        private final int firstChunk;
+        private final int nChunks;
+    }
+
+}
@@ -0,0 +1,382 @@
+package org.orbitnav.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+import javafx.application.Platform;
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * An isosurface of a {@link DensityMap DensityMap}, drawn as chunked meshes, whose level can be changed interactively.
+ *
+ * <p>
+ * The map is divided into blocks, and the range of densities in each block is found once, in parallel, when the
+ * isosurface is created.  The surface at a level can only pass through the blocks whose range straddles it, so a new
+ * level is extracted with {@link MarchingCubes MarchingCubes} from those blocks alone, and the rest of the map is
+ * never read again.  Blocks are grouped into chunks of neighbouring blocks, each drawn by its own meshes, and only the
+ * chunks that the surface passes through at the old or the new level are re-welded and replaced.
+ *
+ * <p>
+ * Changes of level are extracted in the background, one at a time.  Changes made while an extraction is running, such
+ * as those from dragging a slider, are coalesced into a single extraction at the latest level.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class Isosurface {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Number of grid cells along each side of a block. */
+    public static final int BLOCK_CELLS = 16;
+
+    /** Number of blocks along each side of a chunk. */
+    public static final int CHUNK_BLOCKS = 4;
+
+    /** Maximum number of mesh points in a mesh of a chunk. */
+    public static final int MAX_CHUNK_POINTS = 1 << 16;
+
+    /**
+     * Builds an isosurface on the common {@link ForkJoinPool ForkJoinPool}, and hands it to a callback on the JavaFX
+     * application thread.
+     *
+     * @param map density map
+     * @param level initial level of the isosurface
+     * @param onBuilt called with the isosurface once it has been built
+     */
+    public static void buildAsync(DensityMap map, double level, Consumer<Isosurface> onBuilt) {
+        ForkJoinPool.commonPool().execute(() -> {
+            final Isosurface surface = new Isosurface(map, level);
+            Platform.runLater(() -> onBuilt.accept(surface));
+        });
+    }
+
+    /**
+     * Creates a new <code>Isosurface</code>, finding the range of each block and extracting the initial level in
+     * parallel on the calling thread.  This reads the whole map once.  Since the meshes are not yet part of a scene,
+     * the calling thread need not be the JavaFX application thread; the level must afterwards be changed only on the
+     * JavaFX application thread.
+     *
+     * @param map density map
+     * @param level initial level of the isosurface; densities at or above the level are inside it
+     */
+    public Isosurface(DensityMap map, double level) {
+        this.map = map;
+        this.mirroring = map.isMirroring();
+        sampleCounts[0] = map.getColumnCount();
+        sampleCounts[1] = map.getRowCount();
+        sampleCounts[2] = map.getSectionCount();
+        long totalBlocks = 1;
+        for (int d = 0; d < 3; d++) {
+            if (sampleCounts[d] >= MarchingCubes.MAX_GRID_SAMPLES) {
+                throw new IllegalArgumentException("map has too many samples along an axis");
+            }
+            blockCounts[d] = (sampleCounts[d] - 1 + BLOCK_CELLS - 1) / BLOCK_CELLS;
+            chunkCounts[d] = (blockCounts[d] + CHUNK_BLOCKS - 1) / CHUNK_BLOCKS;
+            totalBlocks *= blockCounts[d];
+        }
+        if (totalBlocks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("map has too many blocks");
+        }
+        blockMinimum = new float[(int)totalBlocks];
+        blockMaximum = new float[(int)totalBlocks];
+        chunkViews = new MeshView[chunkCounts[0] * chunkCounts[1] * chunkCounts[2]][];
+        forEach(blockMinimum.length, this::findRange);
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int b = 0; b < blockMinimum.length; b++) {
+            min = Math.min(min, blockMinimum[b]);
+            max = Math.max(max, blockMaximum[b]);
+        }
+        minimum = min;
+        maximum = max;
+
+        material.setDiffuseColor(DEFAULT_COLOR);
+        material.setSpecularColor(Color.gray(0.3));
+        this.level = new SimpleDoubleProperty(this, "level", level) {
+            @Override protected void invalidated() { requestUpdate(); }
+        };
+        requestedLevel = (float)level;
+        apply(extract(requestedLevel));
+    }
+
+    public DensityMap getMap() { return map; }
+
+    /**
+     * Returns the mesh views of the chunks that the surface passes through, to be added to the scene graph.  The list
+     * changes as the level changes.
+     *
+     * @return unmodifiable observable list of chunk mesh views
+     */
+    public ObservableList<MeshView> getChunks() { return unmodifiableViews; }
+
+    /** Level of the isosurface.  Densities at or above the level are inside the surface. */
+    public DoubleProperty levelProperty() { return level; }
+    public double getLevel() { return level.get(); }
+    public void setLevel(double value) { level.set(value); }
+
+    /** Returns the lowest density in the map. */
+    public float getMinimum() { return minimum; }
+
+    /** Returns the highest density in the map. */
+    public float getMaximum() { return maximum; }
+
+    public void setColor(Color color) { material.setDiffuseColor(color); }
+    public Color getColor() { return material.getDiffuseColor(); }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final Color DEFAULT_COLOR = Color.web("#7FA8D8");
+
+    private static final int SAMPLES = BLOCK_CELLS + 1;   // along each side of a block, shared with its neighbours
+
+    // meshes are extracted in grid coordinates, and then converted to model coordinates
+    private static final double[] GRID_ORIGIN = { 0, 0, 0 };
+
+    // samples of the block being read by each thread
+    private static final ThreadLocal<float[]> BLOCK_SAMPLES =
+        ThreadLocal.withInitial(() -> new float[SAMPLES * SAMPLES * SAMPLES]);
+
+    private final DensityMap map;
+    private final boolean mirroring;
+    private final int[] sampleCounts = new int[3];
+    private final int[] blockCounts = new int[3];
+    private final int[] chunkCounts = new int[3];
+    private final float[] blockMinimum;
+    private final float[] blockMaximum;
+    private final float minimum, maximum;
+    private final PhongMaterial material = new PhongMaterial();
+    private final DoubleProperty level;
+
+    private final ObservableList<MeshView> views = FXCollections.observableArrayList();
+    private final ObservableList<MeshView> unmodifiableViews = FXCollections.unmodifiableObservableList(views);
+    private final MeshView[][] chunkViews;   // views of each chunk, or null if the surface misses the chunk
+
+    private float extractedLevel = Float.NaN;    // level of the last extraction; touched only by the extraction
+    private float requestedLevel;                // level of the running or last extraction
+    private boolean updateRunning = false;       // an extraction has been submitted and not yet applied
+    private boolean updateRequested = false;     // another extraction is needed once the running one is applied
+
+    /** Meshes of the chunks that changed in one extraction. */
+    private static final class Update {
+        Update(int[] chunks, List<List<TriangleMesh>> meshes) {
+            this.chunks = chunks;
+            this.meshes = meshes;
+        }
+        final int[] chunks;
+        final List<List<TriangleMesh>> meshes;   // per changed chunk; empty if the surface no longer passes through it
+    }
+
+    /** Splits a range of indices in half until a single index remains, and runs a task on it. */
+    private static final class IndexAction extends RecursiveAction {
+        IndexAction(IntConsumer task, int first, int n) {
+            this.task = task;
+            this.first = first;
+            this.n = n;
+        }
+        @Override protected void compute() {
+            if (n == 1) {
+                task.accept(first);
+            } else {
+                final int half = n / 2;
+                invokeAll(new IndexAction(task, first, half), new IndexAction(task, first + half, n - half));
+            }
+        }
+        private final IntConsumer task;
+        private final int first;
+        private final int n;
+    }
+
+    private static void forEach(int n, IntConsumer task) {
+        if (n == 1) {
+            task.accept(0);
+        } else if (n > 1) {
+            ForkJoinPool.commonPool().invoke(new IndexAction(task, 0, n));
+        }
+    }
+
+    /** Submits an extraction at the current level, or defers it until the running extraction has been applied. */
+    private void requestUpdate() {
+        final float newLevel = (float)getLevel();
+        if (newLevel == requestedLevel) {
+            return;
+        }
+        if (updateRunning) {
+            updateRequested = true;
+            return;
+        }
+        updateRunning = true;
+        requestedLevel = newLevel;
+        ForkJoinPool.commonPool().execute(() -> {
+            final Update update = extract(newLevel);
+            Platform.runLater(() -> updateCompleted(update));
+        });
+    }
+
+    private void updateCompleted(Update update) {
+        updateRunning = false;
+        apply(update);
+        if (updateRequested) {
+            updateRequested = false;
+            requestUpdate();
+        }
+    }
+
+    private boolean straddles(int block, float value) {
+        return (blockMinimum[block] < value) && (value <= blockMaximum[block]);
+    }
+
+    private int chunkOf(int block) {
+        final int bx = block % blockCounts[0];
+        final int by = (block / blockCounts[0]) % blockCounts[1];
+        final int bz = block / (blockCounts[0] * blockCounts[1]);
+        return bx / CHUNK_BLOCKS + chunkCounts[0] * (by / CHUNK_BLOCKS + chunkCounts[1] * (bz / CHUNK_BLOCKS));
+    }
+
+    /**
+     * Reads the samples of a block into the calling thread's buffer, returning the grid index of its first sample
+     * along each axis, followed by its number of samples along each axis.
+     */
+    private int[] readBlock(int block) {
+        final int[] box = {
+            BLOCK_CELLS * (block % blockCounts[0]),
+            BLOCK_CELLS * ((block / blockCounts[0]) % blockCounts[1]),
+            BLOCK_CELLS * (block / (blockCounts[0] * blockCounts[1])),
+            0, 0, 0
+        };
+        for (int d = 0; d < 3; d++) {
+            box[3 + d] = Math.min(SAMPLES, sampleCounts[d] - box[d]);
+        }
+        map.readBox(box[0], box[1], box[2], box[3], box[4], box[5], BLOCK_SAMPLES.get());
+        return box;
+    }
+
+    private void findRange(int block) {
+        final int[] box = readBlock(block);
+        final float[] samples = BLOCK_SAMPLES.get();
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int s = box[3] * box[4] * box[5] - 1; s >= 0; s--) {
+            min = Math.min(min, samples[s]);
+            max = Math.max(max, samples[s]);
+        }
+        blockMinimum[block] = min;
+        blockMaximum[block] = max;
+    }
+
+    /** Extracts the surface from a block, in model coordinates. */
+    private MarchingCubes.Block extractBlock(int block, float value) {
+        final int[] box = readBlock(block);
+        final MarchingCubes.Block surface = MarchingCubes.extract(BLOCK_SAMPLES.get(), box[3], box[4], box[5],
+                                                                  box[0], box[1], box[2], GRID_ORIGIN, 1.0, value,
+                                                                  true);
+        if (surface == null) {
+            return null;
+        }
+        final float[] points = surface.points;
+        final double[] xyz = new double[3];
+        for (int v = 0; v < surface.vertexCount; v++) {
+            map.getModelCoordinates(points[3 * v], points[3 * v + 1], points[3 * v + 2], xyz);
+            points[3 * v]     = (float)xyz[0];
+            points[3 * v + 1] = (float)xyz[1];
+            points[3 * v + 2] = (float)xyz[2];
+        }
+        if (mirroring) {
+            final int[] triangles = surface.triangles;
+            for (int t = 0; t < surface.triangleCount; t++) {
+                final int v1 = triangles[3 * t + 1];
+                triangles[3 * t + 1] = triangles[3 * t + 2];
+                triangles[3 * t + 2] = v1;
+            }
+        }
+        return surface;
+    }
+
+    /**
+     * Extracts the surface at a new level from the blocks that straddle it, and welds the chunks that the surface
+     * passes through at either the new or the previous level.
+     */
+    private Update extract(float value) {
+        final float previous = extractedLevel;
+        extractedLevel = value;
+        final BitSet changed = new BitSet(chunkViews.length);
+        int[] blocks = new int[64];
+        int nBlocks = 0;
+        for (int b = 0; b < blockMinimum.length; b++) {
+            if (straddles(b, value)) {
+                if (nBlocks == blocks.length) {
+                    blocks = Arrays.copyOf(blocks, 2 * nBlocks);
+                }
+                blocks[nBlocks++] = b;
+                changed.set(chunkOf(b));
+            } else if (straddles(b, previous)) {
+                changed.set(chunkOf(b));
+            }
+        }
+        final int[] extractedBlocks = Arrays.copyOf(blocks, nBlocks);
+        final MarchingCubes.Block[] surfaces = new MarchingCubes.Block[nBlocks];
+        forEach(nBlocks, i -> surfaces[i] = extractBlock(extractedBlocks[i], value));
+
+        final int[] chunks = changed.stream().toArray();
+        final List<List<MarchingCubes.Block>> chunkSurfaces = new ArrayList<List<MarchingCubes.Block>>(chunks.length);
+        for (int k = 0; k < chunks.length; k++) {
+            chunkSurfaces.add(new ArrayList<MarchingCubes.Block>());
+        }
+        for (int i = 0; i < nBlocks; i++) {
+            if (surfaces[i] != null) {
+                chunkSurfaces.get(Arrays.binarySearch(chunks, chunkOf(extractedBlocks[i]))).add(surfaces[i]);
+            }
+        }
+        final List<List<TriangleMesh>> meshes = new ArrayList<List<TriangleMesh>>(chunks.length);
+        for (int k = 0; k < chunks.length; k++) {
+            meshes.add(null);
+        }
+        forEach(chunks.length, k -> meshes.set(k, MarchingCubes.weld(chunkSurfaces.get(k), MAX_CHUNK_POINTS)));
+        return new Update(chunks, meshes);
+    }
+
+    /** Replaces the meshes of the changed chunks, reusing their mesh views where it can. */
+    private void apply(Update update) {
+        final Set<MeshView> removed = new HashSet<MeshView>();
+        final List<MeshView> added = new ArrayList<MeshView>();
+        for (int k = 0; k < update.chunks.length; k++) {
+            final int c = update.chunks[k];
+            final List<TriangleMesh> meshes = update.meshes.get(k);
+            final MeshView[] old = (chunkViews[c] != null) ? chunkViews[c] : new MeshView[0];
+            final MeshView[] next = new MeshView[meshes.size()];
+            for (int j = 0; j < next.length; j++) {
+                if (j < old.length) {
+                    next[j] = old[j];
+                    next[j].setMesh(meshes.get(j));
+                } else {
+                    next[j] = new MeshView(meshes.get(j));
+                    next[j].setMaterial(material);
+                    added.add(next[j]);
+                }
+            }
+            for (int j = next.length; j < old.length; j++) {
+                removed.add(old[j]);
+            }
+            chunkViews[c] = (next.length > 0) ? next : null;
+        }
+        if (!removed.isEmpty()) {
+            views.removeAll(removed);
+        }
+        if (!added.isEmpty()) {
+            views.addAll(added);
+        }
+    }
+
+}
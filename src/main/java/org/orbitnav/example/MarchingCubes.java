@@ -0,0 +1,330 @@
+package org.orbitnav.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * Extracts isosurfaces from blocks of a sampled scalar field, and welds the triangles of many blocks into meshes.
+ *
+ * <p>
+ * The field is sampled on a regular grid, and handled in blocks that overlap by one layer of samples, so that blocks
+ * can be computed and extracted independently, in parallel.  Each vertex lies on an edge of the grid, and is labelled
+ * with a key that identifies that edge globally; vertices with the same key in neighbouring blocks are exactly the
+ * same point, so that {@link #weld(List, int) weld} can merge them into a seamless mesh.
+ *
+ * <p>
+ * The table of triangles for each of the 256 cases is generated rather than written out.  On each face of a cube, the
+ * corners inside the surface are cut off by segments joining the crossed edges, with the two corners of an ambiguous
+ * face always kept apart.  Since neighbouring cubes see the same corners on a shared face, they cut it the same way
+ * and the surface has no holes.  The segments of the six faces then join into closed loops, which are split into
+ * triangle fans.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class MarchingCubes {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Largest number of samples along each axis of the whole grid. */
+    public static final int MAX_GRID_SAMPLES = 1 << 20;
+
+    /**
+     * Triangles extracted from one block, with vertices that have not yet been welded to those of other blocks.
+     */
+    public static final class Block {
+        Block(long[] keys, float[] points, int[] triangles, int vertexCount, int triangleCount) {
+            this.keys = keys;
+            this.points = points;
+            this.triangles = triangles;
+            this.vertexCount = vertexCount;
+            this.triangleCount = triangleCount;
+        }
+
+        public int getVertexCount() { return vertexCount; }
+        public int getTriangleCount() { return triangleCount; }
+
+        final long[] keys;       // grid edge of each vertex
+        final float[] points;    // packed vertex coordinates
+        final int[] triangles;   // three vertex indices per triangle
+        final int vertexCount;
+        final int triangleCount;
+    }
+
+    /**
+     * Extracts the isosurface from a block of samples.  Triangles face away from the inside of the surface.
+     *
+     * @param samples samples of the block, with x varying fastest, then y, then z
+     * @param nx number of samples along x (at least two)
+     * @param ny number of samples along y (at least two)
+     * @param nz number of samples along z (at least two)
+     * @param ix index on the whole grid of the first sample of the block along x
+     * @param iy index on the whole grid of the first sample of the block along y
+     * @param iz index on the whole grid of the first sample of the block along z
+     * @param origin coordinates (x, y, z) of the sample with grid index (0, 0, 0)
+     * @param spacing distance between neighbouring samples
+     * @param level value of the isosurface
+     * @param insideAbove <code>true</code> if samples at or above the level are inside the surface (as for a density);
+     *     <code>false</code> if samples below the level are inside (as for a signed distance)
+     * @return extracted triangles, or <code>null</code> if the surface does not pass through the block
+     */
+    public static Block extract(float[] samples, int nx, int ny, int nz, int ix, int iy, int iz, double[] origin,
+                                double spacing, float level, boolean insideAbove)
+    {
+        final int sy = nx, sz = nx * ny;
+        final Map<Long, Integer> vertexOfKey = new HashMap<Long, Integer>();
+        long[] keys = new long[64];
+        float[] points = new float[3 * 64];
+        int[] triangles = new int[3 * 64];
+        int nVertices = 0, nTriangles = 0;
+        final int[] cornerOffsets = new int[8];
+        for (int c = 0; c < 8; c++) {
+            cornerOffsets[c] = (c & 1) + ((c >> 1) & 1) * sy + ((c >> 2) & 1) * sz;
+        }
+        final int[] edgeVertex = new int[12];
+        for (int z = 0; z < nz - 1; z++) {
+            for (int y = 0; y < ny - 1; y++) {
+                for (int x = 0; x < nx - 1; x++) {
+                    final int base = x + y * sy + z * sz;
+                    int mask = 0;
+                    for (int c = 0; c < 8; c++) {
+                        if ((samples[base + cornerOffsets[c]] >= level) == insideAbove) {
+                            mask |= 1 << c;
+                        }
+                    }
+                    final int[] cubeTriangles = TRIANGLES[mask];
+                    if (cubeTriangles.length == 0) {
+                        continue;
+                    }
+                    Arrays.fill(edgeVertex, -1);
+                    for (int k = 0; k < cubeTriangles.length; k++) {
+                        final int e = cubeTriangles[k];
+                        if (edgeVertex[e] < 0) {
+                            final int c0 = EDGE_CORNERS[2 * e], axis = e / 4;
+                            final long key = edgeKey(ix + x + (c0 & 1), iy + y + ((c0 >> 1) & 1),
+                                                     iz + z + ((c0 >> 2) & 1), axis);
+                            Integer v = vertexOfKey.get(key);
+                            if (v == null) {
+                                if (nVertices == keys.length) {
+                                    keys = Arrays.copyOf(keys, 2 * nVertices);
+                                    points = Arrays.copyOf(points, 6 * nVertices);
+                                }
+                                final float v0 = samples[base + cornerOffsets[c0]];
+                                final float v1 = samples[base + cornerOffsets[EDGE_CORNERS[2 * e + 1]]];
+                                final double t = (v1 != v0) ? (level - v0) / (double)(v1 - v0) : 0.5;
+                                final double gx = ix + x + (c0 & 1) + ((axis == 0) ? t : 0);
+                                final double gy = iy + y + ((c0 >> 1) & 1) + ((axis == 1) ? t : 0);
+                                final double gz = iz + z + ((c0 >> 2) & 1) + ((axis == 2) ? t : 0);
+                                keys[nVertices] = key;
+                                points[3 * nVertices]     = (float)(origin[0] + spacing * gx);
+                                points[3 * nVertices + 1] = (float)(origin[1] + spacing * gy);
+                                points[3 * nVertices + 2] = (float)(origin[2] + spacing * gz);
+                                v = nVertices++;
+                                vertexOfKey.put(key, v);
+                            }
+                            edgeVertex[e] = v;
+                        }
+                    }
+                    if (3 * nTriangles + cubeTriangles.length > triangles.length) {
+                        triangles = Arrays.copyOf(triangles, 2 * triangles.length + cubeTriangles.length);
+                    }
+                    for (int k = 0; k < cubeTriangles.length; k++) {
+                        triangles[3 * nTriangles + k] = edgeVertex[cubeTriangles[k]];
+                    }
+                    nTriangles += cubeTriangles.length / 3;
+                }
+            }
+        }
+        if (nTriangles == 0) {
+            return null;
+        }
+        return new Block(keys, points, triangles, nVertices, nTriangles);
+    }
+
+    /**
+     * Welds the vertices of blocks into meshes.  Blocks are taken in order, and a new mesh is started whenever the
+     * vertices of the next block might not fit in the current one, so blocks should be given in a spatially coherent
+     * order for the meshes to be compact.  The meshes are welded in parallel.
+     *
+     * @param blocks extracted blocks
+     * @param maxPoints maximum number of points in a mesh
+     * @return welded meshes
+     */
+    public static List<TriangleMesh> weld(List<Block> blocks, int maxPoints) {
+        final List<List<Block>> groups = new ArrayList<List<Block>>();
+        List<Block> group = new ArrayList<Block>();
+        int nVertices = 0;
+        for (Block block : blocks) {
+            if (!group.isEmpty() && (nVertices + block.vertexCount > maxPoints)) {
+                groups.add(group);
+                group = new ArrayList<Block>();
+                nVertices = 0;
+            }
+            group.add(block);
+            nVertices += block.vertexCount;
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        final TriangleMesh[] meshes = new TriangleMesh[groups.size()];
+        if (meshes.length == 1) {
+            meshes[0] = weldGroup(groups.get(0));
+        } else if (meshes.length > 1) {
+            ForkJoinPool.commonPool().invoke(new WeldAction(groups, meshes, 0, meshes.length));
+        }
+        return Arrays.asList(meshes);
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    /** The two corners of each edge, lower corner first.  Bits 0, 1 and 2 of a corner are its x, y and z. */
+    private static final int[] EDGE_CORNERS = new int[24];
+
+    /** Corners of each face of the cube, counter-clockwise as seen from outside. */
+    private static final int[][] FACE_CORNERS = {
+        { 0, 4, 6, 2 }, { 1, 3, 7, 5 },   // x = 0, x = 1
+        { 0, 1, 5, 4 }, { 2, 6, 7, 3 },   // y = 0, y = 1
+        { 0, 2, 3, 1 }, { 4, 5, 7, 6 }    // z = 0, z = 1
+    };
+
+    /** Edge indices of the triangles of each case, three per triangle. */
+    private static final int[][] TRIANGLES = new int[256][];
+
+    static {
+        // edges 0-3 run along x, 4-7 along y, and 8-11 along z
+        final int[] axisBits = { 1, 2, 4 };
+        for (int axis = 0, e = 0; axis < 3; axis++) {
+            for (int c = 0; c < 8; c++) {
+                if ((c & axisBits[axis]) == 0) {
+                    EDGE_CORNERS[2 * e]     = c;
+                    EDGE_CORNERS[2 * e + 1] = c | axisBits[axis];
+                    e++;
+                }
+            }
+        }
+        for (int mask = 0; mask < 256; mask++) {
+            TRIANGLES[mask] = buildCase(mask);
+        }
+    }
+
+    private static int edgeBetween(int c0, int c1) {
+        for (int e = 0; e < 12; e++) {
+            if (((EDGE_CORNERS[2 * e] == c0) && (EDGE_CORNERS[2 * e + 1] == c1))
+                || ((EDGE_CORNERS[2 * e] == c1) && (EDGE_CORNERS[2 * e + 1] == c0)))
+            {
+                return e;
+            }
+        }
+        throw new IllegalArgumentException("corners are not adjacent");
+    }
+
+    /** Builds the triangles of one case from the loops formed by the segments on its faces. */
+    private static int[] buildCase(int mask) {
+        // each segment runs from the edge where a run of inside corners is entered to the edge where it is left
+        final int[] next = new int[12];
+        Arrays.fill(next, -1);
+        for (int[] face : FACE_CORNERS) {
+            for (int k = 0; k < 4; k++) {
+                final int prev = face[(k + 3) % 4], corner = face[k];
+                final boolean entering = ((mask >> corner) & 1) != 0 && ((mask >> prev) & 1) == 0;
+                if (entering) {
+                    int last = k;
+                    while (((mask >> face[(last + 1) % 4]) & 1) != 0) {
+                        last = (last + 1) % 4;
+                    }
+                    next[edgeBetween(prev, corner)] = edgeBetween(face[last], face[(last + 1) % 4]);
+                }
+            }
+        }
+        final List<Integer> triangles = new ArrayList<Integer>();
+        final boolean[] visited = new boolean[12];
+        for (int start = 0; start < 12; start++) {
+            if ((next[start] < 0) || visited[start]) {
+                continue;
+            }
+            final List<Integer> loop = new ArrayList<Integer>();
+            for (int e = start; !visited[e]; e = next[e]) {
+                visited[e] = true;
+                loop.add(e);
+            }
+            for (int k = 1; k + 1 < loop.size(); k++) {
+                triangles.add(loop.get(0));
+                triangles.add(loop.get(k));
+                triangles.add(loop.get(k + 1));
+            }
+        }
+        final int[] result = new int[triangles.size()];
+        for (int k = 0; k < result.length; k++) {
+            result[k] = triangles.get(k);
+        }
+        return result;
+    }
+
+    /** Key of a grid edge, from the grid index of its lower sample and its axis. */
+    private static long edgeKey(int x, int y, int z, int axis) {
+        return ((long)x << 44) | ((long)y << 24) | ((long)z << 4) | axis;
+    }
+
+    /** Welds a group of blocks into a single mesh, merging vertices that lie on the same grid edge. */
+    private static TriangleMesh weldGroup(List<Block> group) {
+        int maxVertices = 0, nTriangles = 0;
+        for (Block block : group) {
+            maxVertices += block.vertexCount;
+            nTriangles += block.triangleCount;
+        }
+        final Map<Long, Integer> pointOfKey = new HashMap<Long, Integer>(2 * maxVertices);
+        final float[] points = new float[3 * maxVertices];
+        final int[] faces = new int[6 * nTriangles];
+        int nPoints = 0, f = 0;
+        for (Block block : group) {
+            final int[] pointOfVertex = new int[block.vertexCount];
+            for (int v = 0; v < block.vertexCount; v++) {
+                final Integer p = pointOfKey.putIfAbsent(block.keys[v], nPoints);
+                if (p != null) {
+                    pointOfVertex[v] = p;
+                } else {
+                    System.arraycopy(block.points, 3 * v, points, 3 * nPoints, 3);
+                    pointOfVertex[v] = nPoints++;
+                }
+            }
+            for (int t = 0; t < 3 * block.triangleCount; t++, f += 2) {
+                faces[f] = pointOfVertex[block.triangles[t]];
+            }
+        }
+        final TriangleMesh mesh = new TriangleMesh();
+        mesh.getPoints().setAll(points, 0, 3 * nPoints);
+        mesh.getTexCoords().setAll(0, 0);
+        mesh.getFaces().setAll(faces);
+        return mesh;
+    }
+
+    /** Splits a range of groups of blocks in half until a single group remains, and welds it. */
+    private static final class WeldAction extends RecursiveAction {
+        WeldAction(List<List<Block>> groups, TriangleMesh[] meshes, int first, int n) {
+            this.groups = groups;
+            this.meshes = meshes;
+            this.first = first;
+            this.n = n;
+        }
+        @Override protected void compute() {
+            if (n == 1) {
+                meshes[first] = weldGroup(groups.get(first));
+            } else {
+                final int half = n / 2;
+                invokeAll(new WeldAction(groups, meshes, first, half),
+                          new WeldAction(groups, meshes, first + half, n - half));
+            }
+        }
+        private final List<List<Block>> groups;
+        private final TriangleMesh[] meshes;
+        private final int first;
+        private final int n;
+    }
+
+}
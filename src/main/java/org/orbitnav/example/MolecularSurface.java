@@ -0,0 +1,541 @@
+package org.orbitnav.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+
+/**
+ * Builds the solvent-accessible or solvent-excluded surface of a set of atoms as chunked meshes.
+ *
+ * <p>
+ * The solvent-accessible surface (SAS) is the surface traced by the center of a spherical probe rolled over the atoms;
+ * it is the boundary of the union of the atoms grown by the probe radius.  The solvent-excluded surface (SES) is the
+ * surface traced by the probe's front, which fills in the crevices that the probe cannot reach.
+ *
+ * <p>
+ * Both are extracted with {@link MarchingCubes MarchingCubes} from a field sampled on a sparse grid of blocks: only
+ * blocks near an atom are ever sampled, and only blocks that the surface passes through keep their samples.  First,
+ * the signed distance to the grown atoms is sampled in each block.  For the SAS, its zero level is the surface.  For
+ * the SES, samples just outside the grown atoms are projected onto them as candidate probe centers; the SES is then
+ * the level at which the distance to the nearest probe center equals the probe radius, as in EDTSurf (Xu and Zhang,
+ * 2009).  Each stage runs on the blocks in parallel, and blocks are welded into meshes in Morton order so that each
+ * mesh is spatially compact and culls well.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class MolecularSurface {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /** Kind of molecular surface. */
+    public enum Type {
+        /** Solvent-accessible surface. */
+        SAS,
+        /** Solvent-excluded surface. */
+        SES
+    }
+
+    /** Radius of a water probe, in angstroms. */
+    public static final double DEFAULT_PROBE_RADIUS = 1.4;
+
+    /** Default distance between samples of the field, in angstroms. */
+    public static final double DEFAULT_SPACING = 0.5;
+
+    /** Number of grid cells along each side of a block. */
+    public static final int BLOCK_CELLS = 8;
+
+    /** Maximum number of mesh points in a chunk. */
+    public static final int MAX_CHUNK_POINTS = 1 << 16;
+
+    /**
+     * Builds a surface on the common {@link ForkJoinPool ForkJoinPool}, and hands it to a callback on the JavaFX
+     * application thread.  The arguments are as for the {@link #MolecularSurface(double[], double[], int, Type,
+     * double, double) constructor}.
+     *
+     * @param xyz packed atom coordinates (x0, y0, z0, x1, ...)
+     * @param radii radius of each atom
+     * @param count number of atoms
+     * @param type kind of surface
+     * @param probeRadius radius of the solvent probe
+     * @param spacing distance between samples of the field
+     * @param onBuilt called with the surface once it has been built
+     */
+    public static void buildAsync(double[] xyz, double[] radii, int count, Type type, double probeRadius,
+                                  double spacing, Consumer<MolecularSurface> onBuilt)
+    {
+        final double[] xyzCopy = Arrays.copyOf(xyz, 3 * count), radiiCopy = Arrays.copyOf(radii, count);
+        ForkJoinPool.commonPool().execute(() -> {
+            final MolecularSurface surface = new MolecularSurface(xyzCopy, radiiCopy, count, type, probeRadius,
+                                                                  spacing);
+            Platform.runLater(() -> onBuilt.accept(surface));
+        });
+    }
+
+    /**
+     * Creates a new <code>MolecularSurface</code>.  The surface is built in parallel on the calling thread; since its
+     * meshes are not yet part of a scene, that need not be the JavaFX application thread.
+     *
+     * @param xyz packed atom coordinates (x0, y0, z0, x1, ...)
+     * @param radii radius of each atom
+     * @param count number of atoms
+     * @param type kind of surface
+     * @param probeRadius radius of the solvent probe
+     * @param spacing distance between samples of the field; smaller is smoother but slower
+     */
+    public MolecularSurface(double[] xyz, double[] radii, int count, Type type, double probeRadius, double spacing) {
+        if ((probeRadius < 0) || !(spacing > 0)) {
+            throw new IllegalArgumentException("probe radius must not be negative, and spacing must be positive");
+        }
+        this.type = type;
+        this.xyz = xyz;
+        this.count = count;
+        this.probeRadius = probeRadius;
+        this.spacing = spacing;
+        this.margin = 2 * spacing;
+        this.grownRadii = new double[count];
+        for (int i = 0; i < count; i++) {
+            grownRadii[i] = radii[i] + probeRadius;
+        }
+        material.setDiffuseColor(DEFAULT_COLOR);
+        material.setSpecularColor(Color.gray(0.3));
+        if (count > 0) {
+            build();
+        }
+    }
+
+    public Type getType() { return type; }
+
+    /**
+     * Returns the mesh views of the chunks, to be added to the scene graph.
+     *
+     * @return unmodifiable list of chunk mesh views
+     */
+    public List<MeshView> getChunks() { return Collections.unmodifiableList(views); }
+
+    public void setColor(Color color) { material.setDiffuseColor(color); }
+    public Color getColor() { return material.getDiffuseColor(); }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final Color DEFAULT_COLOR = Color.web("#A0B8E0");
+
+    private static final int SAMPLES = BLOCK_CELLS + 1;   // along each side of a block, shared with its neighbours
+
+    private final Type type;
+    private final double[] xyz;
+    private final double[] grownRadii;
+    private final int count;
+    private final double probeRadius;
+    private final double spacing;
+    private final double margin;      // distance beyond the grown atoms at which the field is clamped
+    private final double[] origin = new double[3];
+    private final int[] blockCounts = new int[3];
+    private final PhongMaterial material = new PhongMaterial();
+    private final List<MeshView> views = new ArrayList<MeshView>();
+
+    // atoms near each block: the block of each pair is in the high 32 bits, its atom in the low 32 bits
+    private long[] blockAtoms;
+
+    // candidate probe centers for the SES, and their sorted cell keys (cell in the high 32 bits, center in the low)
+    private float[] probeCenters;
+    private long[] probeCells;
+    private final double[] probeOrigin = new double[3];
+    private final int[] probeCellCounts = new int[3];
+
+    /** One block of the sparse grid. */
+    private static final class Block {
+        Block(int bx, int by, int bz, int atomStart, int atomEnd) {
+            this.bx = bx;
+            this.by = by;
+            this.bz = bz;
+            this.atomStart = atomStart;
+            this.atomEnd = atomEnd;
+        }
+        final int bx, by, bz;
+        final int atomStart, atomEnd;   // range of the block's pairs in blockAtoms
+        float[] field;                  // signed distance to the grown atoms; null once no longer needed
+        int[] nearest;                  // grown atom nearest each sample, or -1; null once no longer needed
+        float[] boundary;               // candidate probe centers found in the block
+        MarchingCubes.Block surface;
+    }
+
+    private static final int PASS_DISTANCE = 0;
+    private static final int PASS_BOUNDARY = 1;
+    private static final int PASS_EXCLUDED = 2;
+
+    /** Splits a range of blocks in half until a single block remains, and runs one pass of the build on it. */
+    private final class BlockAction extends RecursiveAction {
+        BlockAction(Block[] blocks, int pass, int first, int n) {
+            this.blocks = blocks;
+            this.pass = pass;
+            this.first = first;
+            this.n = n;
+        }
+        @Override protected void compute() {
+            if (n == 1) {
+                switch (pass) {
+                    case PASS_DISTANCE: sampleDistance(blocks[first]); break;
+                    case PASS_BOUNDARY: findProbeCenters(blocks[first]); break;
+                    default:            sampleExcluded(blocks[first]); break;
+                }
+            } else {
+                final int half = n / 2;
+                invokeAll(new BlockAction(blocks, pass, first, half),
+                          new BlockAction(blocks, pass, first + half, n - half));
+            }
+        }
+        private final Block[] blocks;
+        private final int pass;
+        private final int first;
+        private final int n;
+    }
+
+    private void runPass(Block[] blocks, int pass) {
+        if (blocks.length == 1) {
+            new BlockAction(blocks, pass, 0, 1).compute();
+        } else if (blocks.length > 1) {
+            ForkJoinPool.commonPool().invoke(new BlockAction(blocks, pass, 0, blocks.length));
+        }
+    }
+
+    private void build() {
+        final Block[] blocks = layOutBlocks();
+        runPass(blocks, PASS_DISTANCE);
+        if (type == Type.SES) {
+            runPass(blocks, PASS_BOUNDARY);
+            indexProbeCenters(blocks);
+            runPass(blocks, PASS_EXCLUDED);
+        }
+        final List<MarchingCubes.Block> surfaces = new ArrayList<MarchingCubes.Block>();
+        for (Block block : blocks) {
+            if (block.surface != null) {
+                surfaces.add(block.surface);
+            }
+        }
+        for (TriangleMesh mesh : MarchingCubes.weld(surfaces, MAX_CHUNK_POINTS)) {
+            final MeshView view = new MeshView(mesh);
+            view.setMaterial(material);
+            views.add(view);
+        }
+    }
+
+    /** Sets up the grid, and finds the blocks near each atom, in Morton order. */
+    private Block[] layOutBlocks() {
+        final double[] lo = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        final double[] hi = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int i = 0; i < count; i++) {
+            for (int d = 0; d < 3; d++) {
+                lo[d] = Math.min(lo[d], xyz[3 * i + d] - grownRadii[i] - margin);
+                hi[d] = Math.max(hi[d], xyz[3 * i + d] + grownRadii[i] + margin);
+            }
+        }
+        long totalBlocks = 1;
+        for (int d = 0; d < 3; d++) {
+            origin[d] = lo[d] - spacing;
+            final int cells = (int)Math.ceil((hi[d] - origin[d]) / spacing) + 1;
+            blockCounts[d] = (cells + BLOCK_CELLS - 1) / BLOCK_CELLS;
+            if (blockCounts[d] * BLOCK_CELLS >= MarchingCubes.MAX_GRID_SAMPLES) {
+                throw new IllegalArgumentException("structure is too large for the sample spacing");
+            }
+            totalBlocks *= blockCounts[d];
+        }
+        if (totalBlocks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("structure is too large for the sample spacing");
+        }
+
+        // pair each atom with the blocks its clamped field reaches, then sort the pairs by block
+        final double blockSize = BLOCK_CELLS * spacing;
+        int nPairs = 0;
+        long[] pairs = new long[8 * count];
+        final int[] b0 = new int[3], b1 = new int[3];
+        for (int i = 0; i < count; i++) {
+            final double reach = grownRadii[i] + margin;
+            for (int d = 0; d < 3; d++) {
+                b0[d] = Math.max(0, (int)Math.floor((xyz[3 * i + d] - reach - origin[d]) / blockSize));
+                b1[d] = Math.min(blockCounts[d] - 1, (int)Math.floor((xyz[3 * i + d] + reach - origin[d]) / blockSize));
+            }
+            for (int bz = b0[2]; bz <= b1[2]; bz++) {
+                for (int by = b0[1]; by <= b1[1]; by++) {
+                    for (int bx = b0[0]; bx <= b1[0]; bx++) {
+                        if (nPairs == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, 2 * nPairs);
+                        }
+                        final long block = bx + (long)blockCounts[0] * (by + (long)blockCounts[1] * bz);
+                        pairs[nPairs++] = (block << 32) | i;
+                    }
+                }
+            }
+        }
+        blockAtoms = Arrays.copyOf(pairs, nPairs);
+        Arrays.parallelSort(blockAtoms);
+
+        final List<Block> blocks = new ArrayList<Block>();
+        for (int start = 0; start < nPairs; ) {
+            final long block = blockAtoms[start] >>> 32;
+            int end = start + 1;
+            while ((end < nPairs) && ((blockAtoms[end] >>> 32) == block)) {
+                end++;
+            }
+            final int bx = (int)(block % blockCounts[0]);
+            final int by = (int)((block / blockCounts[0]) % blockCounts[1]);
+            final int bz = (int)(block / ((long)blockCounts[0] * blockCounts[1]));
+            blocks.add(new Block(bx, by, bz, start, end));
+            start = end;
+        }
+        Collections.sort(blocks, (a, b) -> Long.compare(morton(a), morton(b)));
+        return blocks.toArray(new Block[blocks.size()]);
+    }
+
+    private static long morton(Block block) {
+        return spread(block.bx) | (spread(block.by) << 1) | (spread(block.bz) << 2);
+    }
+
+    /** Spreads the low 21 bits of a value out to every third bit. */
+    private static long spread(int value) {
+        long v = value & 0x1FFFFFL;
+        v = (v | (v << 32)) & 0x1F00000000FFFFL;
+        v = (v | (v << 16)) & 0x1F0000FF0000FFL;
+        v = (v | (v << 8))  & 0x100F00F00F00F00FL;
+        v = (v | (v << 4))  & 0x10C30C30C30C30C3L;
+        v = (v | (v << 2))  & 0x1249249249249249L;
+        return v;
+    }
+
+    /**
+     * Samples the signed distance to the nearest grown atom over a block, clamped outside at the margin, and extracts
+     * the SAS.  Blocks that the surface cannot pass through drop their samples.
+     */
+    private void sampleDistance(Block block) {
+        final float[] field = new float[SAMPLES * SAMPLES * SAMPLES];
+        final int[] nearest = new int[field.length];
+        Arrays.fill(field, (float)margin);
+        Arrays.fill(nearest, -1);
+        final int ix = block.bx * BLOCK_CELLS, iy = block.by * BLOCK_CELLS, iz = block.bz * BLOCK_CELLS;
+        // below this depth, samples are too far inside for their exact value to matter
+        final double floor = -margin - ((type == Type.SES) ? probeRadius : 0);
+        for (int k = block.atomStart; k < block.atomEnd; k++) {
+            final int i = (int)blockAtoms[k];
+            final double cx = xyz[3 * i], cy = xyz[3 * i + 1], cz = xyz[3 * i + 2];
+            final double reach = grownRadii[i] + margin;
+            final int x0 = Math.max(0, (int)Math.ceil((cx - reach - origin[0]) / spacing) - ix);
+            final int x1 = Math.min(SAMPLES - 1, (int)Math.floor((cx + reach - origin[0]) / spacing) - ix);
+            final int y0 = Math.max(0, (int)Math.ceil((cy - reach - origin[1]) / spacing) - iy);
+            final int y1 = Math.min(SAMPLES - 1, (int)Math.floor((cy + reach - origin[1]) / spacing) - iy);
+            final int z0 = Math.max(0, (int)Math.ceil((cz - reach - origin[2]) / spacing) - iz);
+            final int z1 = Math.min(SAMPLES - 1, (int)Math.floor((cz + reach - origin[2]) / spacing) - iz);
+            final double reach2 = reach * reach;
+            for (int z = z0; z <= z1; z++) {
+                final double dz = origin[2] + (iz + z) * spacing - cz;
+                for (int y = y0; y <= y1; y++) {
+                    final double dy = origin[1] + (iy + y) * spacing - cy;
+                    final double rowReach2 = reach2 - dy * dy - dz * dz;
+                    if (rowReach2 <= 0) {
+                        continue;
+                    }
+                    // visit only the samples of the row within reach of the atom
+                    final double rowReach = Math.sqrt(rowReach2);
+                    final int rx0 = Math.max(x0, (int)Math.ceil((cx - rowReach - origin[0]) / spacing) - ix);
+                    final int rx1 = Math.min(x1, (int)Math.floor((cx + rowReach - origin[0]) / spacing) - ix);
+                    for (int x = rx0; x <= rx1; x++) {
+                        final int s = x + SAMPLES * (y + SAMPLES * z);
+                        if (field[s] <= floor) {
+                            continue;
+                        }
+                        final double dx = origin[0] + (ix + x) * spacing - cx;
+                        final float distance = (float)(Math.sqrt(dx * dx + dy * dy + dz * dz) - grownRadii[i]);
+                        if (distance < field[s]) {
+                            field[s] = distance;
+                            nearest[s] = i;
+                        }
+                    }
+                }
+            }
+        }
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (float value : field) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        if (type == Type.SAS) {
+            if ((min < 0) && (max >= 0)) {
+                block.surface = MarchingCubes.extract(field, SAMPLES, SAMPLES, SAMPLES, ix, iy, iz, origin, spacing,
+                                                      0f, false);
+            }
+        } else if ((max >= 0) ? (min < 0) : (max >= -probeRadius)) {
+            // the SES can only pass through blocks that reach into the outer shell of the grown atoms
+            block.field = field;
+            block.nearest = nearest;
+        }
+    }
+
+    /**
+     * Finds the samples of a block that lie just outside the grown atoms, next to a sample inside them, and projects
+     * each onto the surface of its nearest grown atom as a candidate probe center.
+     */
+    private void findProbeCenters(Block block) {
+        if (block.field == null) {
+            return;
+        }
+        final float[] field = block.field;
+        final int ix = block.bx * BLOCK_CELLS, iy = block.by * BLOCK_CELLS, iz = block.bz * BLOCK_CELLS;
+        float[] centers = new float[3 * 64];
+        int n = 0;
+        for (int z = 0; z < SAMPLES; z++) {
+            for (int y = 0; y < SAMPLES; y++) {
+                for (int x = 0; x < SAMPLES; x++) {
+                    final int s = x + SAMPLES * (y + SAMPLES * z);
+                    if ((field[s] < 0) || !hasInsideNeighbour(field, x, y, z)) {
+                        continue;
+                    }
+                    double px = origin[0] + (ix + x) * spacing;
+                    double py = origin[1] + (iy + y) * spacing;
+                    double pz = origin[2] + (iz + z) * spacing;
+                    final int i = block.nearest[s];
+                    if (i >= 0) {
+                        final double dx = px - xyz[3 * i], dy = py - xyz[3 * i + 1], dz = pz - xyz[3 * i + 2];
+                        final double scale = grownRadii[i] / Math.sqrt(dx * dx + dy * dy + dz * dz);
+                        px = xyz[3 * i]     + scale * dx;
+                        py = xyz[3 * i + 1] + scale * dy;
+                        pz = xyz[3 * i + 2] + scale * dz;
+                    }
+                    if (3 * n == centers.length) {
+                        centers = Arrays.copyOf(centers, 2 * centers.length);
+                    }
+                    centers[3 * n]     = (float)px;
+                    centers[3 * n + 1] = (float)py;
+                    centers[3 * n + 2] = (float)pz;
+                    n++;
+                }
+            }
+        }
+        block.boundary = Arrays.copyOf(centers, 3 * n);
+        block.nearest = null;
+    }
+
+    private static boolean hasInsideNeighbour(float[] field, int x, int y, int z) {
+        final int s = x + SAMPLES * (y + SAMPLES * z);
+        return ((x > 0) && (field[s - 1] < 0)) || ((x < SAMPLES - 1) && (field[s + 1] < 0))
+            || ((y > 0) && (field[s - SAMPLES] < 0)) || ((y < SAMPLES - 1) && (field[s + SAMPLES] < 0))
+            || ((z > 0) && (field[s - SAMPLES * SAMPLES] < 0))
+            || ((z < SAMPLES - 1) && (field[s + SAMPLES * SAMPLES] < 0));
+    }
+
+    /** Gathers the candidate probe centers of all blocks into a grid of cells as wide as the search radius. */
+    private void indexProbeCenters(Block[] blocks) {
+        int n = 0;
+        for (Block block : blocks) {
+            n += (block.boundary != null) ? block.boundary.length / 3 : 0;
+        }
+        probeCenters = new float[3 * n];
+        n = 0;
+        for (Block block : blocks) {
+            if (block.boundary != null) {
+                System.arraycopy(block.boundary, 0, probeCenters, 3 * n, block.boundary.length);
+                n += block.boundary.length / 3;
+                block.boundary = null;
+            }
+        }
+        final double cell = searchRadius();
+        for (int d = 0; d < 3; d++) {
+            probeOrigin[d] = origin[d];
+            probeCellCounts[d] = (int)Math.ceil(blockCounts[d] * BLOCK_CELLS * spacing / cell) + 1;
+        }
+        probeCells = new long[n];
+        for (int k = 0; k < n; k++) {
+            probeCells[k] = (cellOf(probeCenters[3 * k], probeCenters[3 * k + 1], probeCenters[3 * k + 2]) << 32) | k;
+        }
+        Arrays.parallelSort(probeCells);
+    }
+
+    private double searchRadius() { return probeRadius + spacing; }
+
+    private long cellOf(double x, double y, double z) {
+        final double cell = searchRadius();
+        final int cx = Math.min(probeCellCounts[0] - 1, Math.max(0, (int)((x - probeOrigin[0]) / cell)));
+        final int cy = Math.min(probeCellCounts[1] - 1, Math.max(0, (int)((y - probeOrigin[1]) / cell)));
+        final int cz = Math.min(probeCellCounts[2] - 1, Math.max(0, (int)((z - probeOrigin[2]) / cell)));
+        return cx + (long)probeCellCounts[0] * (cy + (long)probeCellCounts[1] * cz);
+    }
+
+    /**
+     * Samples the SES field over a block: the probe radius less the distance to the nearest probe center, which is
+     * negative inside the SES, and extracts the SES.
+     */
+    private void sampleExcluded(Block block) {
+        if (block.field == null) {
+            return;
+        }
+        final float[] field = block.field;
+        final float[] excluded = new float[field.length];
+        final int ix = block.bx * BLOCK_CELLS, iy = block.by * BLOCK_CELLS, iz = block.bz * BLOCK_CELLS;
+        final double cell = searchRadius();
+        final double r2 = cell * cell;
+        for (int z = 0; z < SAMPLES; z++) {
+            for (int y = 0; y < SAMPLES; y++) {
+                for (int x = 0; x < SAMPLES; x++) {
+                    final int s = x + SAMPLES * (y + SAMPLES * z);
+                    if (field[s] >= 0) {
+                        excluded[s] = (float)probeRadius;     // the probe itself can sit here
+                        continue;
+                    }
+                    if (field[s] < -probeRadius) {
+                        excluded[s] = (float)(probeRadius + field[s]);   // deeper than a probe can reach
+                        continue;
+                    }
+                    final double px = origin[0] + (ix + x) * spacing;
+                    final double py = origin[1] + (iy + y) * spacing;
+                    final double pz = origin[2] + (iz + z) * spacing;
+                    double best = r2;
+                    final int cx = (int)((px - probeOrigin[0]) / cell);
+                    final int cy = (int)((py - probeOrigin[1]) / cell);
+                    final int cz = (int)((pz - probeOrigin[2]) / cell);
+                    for (int qz = Math.max(0, cz - 1); qz <= Math.min(probeCellCounts[2] - 1, cz + 1); qz++) {
+                        for (int qy = Math.max(0, cy - 1); qy <= Math.min(probeCellCounts[1] - 1, cy + 1); qy++) {
+                            for (int qx = Math.max(0, cx - 1); qx <= Math.min(probeCellCounts[0] - 1, cx + 1); qx++) {
+                                final long key = qx + (long)probeCellCounts[0] * (qy + (long)probeCellCounts[1] * qz);
+                                for (int k = lowerBound(probeCells, key << 32);
+                                     (k < probeCells.length) && ((probeCells[k] >>> 32) == key); k++) {
+                                    final int c = 3 * (int)probeCells[k];
+                                    final double dx = probeCenters[c] - px, dy = probeCenters[c + 1] - py;
+                                    final double dz = probeCenters[c + 2] - pz;
+                                    best = Math.min(best, dx * dx + dy * dy + dz * dz);
+                                }
+                            }
+                        }
+                    }
+                    // no probe center is nearer than the surface of the nearest grown atom
+                    final double distance = Math.max(Math.sqrt(best), -field[s]);
+                    excluded[s] = (float)(probeRadius - distance);
+                }
+            }
+        }
+        block.surface = MarchingCubes.extract(excluded, SAMPLES, SAMPLES, SAMPLES, ix, iy, iz, origin, spacing, 0f,
+                                              false);
+        block.field = null;
+    }
+
+    /** Finds the first index of a sorted array whose value is at least a key. */
+    private static int lowerBound(long[] sorted, long key) {
+        int lo = 0, hi = sorted.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+}
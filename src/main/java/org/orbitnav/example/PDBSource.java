@@ -3,12 +3,11 @@ package org.orbitnav.example;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
 
 import org.biojava.bio.structure.Atom;
-import org.biojava.bio.structure.Bond;
 import org.biojava.bio.structure.Chain;
 import org.biojava.bio.structure.Group;
 import org.biojava.bio.structure.Structure;
@@ -21,7 +20,6 @@ public final class PDBSource {
     
     public PDBSource(File pdbFile) {
         FileParsingParameters fpp = new FileParsingParameters();
-        fpp.setCreateAtomBonds(true);
         PDBFileReader pdbFileReader = new PDBFileReader();
         pdbFileReader.setFileParsingParameters(fpp);
         try {
@@ -29,44 +27,145 @@ public final class PDBSource {
         } catch (IOException e) {
             structure = null;
         }
+        indexAtoms();
     }
     
+    /**
+     * Returns the number of atoms.
+     * 
+     * @return number of atoms
+     */
+    public int getAtomCount() { return atoms.size(); }
+    
+    /**
+     * Returns the coordinates of the atoms.
+     * 
+     * @return new array of packed atom coordinates (x0, y0, z0, x1, ...), in the order returned by
+     *     {@link #getAtoms(double) getAtoms}
+     */
+    public double[] getAtomCoords() { return atomCoords.clone(); }
+    
+    public String getElementName(int atom) { return atoms.get(atom).getElement().name(); }
+    public int getAtomicNumber(int atom) { return atoms.get(atom).getElement().getAtomicNumber(); }
+    public double getVdwRadius(int atom) { return atoms.get(atom).getElement().getVDWRadius(); }
+    
+    /**
+     * Returns the number of chains.
+     * 
+     * @return number of chains
+     */
+    public int getChainCount() { return chainCount; }
+    
+    /**
+     * Returns the chain of an atom.
+     * 
+     * @param atom index of the atom
+     * @return index of the atom's chain, in the order the chains appear in the file
+     */
+    public int getChainIndex(int atom) { return chainIndices[atom]; }
+    
+    /**
+     * Returns the temperature factor (B-factor) of an atom.
+     * 
+     * @param atom index of the atom
+     * @return temperature factor, in square angstroms
+     */
+    public double getBFactor(int atom) { return atoms.get(atom).getTempFactor(); }
+    
     public List<VizAtom> getAtoms(double radius) {
-        ArrayList<VizAtom> atomList = new ArrayList<VizAtom>();
-        if (structure != null) {
-            for (Chain chain : structure.getChains()) {
-                for (Group group : chain.getAtomGroups()) {
-                    for (Atom atom : group.getAtoms()) {
-                        atomList.add(new VizAtom(atom, radius));
-                    }
-                }
-            }
+        ArrayList<VizAtom> atomList = new ArrayList<VizAtom>(atoms.size());
+        for (Atom atom : atoms) {
+            atomList.add(new VizAtom(atom, radius));
         }
         return atomList;
     }
     
-    public List<VizBond> getBonds(double radius) {
-        Map<Atom, Bond> atomMap = new HashMap<Atom, Bond>();
-        ArrayList<VizBond> bondList = new ArrayList<VizBond>();
-        if (structure != null) {
-            for (Chain chain : structure.getChains()) {
-                for (Group group : chain.getAtomGroups()) {
-                    for (Atom atom : group.getAtoms()) {
-                        for (Bond bond : atom.getBonds()) {
-                            Atom atomA = bond.getAtomA();
-                            Atom atomB = bond.getAtomB();
-                            if (atomMap.containsKey(atomA) || atomMap.containsKey(atomB)) {
-                                // bond already present
-                            } else {
-                                atomMap.put(atomA, bond);
-                            }
-                        }
+    /**
+     * Returns the bonds between atoms, as perceived from their positions by {@link BondPerception BondPerception}.
+     * The bonds are computed on first use.
+     * 
+     * @return packed pairs of atom indices (a0, b0, a1, b1, ...), indexing the atoms in the order returned by
+     *     {@link #getAtoms(double) getAtoms}, with each bond appearing once
+     */
+    public int[] getBondPairs() {
+        if (bondPairs == null) {
+            bondPairs = BondPerception.perceive(atomCoords, covalentRadii, atoms.size());
+        }
+        return bondPairs;
+    }
+    
+    /**
+     * Returns the index used to answer selection queries over the atoms.  The attributes <code>chain</code>,
+     * <code>resname</code>, <code>resi</code>, <code>name</code> and <code>element</code> are indexed.
+     * 
+     * @return atom index, whose atom indices follow the order returned by {@link #getAtoms(double) getAtoms}
+     */
+    public AtomIndex getAtomIndex() { return atomIndex; }
+    
+    /**
+     * Selects atoms.
+     * 
+     * @param query selection query, as described for {@link AtomIndex AtomIndex}
+     * @return bits set for the selected atoms, indexed in the order returned by {@link #getAtoms(double) getAtoms}
+     */
+    public BitSet select(String query) { return atomIndex.select(query); }
+    
+    /**
+     * Returns the backbone traces of the protein and nucleic-acid chains, for drawing as a {@link Cartoon Cartoon}.
+     * Amino acids are traced through their alpha carbons, guided by their carbonyl oxygens, and nucleotides through
+     * their phosphorus atoms, guided by their C1' atoms.  A chain is split into several traces wherever consecutive
+     * backbone atoms are too far apart to be linked, or the kind of residue changes.
+     * 
+     * @return backbone traces, whose atom indices follow the order returned by {@link #getAtoms(double) getAtoms}
+     */
+    public List<Cartoon.Trace> getBackboneTraces() {
+        final List<Cartoon.Trace> traces = new ArrayList<Cartoon.Trace>();
+        if (structure == null) {
+            return traces;
+        }
+        final int capacity = atoms.size();
+        final double[] points = new double[3 * capacity], guides = new double[3 * capacity];
+        final int[] backboneAtoms = new int[capacity];
+        int n = 0, offset = 0;
+        boolean nucleic = false;
+        for (Chain chain : structure.getChains()) {
+            for (Group group : chain.getAtomGroups()) {
+                final List<Atom> groupAtoms = group.getAtoms();
+                final int ca = findAtom(groupAtoms, "CA"), o = findAtom(groupAtoms, "O");
+                final int p = findAtom(groupAtoms, "P"), c1 = findAtom(groupAtoms, "C1'", "C1*");
+                final boolean isAmino = (ca >= 0) && (findAtom(groupAtoms, "N") >= 0)
+                                        && (findAtom(groupAtoms, "C") >= 0);
+                final boolean isNucleotide = !isAmino && (p >= 0) && (c1 >= 0);
+                if (isAmino || isNucleotide) {
+                    final int backbone = isAmino ? ca : p, guide = isAmino ? o : c1;
+                    final double[] xyz = groupAtoms.get(backbone).getCoords();
+                    final double maxLink = isNucleotide ? MAX_PHOSPHATE_LINK : MAX_ALPHA_LINK;
+                    if ((n > 0) && ((nucleic != isNucleotide) || (distance(points, n - 1, xyz) > maxLink))) {
+                        addTrace(traces, points, guides, backboneAtoms, n, nucleic);
+                        n = 0;
                     }
+                    nucleic = isNucleotide;
+                    System.arraycopy(xyz, 0, points, 3 * n, 3);
+                    if (guide >= 0) {
+                        System.arraycopy(groupAtoms.get(guide).getCoords(), 0, guides, 3 * n, 3);
+                    } else {
+                        Arrays.fill(guides, 3 * n, 3 * n + 3, Double.NaN);
+                    }
+                    backboneAtoms[n++] = offset + backbone;
                 }
+                offset += groupAtoms.size();
             }
+            addTrace(traces, points, guides, backboneAtoms, n, nucleic);
+            n = 0;
         }
-        for (Bond bond : atomMap.values()) {
-            bondList.add(new VizBond(bond, radius));
+        return traces;
+    }
+    
+    public List<VizBond> getBonds(double radius) {
+        final int[] pairs = getBondPairs();
+        ArrayList<VizBond> bondList = new ArrayList<VizBond>(pairs.length / 2);
+        for (int i = 0; i < pairs.length; i += 2) {
+            bondList.add(new VizBond(atoms.get(pairs[i]), atoms.get(pairs[i + 1]), radius));
         }
         return bondList;
     }
@@ -74,5 +173,77 @@ public final class PDBSource {
     //--------------------------------------------------------------------------------------------------------- PRIVATE
 
     private Structure structure;
+    private final List<Atom> atoms = new ArrayList<Atom>();
+    private double[] atomCoords;
+    private double[] covalentRadii;
+    private int[] chainIndices;
+    private int chainCount = 0;
+    private int[] bondPairs = null;
+    private AtomIndex atomIndex;
+    
+    /** Greatest distance between consecutive alpha carbons, in angstroms, that are treated as linked. */
+    private static final double MAX_ALPHA_LINK = 4.2;
+    
+    /** Greatest distance between consecutive phosphorus atoms, in angstroms, that are treated as linked. */
+    private static final double MAX_PHOSPHATE_LINK = 8.0;
+    
+    private static int findAtom(List<Atom> groupAtoms, String... names) {
+        for (int i = 0; i < groupAtoms.size(); i++) {
+            for (String name : names) {
+                if (name.equals(groupAtoms.get(i).getName())) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    private static double distance(double[] points, int i, double[] xyz) {
+        final double dx = points[3 * i] - xyz[0], dy = points[3 * i + 1] - xyz[1], dz = points[3 * i + 2] - xyz[2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+    
+    private static void addTrace(List<Cartoon.Trace> traces, double[] points, double[] guides, int[] backboneAtoms,
+                                 int n, boolean nucleic)
+    {
+        if (n >= 2) {
+            traces.add(new Cartoon.Trace(points, guides, backboneAtoms, n, nucleic));
+        }
+    }
+    
+    private void indexAtoms() {
+        final List<Integer> chainEnds = new ArrayList<Integer>();
+        if (structure != null) {
+            for (Chain chain : structure.getChains()) {
+                for (Group group : chain.getAtomGroups()) {
+                    atoms.addAll(group.getAtoms());
+                }
+                chainEnds.add(atoms.size());
+            }
+        }
+        chainCount = chainEnds.size();
+        chainIndices = new int[atoms.size()];
+        for (int c = 0, start = 0; c < chainCount; start = chainEnds.get(c++)) {
+            Arrays.fill(chainIndices, start, chainEnds.get(c), c);
+        }
+        atomCoords = new double[3 * atoms.size()];
+        covalentRadii = new double[atoms.size()];
+        for (int i = 0; i < atoms.size(); i++) {
+            final Atom atom = atoms.get(i);
+            System.arraycopy(atom.getCoords(), 0, atomCoords, 3 * i, 3);
+            covalentRadii[i] = atom.getElement().getCovalentRadius();
+        }
+        
+        atomIndex = new AtomIndex(atomCoords, atoms.size());
+        for (int i = 0; i < atoms.size(); i++) {
+            final Atom atom = atoms.get(i);
+            final Group group = atom.getGroup();
+            atomIndex.setAttribute("chain", i, group.getChain().getChainID());
+            atomIndex.setAttribute("resname", i, group.getPDBName());
+            atomIndex.setAttribute("resi", i, String.valueOf(group.getResidueNumber().getSeqNum()));
+            atomIndex.setAttribute("name", i, atom.getName());
+            atomIndex.setAttribute("element", i, atom.getElement().name());
+        }
+    }
     
 }
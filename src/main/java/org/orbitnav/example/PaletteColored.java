@@ -0,0 +1,42 @@
+package org.orbitnav.example;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Atoms whose colors are looked up from a palette through a per-atom index, so that they can be recolored without
+ * touching their geometry.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public interface PaletteColored {
+
+    /**
+     * Returns the number of atoms.
+     *
+     * @return number of atoms
+     */
+    int getAtomCount();
+
+    /**
+     * Sets the palette.  Atoms whose color index lies outside the palette are drawn in its first color.
+     *
+     * @param colors palette colors (at least one)
+     */
+    void setPalette(Color... colors);
+
+    /**
+     * Sets the palette color of an atom.
+     *
+     * @param atom index of the atom
+     * @param colorIndex index into the palette
+     */
+    void setColorIndex(int atom, int colorIndex);
+
+    /**
+     * Sets the palette colors of all atoms.
+     *
+     * @param colorIndices index into the palette for each atom
+     */
+    void setColorIndices(int[] colorIndices);
+
+}
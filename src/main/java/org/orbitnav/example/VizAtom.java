@@ -4,9 +4,10 @@ import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
-import javafx.scene.shape.Sphere;
+import javafx.scene.shape.MeshView;
 
 import org.biojava.bio.structure.Atom;
+import org.orbitnav.TessellationCache;
 
 public final class VizAtom extends Group {
     
@@ -28,22 +29,55 @@ public final class VizAtom extends Group {
     
     public double getRadius() { return radius; }
     
+    /**
+     * Returns the color in which atoms of an element are drawn.
+     * 
+     * @param atomicNumber atomic number of the element
+     * @return color of the element
+     */
+    public static Color getElementColor(int atomicNumber) {
+        if ((atomicNumber >= 0) && (atomicNumber < MATERIALS.length) && (MATERIALS[atomicNumber] != null)) {
+            return MATERIALS[atomicNumber].getDiffuseColor();
+        }
+        return DEFAULT_COLOR;
+    }
+    
     //--------------------------------------------------------------------------------------------------------- PRIVATE
 
     private static final int NUM_SPHERE_DIVISIONS = 24;
     
-    private static final PhongMaterial MAT_CARBON     = new PhongMaterial(Color.web("#909090"));
-    private static final PhongMaterial MAT_NITROGEN   = new PhongMaterial(Color.web("#3050F8"));
-    private static final PhongMaterial MAT_OXYGEN     = new PhongMaterial(Color.web("#FF0D0D"));
-    private static final PhongMaterial MAT_PHOSPHORUS = new PhongMaterial(Color.web("#FF8000"));
+    /** Diffuse color of the default material of a Shape3D. */
+    private static final Color DEFAULT_COLOR = Color.LIGHTGRAY;
     
-    private static final PhongMaterial[] MATERIALS = { null,
-        null, null, null, null, null, MAT_CARBON, MAT_NITROGEN, MAT_OXYGEN, null, null,
-        null, null, null, null, MAT_PHOSPHORUS
+    /** RGB colors of the elements by atomic number, from hydrogen to meitnerium, following Jmol's CPK scheme. */
+    private static final int[] ELEMENT_RGB = { 0x000000,
+        0xFFFFFF, 0xD9FFFF, 0xCC80FF, 0xC2FF00, 0xFFB5B5, 0x909090, 0x3050F8, 0xFF0D0D, 0x90E050, 0xB3E3F5,   // 1-10
+        0xAB5CF2, 0x8AFF00, 0xBFA6A6, 0xF0C8A0, 0xFF8000, 0xFFFF30, 0x1FF01F, 0x80D1E3, 0x8F40D4, 0x3DFF00,   // 11-20
+        0xE6E6E6, 0xBFC2C7, 0xA6A6AB, 0x8A99C7, 0x9C7AC7, 0xE06633, 0xF090A0, 0x50D050, 0xC88033, 0x7D80B0,   // 21-30
+        0xC28F8F, 0x668F8F, 0xBD80E3, 0xFFA100, 0xA62929, 0x5CB8D1, 0x702EB0, 0x00FF00, 0x94FFFF, 0x94E0E0,   // 31-40
+        0x73C2C9, 0x54B5B5, 0x3B9E9E, 0x248F8F, 0x0A7D8C, 0x006985, 0xC0C0C0, 0xFFD98F, 0xA67573, 0x668080,   // 41-50
+        0x9E63B5, 0xD47A00, 0x940094, 0x429EB0, 0x57178F, 0x00C900, 0x70D4FF, 0xFFFFC7, 0xD9FFC7, 0xC7FFC7,   // 51-60
+        0xA3FFC7, 0x8FFFC7, 0x61FFC7, 0x45FFC7, 0x30FFC7, 0x1FFFC7, 0x00FF9C, 0x00E675, 0x00D452, 0x00BF38,   // 61-70
+        0x00AB24, 0x4DC2FF, 0x4DA6FF, 0x2194D6, 0x267DAB, 0x266696, 0x175487, 0xD0D0E0, 0xFFD123, 0xB8B8D0,   // 71-80
+        0xA6544D, 0x575961, 0x9E4FB5, 0xAB5C00, 0x754F45, 0x428296, 0x420066, 0x007D00, 0x70ABFA, 0x00BAFF,   // 81-90
+        0x00A1FF, 0x008FFF, 0x0080FF, 0x006BFF, 0x545CF2, 0x785CE3, 0x8A4FE3, 0xA136D4, 0xB31FD4, 0xB31FBA,   // 91-100
+        0xB30DA6, 0xBD0D87, 0xC70066, 0xCC0059, 0xD1004F, 0xD90045, 0xE00038, 0xE6002E, 0xEB0026      // 101-109
     };
+
+    /** Materials of the elements by atomic number, shared by all atoms. */
+    private static final PhongMaterial[] MATERIALS = new PhongMaterial[ELEMENT_RGB.length];
+    static {
+        for (int z = 1; z < ELEMENT_RGB.length; z++) {
+            MATERIALS[z] = new PhongMaterial(Color.rgb((ELEMENT_RGB[z] >> 16) & 0xFF, (ELEMENT_RGB[z] >> 8) & 0xFF,
+                                                       ELEMENT_RGB[z] & 0xFF));
+        }
+    }
     
     private void init() {
-        sphere = new Sphere(radius, NUM_SPHERE_DIVISIONS);
+        sphere = new MeshView(TessellationCache.getShared().sphereMesh(NUM_SPHERE_DIVISIONS));
+        sphere.setScaleX(radius);
+        sphere.setScaleY(radius);
+        sphere.setScaleZ(radius);
         sphere.setTranslateX(getX());
         sphere.setTranslateY(getY());
         sphere.setTranslateZ(getZ());
@@ -57,13 +91,13 @@ public final class VizAtom extends Group {
     private PhongMaterial getMaterial() {
         int atomicNumber = atom.getElement().getAtomicNumber();
         PhongMaterial material = null;
-        if (atomicNumber < MATERIALS.length) {
+        if ((atomicNumber >= 0) && (atomicNumber < MATERIALS.length)) {
             material = MATERIALS[atomicNumber];
         }
         return material;
     }
 
-    private Sphere sphere;
+    private MeshView sphere;
     private final Atom atom;
     private final double radius;
     
@@ -12,10 +12,12 @@
  */
 package org.orbitnav.internal;
 
+import org.orbitnav.TessellationCache;
+
 import javafx.scene.Group;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
-import javafx.scene.shape.Cylinder;
+import javafx.scene.shape.MeshView;
 import javafx.scene.transform.Affine;
 
 /**
@@ -47,26 +49,31 @@ public final class AxisTriad extends Group {
 
     private void createGeometry(double axisLength, double axisRadius) {
         
+        final TessellationCache cache = TessellationCache.getShared();
+        
         // x axis
-        final Cylinder xAxis = new Cylinder(axisRadius, axisLength, CYLINDER_DIVISIONS);
+        final MeshView xAxis = new MeshView(cache.cylinderMesh(CYLINDER_DIVISIONS, true));
         final Affine xAxisTransform = new Affine();
         xAxisTransform.appendTranslation(axisLength / 2.0, 0, 0);
         xAxisTransform.appendRotation(-90, 0, 0, 0, 0, 0, 1);
+        xAxisTransform.appendScale(axisRadius, axisLength, axisRadius);
         xAxis.getTransforms().add(xAxisTransform);
         xAxis.setMaterial(createDiffuseMaterial(Color.RED));
         
         // y axis
-        final Cylinder yAxis = new Cylinder(axisRadius, axisLength, CYLINDER_DIVISIONS);
+        final MeshView yAxis = new MeshView(cache.cylinderMesh(CYLINDER_DIVISIONS, true));
         final Affine yAxisTransform = new Affine();
         yAxisTransform.appendTranslation(0, axisLength / 2.0, 0);
+        yAxisTransform.appendScale(axisRadius, axisLength, axisRadius);
         yAxis.getTransforms().add(yAxisTransform);
         yAxis.setMaterial(createDiffuseMaterial(Color.GREEN));
         
         // z axis
-        final Cylinder zAxis = new Cylinder(axisRadius, axisLength, CYLINDER_DIVISIONS);
+        final MeshView zAxis = new MeshView(cache.cylinderMesh(CYLINDER_DIVISIONS, true));
         final Affine zAxisTransform = new Affine();
         zAxisTransform.appendTranslation(0, 0, axisLength / 2.0);
         zAxisTransform.appendRotation(90, 0, 0, 0, 1, 0, 0);
+        zAxisTransform.appendScale(axisRadius, axisLength, axisRadius);
         zAxis.getTransforms().add(zAxisTransform);
         zAxis.setMaterial(createDiffuseMaterial(Color.BLUE));
         
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import java.util.Arrays;
+
+/**
+ * A low-resolution software depth buffer for occlusion culling.
+ *
+ * <p>
+ * Occluders are drawn as discs of constant depth.  Each disc is drawn slightly smaller than the occluder's outline on
+ * the raster, at the depth of the occluder's center, so that the buffer never claims to be nearer than the real
+ * surface.  Once all occluders have been drawn, {@link #buildHierarchy() buildHierarchy} builds a pyramid in which each
+ * texel holds the furthest depth of the four texels below it.  An occludee is first tested against a handful of texels
+ * at the level where its bounding rectangle spans at most two texels, and the test is refined into finer levels only
+ * where a coarse texel is inconclusive.
+ *
+ * <p>
+ * Depths are distances along the viewing axis of the camera, with larger values further away.  Coordinates are in the
+ * units of the full-resolution raster; the buffer scales them internally.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class DepthBuffer {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Creates a new, empty <code>DepthBuffer</code>.
+     *
+     * @param rasterWidth width of the full-resolution raster
+     * @param rasterHeight height of the full-resolution raster
+     * @param bufferWidth width of the buffer, in texels; the height follows from the aspect ratio of the raster
+     */
+    public DepthBuffer(double rasterWidth, double rasterHeight, int bufferWidth) {
+        this.scale = bufferWidth / Math.max(rasterWidth, 1.0);
+        final int bufferHeight = Math.max(1, (int)Math.ceil(rasterHeight * scale));
+
+        // pyramid levels, down to a single texel
+        int nLevels = 1;
+        for (int w = bufferWidth, h = bufferHeight; (w > 1) || (h > 1); w = (w + 1) / 2, h = (h + 1) / 2) {
+            nLevels++;
+        }
+        widths = new int[nLevels];
+        heights = new int[nLevels];
+        levels = new float[nLevels][];
+        int w = bufferWidth, h = bufferHeight;
+        for (int l = 0; l < nLevels; l++) {
+            widths[l] = w;
+            heights[l] = h;
+            levels[l] = new float[w * h];
+            w = (w + 1) / 2;
+            h = (h + 1) / 2;
+        }
+        Arrays.fill(levels[0], Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Draws an occluder.
+     *
+     * @param rasterX x coordinate of the center of the occluder on the raster
+     * @param rasterY y coordinate of the center of the occluder on the raster
+     * @param rasterRadius radius of the occluder on the raster
+     * @param depth depth of the center of the occluder
+     */
+    public void drawOccluder(double rasterX, double rasterY, double rasterRadius, double depth) {
+        // shrink by half a texel diagonal, so that only texels entirely covered by the disc are written
+        final double r = rasterRadius * scale - SQRT_HALF;
+        if (r <= 0) {
+            return;
+        }
+        final double cx = rasterX * scale, cy = rasterY * scale;
+        final int w = widths[0], h = heights[0];
+        final float[] buf = levels[0];
+        final float d = (float)depth;
+        final int y0 = Math.max(0, (int)Math.ceil(cy - r - 0.5));
+        final int y1 = Math.min(h - 1, (int)Math.floor(cy + r - 0.5));
+        for (int y = y0; y <= y1; y++) {
+            final double dy = y + 0.5 - cy;
+            final double half = Math.sqrt(Math.max(0, r * r - dy * dy));
+            final int x0 = Math.max(0, (int)Math.ceil(cx - half - 0.5));
+            final int x1 = Math.min(w - 1, (int)Math.floor(cx + half - 0.5));
+            for (int x = x0, i = y * w + x0; x <= x1; x++, i++) {
+                if (d < buf[i]) {
+                    buf[i] = d;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the pyramid of furthest depths.  Must be called after all occluders have been drawn, and before any
+     * occludees are tested.
+     */
+    public void buildHierarchy() {
+        for (int l = 1; l < levels.length; l++) {
+            final float[] src = levels[l - 1];
+            final float[] dst = levels[l];
+            final int sw = widths[l - 1], sh = heights[l - 1];
+            final int w = widths[l], h = heights[l];
+            for (int y = 0; y < h; y++) {
+                final int sy0 = 2 * y, sy1 = Math.min(2 * y + 1, sh - 1);
+                for (int x = 0; x < w; x++) {
+                    final int sx0 = 2 * x, sx1 = Math.min(2 * x + 1, sw - 1);
+                    dst[y * w + x] = Math.max(Math.max(src[sy0 * sw + sx0], src[sy0 * sw + sx1]),
+                                              Math.max(src[sy1 * sw + sx0], src[sy1 * sw + sx1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests whether a sphere is entirely hidden behind the occluders.
+     *
+     * @param rasterX x coordinate of the center of the sphere on the raster
+     * @param rasterY y coordinate of the center of the sphere on the raster
+     * @param rasterRadius radius of the sphere on the raster
+     * @param nearestDepth depth of the nearest point of the sphere
+     * @return <code>true</code> if the sphere is occluded
+     */
+    public boolean isOccluded(double rasterX, double rasterY, double rasterRadius, double nearestDepth) {
+        final double r = rasterRadius * scale;
+        final double cx = rasterX * scale, cy = rasterY * scale;
+        final int x0 = Math.max(0, (int)Math.floor(cx - r));
+        final int y0 = Math.max(0, (int)Math.floor(cy - r));
+        final int x1 = Math.min(widths[0] - 1, (int)Math.floor(cx + r));
+        final int y1 = Math.min(heights[0] - 1, (int)Math.floor(cy + r));
+        if ((x0 > x1) || (y0 > y1)) {
+            return false;  // entirely off the raster; left to frustum culling
+        }
+
+        // start at the coarsest level at which the rectangle spans no more than two texels in each direction
+        int l = 0;
+        while ((l + 1 < levels.length) && (((x1 >> l) - (x0 >> l) >= 2) || ((y1 >> l) - (y0 >> l) >= 2))) {
+            l++;
+        }
+        for (int y = y0 >> l; y <= y1 >> l; y++) {
+            for (int x = x0 >> l; x <= x1 >> l; x++) {
+                if (!isOccluded(l, x, y, x0, y0, x1, y1, nearestDepth)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final double SQRT_HALF = Math.sqrt(0.5);
+
+    private final double scale;
+    private final int[] widths;
+    private final int[] heights;
+    private final float[][] levels;
+
+    /**
+     * Tests the part of a rectangle (in texels of the finest level) that lies within one texel of a level, refining
+     * into the finer levels wherever the coarse texel is not conclusive.
+     */
+    private boolean isOccluded(int l, int x, int y, int x0, int y0, int x1, int y1, double nearestDepth) {
+        if (nearestDepth > levels[l][y * widths[l] + x]) {
+            return true;
+        }
+        if (l == 0) {
+            return false;
+        }
+        final int fl = l - 1;
+        final int fx0 = Math.max(2 * x, x0 >> fl), fx1 = Math.min(2 * x + 1, x1 >> fl);
+        final int fy0 = Math.max(2 * y, y0 >> fl), fy1 = Math.min(2 * y + 1, y1 >> fl);
+        for (int fy = fy0; fy <= fy1; fy++) {
+            for (int fx = fx0; fx <= fx1; fx++) {
+                if ((fx < widths[fl]) && (fy < heights[fl]) && !isOccluded(fl, fx, fy, x0, y0, x1, y1, nearestDepth)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
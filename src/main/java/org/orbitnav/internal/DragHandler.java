@@ -35,4 +35,10 @@ public interface DragHandler {
      */
     void handleDrag(MouseEvent mouseEvent, double deltaX, double deltaY);
     
+    /**
+     * Handle the release event that ends a drag.
+     * @param mouseEvent the mouse event invoking the release
+     */
+    void handleRelease(MouseEvent mouseEvent);
+    
 }
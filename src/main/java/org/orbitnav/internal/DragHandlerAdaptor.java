@@ -22,4 +22,5 @@ import javafx.scene.input.MouseEvent;
 public class DragHandlerAdaptor implements DragHandler {
     @Override public void handleClick(MouseEvent mouseEvent) { }
     @Override public void handleDrag(MouseEvent mouseEvent, double deltaX, double deltaY) { }
+    @Override public void handleRelease(MouseEvent mouseEvent) { }
 }
@@ -0,0 +1,197 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import java.util.Arrays;
+
+import javafx.geometry.VPos;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * A cache of pre-rendered glyphs for a single font and fill.
+ *
+ * <p>
+ * Glyphs are rendered on demand into the cells of a grid, which is then captured as a single image.  Text can be drawn
+ * by copying glyph cells from the {@link #getImage() image}, avoiding glyph layout and rasterization each time the
+ * text is drawn.  The atlas grows, re-rendering its glyphs, when the grid is full.
+ *
+ * <p>
+ * This class must only be used on the JavaFX application thread.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class GlyphAtlas {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Creates a new <code>GlyphAtlas</code>.
+     *
+     * @param font font of the glyphs
+     * @param fill fill of the glyphs
+     */
+    public GlyphAtlas(Font font, Paint fill) {
+        this.font = font;
+        this.fill = fill;
+        final Text measure = new Text("Mg");
+        measure.setFont(font);
+        cellHeight = Math.ceil(measure.getLayoutBounds().getHeight());
+        cellWidth = Math.ceil(1.5 * font.getSize());
+        Arrays.fill(cellOfChar, -1);
+        allocate(INITIAL_ROWS);
+    }
+
+    /**
+     * Returns the cell of a glyph, rendering it into the atlas if required.
+     *
+     * @param c character
+     * @return index of the glyph's cell
+     */
+    public int getCell(char c) {
+        int cell = cellOfChar[c];
+        if (cell < 0) {
+            if (glyphCount == rows * COLUMNS) {
+                allocate(2 * rows);
+            }
+            cell = glyphCount++;
+            cellOfChar[c] = cell;
+            chars[cell] = c;
+            advances[cell] = measureAdvance(c);
+            renderGlyph(cell);
+        }
+        return cell;
+    }
+
+    /**
+     * Returns the horizontal advance of a glyph.
+     *
+     * @param c character
+     * @return advance (pixels)
+     */
+    public double getAdvance(char c) { return advances[getCell(c)]; }
+
+    /**
+     * Returns the total advance of a string.
+     *
+     * @param s string
+     * @return advance (pixels)
+     */
+    public double getAdvance(String s) {
+        double w = 0;
+        for (int i = 0; i < s.length(); i++) {
+            w += getAdvance(s.charAt(i));
+        }
+        return w;
+    }
+
+    /**
+     * Returns the x coordinate of the left of a cell in the atlas image.
+     *
+     * @param cell cell index
+     * @return x coordinate (pixels)
+     */
+    public double getCellX(int cell) { return (cell % COLUMNS) * cellWidth; }
+
+    /**
+     * Returns the y coordinate of the top of a cell in the atlas image.
+     *
+     * @param cell cell index
+     * @return y coordinate (pixels)
+     */
+    public double getCellY(int cell) { return (cell / COLUMNS) * cellHeight; }
+
+    /**
+     * Returns the width of the rendered part of a cell.
+     *
+     * @param cell cell index
+     * @return width (pixels)
+     */
+    public double getCellWidth(int cell) { return Math.min(cellWidth, Math.ceil(advances[cell])); }
+
+    /**
+     * Returns the height of each cell (and of each line of text).
+     *
+     * @return height (pixels)
+     */
+    public double getCellHeight() { return cellHeight; }
+
+    /**
+     * Returns the atlas image, capturing newly-rendered glyphs first if required.
+     *
+     * @return atlas image
+     */
+    public Image getImage() {
+        if (imageDirty) {
+            image = canvas.snapshot(snapshotParameters, null);
+            imageDirty = false;
+        }
+        return image;
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private static final int COLUMNS = 16;
+    private static final int INITIAL_ROWS = 8;
+
+    private final Font font;
+    private final Paint fill;
+    private final double cellWidth;
+    private final double cellHeight;
+
+    private final int[] cellOfChar = new int[Character.MAX_VALUE + 1];
+    private char[] chars;
+    private double[] advances;
+    private int glyphCount = 0;
+    private int rows;
+
+    private Canvas canvas;
+    private Image image;
+    private boolean imageDirty = true;
+    private final Text measureText = new Text();
+    private final SnapshotParameters snapshotParameters = new SnapshotParameters();
+
+    private void allocate(int newRows) {
+        rows = newRows;
+        chars = (chars == null) ? new char[rows * COLUMNS] : Arrays.copyOf(chars, rows * COLUMNS);
+        advances = (advances == null) ? new double[rows * COLUMNS] : Arrays.copyOf(advances, rows * COLUMNS);
+        canvas = new Canvas(COLUMNS * cellWidth, rows * cellHeight);
+        final GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFont(font);
+        gc.setFill(fill);
+        gc.setTextBaseline(VPos.TOP);
+        snapshotParameters.setFill(Color.TRANSPARENT);
+        for (int cell = 0; cell < glyphCount; cell++) {
+            renderGlyph(cell);
+        }
+        imageDirty = true;
+    }
+
+    private void renderGlyph(int cell) {
+        canvas.getGraphicsContext2D().fillText(String.valueOf(chars[cell]), getCellX(cell), getCellY(cell));
+        imageDirty = true;
+    }
+
+    private double measureAdvance(char c) {
+        measureText.setFont(font);
+        measureText.setText(String.valueOf(c));
+        return measureText.getLayoutBounds().getWidth();
+    }
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import org.orbitnav.internal.geom.MutableQuat3D;
+import org.orbitnav.internal.geom.MutableVec3D;
+
+import javafx.beans.property.DoubleProperty;
+
+/**
+ * Applies incremental rotations, expressed in the camera's own frame, to an axis-angle camera rotation.
+ *
+ * <p>
+ * Drag-based arcball rotation works relative to the rotation at the start of the drag.  Scroll and rotate gestures
+ * instead deliver a stream of small increments, which this class concatenates onto the current rotation.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class IncrementalArcballRotation {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Creates a new <code>IncrementalArcballRotation</code>.
+     *
+     * @param rotationAngle rotation angle property (degrees)
+     * @param rotationAxisX rotation axis x property
+     * @param rotationAxisY rotation axis y property
+     * @param rotationAxisZ rotation axis z property
+     */
+    public IncrementalArcballRotation(DoubleProperty rotationAngle,
+            DoubleProperty rotationAxisX, DoubleProperty rotationAxisY, DoubleProperty rotationAxisZ)
+    {
+        this.rotationAngle = rotationAngle;
+        this.rotationAxisX = rotationAxisX;
+        this.rotationAxisY = rotationAxisY;
+        this.rotationAxisZ = rotationAxisZ;
+    }
+
+    /**
+     * Concatenates a rotation, expressed in camera coordinates, onto the current rotation.
+     *
+     * @param x x component of the axis of rotation (camera coordinates)
+     * @param y y component of the axis of rotation (camera coordinates)
+     * @param z z component of the axis of rotation (camera coordinates)
+     * @param angleRadians angle of rotation (radians)
+     */
+    public void concatRotationRadians(double x, double y, double z, double angleRadians) {
+        if ((angleRadians == 0) || ((x == 0) && (y == 0) && (z == 0))) {
+            return;
+        }
+        final double ax = rotationAxisX.get();
+        final double ay = rotationAxisY.get();
+        final double az = rotationAxisZ.get();
+        if ((ax == 0) && (ay == 0) && (az == 0)) {
+            quat.setAxisAngleRadians(1, 0, 0, 0);
+        } else {
+            quat.setAxisAngleDegrees(ax, ay, az, rotationAngle.get());
+        }
+        quat.concatRotationRadians(x, y, z, angleRadians);
+        quat.normalize();
+        quat.getAxis(axis);
+        rotationAxisX.set(axis.getX());
+        rotationAxisY.set(axis.getY());
+        rotationAxisZ.set(axis.getZ());
+        rotationAngle.set(Util.normalizeAngle(quat.getAngleDegrees()));
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final DoubleProperty rotationAngle;
+    private final DoubleProperty rotationAxisX;
+    private final DoubleProperty rotationAxisY;
+    private final DoubleProperty rotationAxisZ;
+
+    private final MutableQuat3D quat = new MutableQuat3D();
+    private final MutableVec3D axis = new MutableVec3D();
+
+}
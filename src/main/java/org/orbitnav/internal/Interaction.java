@@ -1,5 +1,6 @@
 package org.orbitnav.internal;
 
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
 import org.orbitnav.NavigationBehavior;
 
@@ -11,6 +12,11 @@ import org.orbitnav.NavigationBehavior;
  * {@link Host Host}.  They also have a {@link NavigationBehavior NavigationBehavior} property, which associates
  * other required information such as modifier keys, mouse buttons, etc.
  *
+ * <p>
+ * Interactions may optionally coalesce their input events, so that the effect of several events arriving within a
+ * single JavaFX pulse is applied only once per pulse.  This is controlled by the {@link #coalescingProperty()
+ * coalescing} property.
+ *
  * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
  */
 public interface Interaction extends Attachable {
@@ -36,4 +42,26 @@ public interface Interaction extends Attachable {
      */
     public NavigationBehavior getNavigationBehavior();
 
+    /**
+     * Returns the coalescing property.  When <code>true</code>, input events are accumulated and applied at most once
+     * per JavaFX pulse.
+     *
+     * @return coalescing property
+     */
+    public BooleanProperty coalescingProperty();
+
+    /**
+     * Indicates whether input events are coalesced to at most one update per pulse.
+     *
+     * @return <code>true</code> if input events are coalesced
+     */
+    public boolean isCoalescing();
+
+    /**
+     * Sets whether input events should be coalesced to at most one update per pulse.
+     *
+     * @param value <code>true</code> if input events should be coalesced
+     */
+    public void setCoalescing(boolean value);
+
 }
@@ -12,9 +12,11 @@
  */
 package org.orbitnav.internal;
 
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
 
@@ -47,6 +49,10 @@ public abstract class InteractionBase implements Interaction {
     @Override public NavigationBehavior getNavigationBehavior() { return navigationBehavior.get(); }
     @Override public void setNavigationBehavior(NavigationBehavior nb) { navigationBehavior.set(nb); }
 
+    @Override public BooleanProperty coalescingProperty() { return coalescing; }
+    @Override public boolean isCoalescing() { return coalescing.get(); }
+    @Override public void setCoalescing(boolean value) { coalescing.set(value); }
+
     /**
      * Property bound to the width of the interaction's current host.
      * @return property bound to the width of the interaction's current host
@@ -75,6 +81,7 @@ public abstract class InteractionBase implements Interaction {
     
     private final ObjectProperty<NavigationBehavior> navigationBehavior =
             new SimpleObjectProperty<>(this, "navigationBehavior", null);
+    private final BooleanProperty coalescing = new SimpleBooleanProperty(this, "coalescing", false);
     private Host host;
     private final DoubleProperty width = new SimpleDoubleProperty(this, "width", 1.0);
     private final DoubleProperty height = new SimpleDoubleProperty(this, "height", 1.0);
@@ -13,12 +13,22 @@
 package org.orbitnav.internal;
 
 import javafx.event.EventHandler;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import static javafx.scene.input.MouseEvent.*;
 import org.orbitnav.NavigationBehavior;
 
 /**
  * Abstract base class for all dragging interactions.
+ *
+ * <p>
+ * When {@link #coalescingProperty() coalescing} is enabled, the drag deltas of all <code>MOUSE_DRAGGED</code> events
+ * that arrive within a pulse are summed, and the {@link DragHandler DragHandler} is invoked once per pulse with the
+ * summed deltas and the most recent <code>MouseEvent</code>.  Handlers that are additive in the deltas (eg. panning)
+ * or that only depend upon the current pointer position (eg. the arcball) therefore produce the same result as they
+ * would without coalescing.  Handlers whose response to a delta depends upon state that the pending deltas would
+ * change override {@link #canCoalesce(double, double) canCoalesce} to have the pending deltas applied first.  Any
+ * pending drag is flushed before a new press and when the mouse is released.
  * 
  * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
  */
@@ -30,17 +40,23 @@ public abstract class InteractionDrag extends InteractionBase {
         super();
         // it only makes sense for mouseDrag navigation behavior to be assigned; so assert() that
         navigationBehaviorProperty().addListener((o, old, value) -> { assert(value.isMouseDrag()); });
+        // apply anything still pending when coalescing is switched off
+        coalescingProperty().addListener((o, old, value) -> { if (!value) coalescer.flush(); });
     }
     
     @Override public void attachToHost(Host host) {
         super.attachToHost(host);
         host.addEventHandler(MOUSE_PRESSED, mousePressHandler);
         host.addEventHandler(MOUSE_DRAGGED, mouseDragHandler);
+        host.addEventHandler(MOUSE_RELEASED, mouseReleaseHandler);
     }
     
     @Override public void detachFromHost(Host host) {
         host.removeEventHandler(MOUSE_PRESSED, mousePressHandler);
         host.removeEventHandler(MOUSE_DRAGGED, mouseDragHandler);
+        host.removeEventHandler(MOUSE_RELEASED, mouseReleaseHandler);
+        coalescer.cancel();
+        dragActive = false;
         super.detachFromHost(host);
     }
     
@@ -60,6 +76,20 @@ public abstract class InteractionDrag extends InteractionBase {
      * @return drag handler
      */
     protected abstract DragHandler getDragHandler();
+
+    /**
+     * Returns whether the deltas of another drag event may be summed with those already pending in the current pulse.
+     *
+     * <p>
+     * The default returns <code>true</code>.  Sub-classes whose handler would respond differently to the next delta
+     * once the pending deltas have been applied should return <code>false</code> in that case, so that the pending
+     * deltas are applied before the next delta is added.
+     *
+     * @param pendingDeltaX horizontal drag amount pending in the current pulse
+     * @param pendingDeltaY vertical drag amount pending in the current pulse
+     * @return <code>true</code> if the next delta may be summed with the pending deltas
+     */
+    protected boolean canCoalesce(double pendingDeltaX, double pendingDeltaY) { return true; }
     
     //--------------------------------------------------------------------------------------------------------- PRIVATE
 
@@ -68,9 +98,29 @@ public abstract class InteractionDrag extends InteractionBase {
     private double oldX;
     private double oldY;
 
+    private boolean dragActive = false;
+    private MouseButton pressButton;
+
+    private MouseEvent pendingEvent;
+    private double pendingDeltaX;
+    private double pendingDeltaY;
+
+    private final PulseCoalescer coalescer = new PulseCoalescer(() -> {
+        final MouseEvent m = pendingEvent;
+        final double deltaX = pendingDeltaX;
+        final double deltaY = pendingDeltaY;
+        pendingEvent = null;
+        pendingDeltaX = 0;
+        pendingDeltaY = 0;
+        getDragHandler().handleDrag(m, deltaX, deltaY);
+    });
+
     private final EventHandler<MouseEvent> mousePressHandler = (m) -> {
         final NavigationBehavior nb = getNavigationBehavior();
         if (nb.inputEventMatches(m)) {
+            coalescer.flush();
+            dragActive = true;
+            pressButton = m.getButton();
             x = m.getSceneX();
             y = m.getSceneY();
             getDragHandler().handleClick(m);
@@ -84,7 +134,26 @@ public abstract class InteractionDrag extends InteractionBase {
             oldY = y;
             x = m.getSceneX();
             y = m.getSceneY();
-            getDragHandler().handleDrag(m, x - oldX, y - oldY);
+            if (isCoalescing()) {
+                if ((pendingEvent != null) && !canCoalesce(pendingDeltaX, pendingDeltaY)) {
+                    coalescer.flush();
+                }
+                pendingEvent = m;
+                pendingDeltaX += x - oldX;
+                pendingDeltaY += y - oldY;
+                coalescer.schedule();
+            } else {
+                getDragHandler().handleDrag(m, x - oldX, y - oldY);
+            }
+        }
+    };
+
+    private final EventHandler<MouseEvent> mouseReleaseHandler = (m) -> {
+        coalescer.flush();
+        // the modifiers may have changed since the press, so end any drag that this interaction started
+        if (dragActive && (m.getButton() == pressButton)) {
+            dragActive = false;
+            getDragHandler().handleRelease(m);
         }
     };
 
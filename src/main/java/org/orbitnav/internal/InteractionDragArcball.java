@@ -107,6 +107,7 @@ public final class InteractionDragArcball extends InteractionDrag {
                 rotationAngle.set(Util.normalizeAngle(finalQuat.getAngleDegrees()));
             }
         }
+        @Override public void handleRelease(MouseEvent me) { }
     };
 
 }
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import java.util.Arrays;
+
+import org.orbitnav.CameraToRasterTransform;
+import org.orbitnav.ScreenRegion;
+import org.orbitnav.SelectionListener;
+
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.collections.ObservableList;
+import javafx.scene.input.MouseEvent;
+
+/**
+ * Box or lasso selection drag interaction.
+ *
+ * <p>
+ * While dragging, the outline of the region being selected is published to an active-outline list (eg. so that it
+ * can be drawn as a rubber band); a lasso appends one vertex to it per drag event.  When the drag ends, the outline
+ * is cleared, and the region is built once and passed to the current {@link SelectionListener SelectionListener}.
+ * Regions are in the local coordinates of the host, which are the raster coordinates of
+ * {@link CameraToRasterTransform CameraToRasterTransform}.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class InteractionDragSelect extends InteractionDrag {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Creates a new instance of <code>InteractionDragSelect</code>.
+     *
+     * @param lasso <code>true</code> for a lasso selection, <code>false</code> for a box selection
+     * @param activeOutline list that holds the packed vertex coordinates of the region being selected while a drag is
+     * in progress
+     * @param selectionListener listener that receives the selected region when the drag ends
+     * @param transformToRaster current scene-to-raster transform
+     */
+    public InteractionDragSelect(boolean lasso, ObservableList<Double> activeOutline,
+                                 ReadOnlyObjectProperty<SelectionListener> selectionListener,
+                                 ReadOnlyObjectProperty<CameraToRasterTransform> transformToRaster)
+    {
+        this.lasso = lasso;
+        this.activeOutline = activeOutline;
+        this.selectionListener = selectionListener;
+        this.transformToRaster = transformToRaster;
+    }
+
+    //------------------------------------------------------------------------------------------------------- PROTECTED
+
+    protected DragHandler getDragHandler() { return dragHandler; }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final boolean lasso;
+    private final ObservableList<Double> activeOutline;
+    private final ReadOnlyObjectProperty<SelectionListener> selectionListener;
+    private final ReadOnlyObjectProperty<CameraToRasterTransform> transformToRaster;
+
+    private double startX;
+    private double startY;
+    private double[] lassoXY = new double[256];
+    private int lassoCount = 0;
+
+    private void addLassoPoint(double x, double y) {
+        if (2 * lassoCount + 2 > lassoXY.length) {
+            lassoXY = Arrays.copyOf(lassoXY, 2 * lassoXY.length);
+        }
+        lassoXY[2 * lassoCount]     = x;
+        lassoXY[2 * lassoCount + 1] = y;
+        lassoCount++;
+    }
+
+    private void setBoxOutline(double x, double y) {
+        activeOutline.setAll(startX, startY, x, startY, x, y, startX, y);
+    }
+
+    private final DragHandler dragHandler = new DragHandlerAdaptor() {
+        @Override public void handleClick(MouseEvent me) {
+            startX = me.getX();
+            startY = me.getY();
+            lassoCount = 0;
+            addLassoPoint(startX, startY);
+            activeOutline.clear();
+        }
+        @Override public void handleDrag(MouseEvent me, double deltaX, double deltaY) {
+            if (lasso) {
+                if (activeOutline.isEmpty()) {
+                    activeOutline.addAll(startX, startY);
+                }
+                addLassoPoint(me.getX(), me.getY());
+                activeOutline.addAll(me.getX(), me.getY());
+            } else {
+                setBoxOutline(me.getX(), me.getY());
+            }
+        }
+        @Override public void handleRelease(MouseEvent me) {
+            final ScreenRegion region;
+            if (lasso) {
+                addLassoPoint(me.getX(), me.getY());
+                region = ScreenRegion.polygon(lassoXY, lassoCount);
+            } else {
+                region = ScreenRegion.rectangle(startX, startY, me.getX(), me.getY());
+            }
+            activeOutline.clear();
+            final SelectionListener listener = selectionListener.get();
+            if ((listener != null) && !region.isEmpty()) {
+                listener.regionSelected(region, transformToRaster.get());
+            }
+        }
+    };
+
+}
@@ -19,6 +19,10 @@ import javafx.scene.input.MouseEvent;
 /**
  * Turntable drag interaction.
  *
+ * <p>
+ * The direction in which a horizontal drag spins the turntable reverses when the tilt crosses 180 degrees, so when
+ * drag events are coalesced, the pending deltas are applied before a delta that would start on the other side.
+ *
  * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
  */
 public final class InteractionDragXZTurntable extends InteractionDrag {
@@ -34,6 +38,12 @@ public final class InteractionDragXZTurntable extends InteractionDrag {
     
     protected DragHandler getDragHandler() { return dragHandler; }
 
+    @Override protected boolean canCoalesce(double pendingDeltaX, double pendingDeltaY) {
+        final double xRot = xRotation.get();
+        final double pendingXRot = Util.normalizeAngle(xRot - (rotationCoefficient.get() * pendingDeltaY));
+        return (xRot > 180.0) == (pendingXRot > 180.0);
+    }
+
     //--------------------------------------------------------------------------------------------------------- PRIVATE
     
     private final DoubleProperty xRotation = new SimpleDoubleProperty(this, "xRotation", 0);
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import javafx.event.EventHandler;
+import javafx.scene.input.RotateEvent;
+
+/**
+ * Abstract base class for interactions triggered by rotate gestures (eg. trackpad two-finger twist).
+ *
+ * <p>
+ * Rotation angles are summed when events are coalesced.  Inertia events are always coalesced to at most one update
+ * per pulse; other events are coalesced only when the {@link #coalescingProperty() coalescing} property is set.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public abstract class InteractionGestureRotate extends InteractionBase {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    public InteractionGestureRotate() {
+        super();
+        // it only makes sense for rotate gesture navigation behavior to be assigned; so assert() that
+        navigationBehaviorProperty().addListener((ob, old, value) -> { assert(value.isGestureRotate()); });
+        // apply anything still pending when coalescing is switched off
+        coalescingProperty().addListener((ob, old, value) -> { if (!value) coalescer.flush(); });
+    }
+
+    @Override public void attachToHost(Host host) {
+        super.attachToHost(host);
+        host.addEventHandler(RotateEvent.ROTATE, rotateHandler);
+    }
+
+    @Override public void detachFromHost(Host host) {
+        coalescer.cancel();
+        super.detachFromHost(host);
+        host.removeEventHandler(RotateEvent.ROTATE, rotateHandler);
+    }
+
+    //------------------------------------------------------------------------------------------------------- PROTECTED
+
+    /**
+     * Handles a (possibly coalesced) rotation.
+     *
+     * <p>
+     * This method must be implemented by sub-classes.
+     *
+     * @param angleDegrees rotation angle delta (degrees, clockwise on the raster)
+     */
+    protected abstract void handleRotate(double angleDegrees);
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private double pendingAngle = 0;
+
+    private final PulseCoalescer coalescer = new PulseCoalescer(() -> {
+        final double angle = pendingAngle;
+        pendingAngle = 0;
+        handleRotate(angle);
+    });
+
+    private final EventHandler<RotateEvent> rotateHandler = (re) -> {
+        if (getNavigationBehavior().inputEventMatches(re)) {
+            if (isCoalescing() || re.isInertia()) {
+                pendingAngle += re.getAngle();
+                coalescer.schedule();
+            } else {
+                coalescer.flush();
+                handleRotate(re.getAngle());
+            }
+        }
+    };
+
+}
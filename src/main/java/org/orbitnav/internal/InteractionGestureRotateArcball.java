@@ -0,0 +1,54 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+
+/**
+ * Rotate gesture interaction for an arcball camera.  The view is rolled about the camera's viewing axis, so that the
+ * scene follows the rotation of the fingers.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class InteractionGestureRotateArcball extends InteractionGestureRotate {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    public InteractionGestureRotateArcball(DoubleProperty rotationAngle,
+            DoubleProperty rotationAxisX, DoubleProperty rotationAxisY, DoubleProperty rotationAxisZ)
+    {
+        this.rotationAngle.bindBidirectional(rotationAngle);
+        this.rotationAxisX.bindBidirectional(rotationAxisX);
+        this.rotationAxisY.bindBidirectional(rotationAxisY);
+        this.rotationAxisZ.bindBidirectional(rotationAxisZ);
+    }
+
+    //------------------------------------------------------------------------------------------------------- PROTECTED
+
+    @Override protected void handleRotate(double angleDegrees) {
+        // rotating the camera anti-clockwise makes the scene appear to rotate clockwise
+        rotation.concatRotationRadians(0, 0, 1, -Math.toRadians(angleDegrees));
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final DoubleProperty rotationAxisX = new SimpleDoubleProperty(this, "rotationAxisX", 0);
+    private final DoubleProperty rotationAxisY = new SimpleDoubleProperty(this, "rotationAxisY", 0);
+    private final DoubleProperty rotationAxisZ = new SimpleDoubleProperty(this, "rotationAxisZ", 0);
+    private final DoubleProperty rotationAngle = new SimpleDoubleProperty(this, "rotationAngle", 0);
+
+    private final IncrementalArcballRotation rotation =
+            new IncrementalArcballRotation(rotationAngle, rotationAxisX, rotationAxisY, rotationAxisZ);
+
+}
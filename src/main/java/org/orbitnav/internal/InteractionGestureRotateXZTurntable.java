@@ -0,0 +1,44 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+
+/**
+ * Rotate gesture interaction for a turntable camera.  The gesture spins the turntable (ie. rotates about the z-axis).
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class InteractionGestureRotateXZTurntable extends InteractionGestureRotate {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    public InteractionGestureRotateXZTurntable(DoubleProperty xRotation, DoubleProperty zRotation) {
+        this.xRotation.bindBidirectional(xRotation);
+        this.zRotation.bindBidirectional(zRotation);
+    }
+
+    //------------------------------------------------------------------------------------------------------- PROTECTED
+
+    @Override protected void handleRotate(double angleDegrees) {
+        final double zRotationSign = (xRotation.get() > 180.0) ? (1.0) : (-1.0);
+        zRotation.set(Util.normalizeAngle(zRotation.get() + zRotationSign * angleDegrees));
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final DoubleProperty xRotation = new SimpleDoubleProperty(this, "xRotation", 0);
+    private final DoubleProperty zRotation = new SimpleDoubleProperty(this, "zRotation", 0);
+
+}
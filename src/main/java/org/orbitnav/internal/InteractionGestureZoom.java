@@ -0,0 +1,84 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.event.EventHandler;
+import javafx.scene.input.ZoomEvent;
+
+/**
+ * Zoom interaction triggered by zoom gestures (eg. trackpad pinch).
+ *
+ * <p>
+ * Zoom factors are multiplicative, so consecutive events are coalesced exactly by taking their product.  Inertia
+ * events are always coalesced to at most one update per pulse; other events are coalesced only when the
+ * {@link #coalescingProperty() coalescing} property is set.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class InteractionGestureZoom extends InteractionBase {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    public InteractionGestureZoom(DoubleProperty distanceFromOrigin) {
+        super();
+        this.distanceFromOrigin.bindBidirectional(distanceFromOrigin);
+        // it only makes sense for zoom gesture navigation behavior to be assigned; so assert() that
+        navigationBehaviorProperty().addListener((ob, old, value) -> { assert(value.isGestureZoom()); });
+        // apply anything still pending when coalescing is switched off
+        coalescingProperty().addListener((ob, old, value) -> { if (!value) coalescer.flush(); });
+    }
+
+    @Override public void attachToHost(Host host) {
+        super.attachToHost(host);
+        host.addEventHandler(ZoomEvent.ZOOM, zoomHandler);
+    }
+
+    @Override public void detachFromHost(Host host) {
+        coalescer.cancel();
+        super.detachFromHost(host);
+        host.removeEventHandler(ZoomEvent.ZOOM, zoomHandler);
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final DoubleProperty distanceFromOrigin = new SimpleDoubleProperty(this, "distanceFromOrigin", 0);
+
+    private double pendingZoomFactor = 1.0;
+
+    private void applyZoomFactor(double zoomFactor) {
+        if ((zoomFactor > 0) && (zoomFactor != 1.0)) {
+            distanceFromOrigin.set(distanceFromOrigin.get() / zoomFactor);
+        }
+    }
+
+    private final PulseCoalescer coalescer = new PulseCoalescer(() -> {
+        final double zoomFactor = pendingZoomFactor;
+        pendingZoomFactor = 1.0;
+        applyZoomFactor(zoomFactor);
+    });
+
+    private final EventHandler<ZoomEvent> zoomHandler = (ze) -> {
+        if (getNavigationBehavior().inputEventMatches(ze)) {
+            if (isCoalescing() || ze.isInertia()) {
+                pendingZoomFactor *= ze.getZoomFactor();
+                coalescer.schedule();
+            } else {
+                coalescer.flush();
+                applyZoomFactor(ze.getZoomFactor());
+            }
+        }
+    };
+
+}
@@ -15,6 +15,21 @@ package org.orbitnav.internal;
 import javafx.event.EventHandler;
 import javafx.scene.input.ScrollEvent;
 
+import org.orbitnav.NavigationBehavior;
+
+/**
+ * Abstract base class for all scrolling interactions.
+ *
+ * <p>
+ * When {@link #coalescingProperty() coalescing} is enabled, the deltas of all <code>SCROLL</code> events that arrive
+ * within a pulse are summed, and the {@link ScrollHandler ScrollHandler} is invoked once per pulse with the summed
+ * deltas and the most recent <code>ScrollEvent</code>.  Inertia events (which trackpads can emit at a very high rate
+ * after the fingers have been lifted) are always coalesced in this way.  Handlers whose response to a delta depends
+ * upon state that the pending deltas would change override {@link #canCoalesce(double, double) canCoalesce} to have
+ * the pending deltas applied first.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
 public abstract class InteractionScroll extends InteractionBase {
 
     //---------------------------------------------------------------------------------------------------------- PUBLIC
@@ -23,20 +38,85 @@ public abstract class InteractionScroll extends InteractionBase {
         super();
         // it only makes sense for SCROLL navigation behavior to be assigned; so assert() that
         navigationBehaviorProperty().addListener((ob, old, value) -> { assert(value.isGestureScroll()); });
+        // apply anything still pending when coalescing is switched off
+        coalescingProperty().addListener((ob, old, value) -> { if (!value) coalescer.flush(); });
     }
     
     @Override public void attachToHost(Host host) {
         super.attachToHost(host);
-        host.addEventHandler(ScrollEvent.SCROLL, getScrollHandler());
+        host.addEventHandler(ScrollEvent.SCROLL, scrollEventHandler);
     }
     
     @Override public void detachFromHost(Host host) {
+        coalescer.cancel();
         super.detachFromHost(host);
-        host.removeEventHandler(ScrollEvent.SCROLL, getScrollHandler());
+        host.removeEventHandler(ScrollEvent.SCROLL, scrollEventHandler);
     }
     
     //------------------------------------------------------------------------------------------------------- PROTECTED
-    
-    protected abstract EventHandler<ScrollEvent> getScrollHandler();
-    
+
+    /**
+     * Returns the handler for scroll events.
+     *
+     * <p>
+     * This method must be implemented by sub-classes.  This method is called to obtain a
+     * {@link ScrollHandler ScrollHandler} that will respond to scrolling events produced by the {@link Host Host}.
+     *
+     * <p>
+     * This method will be called multiple times by <code>InteractionScroll</code> (once per event handler
+     * invocation), so the implementation should ideally just return a final field.
+     *
+     * @return scroll handler
+     */
+    protected abstract ScrollHandler getScrollHandler();
+
+    /**
+     * Returns whether the deltas of another scroll event may be summed with those already pending in the current
+     * pulse.
+     *
+     * <p>
+     * The default returns <code>true</code>.  Sub-classes whose handler would respond differently to the next delta
+     * once the pending deltas have been applied should return <code>false</code> in that case, so that the pending
+     * deltas are applied before the next delta is added.
+     *
+     * @param pendingDeltaX horizontal scroll amount pending in the current pulse
+     * @param pendingDeltaY vertical scroll amount pending in the current pulse
+     * @return <code>true</code> if the next delta may be summed with the pending deltas
+     */
+    protected boolean canCoalesce(double pendingDeltaX, double pendingDeltaY) { return true; }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private ScrollEvent pendingEvent;
+    private double pendingDeltaX;
+    private double pendingDeltaY;
+
+    private final PulseCoalescer coalescer = new PulseCoalescer(() -> {
+        final ScrollEvent se = pendingEvent;
+        final double deltaX = pendingDeltaX;
+        final double deltaY = pendingDeltaY;
+        pendingEvent = null;
+        pendingDeltaX = 0;
+        pendingDeltaY = 0;
+        getScrollHandler().handleScroll(se, deltaX, deltaY);
+    });
+
+    private final EventHandler<ScrollEvent> scrollEventHandler = (se) -> {
+        final NavigationBehavior nb = getNavigationBehavior();
+        if (nb.inputEventMatches(se)) {
+            if (isCoalescing() || se.isInertia()) {
+                if ((pendingEvent != null) && !canCoalesce(pendingDeltaX, pendingDeltaY)) {
+                    coalescer.flush();
+                }
+                pendingEvent = se;
+                pendingDeltaX += se.getDeltaX();
+                pendingDeltaY += se.getDeltaY();
+                coalescer.schedule();
+            } else {
+                coalescer.flush();
+                getScrollHandler().handleScroll(se, se.getDeltaX(), se.getDeltaY());
+            }
+        }
+    };
+
 }
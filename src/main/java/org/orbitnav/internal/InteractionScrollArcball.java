@@ -0,0 +1,61 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.input.ScrollEvent;
+
+/**
+ * Arcball rotation triggered by two-axis scroll events.  Each scroll increment rotates the view about the axis in the
+ * raster plane perpendicular to the scroll direction, matching a short {@link InteractionDragArcball arcball drag}
+ * from the center of the view.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class InteractionScrollArcball extends InteractionScroll {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    public InteractionScrollArcball(DoubleProperty rotationAngle,
+            DoubleProperty rotationAxisX, DoubleProperty rotationAxisY, DoubleProperty rotationAxisZ)
+    {
+        this.rotationAngle.bindBidirectional(rotationAngle);
+        this.rotationAxisX.bindBidirectional(rotationAxisX);
+        this.rotationAxisY.bindBidirectional(rotationAxisY);
+        this.rotationAxisZ.bindBidirectional(rotationAxisZ);
+    }
+
+    //------------------------------------------------------------------------------------------------------- PROTECTED
+
+    protected ScrollHandler getScrollHandler() { return scrollHandler; }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final DoubleProperty rotationAxisX = new SimpleDoubleProperty(this, "rotationAxisX", 0);
+    private final DoubleProperty rotationAxisY = new SimpleDoubleProperty(this, "rotationAxisY", 0);
+    private final DoubleProperty rotationAxisZ = new SimpleDoubleProperty(this, "rotationAxisZ", 0);
+    private final DoubleProperty rotationAngle = new SimpleDoubleProperty(this, "rotationAngle", 0);
+    private final DoubleProperty rotationCoefficient = new SimpleDoubleProperty(this, "rotationCoefficient", 0.4);
+
+    private final IncrementalArcballRotation rotation =
+            new IncrementalArcballRotation(rotationAngle, rotationAxisX, rotationAxisY, rotationAxisZ);
+
+    private final ScrollHandler scrollHandler = new ScrollHandler() {
+        @Override public void handleScroll(ScrollEvent se, double deltaX, double deltaY) {
+            final double angleDegrees = rotationCoefficient.get() * Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+            rotation.concatRotationRadians(-deltaY, deltaX, 0, Math.toRadians(angleDegrees));
+        }
+    };
+
+}
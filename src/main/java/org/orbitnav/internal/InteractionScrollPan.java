@@ -0,0 +1,64 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.transform.Transform;
+
+/**
+ * Panning interaction triggered by two-axis scroll events (eg. two-finger trackpad scroll).  The scene moves with the
+ * scrolled content, in the same way as it follows the pointer in a {@link InteractionDragPan panning drag}.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class InteractionScrollPan extends InteractionScroll {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Creates a new instance of <code>InteractionScrollPan</code>.
+     *
+     * @param originX origin x property
+     * @param originY origin y property
+     * @param originZ origin z property
+     * @param viewRotation rotation-only component of the viewing transformation
+     * @param distanceFromOrigin distance from origin
+     * @param camera camera property
+     */
+    public InteractionScrollPan(DoubleProperty originX, DoubleProperty originY, DoubleProperty originZ,
+                                ReadOnlyObjectProperty<Transform> viewRotation,
+                                ReadOnlyDoubleProperty distanceFromOrigin,
+                                ReadOnlyObjectProperty<PerspectiveCamera> camera) {
+        super();
+        pan = new OriginPan(this, originX, originY, originZ, viewRotation, distanceFromOrigin, camera);
+    }
+
+    //------------------------------------------------------------------------------------------------------- PROTECTED
+
+    protected ScrollHandler getScrollHandler() { return scrollHandler; }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final OriginPan pan;
+
+    private final ScrollHandler scrollHandler = new ScrollHandler() {
+        @Override public void handleScroll(ScrollEvent se, double deltaX, double deltaY) {
+            pan.pan(deltaX, deltaY);
+        }
+    };
+
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.scene.input.ScrollEvent;
+
+/**
+ * Turntable rotation triggered by two-axis scroll events.  Horizontal scrolling spins the turntable and vertical
+ * scrolling tilts it, in the same way as a {@link InteractionDragXZTurntable turntable drag}.  As for a drag, the
+ * pending deltas of coalesced scroll events are applied before a delta that would start on the other side of 180
+ * degrees of tilt, where the direction of the spin reverses.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class InteractionScrollXZTurntable extends InteractionScroll {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    public InteractionScrollXZTurntable(DoubleProperty xRotation, DoubleProperty zRotation) {
+        this.xRotation.bindBidirectional(xRotation);
+        this.zRotation.bindBidirectional(zRotation);
+    }
+
+    //------------------------------------------------------------------------------------------------------- PROTECTED
+
+    protected ScrollHandler getScrollHandler() { return scrollHandler; }
+
+    @Override protected boolean canCoalesce(double pendingDeltaX, double pendingDeltaY) {
+        final double xRot = xRotation.get();
+        final double pendingXRot = Util.normalizeAngle(xRot - (rotationCoefficient.get() * pendingDeltaY));
+        return (xRot > 180.0) == (pendingXRot > 180.0);
+    }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final DoubleProperty xRotation = new SimpleDoubleProperty(this, "xRotation", 0);
+    private final DoubleProperty zRotation = new SimpleDoubleProperty(this, "zRotation", 0);
+    private final DoubleProperty rotationCoefficient = new SimpleDoubleProperty(this, "rotationCoefficient", 0.4);
+
+    private final ScrollHandler scrollHandler = new ScrollHandler() {
+        @Override public void handleScroll(ScrollEvent se, double deltaX, double deltaY) {
+            final double oldXRot = xRotation.get();
+            final double oldZRot = zRotation.get();
+            final double coeff = rotationCoefficient.get();
+            final double zRotationSign = (oldXRot > 180.0) ? (1.0) : (-1.0);
+            xRotation.set(Util.normalizeAngle(oldXRot - (coeff * deltaY)));
+            zRotation.set(Util.normalizeAngle(oldZRot - (zRotationSign * coeff * deltaX)));
+        }
+    };
+
+}
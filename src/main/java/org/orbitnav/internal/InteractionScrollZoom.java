@@ -15,12 +15,17 @@ package org.orbitnav.internal;
 
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
-import javafx.event.EventHandler;
 import javafx.scene.input.ScrollEvent;
 
 /**
  * Zoom interaction triggered by scroll events (eg. mouse wheel scroll).
  *
+ * <p>
+ * Each scroll increment scales the distance from the origin by <code>exp(-zoomCoefficient * deltaY)</code>.  The
+ * factor is always positive, so no scroll can carry the camera through the origin, and the factors of successive
+ * increments multiply to the factor of their summed delta, so coalesced scroll events zoom exactly as far as the
+ * events would one at a time.
+ *
  * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
  */
 public final class InteractionScrollZoom extends InteractionScroll {
@@ -33,20 +38,17 @@ public final class InteractionScrollZoom extends InteractionScroll {
 
     //------------------------------------------------------------------------------------------------------- PROTECTED
 
-    protected EventHandler<ScrollEvent> getScrollHandler() { return scrollHandler; }
+    protected ScrollHandler getScrollHandler() { return scrollHandler; }
 
     //--------------------------------------------------------------------------------------------------------- PRIVATE
 
     private final DoubleProperty distanceFromOrigin = new SimpleDoubleProperty(this, "distanceFromOrigin", 0);
     private final DoubleProperty zoomCoefficient = new SimpleDoubleProperty(this, "zoomCoefficient", 0.002);
 
-    private final EventHandler<ScrollEvent> scrollHandler = new EventHandler<ScrollEvent>() {
-        @Override
-        public void handle(ScrollEvent se) {
-            if (getNavigationBehavior().inputEventMatches(se)) {
-                final double coeff = zoomCoefficient.get();
-                distanceFromOrigin.set((1.0 - (coeff * se.getDeltaY())) * distanceFromOrigin.get());
-            }
+    private final ScrollHandler scrollHandler = new ScrollHandler() {
+        @Override public void handleScroll(ScrollEvent se, double deltaX, double deltaY) {
+            final double coeff = zoomCoefficient.get();
+            distanceFromOrigin.set(Math.exp(-coeff * deltaY) * distanceFromOrigin.get());
         }
     };
 
@@ -13,9 +13,7 @@
 package org.orbitnav.internal;
 
 import javafx.geometry.Point2D;
-import javafx.geometry.Point3D;
 import javafx.scene.PerspectiveCamera;
-import javafx.scene.transform.NonInvertibleTransformException;
 import javafx.scene.transform.Transform;
 
 import org.orbitnav.CameraToRasterTransform;
@@ -23,6 +21,14 @@ import org.orbitnav.CameraToRasterTransform;
 /**
  * A {@link org.orbitnav.CameraToRasterTransform CameraToRasterTransform} that uses a rigid body transformation plus
  * a <code>PerspectiveCamera</code>.
+ *
+ * <p>
+ * The scene-to-camera matrix (the inverse of the camera's rotation and translation) is computed once, each time
+ * {@link #setParameters(PerspectiveCamera, Transform, double, double) setParameters} is called, so that individual
+ * and batch transformations only require a matrix multiply and a perspective divide.  The camera-to-scene matrix is
+ * kept as well, for {@link #rasterToRay(double, double, double[], double[]) unprojection}.  If the camera's
+ * transformation is singular, there is no scene-to-camera matrix, and the transform is marked as not
+ * {@link #isValid() valid} until the next call of <code>setParameters</code>.
  * 
  * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
  */
@@ -35,38 +41,189 @@ public final class PerspectiveSceneToRaster implements CameraToRasterTransform {
     public void setParameters(PerspectiveCamera camera, Transform transformRotationTranslation,
                               double width, double height)
     {
-        this.transformRotationTranslation = transformRotationTranslation;
         this.w2 = width / 2.0;
         this.h2 = height / 2.0;
         final double fov = Util.getHorizontalFieldOfView(camera, width, height);
         final double focalLength = 1.0 / Math.tan(Math.toRadians(fov / 2.0));
         this.flcoeff = focalLength * this.w2;
+        updateMatrices(transformRotationTranslation);
     }
     
     public void setParameters(PerspectiveCamera camera, Transform transformRotationTranslation, Host host) {
         setParameters(camera, transformRotationTranslation, host.getWidth(), host.getHeight());
     }
         
+    @Override public boolean isValid() { return valid; }
+
     @Override public Point2D transform(double x, double y, double z) {
-        try {
-            final Point3D p3d = transformRotationTranslation.inverseTransform(x, y, z);
-            final double c = flcoeff / p3d.getZ();
-            return new Point2D(c * p3d.getX() + w2, c * p3d.getY() + h2);
-        } catch (NonInvertibleTransformException ex) { return new Point2D(0, 0); /* should not occur! */ }
+        final double cx = ixx * x + ixy * y + ixz * z + itx;
+        final double cy = iyx * x + iyy * y + iyz * z + ity;
+        final double cz = izx * x + izy * y + izz * z + itz;
+        final double c = flcoeff / cz;
+        return new Point2D(c * cx + w2, c * cy + h2);
     }
     
     @Override public double transformRadius(double x, double y, double z, double radius) {
-        try {
-            final Point3D p3d = transformRotationTranslation.inverseTransform(x, y, z);
-            return Math.abs(flcoeff * radius / p3d.getZ());
-        } catch (NonInvertibleTransformException ex) { return 0; /* should not occur! */ }
+        final double cz = izx * x + izy * y + izz * z + itz;
+        return Math.abs(flcoeff * radius / cz);
+    }
+
+    @Override public int transform(double[] xyz, int offset, int count, double[] raster, double[] depth,
+                                   boolean[] inFront)
+    {
+        int nInFront = 0;
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final int i3 = 3 * i;
+            final double x = xyz[i3];
+            final double y = xyz[i3 + 1];
+            final double z = xyz[i3 + 2];
+            final double cz = izx * x + izy * y + izz * z + itz;
+            final double c = flcoeff / cz;
+            raster[2 * i]     = c * (ixx * x + ixy * y + ixz * z + itx) + w2;
+            raster[2 * i + 1] = c * (iyx * x + iyy * y + iyz * z + ity) + h2;
+            if (depth != null) depth[i] = cz;
+            final boolean f = (cz > 0);
+            if (inFront != null) inFront[i] = f;
+            if (f) nInFront++;
+        }
+        return nInFront;
+    }
+
+    @Override public int transform(float[] xyz, int offset, int count, float[] raster, float[] depth,
+                                   boolean[] inFront)
+    {
+        int nInFront = 0;
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final int i3 = 3 * i;
+            final double x = xyz[i3];
+            final double y = xyz[i3 + 1];
+            final double z = xyz[i3 + 2];
+            final double cz = izx * x + izy * y + izz * z + itz;
+            final double c = flcoeff / cz;
+            raster[2 * i]     = (float)(c * (ixx * x + ixy * y + ixz * z + itx) + w2);
+            raster[2 * i + 1] = (float)(c * (iyx * x + iyy * y + iyz * z + ity) + h2);
+            if (depth != null) depth[i] = (float)cz;
+            final boolean f = (cz > 0);
+            if (inFront != null) inFront[i] = f;
+            if (f) nInFront++;
+        }
+        return nInFront;
+    }
+
+    @Override public void transform(float[] x, float[] y, float[] z, int offset, int count,
+                                    float[] rasterX, float[] rasterY, float[] depth)
+    {
+        // copy coefficients to locals, in single precision, so that the loop body is straight-line float arithmetic
+        final float fxx = (float)ixx, fxy = (float)ixy, fxz = (float)ixz, ftx = (float)itx;
+        final float fyx = (float)iyx, fyy = (float)iyy, fyz = (float)iyz, fty = (float)ity;
+        final float fzx = (float)izx, fzy = (float)izy, fzz = (float)izz, ftz = (float)itz;
+        final float fl = (float)flcoeff, fw2 = (float)w2, fh2 = (float)h2;
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final float px = x[i];
+            final float py = y[i];
+            final float pz = z[i];
+            final float cz = fzx * px + fzy * py + fzz * pz + ftz;
+            final float c = fl / cz;
+            rasterX[i] = c * (fxx * px + fxy * py + fxz * pz + ftx) + fw2;
+            rasterY[i] = c * (fyx * px + fyy * py + fyz * pz + fty) + fh2;
+            depth[i] = cz;
+        }
+    }
+
+    @Override public void rasterToRay(double rasterX, double rasterY, double[] origin, double[] direction) {
+        // direction in camera coordinates, with unit depth
+        final double dx = (rasterX - w2) / flcoeff;
+        final double dy = (rasterY - h2) / flcoeff;
+        // rotate into scene coordinates
+        final double sx = mxx * dx + mxy * dy + mxz;
+        final double sy = myx * dx + myy * dy + myz;
+        final double sz = mzx * dx + mzy * dy + mzz;
+        final double l = Math.sqrt(sx * sx + sy * sy + sz * sz);
+        direction[0] = sx / l;
+        direction[1] = sy / l;
+        direction[2] = sz / l;
+        origin[0] = tx;
+        origin[1] = ty;
+        origin[2] = tz;
+    }
+
+    @Override public CameraToRasterTransform snapshot() {
+        final PerspectiveSceneToRaster copy = new PerspectiveSceneToRaster();
+        copy.w2 = w2;
+        copy.h2 = h2;
+        copy.flcoeff = flcoeff;
+        copy.valid = valid;
+        copy.mxx = mxx; copy.mxy = mxy; copy.mxz = mxz; copy.tx = tx;
+        copy.myx = myx; copy.myy = myy; copy.myz = myz; copy.ty = ty;
+        copy.mzx = mzx; copy.mzy = mzy; copy.mzz = mzz; copy.tz = tz;
+        copy.ixx = ixx; copy.ixy = ixy; copy.ixz = ixz; copy.itx = itx;
+        copy.iyx = iyx; copy.iyy = iyy; copy.iyz = iyz; copy.ity = ity;
+        copy.izx = izx; copy.izy = izy; copy.izz = izz; copy.itz = itz;
+        return copy;
+    }
+
+    @Override public void transformRadii(double[] xyz, double[] radii, int offset, int count, double[] rasterRadii) {
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final int i3 = 3 * i;
+            final double cz = izx * xyz[i3] + izy * xyz[i3 + 1] + izz * xyz[i3 + 2] + itz;
+            rasterRadii[i] = Math.abs(flcoeff * radii[i] / cz);
+        }
+    }
+
+    @Override public void transformRadii(float[] xyz, float[] radii, int offset, int count, float[] rasterRadii) {
+        final int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            final int i3 = 3 * i;
+            final double cz = izx * xyz[i3] + izy * xyz[i3 + 1] + izz * xyz[i3 + 2] + itz;
+            rasterRadii[i] = (float)Math.abs(flcoeff * radii[i] / cz);
+        }
     }
     
     //--------------------------------------------------------------------------------------------------------- PRIVATE
     
-    private Transform transformRotationTranslation;
     private double w2;
     private double h2;
     private double flcoeff;
+    private boolean valid = true;
+
+    // camera-to-scene matrix (the camera rotation and translation); identity until parameters are set
+    private double mxx = 1, mxy = 0, mxz = 0, tx = 0;
+    private double myx = 0, myy = 1, myz = 0, ty = 0;
+    private double mzx = 0, mzy = 0, mzz = 1, tz = 0;
+
+    // scene-to-camera matrix (inverse of the camera rotation and translation); identity until parameters are set
+    private double ixx = 1, ixy = 0, ixz = 0, itx = 0;
+    private double iyx = 0, iyy = 1, iyz = 0, ity = 0;
+    private double izx = 0, izy = 0, izz = 1, itz = 0;
+
+    private void updateMatrices(Transform t) {
+        mxx = t.getMxx(); mxy = t.getMxy(); mxz = t.getMxz(); tx = t.getTx();
+        myx = t.getMyx(); myy = t.getMyy(); myz = t.getMyz(); ty = t.getTy();
+        mzx = t.getMzx(); mzy = t.getMzy(); mzz = t.getMzz(); tz = t.getTz();
+        // cofactors of the 3x3 linear part
+        final double cxx = myy * mzz - myz * mzy;
+        final double cxy = myz * mzx - myx * mzz;
+        final double cxz = myx * mzy - myy * mzx;
+        final double det = mxx * cxx + mxy * cxy + mxz * cxz;
+        valid = (det != 0);  /* should always hold (the camera transform is rigid) */
+        // without an inverse, leave no stale matrix behind: every projection is then NaN
+        final double r = valid ? 1.0 / det : Double.NaN;
+        ixx = cxx * r;
+        ixy = (mxz * mzy - mxy * mzz) * r;
+        ixz = (mxy * myz - mxz * myy) * r;
+        iyx = cxy * r;
+        iyy = (mxx * mzz - mxz * mzx) * r;
+        iyz = (mxz * myx - mxx * myz) * r;
+        izx = cxz * r;
+        izy = (mxy * mzx - mxx * mzy) * r;
+        izz = (mxx * myy - mxy * myx) * r;
+        itx = -(ixx * tx + ixy * ty + ixz * tz);
+        ity = -(iyx * tx + iyy * ty + iyz * tz);
+        itz = -(izx * tx + izy * ty + izz * tz);
+    }
         
 }
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2013 Dr Jonathan S Merritt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.orbitnav.internal;
+
+import javafx.animation.AnimationTimer;
+
+/**
+ * Defers an action so that it runs at most once per JavaFX pulse.
+ *
+ * <p>
+ * High-rate input devices can deliver several events between consecutive pulses.  Rather than processing each of them
+ * fully, an {@link Interaction Interaction} can accumulate their effect and call {@link #schedule() schedule}; the
+ * flush action is then run once, on the next pulse.  {@link #flush() flush} runs a pending action immediately (for
+ * example, when a drag ends), and {@link #cancel() cancel} discards it.
+ *
+ * <p>
+ * All methods must be called on the JavaFX application thread.
+ *
+ * @author Jonathan Merritt (<a href="mailto:j.s.merritt@gmail.com">j.s.merritt@gmail.com</a>)
+ */
+public final class PulseCoalescer {
+
+    //---------------------------------------------------------------------------------------------------------- PUBLIC
+
+    /**
+     * Creates a new <code>PulseCoalescer</code>.
+     *
+     * @param flushAction action to run once per pulse, whenever a flush has been scheduled
+     */
+    public PulseCoalescer(Runnable flushAction) {
+        this.flushAction = flushAction;
+    }
+
+    /**
+     * Schedules the flush action to run on the next pulse.  Scheduling an already-pending flush has no effect.
+     */
+    public void schedule() {
+        if (!pending) {
+            pending = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * Runs the flush action immediately if one is pending.
+     */
+    public void flush() {
+        if (pending) {
+            cancel();
+            flushAction.run();
+        }
+    }
+
+    /**
+     * Discards any pending flush without running it.
+     */
+    public void cancel() {
+        if (pending) {
+            pending = false;
+            timer.stop();
+        }
+    }
+
+    /**
+     * Indicates whether a flush is pending.
+     *
+     * @return <code>true</code> if a flush has been scheduled but not yet run
+     */
+    public boolean isPending() { return pending; }
+
+    //--------------------------------------------------------------------------------------------------------- PRIVATE
+
+    private final Runnable flushAction;
+    private boolean pending = false;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override public void handle(long now) { flush(); }
+    };
+
+}